@@ -0,0 +1,150 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import processing.awt.ShimAWT;
+
+
+/**
+ * Times PImageEncoder against the ImageIO path that PImage.save() used
+ * before for TIFF and PNG files, on RGB and ARGB frames, and prints the
+ * file sizes. Every file is read back with ImageIO and compared with the
+ * pixels that were written.
+ */
+public class ImageEncoderBench {
+  static final int WIDTH = 1920;
+  static final int HEIGHT = 1080;
+  static final int RUNS = 5;
+
+
+  public static void main(String[] args) throws Exception {
+    File folder = Files.createTempDirectory("encoder").toFile();
+    System.out.printf("%d x %d, best of %d runs%n", WIDTH, HEIGHT, RUNS);
+    for (int format : new int[] { PConstants.RGB, PConstants.ARGB }) {
+      PImage image = frame(format, new Random(1));
+      for (String extension : new String[] { "tif", "png" }) {
+        run(image, new File(folder, "frame." + extension));
+      }
+    }
+    for (File file : folder.listFiles()) {
+      file.delete();
+    }
+    folder.delete();
+  }
+
+
+  static void run(PImage image, File file) throws Exception {
+    String path = file.getAbsolutePath();
+    String name = (image.format == PConstants.ARGB ? "ARGB " : "RGB  ") +
+      path.substring(path.lastIndexOf('.') + 1);
+
+    // one save before each timing loop, so that the code is compiled
+    ShimAWT.saveImage(image, path);
+    long imageioTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      ShimAWT.saveImage(image, path);
+      imageioTime = Math.min(imageioTime, System.nanoTime() - start);
+    }
+    long imageioSize = file.length();
+    boolean imageioSame = same(image, file);
+
+    PImageEncoder encoder = new PImageEncoder();
+    long[] encoderTime = new long[2];
+    long encoderSize = 0;
+    boolean encoderSame = true;
+    for (int parallel = 0; parallel < 2; parallel++) {
+      encoder.setParallel(parallel == 1);
+      encoder.save(image, path);
+      encoderTime[parallel] = Long.MAX_VALUE;
+      for (int r = 0; r < RUNS; r++) {
+        long start = System.nanoTime();
+        encoder.save(image, path);
+        encoderTime[parallel] =
+          Math.min(encoderTime[parallel], System.nanoTime() - start);
+      }
+      encoderSize = file.length();
+      encoderSame &= same(image, file);
+    }
+
+    System.out.printf("%s  ImageIO %7.1f ms %6.2f MB   encoder %7.1f ms, " +
+                      "parallel %7.1f ms %6.2f MB   same pixels: %b%n",
+                      name, imageioTime / 1e6, imageioSize / 1e6,
+                      encoderTime[0] / 1e6, encoderTime[1] / 1e6,
+                      encoderSize / 1e6, imageioSame && encoderSame);
+  }
+
+
+  /**
+   * Gradients with some noise and a few flat rectangles, closer to a
+   * rendered frame than random pixels, which would not compress at all.
+   */
+  static PImage frame(int format, Random random) {
+    PImage image = new PImage(WIDTH, HEIGHT, format);
+    for (int y = 0; y < HEIGHT; y++) {
+      for (int x = 0; x < WIDTH; x++) {
+        int r = x * 255 / WIDTH;
+        int g = y * 255 / HEIGHT;
+        int b = (x + y) % 256 ^ random.nextInt(8);
+        int a = format == PConstants.ARGB ? 128 + (x ^ y) % 128 : 255;
+        image.pixels[y * WIDTH + x] = a << 24 | r << 16 | g << 8 | b;
+      }
+    }
+    for (int i = 0; i < 40; i++) {
+      int x0 = random.nextInt(WIDTH - 200), y0 = random.nextInt(HEIGHT - 200);
+      int color = 0xFF000000 | random.nextInt(0x1000000);
+      for (int y = y0; y < y0 + 200; y++) {
+        for (int x = x0; x < x0 + 200; x++) {
+          image.pixels[y * WIDTH + x] = color;
+        }
+      }
+    }
+    return image;
+  }
+
+
+  static boolean same(PImage image, File file) throws Exception {
+    BufferedImage read = ImageIO.read(file);
+    if (read == null ||
+        read.getWidth() != image.pixelWidth ||
+        read.getHeight() != image.pixelHeight) {
+      return false;
+    }
+    int[] pixels = read.getRGB(0, 0, read.getWidth(), read.getHeight(),
+                               null, 0, read.getWidth());
+    int mask = image.format == PConstants.ARGB ? 0xFFFFFFFF : 0xFFFFFF;
+    for (int i = 0; i < pixels.length; i++) {
+      if ((pixels[i] & mask) != (image.pixels[i] & mask)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
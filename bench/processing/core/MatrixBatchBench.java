@@ -0,0 +1,121 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Random;
+
+
+/**
+ * Times the batched PMatrix3D.mult(source, target, first, count, stride)
+ * against transforming the same points one at a time, with
+ * mult(double[], double[]) and with multX/multY/multZ. The batch is timed
+ * on the whole array, which is split across the fork-join pool, and in
+ * blocks too small to be split, to show the single thread speed.
+ */
+public class MatrixBatchBench {
+  static final int POINTS = 1 << 20;
+  static final int RUNS = 30;
+
+
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    double[] source = new double[4 * POINTS];
+    for (int i = 0; i < source.length; i++) {
+      source[i] = random.nextDouble() * 100;
+    }
+    double[] xyz = new double[3 * POINTS];
+    double[] xyzw = new double[4 * POINTS];
+    for (int p = 0; p < POINTS; p++) {
+      System.arraycopy(source, 4 * p, xyz, 3 * p, 3);
+      System.arraycopy(source, 4 * p, xyzw, 4 * p, 3);
+      xyzw[4 * p + 3] = 1;
+    }
+
+    PMatrix3D affine = new PMatrix3D();
+    affine.translate(10, -20, 30);
+    affine.rotateY(0.3);
+    affine.rotateX(-0.7);
+    affine.scale(1.5);
+
+    PMatrix3D projective = affine.get();
+    projective.m30 = 0.001;
+    projective.m32 = -0.002;
+
+    System.out.printf("%d points, best of %d runs, in ms%n", POINTS, RUNS);
+    double[] expected = new double[xyz.length];
+    double[] target = new double[xyz.length];
+
+    double single = time(() -> {
+      double[] in = new double[3];
+      double[] out = new double[3];
+      for (int i = 0; i < 3 * POINTS; i += 3) {
+        in[0] = xyz[i]; in[1] = xyz[i+1]; in[2] = xyz[i+2];
+        affine.mult(in, out);
+        expected[i] = out[0]; expected[i+1] = out[1]; expected[i+2] = out[2];
+      }
+    });
+    double separate = time(() -> {
+      for (int i = 0; i < 3 * POINTS; i += 3) {
+        double x = xyz[i], y = xyz[i+1], z = xyz[i+2];
+        target[i]   = affine.multX(x, y, z);
+        target[i+1] = affine.multY(x, y, z);
+        target[i+2] = affine.multZ(x, y, z);
+      }
+    });
+    double blocks = time(() -> {
+      for (int p = 0; p < POINTS; p += 1 << 14) {
+        affine.mult(xyz, target, p, 1 << 14, 3);
+      }
+    });
+    double batch = time(() -> affine.mult(xyz, target, 0, POINTS, 3));
+    System.out.printf("xyz    mult(double[]) %6.1f   multX/Y/Z %6.1f   " +
+                      "batch, one thread %6.1f   batch %6.1f   max error %.1e%n",
+                      single, separate, blocks, batch, maxError(expected, target));
+
+    double[] target4 = new double[xyzw.length];
+    double affineTime = time(() -> affine.mult(xyzw, target4, 0, POINTS, 4));
+    double projectiveTime = time(() -> projective.mult(xyzw, target4, 0, POINTS, 4));
+    System.out.printf("xyzw   affine batch %6.1f   projective batch %6.1f%n",
+                      affineTime, projectiveTime);
+  }
+
+
+  static double time(Runnable task) {
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      task.run();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    return best / 1e6;
+  }
+
+
+  static double maxError(double[] a, double[] b) {
+    double max = 0;
+    for (int i = 0; i < a.length; i++) {
+      max = Math.max(max, Math.abs(a[i] - b[i]));
+    }
+    return max;
+  }
+}
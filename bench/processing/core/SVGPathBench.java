@@ -0,0 +1,168 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Random;
+
+import processing.data.XML;
+
+
+/**
+ * Times the single-pass PathLexer against the tokenizing pass it replaced
+ * (separators added to a StringBuilder, splitTokens(), then parseDouble()
+ * on each token) over a large generated path, and checks that both read
+ * the same numbers. Also times the whole PShapeSVG parse of that path.
+ */
+public class SVGPathBench {
+  static final int SEGMENTS = 200000;
+  static final int RUNS = 10;
+
+
+  public static void main(String[] args) throws Exception {
+    String d = path(SEGMENTS, new Random(1));
+    System.out.printf("path data: %.1f MB%n", d.length() / 1e6);
+
+    double oldSum = 0, newSum = 0;
+    long oldTime = Long.MAX_VALUE, newTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      oldSum = tokenize(d);
+      oldTime = Math.min(oldTime, System.nanoTime() - start);
+
+      start = System.nanoTime();
+      newSum = lex(d);
+      newTime = Math.min(newTime, System.nanoTime() - start);
+    }
+    System.out.printf("tokens + parseDouble %7.1f ms   PathLexer %6.1f ms   (%.1fx)   same numbers: %b%n",
+                      oldTime / 1e6, newTime / 1e6,
+                      (double) oldTime / newTime, oldSum == newSum);
+
+    XML svg = XML.parse("<svg xmlns=\"http://www.w3.org/2000/svg\" " +
+                        "width=\"1000\" height=\"1000\"><path d=\"" + d +
+                        "\"/></svg>");
+    long shapeTime = Long.MAX_VALUE;
+    int vertices = 0;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      PShape shape = new PShapeSVG(svg);
+      shapeTime = Math.min(shapeTime, System.nanoTime() - start);
+      vertices = shape.getChild(0).getVertexCount();
+    }
+    System.out.printf("PShapeSVG parse %7.1f ms, %d vertices%n",
+                      shapeTime / 1e6, vertices);
+  }
+
+
+  /** Lines and cubic curves, with the compact separators SVG allows. */
+  static String path(int segments, Random random) {
+    StringBuilder sb = new StringBuilder("M0,0");
+    for (int i = 0; i < segments; i++) {
+      if (random.nextBoolean()) {
+        sb.append(random.nextBoolean() ? "l" : "L");
+        number(sb, random);
+        number(sb, random);
+      } else {
+        sb.append(random.nextBoolean() ? "c" : "C");
+        for (int j = 0; j < 6; j++) {
+          number(sb, random);
+        }
+      }
+    }
+    return sb.append('z').toString();
+  }
+
+
+  static void number(StringBuilder sb, Random random) {
+    double value = Math.round((random.nextDouble() - 0.5) * 2e5) / 100.0;
+    // negative numbers need no separator, others get a space or a comma
+    if (0 <= value) sb.append(random.nextBoolean() ? ' ' : ',');
+    sb.append(value);
+  }
+
+
+  /** Sum of the numbers read by PathLexer. */
+  static double lex(String d) {
+    PShapeSVG.PathLexer lexer = new PShapeSVG.PathLexer(d);
+    double sum = 0;
+    while (lexer.skipSeparators()) {
+      if (lexer.atNumber()) {
+        sum += lexer.nextNumber();
+      } else {
+        lexer.nextCommand();
+      }
+    }
+    return sum;
+  }
+
+
+  /**
+   * Sum of the numbers read the way parsePath() did before PathLexer. The
+   * exponent states of the old scanner are left out, the generated path
+   * has no exponents.
+   */
+  static double tokenize(String d) {
+    StringBuilder buffer = new StringBuilder();
+    boolean afterCommand = false;
+    boolean inNumber = false;
+    boolean inDecimal = false;
+    for (int i = 0; i < d.length(); i++) {
+      char c = d.charAt(i);
+      if (afterCommand) {
+        buffer.append('|');
+        afterCommand = false;
+      }
+      if (c >= '0' && c <= '9') {
+        inNumber = true;
+        buffer.append(c);
+      } else if (c == '-') {
+        if (inNumber) buffer.append('|');
+        inNumber = true;
+        inDecimal = false;
+        buffer.append('-');
+      } else if (c == '.') {
+        if (inDecimal) buffer.append('|');
+        inNumber = true;
+        inDecimal = true;
+        buffer.append('.');
+      } else {
+        if (inNumber) buffer.append('|');
+        inNumber = false;
+        inDecimal = false;
+        if (c != ',') buffer.append(c);
+        if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
+          afterCommand = true;
+        }
+      }
+    }
+    String[] tokens =
+      PApplet.splitTokens(buffer.toString(), "|" + PConstants.WHITESPACE);
+    double sum = 0;
+    for (String token : tokens) {
+      char c = token.charAt(0);
+      if ((c >= '0' && c <= '9') || c == '-' || c == '.') {
+        sum += PApplet.parseDouble(token);
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,179 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * Times k nearest neighbour and radius queries on KDTree and HashGrid
+ * against brute force loops over the same 3D points, and checks that they
+ * find the same points. Also times a rebuild, and updating a tenth of the
+ * points as a particle system would.
+ */
+public class SpatialIndexBench {
+  static final int POINTS = 100000;
+  static final int QUERIES = 2000;
+  static final int K = 8;
+  static final double SIZE = 1000;
+  static final double RADIUS = 30;
+  static final int RUNS = 5;
+
+
+  public static void main(String[] args) {
+    Random random = new Random(1);
+    double[] coords = new double[3 * POINTS];
+    for (int i = 0; i < coords.length; i++) {
+      coords[i] = random.nextDouble() * SIZE;
+    }
+    double[] queries = new double[3 * QUERIES];
+    for (int i = 0; i < queries.length; i++) {
+      queries[i] = random.nextDouble() * SIZE;
+    }
+    System.out.printf("%d points, %d queries, k = %d, radius = %.0f%n",
+                      POINTS, QUERIES, K, RADIUS);
+
+    IntList[] bruteNearest = new IntList[QUERIES];
+    IntList[] bruteRadius = new IntList[QUERIES];
+    long nearestTime = Long.MAX_VALUE, radiusTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        bruteNearest[q] = bruteNearest(coords, queries, q);
+      }
+      nearestTime = Math.min(nearestTime, System.nanoTime() - start);
+      start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        bruteRadius[q] = bruteRadius(coords, queries, q);
+      }
+      radiusTime = Math.min(radiusTime, System.nanoTime() - start);
+    }
+    System.out.printf("%-12s nearest %8.1f ms   radius %8.1f ms%n",
+                      "brute force", nearestTime / 1e6, radiusTime / 1e6);
+
+    run("KDTree", new KDTree(3), coords, queries, bruteNearest, bruteRadius);
+    run("HashGrid", new HashGrid(3, RADIUS), coords, queries,
+        bruteNearest, bruteRadius);
+  }
+
+
+  static void run(String name, PointIndex index, double[] coords,
+                  double[] queries, IntList[] bruteNearest,
+                  IntList[] bruteRadius) {
+    long buildTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      index.set(coords, POINTS);
+      buildTime = Math.min(buildTime, System.nanoTime() - start);
+    }
+
+    // the result lists are reused across queries
+    IntList result = new IntList();
+    int mismatches = 0;
+    long nearestTime = Long.MAX_VALUE, radiusTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        index.nearest(queries[3*q], queries[3*q+1], queries[3*q+2], K, result);
+        if (r == 0 && !sameSet(result, bruteNearest[q])) mismatches++;
+      }
+      nearestTime = Math.min(nearestTime, System.nanoTime() - start);
+      start = System.nanoTime();
+      for (int q = 0; q < QUERIES; q++) {
+        index.withinRadius(queries[3*q], queries[3*q+1], queries[3*q+2],
+                           RADIUS, result);
+        if (r == 0 && !sameSet(result, bruteRadius[q])) mismatches++;
+      }
+      radiusTime = Math.min(radiusTime, System.nanoTime() - start);
+    }
+
+    // move a tenth of the points a little, as in a particle system
+    Random random = new Random(2);
+    long updateTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < POINTS; i += 10) {
+        index.update(i, index.getX(i) + random.nextGaussian(),
+                     index.getY(i) + random.nextGaussian(),
+                     index.getZ(i) + random.nextGaussian());
+      }
+      updateTime = Math.min(updateTime, System.nanoTime() - start);
+    }
+
+    System.out.printf("%-12s nearest %8.1f ms   radius %8.1f ms   " +
+                      "build %6.1f ms   update %5.1f ms   %d mismatches%n",
+                      name, nearestTime / 1e6, radiusTime / 1e6,
+                      buildTime / 1e6, updateTime / 1e6, mismatches);
+  }
+
+
+  static IntList bruteNearest(double[] coords, double[] queries, int q) {
+    int[] best = new int[K];
+    double[] bestDist = new double[K];
+    Arrays.fill(bestDist, Double.POSITIVE_INFINITY);
+    for (int i = 0; i < POINTS; i++) {
+      double d = dist2(coords, i, queries, q);
+      if (d < bestDist[K - 1]) {
+        int j = K - 1;
+        while (0 < j && d < bestDist[j - 1]) {
+          best[j] = best[j - 1];
+          bestDist[j] = bestDist[j - 1];
+          j--;
+        }
+        best[j] = i;
+        bestDist[j] = d;
+      }
+    }
+    return new IntList(best);
+  }
+
+
+  static IntList bruteRadius(double[] coords, double[] queries, int q) {
+    IntList found = new IntList();
+    for (int i = 0; i < POINTS; i++) {
+      if (dist2(coords, i, queries, q) <= RADIUS * RADIUS) {
+        found.append(i);
+      }
+    }
+    return found;
+  }
+
+
+  static double dist2(double[] coords, int i, double[] queries, int q) {
+    double dx = coords[3*i] - queries[3*q];
+    double dy = coords[3*i+1] - queries[3*q+1];
+    double dz = coords[3*i+2] - queries[3*q+2];
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+
+  static boolean sameSet(IntList a, IntList b) {
+    if (a.size() != b.size()) return false;
+    int[] sa = a.toArray();
+    int[] sb = b.toArray();
+    Arrays.sort(sa);
+    Arrays.sort(sb);
+    return Arrays.equals(sa, sb);
+  }
+}
@@ -0,0 +1,193 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+import processing.opengl.PGraphicsOpenGL.AttributeMap;
+import processing.opengl.PGraphicsOpenGL.DepthSorter;
+import processing.opengl.PGraphicsOpenGL.InGeometry;
+import processing.opengl.PGraphicsOpenGL.TessGeometry;
+import processing.opengl.PGraphicsOpenGL.Tessellator;
+
+
+/**
+ * Times the grid-based DepthSorter against the linear scan it replaced,
+ * on scenes of small random triangles, and checks that both give the same
+ * drawing order. No GL context is needed.
+ */
+public class DepthSorterBench {
+  static final int[] SCENES = { 3000, 20000, 60000 };
+  static final int RUNS = 5;
+
+
+  public static void main(String[] args) {
+    // One index block, so the sorted indices map back to triangles
+    PGL.setIntIndices(true);
+    PGraphicsOpenGL pg = new PGraphics3D();
+    for (int count : SCENES) {
+      run(pg, count);
+    }
+  }
+
+
+  static void run(PGraphicsOpenGL pg, int count) {
+    TessGeometry tess = scene(pg, count, new Random(count));
+    int[] original = new int[tess.polyIndexCount];
+    for (int i = 0; i < original.length; i++) {
+      original[i] = tess.polyIndex(i);
+    }
+    pg.texCache.clear();
+    pg.texCache.addTexture(null, 0, 0, tess.polyIndexCount - 1,
+                           tess.polyIndexCache.size - 1);
+
+    DepthSorter sorter = new DepthSorter(pg);
+    long gridTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      for (int i = 0; i < original.length; i++) {
+        tess.setPolyIndex(i, original[i]);
+      }
+      long start = System.nanoTime();
+      sorter.sort(tess);
+      gridTime = Math.min(gridTime, System.nanoTime() - start);
+    }
+
+    int[] order = null;
+    long scanTime = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      order = scanOrder(tess.polyVertices, original, count);
+      scanTime = Math.min(scanTime, System.nanoTime() - start);
+    }
+
+    int mismatches = 0;
+    for (int t = 0; t < count; t++) {
+      // every triangle has its own three vertices
+      if (tess.polyIndex(3 * t) / 3 != order[t]) mismatches++;
+    }
+    System.out.printf("%6d triangles: scan %8.1f ms   grid %7.1f ms   (%.1fx)   %d different positions%n",
+                      count, scanTime / 1e6, gridTime / 1e6,
+                      (double) scanTime / gridTime, mismatches);
+  }
+
+
+  /** Small triangles at random positions, each with its own vertices. */
+  static TessGeometry scene(PGraphicsOpenGL pg, int count, Random random) {
+    AttributeMap attribs = new AttributeMap();
+    InGeometry in = new InGeometry(pg, attribs, PGraphicsOpenGL.RETAINED);
+    for (int t = 0; t < count; t++) {
+      double x = random.nextDouble() * 1000;
+      double y = random.nextDouble() * 1000;
+      double z = random.nextDouble() * 1000;
+      for (int v = 0; v < 3; v++) {
+        in.addVertex(x + random.nextDouble() * 30, y + random.nextDouble() * 30,
+                     z + random.nextDouble() * 30, false);
+      }
+    }
+    int[] indices = new int[3 * count];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+
+    TessGeometry tess =
+      new TessGeometry(pg, attribs, PGraphicsOpenGL.RETAINED, false);
+    Tessellator tessellator = new Tessellator();
+    tessellator.setRenderer(pg);
+    tessellator.setInGeometry(in);
+    tessellator.setTessGeometry(tess);
+    tessellator.setFill(true);
+    tessellator.setStroke(false);
+    tessellator.set3D(true);
+    tessellator.tessellateTriangles(indices);
+    return tess;
+  }
+
+
+  /**
+   * The sorter before the screen grid: a min Z sort, then a linear scan of
+   * every triangle overlapping the active one in Z. The min Z sort is the
+   * stable one from the new sorter rather than the old quicksort, so that
+   * the two orders can be compared. Uses the identity projection, like the
+   * scenes above, and returns the drawing order.
+   */
+  static int[] scanOrder(double[] vertices, int[] indices, int count) {
+    double[][] tris = new double[count][9];
+    double[] minX = new double[count], maxX = new double[count];
+    double[] minY = new double[count], maxY = new double[count];
+    double[] minZ = new double[count], maxZ = new double[count];
+    Integer[] sorted = new Integer[count];
+    for (int t = 0; t < count; t++) {
+      double[] tri = tris[t];
+      for (int v = 0; v < 3; v++) {
+        int i = indices[3 * t + v];
+        tri[3 * v] = vertices[4 * i];
+        tri[3 * v + 1] = vertices[4 * i + 1];
+        tri[3 * v + 2] = -vertices[4 * i + 2];
+      }
+      minX[t] = Math.min(tri[0], Math.min(tri[3], tri[6]));
+      maxX[t] = Math.max(tri[0], Math.max(tri[3], tri[6]));
+      minY[t] = Math.min(tri[1], Math.min(tri[4], tri[7]));
+      maxY[t] = Math.max(tri[1], Math.max(tri[4], tri[7]));
+      minZ[t] = Math.min(tri[2], Math.min(tri[5], tri[8]));
+      maxZ[t] = Math.max(tri[2], Math.max(tri[5], tri[8]));
+      sorted[t] = t;
+    }
+    Arrays.sort(sorted, (a, b) -> Double.compare(minZ[a], minZ[b]));
+    int[] order = new int[count];
+    for (int t = 0; t < count; t++) {
+      order[t] = sorted[t];
+    }
+
+    BitSet marked = new BitSet();
+    BitSet swapped = new BitSet();
+    for (int activeTid = 0; activeTid < count; activeTid++) {
+      swapped.clear();
+      int ati = order[activeTid];
+      int testTid = activeTid + 1;
+      boolean draw = false;
+      while (!draw && testTid < count) {
+        int tti = order[testTid];
+        if (maxZ[ati] <= minZ[tti] && !marked.get(tti)) {
+          draw = true;
+        } else if (maxX[ati] <= minX[tti] || maxY[ati] <= minY[tti] ||
+                   minX[ati] >= maxX[tti] || minY[ati] >= maxY[tti]) {
+          testTid++;
+        } else if (DepthSorter.side(tris[tti], tris[ati], -1) > 0 ||
+                   DepthSorter.side(tris[ati], tris[tti], 1) > 0) {
+          testTid++;
+        } else if (!swapped.get(tti)) {
+          swapped.set(ati);
+          marked.set(tti);
+          DepthSorter.rotateRight(order, activeTid, testTid);
+          ati = tti;
+          testTid = activeTid + 1;
+        } else {
+          testTid++;
+        }
+      }
+    }
+    return order;
+  }
+}
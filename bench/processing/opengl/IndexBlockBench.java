@@ -0,0 +1,104 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import processing.opengl.PGraphicsOpenGL.AttributeMap;
+import processing.opengl.PGraphicsOpenGL.InGeometry;
+import processing.opengl.PGraphicsOpenGL.TessGeometry;
+import processing.opengl.PGraphicsOpenGL.Tessellator;
+
+
+/**
+ * Tessellates an indexed grid mesh on the CPU with 16-bit and with 32-bit
+ * indices, and counts the index blocks (one draw call each) and the
+ * vertices duplicated at the block boundaries. No GL context is needed.
+ */
+public class IndexBlockBench {
+  static final int GRID = 600;
+  static final int RUNS = 5;
+
+
+  public static void main(String[] args) {
+    int[] indices = gridIndices(GRID);
+    System.out.printf("%d x %d grid, %d vertices, %d triangles%n",
+                      GRID, GRID, GRID * GRID, indices.length / 3);
+    run(false, indices);
+    run(true, indices);
+  }
+
+
+  static void run(boolean intIndices, int[] indices) {
+    // The bench never draws, so it can switch after creating a renderer
+    PGL.intIndicesLocked = false;
+    PGL.setIntIndices(intIndices);
+
+    PGraphicsOpenGL pg = new PGraphics3D();
+    AttributeMap attribs = new AttributeMap();
+    InGeometry in = new InGeometry(pg, attribs, PGraphicsOpenGL.RETAINED);
+    for (int j = 0; j < GRID; j++) {
+      for (int i = 0; i < GRID; i++) {
+        in.addVertex(i, j, 0, false);
+      }
+    }
+
+    TessGeometry tess = null;
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      tess = new TessGeometry(pg, attribs, PGraphicsOpenGL.RETAINED, false);
+      Tessellator tessellator = new Tessellator();
+      tessellator.setRenderer(pg);
+      tessellator.setInGeometry(in);
+      tessellator.setTessGeometry(tess);
+      tessellator.setFill(true);
+      tessellator.setStroke(false);
+      tessellator.set3D(true);
+      long start = System.nanoTime();
+      tessellator.tessellateTriangles(indices);
+      best = Math.min(best, System.nanoTime() - start);
+    }
+
+    int blocks = tess.polyIndexCache.size;
+    int duplicated = tess.polyVertexCount - in.vertexCount;
+    System.out.printf("%s indices: %4d draw calls, %7d duplicated vertices, %6.1f ms%n",
+                      intIndices ? "32-bit" : "16-bit", blocks, duplicated,
+                      best / 1e6);
+  }
+
+
+  static int[] gridIndices(int n) {
+    int[] indices = new int[6 * (n - 1) * (n - 1)];
+    int k = 0;
+    for (int j = 0; j < n - 1; j++) {
+      for (int i = 0; i < n - 1; i++) {
+        int v = j * n + i;
+        indices[k++] = v;
+        indices[k++] = v + 1;
+        indices[k++] = v + n;
+        indices[k++] = v + 1;
+        indices[k++] = v + n + 1;
+        indices[k++] = v + n;
+      }
+    }
+    return indices;
+  }
+}
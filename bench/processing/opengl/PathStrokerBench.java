@@ -0,0 +1,164 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import processing.core.PMatrix2D;
+
+
+/**
+ * Times PathStroker against the fixed-point LineStroker it replaced, on a
+ * zig-zag polyline for each join style. Also strokes the same path far
+ * from the origin, where the 16.16 stroker overflows.
+ */
+@SuppressWarnings("deprecation")
+public class PathStrokerBench {
+  static final int POINTS = 2000;
+  static final int WARMUP = 200;
+  static final int RUNS = 1000;
+
+  static final String[] JOIN_NAMES = { "miter", "round", "bevel" };
+
+
+  public static void main(String[] args) {
+    PMatrix2D identity = new PMatrix2D();
+    for (int join = LinePath.JOIN_MITER; join <= LinePath.JOIN_BEVEL; join++) {
+      LinePath path = zigzag(0, 0);
+      double oldTime = time(path, join, identity, false);
+      double newTime = time(path, join, identity, true);
+      System.out.printf("%-6s LineStroker %8.1f us   PathStroker %8.1f us   (%.2fx)%n",
+                        JOIN_NAMES[join], oldTime, newTime, oldTime / newTime);
+    }
+
+    // 16.16 fixed point only reaches +/-32768
+    LinePath far = zigzag(1e6, 1e6);
+    LinePath oldFar = strokeOld(far, 4, LinePath.CAP_BUTT,
+                                LinePath.JOIN_MITER, identity);
+    LinePath newFar = LinePath.createStrokedPath(far, 4, LinePath.CAP_BUTT,
+                                                 LinePath.JOIN_MITER, 10, identity);
+    System.out.printf("first point at (1e6, 1e6): LineStroker %s   PathStroker %s%n",
+                      firstPoint(oldFar), firstPoint(newFar));
+  }
+
+
+  static LinePath zigzag(double x0, double y0) {
+    LinePath path = new LinePath();
+    path.moveTo(x0, y0, 0xff000000);
+    for (int i = 1; i < POINTS; i++) {
+      path.lineTo(x0 + i * 3, y0 + ((i & 1) == 0 ? 0 : 7 + (i % 5)), 0xff000000);
+    }
+    return path;
+  }
+
+
+  /** Average microseconds per stroked path. */
+  static double time(LinePath path, int join, PMatrix2D transform,
+                     boolean doubles) {
+    // summing the output sizes keeps the JIT from dropping the work
+    long coords = 0;
+    for (int i = 0; i < WARMUP; i++) {
+      coords += stroke(path, join, transform, doubles).numCoords;
+    }
+    long start = System.nanoTime();
+    for (int i = 0; i < RUNS; i++) {
+      coords += stroke(path, join, transform, doubles).numCoords;
+    }
+    long elapsed = System.nanoTime() - start;
+    if (coords == 0) System.out.println("empty output");
+    return elapsed / 1000.0 / RUNS;
+  }
+
+
+  static LinePath stroke(LinePath path, int join, PMatrix2D transform,
+                         boolean doubles) {
+    if (doubles) {
+      return LinePath.createStrokedPath(path, 4, LinePath.CAP_ROUND, join,
+                                        10, transform);
+    }
+    return strokeOld(path, 4, LinePath.CAP_ROUND, join, transform);
+  }
+
+
+  /** What LinePath.createStrokedPath() did before PathStroker. */
+  static LinePath strokeOld(LinePath src, double weight, int caps, int join,
+                            PMatrix2D transform) {
+    final LinePath dest = new LinePath();
+    LineStroker sink = new LineStroker() {
+      @Override
+      public void moveTo(int x0, int y0, int c0) {
+        dest.moveTo(LinePath.S15_16ToDouble(x0), LinePath.S15_16ToDouble(y0), c0);
+      }
+
+      @Override
+      public void lineJoin() {
+      }
+
+      @Override
+      public void lineTo(int x1, int y1, int c1) {
+        dest.lineTo(LinePath.S15_16ToDouble(x1), LinePath.S15_16ToDouble(y1), c1);
+      }
+
+      @Override
+      public void close() {
+        dest.closePath();
+      }
+
+      @Override
+      public void end() {
+      }
+    };
+    LineStroker stroker =
+      new LineStroker(sink, LinePath.DoubleToS15_16(weight), caps, join,
+                      LinePath.DoubleToS15_16(10), transform);
+
+    double[] coords = new double[6];
+    LinePath.PathIterator pi = src.getPathIterator();
+    while (!pi.isDone()) {
+      int type = pi.currentSegment(coords);
+      int color = ((int) coords[2] << 24) | ((int) coords[3] << 16) |
+                  ((int) coords[4] << 8) | (int) coords[5];
+      if (type == LinePath.SEG_MOVETO) {
+        stroker.moveTo(LinePath.DoubleToS15_16(coords[0]),
+                       LinePath.DoubleToS15_16(coords[1]), color);
+      } else if (type == LinePath.SEG_LINETO) {
+        stroker.lineJoin();
+        stroker.lineTo(LinePath.DoubleToS15_16(coords[0]),
+                       LinePath.DoubleToS15_16(coords[1]), color);
+      } else {
+        stroker.lineJoin();
+        stroker.close();
+      }
+      pi.next();
+    }
+    stroker.end();
+    return dest;
+  }
+
+
+  static String firstPoint(LinePath path) {
+    double[] coords = new double[6];
+    LinePath.PathIterator pi = path.getPathIterator();
+    if (pi.isDone()) return "(empty)";
+    pi.currentSegment(coords);
+    return String.format("(%.1f, %.1f)", coords[0], coords[1]);
+  }
+}
@@ -0,0 +1,135 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.nio.FloatBuffer;
+
+import processing.opengl.PGraphicsOpenGL.AttributeMap;
+import processing.opengl.PGraphicsOpenGL.IndexCache;
+import processing.opengl.PGraphicsOpenGL.InGeometry;
+import processing.opengl.PGraphicsOpenGL.TessGeometry;
+import processing.opengl.PGraphicsOpenGL.Tessellator;
+
+
+/**
+ * Tessellates a grid far from the origin into several 16-bit index blocks
+ * with relative vertices, packs the float vertex buffer, and reads each
+ * block back at the byte offset that the renderers give to
+ * setVertexAttribute(), the way GL would. Every vertex of every block has
+ * to come back as its packed value. Also checks that the buffer sizes
+ * passed to bufferData() match the float buffer, and times the packing.
+ * No GL context is needed.
+ */
+public class RelativeVertexBench {
+  static final int GRID = 400;
+  static final double FAR = 1e7;
+  static final int RUNS = 10;
+
+
+  public static void main(String[] args) {
+    // 16-bit indices, so that the grid needs several blocks
+    PGL.intIndicesLocked = false;
+    PGL.setIntIndices(false);
+
+    PGraphicsOpenGL pg = new PGraphics3D();
+    TessGeometry tess = grid(pg);
+    tess.relativeVertices = true;
+
+    long best = Long.MAX_VALUE;
+    for (int r = 0; r < RUNS; r++) {
+      long start = System.nanoTime();
+      tess.updatePolyVerticesBuffer();
+      best = Math.min(best, System.nanoTime() - start);
+    }
+
+    FloatBuffer floats = tess.polyVerticesFloatBuffer;
+    IndexCache cache = tess.polyIndexCache;
+    int bytesPerFloat = tess.sizeofVertexFloat();
+    int wrong = 0, outside = 0;
+    for (int n = 0; n < cache.size; n++) {
+      int offset = 4 * cache.vertexOffset[n] * bytesPerFloat;
+      for (int v = 0; v < cache.vertexCount[n]; v++) {
+        // attribute stride is 0, so GL reads 4 tightly packed floats
+        int at = offset / Float.BYTES + 4 * v;
+        if (at + 4 > floats.capacity()) {
+          outside++;
+          continue;
+        }
+        int i = 4 * (cache.vertexOffset[n] + v);
+        for (int c = 0; c < 3; c++) {
+          float expected = (float) (tess.polyVertices[i + c] - tess.polyOrigin[c]);
+          if (floats.get(at + c) != expected) wrong++;
+        }
+      }
+    }
+
+    long uploaded = 4L * tess.polyVertexCount * bytesPerFloat;
+    long held = (long) floats.capacity() * Float.BYTES;
+    int allocated = PGL.allocateDirectFloatBuffer(1000).capacity();
+
+    System.out.printf("%d vertices in %d blocks, %d bytes per float%n",
+                      tess.polyVertexCount, cache.size, bytesPerFloat);
+    System.out.printf("wrong coordinates %d, vertices past the buffer %d%n",
+                      wrong, outside);
+    System.out.printf("bufferData() size %d bytes, float buffer %d bytes, " +
+                      "allocateDirectFloatBuffer(1000) holds %d floats%n",
+                      uploaded, held, allocated);
+    System.out.printf("pack %.2f ms%n", best / 1e6);
+  }
+
+
+  static TessGeometry grid(PGraphicsOpenGL pg) {
+    AttributeMap attribs = new AttributeMap();
+    InGeometry in = new InGeometry(pg, attribs, PGraphicsOpenGL.RETAINED);
+    for (int j = 0; j < GRID; j++) {
+      for (int i = 0; i < GRID; i++) {
+        in.addVertex(FAR + i, FAR + j, FAR, false);
+      }
+    }
+    int[] indices = new int[6 * (GRID - 1) * (GRID - 1)];
+    int k = 0;
+    for (int j = 0; j < GRID - 1; j++) {
+      for (int i = 0; i < GRID - 1; i++) {
+        int v = j * GRID + i;
+        indices[k++] = v;
+        indices[k++] = v + 1;
+        indices[k++] = v + GRID;
+        indices[k++] = v + 1;
+        indices[k++] = v + GRID + 1;
+        indices[k++] = v + GRID;
+      }
+    }
+
+    TessGeometry tess =
+      new TessGeometry(pg, attribs, PGraphicsOpenGL.RETAINED, false);
+    Tessellator tessellator = new Tessellator();
+    tessellator.setRenderer(pg);
+    tessellator.setInGeometry(in);
+    tessellator.setTessGeometry(tess);
+    tessellator.setFill(true);
+    tessellator.setStroke(false);
+    tessellator.set3D(true);
+    tessellator.tessellateTriangles(indices);
+    return tess;
+  }
+}
@@ -2792,6 +2792,22 @@ public class PGraphicsJava2D extends PGraphics {
   }
 
 
+  /**
+   * Reads the raster straight into target, leaving pixels[] alone,
+   * so saveAsync() costs a single copy of the image.
+   */
+  @Override
+  protected void copyPixelsTo(int[] target) {
+    WritableRaster raster = getRaster();
+    raster.getDataElements(0, 0, pixelWidth, pixelHeight, target);
+    if (raster.getNumBands() == 3) {
+      for (int i = 0; i < target.length; i++) {
+        target[i] = 0xff000000 | target[i];
+      }
+    }
+  }
+
+
 //  /**
 //   * Update the pixels[] buffer to the PGraphics image.
 //   * <P>
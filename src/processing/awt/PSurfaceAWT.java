@@ -1178,12 +1178,12 @@ public class PSurfaceAWT extends PSurfaceNone {
       peModifiers |= Event.ALT;
     }
 
-    sketch.postEvent(new MouseEvent(nativeEvent, nativeEvent.getWhen(),
-                                    peAction, peModifiers,
-                                    nativeEvent.getX() / windowScaleFactor,
-                                    nativeEvent.getY() / windowScaleFactor,
-                                    peButton,
-                                    peCount));
+    sketch.postEvent(sketch.createMouseEvent(nativeEvent, nativeEvent.getWhen(),
+                                             peAction, peModifiers,
+                                             nativeEvent.getX() / windowScaleFactor,
+                                             nativeEvent.getY() / windowScaleFactor,
+                                             peButton,
+                                             peCount));
   }
 
 
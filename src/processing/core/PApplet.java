@@ -25,14 +25,21 @@
 package processing.core;
 
 import java.io.*;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.*;
 import java.net.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.text.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.regex.*;
-import java.util.zip.*;
+import java.util.stream.Stream;
 import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 import processing.awt.ShimAWT;
@@ -751,6 +758,15 @@ public class PApplet implements PConstants {
 
   static public final String ARGS_UI_SCALE = "--ui-scale";
 
+  /**
+   * Render without a window and without waiting between frames, for
+   * drawing animations to disk. Time moves by exactly one frame (as set
+   * by frameRate()) each frame, so millis() and frameRate are the same on
+   * every run, and saveFrame() writes the images on other threads.
+   * Not available with P2D and P3D, which need a window.
+   */
+  static public final String ARGS_HEADLESS = "--headless";
+
   /**
    * When run externally to a PdeEditor,
    * this is sent by the sketch when it quits.
@@ -800,6 +816,13 @@ public class PApplet implements PConstants {
 
   boolean present;
 
+  /** Set by --headless, see ARGS_HEADLESS. */
+  boolean headless;
+
+  /** Simulated time with --headless, advanced one frame at a time. */
+  long headlessNanos;
+  long headlessPeriod = 1000000000L / 60L;
+
   String outputPath;
   OutputStream outputStream;
 
@@ -835,7 +858,9 @@ public class PApplet implements PConstants {
   void handleSettings() {
     insideSettings = true;
 
-    if (!disableAWT) {
+    if (headless) {
+      // no display to ask, displayWidth/displayHeight will be 0
+    } else if (!disableAWT) {
       displayWidth = ShimAWT.getDisplayWidth();
       displayHeight = ShimAWT.getDisplayHeight();
     } else {
@@ -1268,75 +1293,56 @@ public class PApplet implements PConstants {
 
   class RegisteredMethods {
     /**
-     * List of the objects for which the method is registered.
-     * This is an ordered collection because the order of calls
-     * likely matters, or at a minimum, needs to be stable.
+     * List of the objects for which the method is registered, each with
+     * a handle to the method bound to it. This is an ordered collection
+     * because the order of calls likely matters, or at a minimum, needs
+     * to be stable.
+     * <p>
+     * The array is replaced rather than changed, so handle() can go through
+     * it without locking or allocating anything. Entries removed while
+     * handle() is running are still called that time around, i.e. so the
+     * Video Library can call unregisterMethod("dispose") from inside its
+     * dispose() method: https://github.com/processing/processing4/pull/199
      */
-    Queue<Object> entries = new ConcurrentLinkedQueue<>();
+    volatile RegisteredMethod[] entries = new RegisteredMethod[0];
 
-    /**
-     * A reference to the Method inside each Object, stored so that we're
-     * not redoing the same reflection call inside a tight loop like draw().
-     */
-    Map<Object, Method> methods = new ConcurrentHashMap<>();
-
-    /** While handle() is being called, store any removals in this Set. */
-    Set<Object> removals = null;
 
-    /** Create and store this once. */
-    final Object[] emptyArgs = new Object[] { };
-
-    @SuppressWarnings("unused")
     void handle() {
-      handle(emptyArgs);
+      handle((Object) null);
     }
 
-    void handle(Object[] args) {
-      // Queue removed entries until done iterating, i.e. so the Video Library
-      // can call unregisterMethod("dispose") from inside its dispose() method
-      // https://github.com/processing/processing4/pull/199
-      removals = ConcurrentHashMap.newKeySet();
 
-      for (Object entry : entries) {
+    /** Calls each entry with arg, which is ignored by no-arg methods. */
+    void handle(Object arg) {
+      PFrameStats stats = frameStats;
+      for (RegisteredMethod entry : entries) {
+        long start = (stats != null) ? System.nanoTime() : 0;
         try {
-          //methods[i].invoke(objects[i], args);
-          //entry.method.invoke(entry.object, args);
-          methods.get(entry).invoke(entry, args);
-        } catch (Exception e) {
-          // check for wrapped exception, get root exception
-          Throwable t;
-          if (e instanceof InvocationTargetException ite) {
-            t = ite.getCause();
-          } else {
-            t = e;
-          }
-          // check for RuntimeException, and allow it to bubble up
-          if (t instanceof RuntimeException) {
-            // re-throw exception
-            throw (RuntimeException) t;
-          } else {
-            // trap and print as usual
-            printStackTrace(t);
-          }
+          entry.handle.invokeExact(arg);
+        } catch (RuntimeException | Error e) {
+          // allow these to bubble up
+          throw e;
+        } catch (Throwable t) {
+          // checked exceptions thrown by the method, trap and print as usual
+          printStackTrace(t);
+        }
+        if (stats != null) {
+          stats.recordLibrary(entry.label, System.nanoTime() - start);
         }
       }
-      // Clear the entries queued for removal (if any)
-      for (Object object : removals) {
-        entries.remove(object);
-        methods.remove(object);
-      }
-      removals = null;  // clear this out
     }
 
 
-    void add(Object object, Method method) {
-      if (!entries.contains(object)) {
-        entries.add(object);
-        methods.put(object, method);
-      } else {
-        die(method.getName() + "() already added for this instance of " +
-            object.getClass().getName());
+    synchronized void add(Object object, Method method) throws ReflectiveOperationException {
+      for (RegisteredMethod entry : entries) {
+        if (entry.object.equals(object)) {
+          die(method.getName() + "() already added for this instance of " +
+              object.getClass().getName());
+        }
       }
+      RegisteredMethod[] outgoing = Arrays.copyOf(entries, entries.length + 1);
+      outgoing[entries.length] = new RegisteredMethod(object, method);
+      entries = outgoing;
     }
 
 
@@ -1344,16 +1350,52 @@ public class PApplet implements PConstants {
      * Removes first object/method pair matched (and only the first,
      * must be called multiple times if object is registered multiple times).
      */
-    public void remove(Object object) {
-      if (removals == null) {
-        // If the removals list is null, that means we're not currently iterating
-        // the entries, so it's safe to remove the entry immediately.
-        entries.remove(object);
-        methods.remove(object);
-      } else {
-        // Iterates the list of methods, remove this afterwards
-        removals.add(object);
+    public synchronized void remove(Object object) {
+      RegisteredMethod[] current = entries;
+      for (int i = 0; i < current.length; i++) {
+        if (current[i].object.equals(object)) {
+          RegisteredMethod[] outgoing = new RegisteredMethod[current.length - 1];
+          System.arraycopy(current, 0, outgoing, 0, i);
+          System.arraycopy(current, i + 1, outgoing, i, outgoing.length - i);
+          entries = outgoing;
+          return;
+        }
+      }
+    }
+  }
+
+
+  /**
+   * A registered object, with its method bound to it as a handle that
+   * takes a single Object (the event, or nothing for no-arg methods), so
+   * that every entry is called the same way without reflection.
+   */
+  private static class RegisteredMethod {
+    final Object object;
+    final MethodHandle handle;
+    // how this shows up in PFrameStats
+    final String label;
+
+    RegisteredMethod(Object object, Method method) throws ReflectiveOperationException {
+      this.object = object;
+      label = object.getClass().getName() + "." + method.getName() + "()";
+      MethodHandles.Lookup lookup = MethodHandles.lookup();
+      MethodHandle mh;
+      try {
+        mh = lookup.unreflect(method).bindTo(object);
+      } catch (IllegalAccessException e) {
+        // Not accessible from here (i.e. a public method of a class that
+        // isn't), go through Method.invoke() so that the same exception
+        // is reported each time it's called, as before.
+        mh = lookup.bind(method, "invoke",
+                         MethodType.methodType(Object.class, Object.class, Object[].class))
+          .bindTo(object)
+          .asCollector(Object[].class, method.getParameterCount());
+      }
+      if (method.getParameterCount() == 0) {
+        mh = MethodHandles.dropArguments(mh, 0, Object.class);
       }
+      handle = mh.asType(MethodType.methodType(void.class, Object.class));
     }
   }
 
@@ -1445,13 +1487,25 @@ public class PApplet implements PConstants {
     }
   }
 
-  protected void handleMethods(String methodName, Object...args) {
+  protected void handleMethods(String methodName) {
+    RegisteredMethods meth = registerMap.get(methodName);
+    if (meth != null) {
+      meth.handle();
+    }
+  }
+
+  protected void handleMethods(String methodName, Object arg) {
     RegisteredMethods meth = registerMap.get(methodName);
     if (meth != null) {
-      meth.handle(args);
+      meth.handle(arg);
     }
   }
 
+  /** Registered methods take at most one argument, the rest are ignored. */
+  protected void handleMethods(String methodName, Object...args) {
+    handleMethods(methodName, (args == null || args.length == 0) ? null : args[0]);
+  }
+
 
 
   //////////////////////////////////////////////////////////////
@@ -2023,6 +2077,14 @@ public class PApplet implements PConstants {
       System.exit(1);
     }
 
+    // setup() isn't counted as a frame
+    PFrameStats stats = (frameCount != 0) ? frameStats : null;
+    long lap = 0;
+    if (stats != null) {
+      lap = System.nanoTime();
+      stats.startFrame(lap);
+    }
+
     insideDraw = true;
     g.beginDraw();
     if (recorder != null) {
@@ -2040,7 +2102,7 @@ public class PApplet implements PConstants {
       scale(ratioScale);
     }
 
-    long now = System.nanoTime();
+    long now = headless ? headlessNanos : System.nanoTime();
 
     if (frameCount == 0) {
       setup();
@@ -2064,7 +2126,11 @@ public class PApplet implements PConstants {
       // calculation, we first convert the accumulated frame rate to average
       // frame time, then calculate the exponential moving average, and then
       // convert the average frame time back to frame rate.
-      {
+      if (headless) {
+        // Simulated time, every frame takes exactly one period
+        frameRate = 1e9 / headlessPeriod;
+
+      } else {
         // Get the frame time of the last frame
         double frameTimeSecs = (now - frameRateLastNanos) / 1e9;
         // Convert average frames per second to average frame time
@@ -2076,17 +2142,27 @@ public class PApplet implements PConstants {
         frameRate = (double) (1.0 / avgFrameTimeSecs);
       }
 
+      if (stats != null) lap = stats.lap(PFrameStats.BEGIN_DRAW, lap);
+
       // post move and resize events to the sketch here
       dequeueWindowEvents();
 
       handleMethods("pre");
+      if (stats != null) lap = stats.lap(PFrameStats.PRE, lap);
 
       // use dmouseX/Y as previous mouse pos, since this is the
       // last position the mouse was in during the previous draw.
       pmouseX = dmouseX;
       pmouseY = dmouseY;
 
+      if (headless) {
+        // no update thread, catch up to the simulated time of this frame
+        FixedUpdate fixed = fixedUpdate;
+        if (fixed != null) fixed.advance(now);
+      }
+
       draw();
+      if (stats != null) lap = stats.lap(PFrameStats.DRAW, lap);
 
       // dmouseX/Y is updated only once per frame (unlike emouseX/Y)
       dmouseX = mouseX;
@@ -2097,8 +2173,16 @@ public class PApplet implements PConstants {
       // be before, since a call to background() would wipe
       // out anything that had been drawn so far.
       dequeueEvents();
+      if (stats != null) lap = stats.lap(PFrameStats.EVENTS, lap);
 
       handleMethods("draw");
+      if (stats != null) {
+        lap = stats.lap(PFrameStats.DRAW_METHODS, lap);
+        if (stats.overlay) {
+          stats.draw(g);
+          lap = System.nanoTime();  // the overlay isn't part of the sketch
+        }
+      }
 
       redraw = false;  // unset 'redraw' flag in case it was set
       // (only do this once draw() has run, not just setup())
@@ -2109,13 +2193,18 @@ public class PApplet implements PConstants {
       recorder.endDraw();
     }
     insideDraw = false;
+    if (stats != null) lap = stats.lap(PFrameStats.END_DRAW, lap);
 
     if (frameCount != 0) {
       handleMethods("post");
+      if (stats != null) stats.lap(PFrameStats.POST, lap);
     }
 
     frameRateLastNanos = now;
     frameCount++;
+    if (headless) {
+      headlessNanos += headlessPeriod;
+    }
   }
 
 
@@ -2228,19 +2317,252 @@ public class PApplet implements PConstants {
   }
 
 
+  // null unless frameStats(true) was called
+  PFrameStats frameStats;
+
+
+  /**
+   * Starts or stops timing the parts of each frame, see PFrameStats.
+   * Calling it with true always starts over with empty statistics.
+   */
+  public void frameStats(boolean enable) {
+    frameStats = enable ? new PFrameStats() : null;
+  }
+
+
+  /** The frame timings, or null when frameStats() is off. */
+  public PFrameStats getFrameStats() {
+    return frameStats;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // FIXED UPDATES
+
+
+  FixedUpdate fixedUpdate;
+  volatile StateSnapshot stateSnapshot = new StateSnapshot(null, null, 0, 1);
+
+
+  /**
+   * Called at a fixed rate once fixedUpdate() is turned on, with the length
+   * of each step in seconds. This runs on its own thread, at the same time
+   * as draw(), so it must not draw, and should hand its results to draw()
+   * with publishState() rather than through variables that draw() reads.
+   */
+  public void update(double dt) { }
+
+
+  public void fixedUpdate(double rate) {
+    fixedUpdate(rate, 5);
+  }
+
+
+  /**
+   * Starts calling update() rate times per second on a separate thread,
+   * so the simulation keeps the same pace however fast draw() runs. When
+   * update() falls behind, it is called up to maxSteps times in a row to
+   * catch up, and any steps beyond that are skipped.
+   * <p>
+   * With --headless, the steps are run on the animation thread before
+   * each draw(), following the simulated time, so results are repeatable.
+   */
+  synchronized public void fixedUpdate(double rate, int maxSteps) {
+    // NaN and rates so high that a step rounds to 0 nanoseconds get here
+    long step = (long) (1e9 / rate);
+    if (!(rate > 0) || step < 1) {
+      throw new IllegalArgumentException("The update rate must be above 0 " +
+                                         "and at most 1e9 per second");
+    }
+    if (maxSteps < 1) {
+      throw new IllegalArgumentException("maxSteps must be at least 1");
+    }
+    noFixedUpdate();
+    fixedUpdate = new FixedUpdate(step, maxSteps);
+    if (!headless) {
+      fixedUpdate.start();
+    }
+  }
+
+
+  /** Stops calling update(). */
+  synchronized public void noFixedUpdate() {
+    if (fixedUpdate != null) {
+      fixedUpdate.stop();
+      fixedUpdate = null;
+    }
+  }
+
+
+  /** Number of steps skipped because update() could not keep up. */
+  synchronized public long getSkippedUpdates() {
+    return (fixedUpdate != null) ? fixedUpdate.skipped : 0;
+  }
+
+
+  /**
+   * Makes state, which should not be changed afterwards, the current state
+   * of the simulation, as of the end of the current update() step. The
+   * state published before it becomes the previous state.
+   */
+  public void publishState(Object state) {
+    FixedUpdate fixed = fixedUpdate;
+    StateSnapshot last = stateSnapshot;
+    long time;
+    long step;
+    if (fixed != null) {
+      time = fixed.stepTime + fixed.step;
+      step = fixed.step;
+    } else {
+      time = headless ? headlessNanos : System.nanoTime();
+      step = last.step;
+    }
+    stateSnapshot = new StateSnapshot(last.current, state, time, step);
+  }
+
+
+  /** The state most recently passed to publishState(), or null. */
+  public Object getState() {
+    return stateSnapshot.current;
+  }
+
+
+  /** The state published before getState(), or null. */
+  public Object getPreviousState() {
+    return stateSnapshot.previous;
+  }
+
+
+  /**
+   * How far to go from getPreviousState() towards getState() when drawing
+   * now, from 0 to 1. Each update() step computes the state at the end of
+   * the step, so the simulation is a step ahead of the clock, and there's
+   * a state on either side of the current time to interpolate between.
+   */
+  public double getStateAlpha() {
+    StateSnapshot snapshot = stateSnapshot;
+    long now = headless ? headlessNanos : System.nanoTime();
+    double alpha = (now - (snapshot.time - snapshot.step)) / (double) snapshot.step;
+    return constrain(alpha, 0, 1);
+  }
+
+
+  /** Two states read together by draw(), replaced as a whole. */
+  static class StateSnapshot {
+    final Object previous;
+    final Object current;
+    final long time;  // when current is from, in nanoseconds
+    final long step;
+
+    StateSnapshot(Object previous, Object current, long time, long step) {
+      this.previous = previous;
+      this.current = current;
+      this.time = time;
+      this.step = step;
+    }
+  }
+
+
+  /** Calls update() on a fixed schedule, see fixedUpdate(). */
+  class FixedUpdate implements Runnable {
+    final long step;
+    final int maxSteps;
+    Thread thread;
+    volatile boolean running = true;
+
+    boolean started;
+    long next;      // scheduled time of the next step
+    long stepTime;  // scheduled time of the step in progress
+    volatile long skipped;
+
+    FixedUpdate(long step, int maxSteps) {
+      this.step = step;
+      this.maxSteps = maxSteps;
+    }
+
+    void start() {
+      thread = new Thread(this, "Update Thread");
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    void stop() {
+      running = false;
+      if (thread != null && thread != Thread.currentThread()) {
+        thread.interrupt();
+      }
+    }
+
+    /** Runs the steps that are due at now, up to maxSteps of them. */
+    void advance(long now) {
+      if (!started) {
+        next = now;
+        started = true;
+      }
+      int count = 0;
+      while (running && next <= now) {
+        if (count == maxSteps) {
+          long behind = (now - next) / step + 1;
+          skipped += behind;
+          next += behind * step;
+          break;
+        }
+        stepTime = next;
+        update(step / 1e9);
+        next += step;
+        count++;
+      }
+    }
+
+    @Override
+    public void run() {
+      while (running && !finished) {
+        try {
+          advance(System.nanoTime());
+        } catch (RuntimeException | Error e) {
+          // Stop draw() as well, rather than let it go on with a state
+          // that no longer changes, then let the exception be reported
+          // the same way as one thrown by draw().
+          running = false;
+          noLoop();
+          throw e;
+        }
+        long wait = next - System.nanoTime();
+        if (wait > 0) {
+          try {
+            Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+          } catch (InterruptedException e) {
+            // stopped, or the sketch is shutting down
+          }
+        }
+      }
+    }
+  }
+
+
   //////////////////////////////////////////////////////////////
 
 
-  BlockingQueue<Event> eventQueue = new LinkedBlockingQueue<>();
+  static final int EVENT_QUEUE_SIZE = 1024;
+
+  EventRing eventQueue = new EventRing(EVENT_QUEUE_SIZE);
   private final Object eventQueueDequeueLock = new Object[0];
+  // only changed and read with eventQueueDequeueLock held
+  boolean coalesceEvents;
+  long coalescedEvents;
 
 
   /**
    * Add an event to the internal event queue, or process it immediately if
-   * the sketch is not currently looping.
+   * the sketch is not currently looping. If events arrive faster than the
+   * sketch handles them and the queue fills up, mouse moves and drags are
+   * the first to be dropped; see getDroppedEvents().
    */
   public void postEvent(processing.event.Event pe) {
-    eventQueue.add(pe);
+    if (!eventQueue.offer(pe)) {
+      recycleEvent(pe);
+    }
 
     if (!looping) {
       dequeueEvents();
@@ -2250,8 +2572,11 @@ public class PApplet implements PConstants {
 
   protected void dequeueEvents() {
     synchronized (eventQueueDequeueLock) {
-      while (!eventQueue.isEmpty()) {
-        Event e = eventQueue.remove();
+      Event e;
+      while ((e = eventQueue.poll()) != null) {
+        if (coalesceEvents) {
+          e = coalesce(e);
+        }
         switch (e.getFlavor()) {
           case Event.MOUSE -> handleMouseEvent((MouseEvent) e);
           case Event.KEY -> handleKeyEvent((KeyEvent) e);
@@ -2261,6 +2586,206 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Skips ahead to the last of a run of queued MOVE or DRAG events with the
+   * same buttons and modifiers, so only that one is handled.
+   */
+  private Event coalesce(Event e) {
+    while (EventRing.isMotion(e)) {
+      MouseEvent current = (MouseEvent) e;
+      Event next = eventQueue.peek();
+      if (!(next instanceof MouseEvent following) ||
+          following.getAction() != current.getAction() ||
+          following.getModifiers() != current.getModifiers() ||
+          following.getButton() != current.getButton()) {
+        break;
+      }
+      eventQueue.poll();
+      following.coalesce(current);
+      coalescedEvents++;
+      // skipped, so nothing outside the queue has seen it
+      recycleEvent(current);
+      e = following;
+    }
+    return e;
+  }
+
+
+  /**
+   * When the sketch falls behind, handle only the last of several mouse
+   * moves or drags that are waiting in a row, rather than each of them.
+   * Useful with high-rate mice and tablets, when handling each event is
+   * expensive. MouseEvent.getCoalesced() tells how many were skipped.
+   * Off by default.
+   */
+  public void coalesceEvents(boolean coalesce) {
+    synchronized (eventQueueDequeueLock) {
+      coalesceEvents = coalesce;
+    }
+  }
+
+
+  /** Number of mouse moves and drags skipped by coalesceEvents(). */
+  public long getCoalescedEvents() {
+    synchronized (eventQueueDequeueLock) {
+      return coalescedEvents;
+    }
+  }
+
+
+  /** Number of events thrown away because the event queue was full. */
+  public long getDroppedEvents() {
+    return eventQueue.dropped.get();
+  }
+
+
+  /**
+   * Fixed-size queue of events, posted from any thread and taken by one
+   * thread at a time. Slots are claimed with a compare-and-set on the tail,
+   * and each slot's sequence number tells whether it's been filled (for the
+   * consumer) or emptied (for the producers), so nothing blocks.
+   * Mouse moves and drags are refused once the queue is half full, leaving
+   * the rest of the room for presses, releases, and keys.
+   */
+  static class EventRing {
+    final Event[] events;
+    final AtomicLongArray sequence;
+    final int mask;
+    final AtomicLong tail = new AtomicLong();
+    volatile long head;
+    final AtomicLong dropped = new AtomicLong();
+
+    EventRing(int size) {  // size must be a power of 2
+      events = new Event[size];
+      sequence = new AtomicLongArray(size);
+      for (int i = 0; i < size; i++) {
+        sequence.set(i, i);
+      }
+      mask = size - 1;
+    }
+
+    static boolean isMotion(Event e) {
+      return e.getFlavor() == Event.MOUSE &&
+        (e.getAction() == MouseEvent.MOVE || e.getAction() == MouseEvent.DRAG);
+    }
+
+    boolean offer(Event e) {
+      int limit = isMotion(e) ? events.length / 2 : events.length;
+      while (true) {
+        long pos = tail.get();
+        int slot = (int) pos & mask;
+        long diff = sequence.get(slot) - pos;
+        if (diff < 0 || pos - head >= limit) {
+          dropped.incrementAndGet();
+          return false;
+        }
+        if (diff == 0 && tail.compareAndSet(pos, pos + 1)) {
+          events[slot] = e;
+          sequence.set(slot, pos + 1);  // publishes the event
+          return true;
+        }
+        // another thread took this slot, try the next one
+      }
+    }
+
+    /** The next event, without taking it. Consumer only. */
+    Event peek() {
+      long pos = head;
+      int slot = (int) pos & mask;
+      return (sequence.get(slot) == pos + 1) ? events[slot] : null;
+    }
+
+    /** Takes the next event, or returns null. Consumer only. */
+    Event poll() {
+      long pos = head;
+      int slot = (int) pos & mask;
+      if (sequence.get(slot) != pos + 1) {
+        return null;
+      }
+      Event e = events[slot];
+      events[slot] = null;
+      head = pos + 1;
+      sequence.set(slot, pos + events.length);  // free for the next lap
+      return e;
+    }
+  }
+
+
+  static final int EVENT_POOL_SIZE = 64;
+
+  // events from createMouseEvent() that were never handled, for reuse
+  private final PooledMouseEvent[] eventPool =
+    new PooledMouseEvent[EVENT_POOL_SIZE];
+  private int eventPoolCount;
+
+
+  /**
+   * Gets a MouseEvent for a surface to hand to postEvent() right away.
+   * Events that are never handled, because coalesceEvents() skipped them
+   * or the event queue was full, are reused by later calls, so the caller
+   * must not hold on to the event after posting it. Events created with
+   * new MouseEvent() are never reused.
+   */
+  public MouseEvent createMouseEvent(Object nativeObject,
+                                     long millis, int action, int modifiers,
+                                     int x, int y, int button, int count) {
+    PooledMouseEvent event = null;
+    synchronized (eventPool) {
+      if (eventPoolCount > 0) {
+        event = eventPool[--eventPoolCount];
+        eventPool[eventPoolCount] = null;
+      }
+    }
+    if (event == null) {
+      return new PooledMouseEvent(nativeObject, millis, action, modifiers,
+                                  x, y, button, count);
+    }
+    event.set(nativeObject, millis, action, modifiers, x, y, button, count);
+    return event;
+  }
+
+
+  /**
+   * Returns an event from createMouseEvent() to the pool. Only for events
+   * that were never passed to the handlers, since the sketch and libraries
+   * may keep those.
+   */
+  private void recycleEvent(Event e) {
+    if (e instanceof PooledMouseEvent pooled) {
+      pooled.set(null, 0, 0, 0, 0, 0, 0, 0);  // let go of the native event
+      synchronized (eventPool) {
+        if (eventPoolCount < eventPool.length) {
+          eventPool[eventPoolCount++] = pooled;
+        }
+      }
+    }
+  }
+
+
+  /** MouseEvent that can be filled in again, see createMouseEvent(). */
+  static class PooledMouseEvent extends MouseEvent {
+    PooledMouseEvent(Object nativeObject,
+                     long millis, int action, int modifiers,
+                     int x, int y, int button, int count) {
+      super(nativeObject, millis, action, modifiers, x, y, button, count);
+    }
+
+    void set(Object nativeObject,
+             long millis, int action, int modifiers,
+             int x, int y, int button, int count) {
+      this.nativeObject = nativeObject;
+      this.millis = millis;
+      this.action = action;
+      this.modifiers = modifiers;
+      this.x = x;
+      this.y = y;
+      this.button = button;
+      this.count = count;
+      this.coalesced = 0;
+    }
+  }
+
+
   //////////////////////////////////////////////////////////////
 
 
@@ -2868,6 +3393,9 @@ public class PApplet implements PConstants {
    *
    */
   public int millis() {
+    if (headless) {
+      return (int) (headlessNanos / 1000000L);
+    }
     return (int) (System.currentTimeMillis() - millisOffset);
   }
 
@@ -3049,6 +3577,9 @@ public class PApplet implements PConstants {
    */
   public void frameRate(double fps) {
     surface.setFrameRate(fps);
+    if (fps > 0) {
+      headlessPeriod = (long) (1000000000.0 / fps);
+    }
   }
 
 
@@ -3413,6 +3944,13 @@ public class PApplet implements PConstants {
       }
       // run dispose() methods registered by libraries
       handleMethods("dispose");
+
+      synchronized (this) {
+        if (assetLoader != null) {
+          assetLoader.dispose();
+        }
+        noFixedUpdate();
+      }
     }
 
     if (platform == MACOS) {
@@ -3584,6 +4122,26 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Like saveFrame(filename), but the image is always written on another
+   * thread, and the sketch's callback(File) method is called once it's
+   * done. The callback receives null if the image could not be saved, and
+   * it runs on the saving thread, not the animation thread. If several
+   * frames are still being written, this waits until one of them is
+   * finished, so a sketch can't run arbitrarily far ahead of the disk.
+   */
+  public void saveFrame(String filename, String callback) {
+    saveFrame(filename, callback, this);
+  }
+
+
+  public void saveFrame(String filename, String callback,
+                        Object callbackObject) {
+    g.saveAsync(savePath(insertFrame(filename)), file ->
+      selectCallback(file, callback, callbackObject));
+  }
+
+
   /**
    * Check a string for #### signs to see if the frame number should be
    * inserted. Used for functions like saveFrame() and beginRecord() to
@@ -4677,29 +5235,41 @@ public class PApplet implements PConstants {
   // RANDOM NUMBERS
 
 
-  Random internalRandom;
+  // Each thread has its own generator, so that threads calling random()
+  // don't contend on a shared one. The first time a thread calls random(),
+  // its generator is split from randomSplitter, unless randomSeed() was
+  // called from that thread. randomSeed() bumps the generation, so that
+  // the other threads get a new generator from the new seed.
+  final ThreadLocal<PRandom> threadRandom = new ThreadLocal<>();
+  final Object randomLock = new Object();
+  PRandom randomSplitter;
+  volatile int randomGeneration;
+
 
   /**
-   *
+   * Returns the generator used by random() on the current thread.
    */
-  public final double random(double high) {
-    // avoid an infinite loop when 0 or NaN are passed in
-    if (high == 0 || high != high) {
-      return 0;
+  PRandom threadRandom() {
+    PRandom random = threadRandom.get();
+    if (random == null || random.generation != randomGeneration) {
+      synchronized (randomLock) {
+        if (randomSplitter == null) {
+          randomSplitter = new PRandom();
+        }
+        random = randomSplitter.split();
+        random.generation = randomGeneration;
+      }
+      threadRandom.set(random);
     }
+    return random;
+  }
 
-    if (internalRandom == null) {
-      internalRandom = new Random();
-    }
 
-    // for some reason (rounding error?) Math.random() * 3
-    // can sometimes return '3' (once in ~30 million tries)
-    // so a check was added to avoid the inclusion of 'howbig'
-    double value;
-    do {
-      value = internalRandom.nextDouble() * high;
-    } while (value == high);
-    return value;
+  /**
+   *
+   */
+  public final double random(double high) {
+    return threadRandom().random(high);
   }
 
   /**
@@ -4720,10 +5290,7 @@ public class PApplet implements PConstants {
    * @see PApplet#noise(double, double, double)
    */
   public final double randomGaussian() {
-    if (internalRandom == null) {
-      internalRandom = new Random();
-    }
-    return (double) internalRandom.nextGaussian();
+    return threadRandom().randomGaussian();
   }
 
 
@@ -4751,15 +5318,9 @@ public class PApplet implements PConstants {
    * @see PApplet#noise(double, double, double)
    */
   public final double random(double low, double high) {
-    if (low >= high) return low;
-    double diff = high - low;
-    double value;
-    // because of rounding error, can't just add low, otherwise it may hit high
+    // rounding to high is handled there
     // https://github.com/processing/processing/issues/4551
-    do {
-      value = random(diff) + low;
-    } while (value == high);
-    return value;
+    return threadRandom().random(low, high);
   }
 
 
@@ -4779,10 +5340,25 @@ public class PApplet implements PConstants {
   * @see PApplet#noiseSeed(long)
   */
   public final void randomSeed(long seed) {
-    if (internalRandom == null) {
-      internalRandom = new Random();
+    PRandom random = new PRandom(seed);
+    synchronized (randomLock) {
+      randomSplitter = random.split();
+      random.generation = ++randomGeneration;
     }
-    internalRandom.setSeed(seed);
+    threadRandom.set(random);
+  }
+
+
+  /**
+   * Returns count independent random number generators, one for each
+   * worker thread or task, split from the one that random() uses on this
+   * thread. After a randomSeed(), the streams are the same every time the
+   * sketch runs, no matter how the tasks are scheduled.
+   *
+   * @see PRandom
+   */
+  public PRandom[] randomStreams(int count) {
+    return threadRandom().split(count);
   }
 
 
@@ -4822,22 +5398,18 @@ public class PApplet implements PConstants {
   // implementation by the german demo group farbrausch
   // as used in their demo "art": http://www.farb-rausch.de/fr010src.zip
 
-  static final int PERLIN_YWRAPB = 4;
-  static final int PERLIN_YWRAP = 1<<PERLIN_YWRAPB;
-  static final int PERLIN_ZWRAPB = 8;
-  static final int PERLIN_ZWRAP = 1<<PERLIN_ZWRAPB;
-  static final int PERLIN_SIZE = 4095;
+  // The implementation is in PNoise, which sketches can also use directly
+  // for independent noise fields or to fill whole grids at once.
 
-  int perlin_octaves = 4; // default to medium smooth
-  double perlin_amp_falloff = 0.5f; // 50% reduction/octave
+  PNoise perlinNoise;
 
-  // [toxi 031112]
-  // new vars needed due to recent change of cos table in PGraphics
-  int perlin_TWOPI, perlin_PI;
-  double[] perlin_cosTable;
-  double[] perlin;
 
-  Random perlinRandom;
+  PNoise perlinNoise() {
+    if (perlinNoise == null) {
+      perlinNoise = new PNoise();
+    }
+    return perlinNoise;
+  }
 
 
   /**
@@ -4902,77 +5474,7 @@ public class PApplet implements PConstants {
    * @see PApplet#random(double,double)
    */
   public double noise(double x, double y, double z) {
-    if (perlin == null) {
-      if (perlinRandom == null) {
-        perlinRandom = new Random();
-      }
-      perlin = new double[PERLIN_SIZE + 1];
-      for (int i = 0; i < PERLIN_SIZE + 1; i++) {
-        perlin[i] = perlinRandom.nextDouble(); //(double)Math.random();
-      }
-      // [toxi 031112]
-      // noise broke due to recent change of cos table in PGraphics
-      // this will take care of it
-      perlin_cosTable = PGraphics.cosLUT;
-      perlin_TWOPI = perlin_PI = PGraphics.SINCOS_LENGTH;
-      perlin_PI >>= 1;
-    }
-
-    if (x<0) x=-x;
-    if (y<0) y=-y;
-    if (z<0) z=-z;
-
-    int xi=(int)x, yi=(int)y, zi=(int)z;
-    double xf = x - xi;
-    double yf = y - yi;
-    double zf = z - zi;
-    double rxf, ryf;
-
-    double r=0;
-    double ampl=0.5f;
-
-    double n1,n2,n3;
-
-    for (int i=0; i<perlin_octaves; i++) {
-      int of=xi+(yi<<PERLIN_YWRAPB)+(zi<<PERLIN_ZWRAPB);
-
-      rxf=noise_fsc(xf);
-      ryf=noise_fsc(yf);
-
-      n1  = perlin[of&PERLIN_SIZE];
-      n1 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n1);
-      n2  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
-      n2 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n2);
-      n1 += ryf*(n2-n1);
-
-      of += PERLIN_ZWRAP;
-      n2  = perlin[of&PERLIN_SIZE];
-      n2 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n2);
-      n3  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
-      n3 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n3);
-      n2 += ryf*(n3-n2);
-
-      n1 += noise_fsc(zf)*(n2-n1);
-
-      r += n1*ampl;
-      ampl *= perlin_amp_falloff;
-      xi<<=1; xf*=2;
-      yi<<=1; yf*=2;
-      zi<<=1; zf*=2;
-
-      if (xf>=1.0f) { xi++; xf--; }
-      if (yf>=1.0f) { yi++; yf--; }
-      if (zf>=1.0f) { zi++; zf--; }
-    }
-    return r;
-  }
-
-  // [toxi 031112]
-  // now adjusts to the size of the cosLUT used via
-  // the new variables, defined above
-  private double noise_fsc(double i) {
-    // using bagel's cosine table instead
-    return 0.5f*(1.0f-perlin_cosTable[(int)(i*perlin_PI)%perlin_TWOPI]);
+    return perlinNoise().noise(x, y, z);
   }
 
   // [toxi 040903]
@@ -5007,7 +5509,7 @@ public class PApplet implements PConstants {
    * @see PApplet#noise(double, double, double)
    */
   public void noiseDetail(int lod) {
-    if (lod>0) perlin_octaves=lod;
+    perlinNoise().detail(lod);
   }
 
   /**
@@ -5015,8 +5517,7 @@ public class PApplet implements PConstants {
    * @param falloff falloff factor for each octave
    */
   public void noiseDetail(int lod, double falloff) {
-    if (lod>0) perlin_octaves=lod;
-    if (falloff>0) perlin_amp_falloff=falloff;
+    perlinNoise().detail(lod, falloff);
   }
 
   /**
@@ -5035,10 +5536,7 @@ public class PApplet implements PConstants {
    * @see PApplet#randomSeed(long)
    */
   public void noiseSeed(long seed) {
-    if (perlinRandom == null) perlinRandom = new Random();
-    perlinRandom.setSeed(seed);
-    // force table reset after changing the random number seed [0122]
-    perlin = null;
+    perlinNoise().seed(seed);
   }
 
 
@@ -5117,9 +5615,24 @@ public class PApplet implements PConstants {
   }
 
 
-  static private final String REQUEST_IMAGE_THREAD_PREFIX = "requestImage";
-  // fixed-size thread pool used by requestImage()
-  ExecutorService requestImagePool;
+  static final String REQUEST_IMAGE_THREAD_PREFIX = "requestImage";
+  // background loader used by requestImage(), created when first needed
+  PAssetLoader assetLoader;
+  // images whose pixels were handed to a requestImage() vessel already
+  final Set<PImage> requestedImages =
+    Collections.newSetFromMap(new WeakHashMap<>());
+
+
+  /**
+   * The loader that requestImage() uses, for loading other kinds of files
+   * in the background, with priorities and cancellation.
+   */
+  synchronized public PAssetLoader assetLoader() {
+    if (assetLoader == null) {
+      assetLoader = new PAssetLoader(this);
+    }
+    return assetLoader;
+  }
 
 
   public PImage requestImage(String filename) {
@@ -5153,21 +5666,12 @@ public class PApplet implements PConstants {
    * @see PApplet#loadImage(String, String)
    */
   public PImage requestImage(String filename, String extension) {
-    // Make sure saving to this file completes before trying to load it
-    // Has to be called on main thread, because P2D and P3D need GL functions
-    if (g != null) {
-      g.awaitAsyncSaveCompletion(filename);
-    }
     PImage vessel = createImage(0, 0, ARGB);
 
-    // if the image loading thread pool hasn't been created, create it
-    if (requestImagePool == null) {
-      ThreadFactory factory = r -> new Thread(r, REQUEST_IMAGE_THREAD_PREFIX);
-      requestImagePool = Executors.newFixedThreadPool(4, factory);
-    }
-    requestImagePool.execute(() -> {
-      PImage actual = loadImage(filename, extension);
-
+    assetLoader().image(filename, extension).whenComplete((actual, error) -> {
+      if (error != null) {
+        error.printStackTrace();
+      }
       // An error message should have already printed
       if (actual == null) {
         vessel.width = -1;
@@ -5177,7 +5681,13 @@ public class PApplet implements PConstants {
         vessel.width = actual.width;
         vessel.height = actual.height;
         vessel.format = actual.format;
-        vessel.pixels = actual.pixels;
+        // Requests for the same file share one image while it loads, so
+        // only the first vessel takes its pixels, the others get a copy.
+        boolean first;
+        synchronized (requestedImages) {
+          first = requestedImages.add(actual);
+        }
+        vessel.pixels = first ? actual.pixels : actual.pixels.clone();
 
         vessel.pixelWidth = actual.width;
         vessel.pixelHeight = actual.height;
@@ -6144,7 +6654,7 @@ public class PApplet implements PConstants {
     try {
       InputStream is = new FileInputStream(file);
       if (file.getName().toLowerCase().endsWith(".gz")) {
-        is = new GZIPInputStream(is);
+        is = PGzip.getDefault().input(is);
       }
       return createReader(is);
 
@@ -6218,7 +6728,7 @@ public class PApplet implements PConstants {
       createPath(file);  // make sure in-between folders exist
       OutputStream output = new FileOutputStream(file);
       if (file.getName().toLowerCase().endsWith(".gz")) {
-        output = new GZIPOutputStream(output);
+        output = PGzip.getDefault().output(output);
       }
       return createWriter(output);
 
@@ -6324,7 +6834,7 @@ public class PApplet implements PConstants {
       if (lower.endsWith(".gz") || lower.endsWith(".svgz")) {
         try {
           // buffered has to go *around* the GZ, otherwise 25x slower
-          return new BufferedInputStream(new GZIPInputStream(input));
+          return new BufferedInputStream(PGzip.getDefault().input(input));
 
         } catch (IOException e) {
           printStackTrace(e);
@@ -6505,7 +7015,7 @@ public class PApplet implements PConstants {
       InputStream input = new FileInputStream(file);
       final String lower = file.getName().toLowerCase();
       if (lower.endsWith(".gz") || lower.endsWith(".svgz")) {
-        return new BufferedInputStream(new GZIPInputStream(input));
+        return new BufferedInputStream(PGzip.getDefault().input(input));
       }
       return new BufferedInputStream(input);
 
@@ -6680,7 +7190,7 @@ public class PApplet implements PConstants {
         raf.close();
 
         // buffered has to go *around* the GZ, otherwise 25x slower
-        input = new BufferedInputStream(new GZIPInputStream(new FileInputStream(file)));
+        input = new BufferedInputStream(PGzip.getDefault().input(new FileInputStream(file)));
 
       } else {
         long len = file.length();
@@ -6710,6 +7220,105 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Maps a file into memory instead of reading it, for files too large to
+   * load with loadBytes(). The operating system reads pages of the file as
+   * they're used, and they don't count towards the Java heap. The file is
+   * found in the same places as with loadBytes(), but it has to be a local,
+   * uncompressed file: URLs, .gz files, and files inside the sketch's jar
+   * can't be mapped. Returns null, with a message, if the file can't be
+   * mapped. Files larger than 2 GB have to be mapped a piece at a time,
+   * see mapBytes(String, long, long).
+   */
+  public MappedByteBuffer mapBytes(String filename) {
+    File file = mapFile(filename);
+    return (file == null) ? null : mapBytes(file);
+  }
+
+
+  /**
+   * Maps length bytes of the file, starting at offset.
+   */
+  public MappedByteBuffer mapBytes(String filename, long offset, long length) {
+    File file = mapFile(filename);
+    return (file == null) ? null : mapBytes(file, offset, length);
+  }
+
+
+  // The local file for mapBytes(), looked up the way createInput() does.
+  private File mapFile(String filename) {
+    if (filename.toLowerCase().endsWith(".gz")) {
+      System.err.println("Compressed files can't be used with mapBytes(), " +
+                         "use loadBytes() or createInput() instead");
+      return null;
+    }
+    File file = dataFile(filename);
+    if (file == null || !file.exists()) {
+      file = sketchFile(filename);
+    }
+    if (!file.isFile()) {
+      System.err.println("The file \"" + filename + "\" " +
+                         "is missing or not a local file, " +
+                         "mapBytes() will return null");
+      return null;
+    }
+    return file;
+  }
+
+
+  /**
+   * @nowebref
+   */
+  static public MappedByteBuffer mapBytes(File file) {
+    long length = file.length();
+    if (length > Integer.MAX_VALUE) {
+      System.err.println(file + " is larger than 2 GB, use " +
+                         "mapBytes(file, offset, length) to map a piece of it");
+      return null;
+    }
+    return mapBytes(file, 0, length);
+  }
+
+
+  /**
+   * Returns null, with a message, if offset or length is negative, if
+   * length is more than 2 GB, or if the piece goes past the end of the file.
+   *
+   * @nowebref
+   */
+  static public MappedByteBuffer mapBytes(File file, long offset, long length) {
+    if (!file.exists()) {
+      System.err.println(file + " does not exist, mapBytes() will return null");
+      return null;
+    }
+    if (offset < 0 || length < 0) {
+      System.err.println("The offset and length passed to mapBytes() " +
+                         "can't be negative, mapBytes() will return null");
+      return null;
+    }
+    if (length > Integer.MAX_VALUE) {
+      System.err.println("mapBytes() can map at most 2 GB at a time, " +
+                         "mapBytes() will return null");
+      return null;
+    }
+    long fileLength = file.length();
+    if (offset > fileLength || length > fileLength - offset) {
+      System.err.println(length + " bytes at offset " + offset +
+                         " go past the end of " + file + " (" + fileLength +
+                         " bytes), mapBytes() will return null");
+      return null;
+    }
+    // the mapping stays valid after the channel is closed
+    try (FileChannel channel = FileChannel.open(file.toPath())) {
+      return channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+
+    } catch (IOException | IllegalArgumentException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+
+
   /**
    * @nowebref
    */
@@ -6836,6 +7445,53 @@ public class PApplet implements PConstants {
   }
 
 
+  /**
+   * Reads a file one line at a time, like loadStrings() without holding the
+   * whole file in memory, for files that are too large for a String array.
+   * The file is found and decoded just as with loadStrings(), including .gz
+   * files and URLs. Lines are only read as the stream is used, so close
+   * the stream when done, which a try-with-resources block does:
+   * <pre>
+   * try (Stream&lt;String&gt; lines = lines("log.txt.gz")) {
+   *   long errors = lines.filter(s -&gt; s.startsWith("ERROR")).count();
+   * }
+   * </pre>
+   * A for loop can go through stream.iterator(). Returns null, with a
+   * message, if the file can't be read. Errors while reading are thrown as
+   * UncheckedIOException.
+   */
+  public Stream<String> lines(String filename) {
+    BufferedReader reader = createReader(filename);
+    return (reader == null) ? null : lines(reader);
+  }
+
+
+  /**
+   * @nowebref
+   */
+  static public Stream<String> lines(File file) {
+    if (!file.exists()) {
+      System.err.println(file + " does not exist, lines() will return null");
+      return null;
+    }
+    // createInput() prints a message and returns null for folders and
+    // files that can't be opened, where createReader() would throw
+    InputStream input = createInput(file);
+    return (input == null) ? null : lines(createReader(input));
+  }
+
+
+  static private Stream<String> lines(BufferedReader reader) {
+    return reader.lines().onClose(() -> {
+      try {
+        reader.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+
 
   //////////////////////////////////////////////////////////////
 
@@ -6858,7 +7514,8 @@ public class PApplet implements PConstants {
    * function, which is more appropriate for "sketch" projects. <br />
    * <br />
    * If the output filename ends with <b>.gz</b>, the output will be
-   * automatically GZIP compressed as it is written.
+   * automatically GZIP compressed as it is written, on several threads
+   * for large files. See PGzip for the settings.
    *
    * @webref output:files
    * @webBrief Similar to <b>createInput()</b>, this creates a Java
@@ -6880,7 +7537,7 @@ public class PApplet implements PConstants {
       createPath(file);  // make sure the path exists
       OutputStream output = new FileOutputStream(file);
       if (file.getName().toLowerCase().endsWith(".gz")) {
-        return new BufferedOutputStream(new GZIPOutputStream(output));
+        return new BufferedOutputStream(PGzip.getDefault().output(output));
       }
       return new BufferedOutputStream(output);
 
@@ -9931,6 +10588,7 @@ public class PApplet implements PConstants {
     int displayNum = -1;  // use default
     boolean present = false;
     boolean fullScreen = false;
+    boolean headless = false;
     double uiScale = 0;
 
     String param, value;
@@ -10015,6 +10673,10 @@ public class PApplet implements PConstants {
             fullScreen = true;
             break;
 
+          case ARGS_HEADLESS:
+            headless = true;
+            break;
+
           default:
             name = args[argIndex];
             break label;  // because of break, argIndex won't increment again
@@ -10049,7 +10711,10 @@ public class PApplet implements PConstants {
       }
     }
 
-    if (!disableAWT) {
+    if (headless) {
+      // Java2D can still draw, there's just no display to show it on
+      System.setProperty("java.awt.headless", "true");
+    } else if (!disableAWT) {
       ShimAWT.initRun();
     }
 
@@ -10072,7 +10737,7 @@ public class PApplet implements PConstants {
 
     // TODO When disabling AWT for LWJGL or others, we need to figure out
     //      how to make Cmd-Q and the rest of this still work properly.
-    if (platform == MACOS && !disableAWT) {
+    if (platform == MACOS && !disableAWT && !headless) {
       try {
         final String td = "processing.core.ThinkDifferent";
         Class<?> thinkDifferent =
@@ -10091,6 +10756,7 @@ public class PApplet implements PConstants {
 
     sketch.present = present;
     sketch.fullScreen = fullScreen;
+    sketch.headless = headless;
 
     // For 3.0.1, moved this above handleSettings() so that loadImage() can be
     // used inside settings(). Sets a terrible precedent, but the alternative
@@ -10153,10 +10819,22 @@ public class PApplet implements PConstants {
 
   protected PSurface initSurface() {
     g = createPrimaryGraphics();
-    surface = g.createSurface();
+    if (headless && g.isGL()) {
+      PGraphics.showWarning("--headless is not available with P2D or P3D, " +
+                            "using a window instead");
+      headless = false;
+    }
+    if (headless) {
+      // Draw into the renderer's own image with the plain animation loop,
+      // and write saveFrame() images on other threads.
+      surface = g.surface = new PSurfaceNone(g);
+      g.hint(ENABLE_ASYNC_SAVEFRAME);
+    } else {
+      surface = g.createSurface();
+    }
 
     // Create fake Frame object to warn user about the changes
-    if (g.displayable()) {
+    if (g.displayable() && !headless) {
       /*
       if (!disableAWT) {
         frame = new Frame() {
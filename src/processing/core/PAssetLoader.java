@@ -0,0 +1,396 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import processing.data.JSONArray;
+import processing.data.JSONObject;
+import processing.data.Table;
+import processing.data.XML;
+
+
+/**
+ * Loads files in the background, for sketches that need more than
+ * requestImage(). Get the sketch's loader with assetLoader().
+ * <p>
+ * Each method starts loading right away and returns a CompletableFuture,
+ * so a sketch can poll it with isDone() and getNow(), wait on it with
+ * join(), or add a callback with thenAccept(). Callbacks run on a loading
+ * thread, not the animation thread. When the file cannot be loaded, the
+ * result is null, the same as the load method it stands for, or the future
+ * completes exceptionally if that method throws.
+ * <p>
+ * A few files are loaded at a time, four by default (see setThreads()),
+ * on virtual threads. Requests waiting their turn are taken by priority,
+ * highest first, then in the order they were made. A request for a file
+ * that is already on its way returns the same future, and raises its
+ * priority if the new one is higher. This also means that cancelling a
+ * request cancels it for everyone who asked for that file.
+ * <p>
+ * Objects are created on the loading threads. As with requestImage(),
+ * nothing is sent to OpenGL until the image or shape is first drawn.
+ *
+ * @see PApplet#requestImage(String, String)
+ */
+public class PAssetLoader {
+  /** Priority used by the methods that don't take one. */
+  static public final int NORMAL = 0;
+
+  static final int DEFAULT_THREADS = 4;
+
+  protected PApplet parent;
+  protected ThreadPoolExecutor executor;
+
+  /** Requests still loading, by the kind of asset and its options. */
+  final ConcurrentHashMap<String, Request<?>> requests =
+    new ConcurrentHashMap<>();
+  final AtomicLong counter = new AtomicLong();
+
+
+  public PAssetLoader(PApplet parent) {
+    this(parent, DEFAULT_THREADS);
+  }
+
+
+  /**
+   * @param threads how many files may be loaded at the same time
+   */
+  public PAssetLoader(PApplet parent, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    this.parent = parent;
+    // The thread names let loadImage() know it's running in the background
+    executor =
+      new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                             new PriorityBlockingQueue<>(),
+                             Thread.ofVirtual()
+                               .name(PApplet.REQUEST_IMAGE_THREAD_PREFIX + "-", 0)
+                               .factory());
+    executor.allowCoreThreadTimeOut(true);
+  }
+
+
+  /** Sets how many files may be loaded at the same time. */
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be at least 1");
+    }
+    // the core size may never be above the maximum
+    if (threads > executor.getMaximumPoolSize()) {
+      executor.setMaximumPoolSize(threads);
+      executor.setCorePoolSize(threads);
+    } else {
+      executor.setCorePoolSize(threads);
+      executor.setMaximumPoolSize(threads);
+    }
+  }
+
+
+  public int getThreads() {
+    return executor.getMaximumPoolSize();
+  }
+
+
+  /** Number of requests that have not started loading yet. */
+  public int getWaiting() {
+    return executor.getQueue().size();
+  }
+
+
+  /**
+   * Cancels everything that's waiting or loading, and stops the threads.
+   * Called when the sketch is disposed.
+   */
+  public void dispose() {
+    executor.shutdownNow();
+    for (Request<?> request : requests.values()) {
+      request.cancel(true);
+    }
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+
+  public CompletableFuture<PImage> image(String filename) {
+    return image(filename, null, NORMAL);
+  }
+
+
+  public CompletableFuture<PImage> image(String filename, int priority) {
+    return image(filename, null, priority);
+  }
+
+
+  public CompletableFuture<PImage> image(String filename, String extension) {
+    return image(filename, extension, NORMAL);
+  }
+
+
+  /**
+   * @param extension type of image to load, for example "png", "gif", "jpg"
+   * @param priority requests with a higher priority are loaded first
+   */
+  public CompletableFuture<PImage> image(String filename, String extension,
+                                         int priority) {
+    // Make sure saving to this file completes before trying to load it,
+    // from this thread, because P2D and P3D need GL functions for that.
+    if (parent.g != null) {
+      parent.g.awaitAsyncSaveCompletion(filename);
+    }
+    return load("image", filename, extension, priority,
+                () -> parent.loadImage(filename, extension));
+  }
+
+
+  public CompletableFuture<PShape> shape(String filename) {
+    return shape(filename, null, NORMAL);
+  }
+
+
+  public CompletableFuture<PShape> shape(String filename, int priority) {
+    return shape(filename, null, priority);
+  }
+
+
+  public CompletableFuture<PShape> shape(String filename, String options) {
+    return shape(filename, options, NORMAL);
+  }
+
+
+  public CompletableFuture<PShape> shape(String filename, String options,
+                                         int priority) {
+    return load("shape", filename, options, priority,
+                () -> parent.loadShape(filename, options));
+  }
+
+
+  public CompletableFuture<Table> table(String filename) {
+    return table(filename, null, NORMAL);
+  }
+
+
+  public CompletableFuture<Table> table(String filename, int priority) {
+    return table(filename, null, priority);
+  }
+
+
+  public CompletableFuture<Table> table(String filename, String options) {
+    return table(filename, options, NORMAL);
+  }
+
+
+  public CompletableFuture<Table> table(String filename, String options,
+                                        int priority) {
+    return load("table", filename, options, priority,
+                () -> parent.loadTable(filename, options));
+  }
+
+
+  public CompletableFuture<JSONObject> jsonObject(String filename) {
+    return jsonObject(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<JSONObject> jsonObject(String filename,
+                                                  int priority) {
+    return load("jsonObject", filename, null, priority,
+                () -> parent.loadJSONObject(filename));
+  }
+
+
+  public CompletableFuture<JSONArray> jsonArray(String filename) {
+    return jsonArray(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<JSONArray> jsonArray(String filename,
+                                                int priority) {
+    return load("jsonArray", filename, null, priority,
+                () -> parent.loadJSONArray(filename));
+  }
+
+
+  public CompletableFuture<XML> xml(String filename) {
+    return xml(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<XML> xml(String filename, int priority) {
+    return load("xml", filename, null, priority,
+                () -> parent.loadXML(filename));
+  }
+
+
+  public CompletableFuture<String[]> strings(String filename) {
+    return strings(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<String[]> strings(String filename, int priority) {
+    return load("strings", filename, null, priority,
+                () -> parent.loadStrings(filename));
+  }
+
+
+  public CompletableFuture<byte[]> bytes(String filename) {
+    return bytes(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<byte[]> bytes(String filename, int priority) {
+    return load("bytes", filename, null, priority,
+                () -> parent.loadBytes(filename));
+  }
+
+
+  /** Loads a .vlw font, as with loadFont(). */
+  public CompletableFuture<PFont> font(String filename) {
+    return font(filename, NORMAL);
+  }
+
+
+  public CompletableFuture<PFont> font(String filename, int priority) {
+    return load("font", filename, null, priority,
+                () -> parent.loadFont(filename));
+  }
+
+
+  /**
+   * Loads anything else in the background. Requests with the same kind,
+   * filename and options are shared while they are loading.
+   *
+   * @param kind what loader does, for example "mesh"
+   * @param options anything else that changes the result, or null
+   */
+  public <T> CompletableFuture<T> load(String kind, String filename,
+                                       String options, int priority,
+                                       Supplier<T> loader) {
+    String key = kind + '\0' + filename + '\0' + options;
+    while (true) {
+      Request<?> existing = requests.get(key);
+      if (existing != null) {
+        raise(existing, priority);
+        @SuppressWarnings("unchecked")
+        CompletableFuture<T> outgoing = (CompletableFuture<T>) existing;
+        return outgoing;
+      }
+      Request<T> request =
+        new Request<>(this, key, priority, counter.getAndIncrement(), loader);
+      if (requests.putIfAbsent(key, request) == null) {
+        executor.execute(request);
+        return request;
+      }
+      // someone else asked for the same thing in the meantime
+    }
+  }
+
+
+  /**
+   * Moves a waiting request ahead in the queue. Requests that are already
+   * loading don't need it, and are left alone.
+   */
+  synchronized protected void raise(Request<?> request, int priority) {
+    if (priority > request.priority && executor.remove(request)) {
+      request.priority = priority;
+      executor.execute(request);
+    }
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+
+  static class Request<T> extends CompletableFuture<T>
+  implements Runnable, Comparable<Request<?>> {
+    final PAssetLoader loader;
+    final String key;
+    final long order;
+    final Supplier<T> supplier;
+    // only changed while the request is out of the queue
+    volatile int priority;
+    // the thread loading this request, so cancel() can interrupt it
+    Thread runner;
+
+    Request(PAssetLoader loader, String key, int priority, long order,
+            Supplier<T> supplier) {
+      this.loader = loader;
+      this.key = key;
+      this.priority = priority;
+      this.order = order;
+      this.supplier = supplier;
+    }
+
+    @Override
+    public void run() {
+      if (isDone()) return;  // cancelled while waiting
+
+      synchronized (this) {
+        runner = Thread.currentThread();
+      }
+      try {
+        complete(supplier.get());
+      } catch (Throwable t) {
+        completeExceptionally(t);
+      } finally {
+        synchronized (this) {
+          runner = null;
+        }
+        // don't leave an interrupt from cancel() for the next request
+        Thread.interrupted();
+        loader.requests.remove(key, this);
+      }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      boolean cancelled = super.cancel(mayInterruptIfRunning);
+      if (cancelled) {
+        loader.requests.remove(key, this);
+        loader.executor.remove(this);
+        if (mayInterruptIfRunning) {
+          synchronized (this) {
+            if (runner != null) runner.interrupt();
+          }
+        }
+      }
+      return cancelled;
+    }
+
+    @Override
+    public int compareTo(Request<?> other) {
+      if (priority != other.priority) {
+        return (priority > other.priority) ? -1 : 1;
+      }
+      return Long.compare(order, other.order);
+    }
+  }
+}
@@ -524,5 +524,8 @@ public interface PConstants {
   int DISABLE_ASYNC_SAVEFRAME    =  12;
   int ENABLE_ASYNC_SAVEFRAME     = -12;
 
-  int HINT_COUNT                 =  13;
+  int ENABLE_RELATIVE_VERTICES   =  13;
+  int DISABLE_RELATIVE_VERTICES  = -13;
+
+  int HINT_COUNT                 =  14;
 }
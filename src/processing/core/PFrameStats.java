@@ -0,0 +1,350 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import processing.data.JSONObject;
+import processing.data.Table;
+import processing.data.TableRow;
+
+
+/**
+ * Timings of each part of the sketch's frames, turned on with
+ * frameStats(true). Each part keeps a histogram of its times, so that
+ * percentiles can be read as well as averages: the 99th percentile of
+ * FRAME is a better measure of stutter than frameRate.
+ * <p>
+ * The parts are the time from the start of one frame to the next (FRAME),
+ * then within handleDraw(): beginDraw(), the pre() methods of libraries,
+ * draw(), mouse and key events, the draw() methods of libraries,
+ * endDraw() (which shows the frame with most renderers), and the post()
+ * methods of libraries. SLEEP is the time the animation thread waits
+ * before the next frame. Each method registered by a library is also timed
+ * on its own, see getLibraries().
+ * <p>
+ * All times are in milliseconds. The results can be written with
+ * saveTable(stats.toTable(), "stats.csv") or saveJSONObject(stats.toJSON(),
+ * "stats.json"), or shown over the sketch with overlay(true).
+ */
+public class PFrameStats {
+  static public final int FRAME = 0;
+  static public final int BEGIN_DRAW = 1;
+  static public final int PRE = 2;
+  static public final int DRAW = 3;
+  static public final int EVENTS = 4;
+  static public final int DRAW_METHODS = 5;
+  static public final int END_DRAW = 6;
+  static public final int POST = 7;
+  static public final int SLEEP = 8;
+
+  static final String[] PHASE_NAMES = {
+    "frame", "beginDraw", "pre", "draw", "events",
+    "drawMethods", "endDraw", "post", "sleep"
+  };
+
+  protected Histogram[] phases = new Histogram[PHASE_NAMES.length];
+  protected Map<String, Histogram> libraries = new LinkedHashMap<>();
+  protected long frameStart;
+  protected boolean overlay;
+
+
+  public PFrameStats() {
+    for (int i = 0; i < phases.length; i++) {
+      phases[i] = new Histogram();
+    }
+  }
+
+
+  /** Times for one of FRAME, BEGIN_DRAW, PRE, DRAW, ... */
+  synchronized public Histogram get(int phase) {
+    return phases[phase];
+  }
+
+
+  /** Names of the library methods that have been timed. */
+  synchronized public String[] getLibraries() {
+    return libraries.keySet().toArray(new String[0]);
+  }
+
+
+  /** Times for one library method, or null if it hasn't been called. */
+  synchronized public Histogram getLibrary(String name) {
+    return libraries.get(name);
+  }
+
+
+  /** Forget everything recorded so far. */
+  synchronized public void reset() {
+    for (Histogram h : phases) {
+      h.reset();
+    }
+    libraries.clear();
+    frameStart = 0;
+  }
+
+
+  /** Whether to draw a summary over the sketch at the end of each frame. */
+  public void overlay(boolean overlay) {
+    this.overlay = overlay;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // RECORDING, called by PApplet and PSurfaceNone
+
+
+  synchronized void startFrame(long now) {
+    if (frameStart != 0) {
+      phases[FRAME].record(now - frameStart);
+    }
+    frameStart = now;
+  }
+
+
+  /** Records the time since start for phase, and returns the time now. */
+  synchronized long lap(int phase, long start) {
+    long now = System.nanoTime();
+    phases[phase].record(now - start);
+    return now;
+  }
+
+
+  synchronized void record(int phase, long nanos) {
+    phases[phase].record(nanos);
+  }
+
+
+  synchronized void recordLibrary(String name, long nanos) {
+    Histogram h = libraries.get(name);
+    if (h == null) {
+      h = new Histogram();
+      libraries.put(name, h);
+    }
+    h.record(nanos);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // OUTPUT
+
+
+  /**
+   * One row per phase and per library method, with the count, mean, median,
+   * 90th, 99th percentile, and maximum, in milliseconds.
+   */
+  synchronized public Table toTable() {
+    Table table = new Table();
+    table.addColumn("name", Table.STRING);
+    table.addColumn("count", Table.LONG);
+    String[] columns = { "mean", "p50", "p90", "p99", "max" };
+    for (String column : columns) {
+      table.addColumn(column, Table.FLOAT);
+    }
+    for (int i = 0; i < phases.length; i++) {
+      addRow(table, PHASE_NAMES[i], phases[i]);
+    }
+    for (Map.Entry<String, Histogram> entry : libraries.entrySet()) {
+      addRow(table, entry.getKey(), entry.getValue());
+    }
+    return table;
+  }
+
+
+  static private void addRow(Table table, String name, Histogram h) {
+    TableRow row = table.addRow();
+    row.setString("name", name);
+    row.setLong("count", h.getCount());
+    row.setDouble("mean", h.getMean());
+    row.setDouble("p50", h.getPercentile(50));
+    row.setDouble("p90", h.getPercentile(90));
+    row.setDouble("p99", h.getPercentile(99));
+    row.setDouble("max", h.getMax());
+  }
+
+
+  /** The same numbers as toTable(), split into phases and libraries. */
+  synchronized public JSONObject toJSON() {
+    JSONObject phaseJSON = new JSONObject();
+    for (int i = 0; i < phases.length; i++) {
+      phaseJSON.setJSONObject(PHASE_NAMES[i], phases[i].toJSON());
+    }
+    JSONObject libraryJSON = new JSONObject();
+    for (Map.Entry<String, Histogram> entry : libraries.entrySet()) {
+      libraryJSON.setJSONObject(entry.getKey(), entry.getValue().toJSON());
+    }
+    JSONObject json = new JSONObject();
+    json.setJSONObject("phases", phaseJSON);
+    json.setJSONObject("libraries", libraryJSON);
+    return json;
+  }
+
+
+  /**
+   * Draws the mean and 99th percentile of each phase in the top left
+   * corner. In 3D, this assumes the default camera and perspective.
+   */
+  synchronized public void draw(PGraphics g) {
+    final int lineHeight = 16;
+    int lines = 1;
+    for (Histogram h : phases) {
+      if (h.getCount() != 0) lines++;
+    }
+
+    g.pushStyle();
+    g.pushMatrix();
+    g.resetMatrix();
+    boolean depthTest = g.is3D() && !g.hints[PConstants.DISABLE_DEPTH_TEST];
+    if (g.is3D()) {
+      // back out the default camera, so that z = 0 lines up with the screen
+      g.translate(-g.width / 2.0, -g.height / 2.0,
+                  -(g.height / 2.0) / Math.tan(Math.PI / 6));
+      if (depthTest) g.hint(PConstants.DISABLE_DEPTH_TEST);
+    }
+    g.rectMode(PConstants.CORNER);
+    g.noStroke();
+    g.fill(0xC0000000);
+    g.rect(0, 0, 200, lines * lineHeight + 8);
+    g.fill(0xFFFFFFFF);
+    g.textSize(12);
+
+    int y = 4;
+    overlayRow(g, y, "ms", "mean", "p99");
+    for (int i = 0; i < phases.length; i++) {
+      if (phases[i].getCount() != 0) {
+        y += lineHeight;
+        overlayRow(g, y, PHASE_NAMES[i],
+                   PApplet.nf(phases[i].getMean(), 0, 2),
+                   PApplet.nf(phases[i].getPercentile(99), 0, 2));
+      }
+    }
+    if (depthTest) g.hint(PConstants.ENABLE_DEPTH_TEST);
+    g.popMatrix();
+    g.popStyle();
+  }
+
+
+  static private void overlayRow(PGraphics g, int y,
+                                 String name, String mean, String p99) {
+    g.textAlign(PConstants.LEFT, PConstants.TOP);
+    g.text(name, 6, y);
+    g.textAlign(PConstants.RIGHT, PConstants.TOP);
+    g.text(mean, 140, y);
+    g.text(p99, 194, y);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+
+  /**
+   * Counts times in buckets that are 1/64th of a power of two wide, so
+   * percentiles are accurate to about 1.5% over any range, with a fixed
+   * amount of memory and no allocation while recording.
+   */
+  static public class Histogram {
+    static final int SUB_BITS = 6;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+
+    final long[] counts = new long[(64 - SUB_BITS) * SUB_COUNT];
+    long count;
+    long total;
+    long max;
+
+    void record(long nanos) {
+      if (nanos < 0) nanos = 0;
+      counts[index(nanos)]++;
+      count++;
+      total += nanos;
+      if (nanos > max) max = nanos;
+    }
+
+    void reset() {
+      Arrays.fill(counts, 0);
+      count = 0;
+      total = 0;
+      max = 0;
+    }
+
+    static int index(long value) {
+      if (value < SUB_COUNT) {
+        return (int) value;
+      }
+      int exponent = 63 - Long.numberOfLeadingZeros(value);
+      int mantissa = (int) (value >>> (exponent - SUB_BITS));  // 64 to 127
+      return (exponent - SUB_BITS + 1) * SUB_COUNT + (mantissa - SUB_COUNT);
+    }
+
+    /** Middle of the range of values that land in bucket. */
+    static long value(int bucket) {
+      if (bucket < SUB_COUNT) {
+        return bucket;
+      }
+      int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+      long mantissa = (bucket % SUB_COUNT) + SUB_COUNT;
+      int shift = exponent - SUB_BITS;
+      return (mantissa << shift) + ((1L << shift) >> 1);
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public double getMean() {
+      return (count == 0) ? 0 : total / (count * 1e6);
+    }
+
+    public double getMax() {
+      return max / 1e6;
+    }
+
+    /** The time that percent of the recorded times are below, in ms. */
+    public double getPercentile(double percent) {
+      if (count == 0) return 0;
+      long target = Math.max(1, (long) Math.ceil(count * percent / 100));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= target) {
+          return Math.min(value(i), max) / 1e6;
+        }
+      }
+      return getMax();
+    }
+
+    JSONObject toJSON() {
+      JSONObject json = new JSONObject();
+      json.setLong("count", count);
+      json.setDouble("mean", getMean());
+      json.setDouble("p50", getPercentile(50));
+      json.setDouble("p90", getPercentile(90));
+      json.setDouble("p99", getPercentile(99));
+      json.setDouble("max", getMax());
+      return json;
+    }
+  }
+}
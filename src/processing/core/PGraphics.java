@@ -42,6 +42,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import processing.opengl.PGL;
 import processing.opengl.PShader;
 
@@ -1114,6 +1115,13 @@ public class PGraphics extends PImage implements PConstants {
    * will not use separate threads for saving and will block until the image
    * is written to the drive. This was the default behavior in 3.0b7 and before.
    * To enable, call <b>hint(ENABLE_ASYNC_SAVEFRAME)</b>.
+   * <br/> <br/>
+   * <b>hint(ENABLE_RELATIVE_VERTICES)</b> - P2D/P3D only - vertices are sent to
+   * the GPU as floats relative to the center of each batch or shape, and the
+   * offset is applied back in the modelview matrix in double precision. This
+   * keeps the precision of geometry far from the origin while using half the
+   * vertex memory. Only shapes created after the hint use it. Restore the
+   * default with <b>hint(DISABLE_RELATIVE_VERTICES)</b>.
    *
    * @webref rendering
    * @webBrief Set various hints and hacks for the renderer
@@ -8407,23 +8415,45 @@ public class PGraphics extends PImage implements PConstants {
       return super.save(filename);
     }
 
+    return saveAsync(filename, null);
+  }
+
+
+  /**
+   * Saves the image on another thread, whatever the setting of
+   * hint(ENABLE_ASYNC_SAVEFRAME), and calls done with the file once it
+   * has been written, or with null if it could not be. The pixels are
+   * first copied into one of a small pool of images, so drawing can go on
+   * right away; if all of them are still being written, this waits for
+   * the first one to be free. done is called from the saving thread.
+   */
+  public boolean saveAsync(String filename, Consumer<File> done) { // ignore
     if (asyncImageSaver == null) {
       asyncImageSaver = new AsyncImageSaver();
     }
 
-    if (!loaded) loadPixels();
-
     PImage target =
       asyncImageSaver.getAvailableTarget(pixelWidth, pixelHeight, format);
     if (target != null) {
-      int count = PApplet.min(pixels.length, target.pixels.length);
-      System.arraycopy(pixels, 0, target.pixels, 0, count);
-      asyncImageSaver.saveTargetAsync(this, target, parent.sketchFile(filename));
+      copyPixelsTo(target.pixels);
+      asyncImageSaver.saveTargetAsync(this, target, parent.sketchFile(filename), done);
       return true;
     }
     return false;
   }
 
+
+  /**
+   * Copies the current contents of the renderer into target, which holds
+   * pixelWidth * pixelHeight values, for saveAsync(). Renderers that can
+   * read their image directly can skip going through pixels[].
+   */
+  protected void copyPixelsTo(int[] target) {
+    if (!loaded) loadPixels();
+    int count = PApplet.min(pixels.length, target.length);
+    System.arraycopy(pixels, 0, target, 0, count);
+  }
+
   protected void processImageBeforeAsyncSave(PImage image) { }
 
 
@@ -8512,10 +8542,19 @@ public class PGraphics extends PImage implements PConstants {
 
     public void saveTargetAsync(final PGraphics renderer, final PImage target, // ignore
                                 final File file) {
+      saveTargetAsync(renderer, target, file, null);
+    }
+
+
+    /** done, if not null, gets the file once saved, or null on failure */
+    public void saveTargetAsync(final PGraphics renderer, final PImage target, // ignore
+                                final File file, final Consumer<File> done) {
       target.parent = renderer.parent;
 
-      // if running every frame, smooth the frame rate
-      if (target.parent.frameCount - 1 == lastFrameCount && TARGET_COUNT > 1) {
+      // if running every frame, smooth the frame rate (except when drawing
+      // offline, where only running out of targets should hold things up)
+      if (target.parent.frameCount - 1 == lastFrameCount && TARGET_COUNT > 1 &&
+          !target.parent.headless) {
 
         // count with one less thread to reduce jitter
         // 2 cores - 1 save thread - no wait
@@ -8539,10 +8578,11 @@ public class PGraphics extends PImage implements PConstants {
       synchronized (runningTasksLock) {
         try {
           Future<?> task = saveExecutor.submit(() -> {
+            boolean saved = false;
             try {
               long startTime = System.nanoTime();
               renderer.processImageBeforeAsyncSave(target);
-              target.save(file.getAbsolutePath());
+              saved = target.save(file.getAbsolutePath());
               long saveNanos = System.nanoTime() - startTime;
               synchronized (AsyncImageSaver.this) {
                 if (avgNanos == 0) {
@@ -8559,11 +8599,18 @@ public class PGraphics extends PImage implements PConstants {
               synchronized (runningTasksLock) {
                 runningTasks.remove(file);
               }
+              if (done != null) {
+                done.accept(saved ? file : null);
+              }
             }
           });
           runningTasks.put(file, task);
         } catch (RejectedExecutionException e) {
           // the executor service was probably shut down, no more saving for us
+          targetPool.offer(target);
+          if (done != null) {
+            done.accept(null);
+          }
         }
       }
     }
@@ -0,0 +1,535 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * Reads and writes the .gz files behind createInput(), createOutput(),
+ * createReader() and createWriter(), and so also saveStrings(),
+ * saveTable(), saveJSONObject() and the rest when given a .gz name.
+ * <p>
+ * Output is split into blocks that are compressed on the fork-join pool,
+ * the way pigz does it. Each block uses the end of the block before it as
+ * its dictionary and ends on a byte boundary, so the blocks join up into a
+ * single ordinary gzip member that any gzip tool can read, and the file is
+ * only a little larger than a serial one.
+ * <p>
+ * Input is decompressed ahead of the reader on a background thread, so
+ * that inflating the file overlaps with parsing it.
+ */
+public class PGzip {
+  /** Uncompressed bytes in each block of output. */
+  static final int BLOCK_SIZE = 1 << 17;
+  /** Size of the deflate window, how far back a block can refer. */
+  static final int WINDOW = 1 << 15;
+  /** Decompressed bytes handed over by the read-ahead thread at a time. */
+  static final int CHUNK_SIZE = 1 << 16;
+  /** How many chunks the read-ahead thread may get ahead of the reader. */
+  static final int CHUNKS_AHEAD = 4;
+
+  static final byte[] HEADER = {
+    0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  static final PGzip defaultGzip = new PGzip();
+
+  protected int level = 6;
+  protected boolean parallel = true;
+  protected boolean readAhead = true;
+
+
+  public PGzip() { }
+
+
+  /** The settings used by createInput(), createOutput() and friends. */
+  static public PGzip getDefault() {
+    return defaultGzip;
+  }
+
+
+  /**
+   * Sets the compression level, from 0 (none, fastest) to 9 (smallest
+   * files, slowest). The default is 6, the same as the gzip tool.
+   */
+  public void level(int level) {
+    if (level < 0 || level > 9) {
+      throw new IllegalArgumentException("The compression level must be " +
+                                         "between 0 and 9, not " + level);
+    }
+    this.level = level;
+  }
+
+
+  public int getLevel() {
+    return level;
+  }
+
+
+  /** Whether output is compressed on several threads. */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+
+  /** Whether input is decompressed ahead on a background thread. */
+  public void setReadAhead(boolean readAhead) {
+    this.readAhead = readAhead;
+  }
+
+
+  /**
+   * Wraps output so that everything written to it is gzip compressed.
+   * Closing the stream finishes the file and closes output.
+   */
+  public OutputStream output(OutputStream output) throws IOException {
+    boolean threads =
+      parallel && ForkJoinPool.getCommonPoolParallelism() > 1;
+    return new Output(output, level, threads);
+  }
+
+
+  /**
+   * Wraps gzip compressed input. The header is read right away, so an
+   * IOException is thrown here if input isn't gzip data.
+   */
+  public InputStream input(InputStream input) throws IOException {
+    InputStream gzip = new GZIPInputStream(input, CHUNK_SIZE);
+    return readAhead ? new ReadAhead(gzip) : gzip;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // OUTPUT
+
+
+  /** Compressed data for a block, part of the deflate stream. */
+  static class Block {
+    byte[] data = new byte[BLOCK_SIZE / 2];
+    int length;
+  }
+
+
+  static class Output extends OutputStream {
+    final OutputStream out;
+    final int level;
+    final boolean parallel;
+
+    final CRC32 crc = new CRC32();
+    long size;
+
+    byte[] buffer = new byte[BLOCK_SIZE];
+    int count;
+    /** The block before buffer, its end is the next dictionary. */
+    byte[] previous;
+
+    /** Blocks being compressed, oldest first. */
+    final ArrayDeque<ForkJoinTask<Block>> pending = new ArrayDeque<>();
+    final int maxPending = 2 * ForkJoinPool.getCommonPoolParallelism();
+    final ConcurrentLinkedQueue<Deflater> deflaters =
+      new ConcurrentLinkedQueue<>();
+
+    /** Used instead of the pool when compressing on one thread. */
+    Deflater serial;
+    Block serialBlock;
+
+    boolean closed;
+
+
+    Output(OutputStream out, int level, boolean parallel) throws IOException {
+      this.out = out;
+      this.level = level;
+      this.parallel = parallel;
+      if (!parallel) {
+        serial = new Deflater(level, true);
+        serialBlock = new Block();
+      }
+      out.write(HEADER);
+    }
+
+
+    @Override
+    public void write(int b) throws IOException {
+      ensureOpen();
+      if (count == buffer.length) {
+        writeBlock(false);
+      }
+      buffer[count++] = (byte) b;
+    }
+
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      ensureOpen();
+      Objects.checkFromIndexSize(off, len, b.length);
+      while (len > 0) {
+        // a full block is only sent once there's more, so that the
+        // last one is always left for close() to finish the stream
+        if (count == buffer.length) {
+          writeBlock(false);
+        }
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+
+    /**
+     * Writes out the blocks that are already done. Like GZIPOutputStream,
+     * this doesn't force out data that is still waiting in a block.
+     */
+    @Override
+    public void flush() throws IOException {
+      ensureOpen();
+      while (!pending.isEmpty() && pending.peek().isDone()) {
+        writeData(pending.poll().join());
+      }
+      out.flush();
+    }
+
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      try {
+        writeBlock(true);
+        byte[] trailer = new byte[8];
+        putInt(trailer, 0, (int) crc.getValue());
+        putInt(trailer, 4, (int) size);  // ISIZE is modulo 2^32
+        out.write(trailer);
+        out.flush();
+
+      } finally {
+        closed = true;
+        if (serial != null) {
+          serial.end();
+        }
+        for (Deflater deflater : deflaters) {
+          deflater.end();
+        }
+        deflaters.clear();
+        out.close();
+      }
+    }
+
+
+    private void ensureOpen() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+    }
+
+
+    /**
+     * Sends the data in buffer off to be compressed. The last block is
+     * done on this thread once the others are written, and finishes the
+     * deflate stream.
+     */
+    private void writeBlock(boolean last) throws IOException {
+      crc.update(buffer, 0, count);
+      size += count;
+
+      if (!parallel) {
+        serial.setInput(buffer, 0, count);
+        serialBlock.length = 0;
+        deflate(serial, last, false, serialBlock);
+        writeData(serialBlock);
+        count = 0;
+        return;
+      }
+
+      final byte[] dictionary = previous;
+      final byte[] input = buffer;
+      final int length = count;
+      if (last) {
+        while (!pending.isEmpty()) {
+          writeData(pending.poll().join());
+        }
+        writeData(compress(dictionary, input, length, true));
+
+      } else {
+        pending.add(ForkJoinPool.commonPool().submit(() ->
+          compress(dictionary, input, length, false)));
+        // wait for the oldest block if too many are in flight,
+        // otherwise just write out whatever is already finished
+        while (!pending.isEmpty() &&
+               (pending.size() >= maxPending || pending.peek().isDone())) {
+          writeData(pending.poll().join());
+        }
+        // the blocks still need their input, so start on a fresh one
+        previous = input;
+        buffer = new byte[BLOCK_SIZE];
+      }
+      count = 0;
+    }
+
+
+    /**
+     * Compresses one block as a piece of the larger deflate stream,
+     * with the end of the block before it set as the dictionary.
+     */
+    private Block compress(byte[] dictionary, byte[] input, int length,
+                           boolean last) {
+      Deflater deflater = deflaters.poll();
+      if (deflater == null) {
+        deflater = new Deflater(level, true);
+      } else {
+        deflater.reset();
+      }
+      try {
+        if (dictionary != null) {
+          deflater.setDictionary(dictionary, dictionary.length - WINDOW,
+                                 WINDOW);
+        }
+        deflater.setInput(input, 0, length);
+        Block block = new Block();
+        deflate(deflater, last, true, block);
+        return block;
+
+      } finally {
+        deflaters.add(deflater);
+      }
+    }
+
+
+    private void writeData(Block block) throws IOException {
+      out.write(block.data, 0, block.length);
+    }
+  }
+
+
+  /**
+   * Runs deflater over its input, appending the output to block. The last
+   * block finishes the stream. With sync set, the others end on a byte
+   * boundary so that the next block can follow directly.
+   */
+  static private void deflate(Deflater deflater, boolean last,
+                              boolean sync, Block block) {
+    if (last) deflater.finish();
+    int flush = (!last && sync) ? Deflater.SYNC_FLUSH : Deflater.NO_FLUSH;
+    while (true) {
+      if (block.length == block.data.length) {
+        block.data = Arrays.copyOf(block.data, block.data.length * 2);
+      }
+      int room = block.data.length - block.length;
+      int count = deflater.deflate(block.data, block.length, room, flush);
+      block.length += count;
+      if (last) {
+        if (deflater.finished()) break;
+      } else if (flush == Deflater.SYNC_FLUSH) {
+        if (count < room) break;
+      } else if (deflater.needsInput()) {
+        break;
+      }
+    }
+  }
+
+
+  static private void putInt(byte[] b, int offset, int value) {
+    b[offset] = (byte) value;
+    b[offset + 1] = (byte) (value >> 8);
+    b[offset + 2] = (byte) (value >> 16);
+    b[offset + 3] = (byte) (value >> 24);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // INPUT
+
+
+  /** Decompressed data passed from the read-ahead thread. */
+  static class Chunk {
+    final byte[] data;
+    int length;
+    Exception error;
+
+    Chunk(int size) {
+      data = new byte[size];
+    }
+  }
+
+
+  static class ReadAhead extends InputStream implements Runnable {
+    static final Chunk END = new Chunk(0);
+
+    final InputStream source;
+    final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS_AHEAD);
+    /** Chunks the reader is done with, for the thread to fill again. */
+    final ConcurrentLinkedQueue<Chunk> empty = new ConcurrentLinkedQueue<>();
+
+    Thread thread;
+    Chunk current;
+    int position;
+    boolean ended;
+    volatile boolean closed;
+
+
+    ReadAhead(InputStream source) {
+      this.source = source;
+    }
+
+
+    /** Decompresses chunks until the end of the data or close(). */
+    @Override
+    public void run() {
+      try {
+        while (!closed) {
+          Chunk chunk = empty.poll();
+          if (chunk == null) {
+            chunk = new Chunk(CHUNK_SIZE);
+          }
+          chunk.length = source.readNBytes(chunk.data, 0, chunk.data.length);
+          if (chunk.length > 0) {
+            full.put(chunk);
+          }
+          if (chunk.length < chunk.data.length) {
+            full.put(END);
+            return;
+          }
+        }
+      } catch (InterruptedException e) {
+        // close() was called while waiting for the reader
+
+      } catch (IOException | RuntimeException e) {
+        if (!closed) {
+          Chunk failed = new Chunk(0);
+          failed.error = e;
+          try {
+            full.put(failed);
+          } catch (InterruptedException ie) { }
+        }
+      }
+    }
+
+
+    /** Moves to the next chunk if needed, false at the end of the data. */
+    private boolean next() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      if (current != null && position < current.length) {
+        return true;
+      }
+      if (ended) {
+        return false;
+      }
+      if (thread == null) {
+        thread = new Thread(this, "Gzip Read-Ahead");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      if (current != null) {
+        empty.add(current);
+        current = null;
+      }
+      Chunk chunk;
+      try {
+        chunk = full.take();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException();
+      }
+      if (chunk == END) {
+        ended = true;
+        return false;
+      }
+      if (chunk.error != null) {
+        ended = true;
+        throw new IOException(chunk.error.getMessage(), chunk.error);
+      }
+      current = chunk;
+      position = 0;
+      return true;
+    }
+
+
+    @Override
+    public int read() throws IOException {
+      return next() ? current.data[position++] & 0xff : -1;
+    }
+
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Objects.checkFromIndexSize(off, len, b.length);
+      if (len == 0) {
+        return 0;
+      }
+      if (!next()) {
+        return -1;
+      }
+      int n = Math.min(len, current.length - position);
+      System.arraycopy(current.data, position, b, off, n);
+      position += n;
+      return n;
+    }
+
+
+    @Override
+    public int available() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      return (current == null) ? 0 : current.length - position;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+      if (closed) return;
+      closed = true;
+      if (thread != null) {
+        thread.interrupt();
+      }
+      // closing the source also stops a read that's still underway
+      source.close();
+      if (thread != null) {
+        try {
+          thread.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+}
@@ -3182,6 +3182,8 @@ int testFunction(int dst, int src) {
    * <p>
    * In Processing 4.0 beta 5, the old (and sometimes buggy) TIFF
    * reader/writer was removed, so ImageIO is used for TIFF files.
+   * TIFF and PNG files are now written by PImageEncoder, directly from
+   * the pixels array; see PImageEncoder.getDefault() for its settings.
    * <p>
    * Also, files must have an extension: we're no longer adding .tif to
    * files with no extension, because that can lead to confusing results,
@@ -3237,6 +3239,11 @@ int testFunction(int dst, int src) {
         success = saveTGA(os); //, pixels, width, height, format);
         os.close();
 
+      } else if (PImageEncoder.canEncode(lower)) {
+        // written directly from pixels[], see PImageEncoder for settings
+        PImageEncoder.getDefault().save(this, path);
+        success = true;
+
       } else {
         // TODO Imperfect, possibly temporary solution for 4.x releases
         //      https://github.com/processing/processing4/wiki/Exorcising-AWT
@@ -0,0 +1,593 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+
+/**
+ * Writes images as uncompressed TIFF or as PNG files, straight from the
+ * pixels[] array, without copying them into a BufferedImage for ImageIO.
+ * PImage.save() uses the encoder from getDefault() for .tif, .tiff and
+ * .png files, so changing its settings changes how saveFrame() writes.
+ * <p>
+ * PNG rows are filtered and compressed in strips. With setParallel() on,
+ * which is the default, large images have their strips compressed on the
+ * fork-join pool. Each strip starts from the end of the strip before it,
+ * so the result is a single stream that is close in size to the serial one.
+ * <p>
+ * ALPHA images are written as 8 bit grayscale, RGB images as 24 bit color,
+ * and ARGB images as 32 bit color with alpha.
+ */
+public class PImageEncoder {
+  static public final int FILTER_NONE = 0;
+  static public final int FILTER_SUB = 1;
+  static public final int FILTER_UP = 2;
+  static public final int FILTER_AVERAGE = 3;
+  static public final int FILTER_PAETH = 4;
+  /** Choose the filter for each row, the default. */
+  static public final int FILTER_ADAPTIVE = -1;
+
+  /** Uncompressed bytes in each strip. */
+  static final int STRIP_SIZE = 1 << 18;
+  /** Size of the deflate window, how far back a strip can refer. */
+  static final int WINDOW = 1 << 15;
+  /** 100 dpi, which is also what ShimAWT writes through ImageIO. */
+  static final int PIXELS_PER_METER = 3937;
+
+  static final byte[] PNG_SIGNATURE = {
+    (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+  };
+
+  static final short TIFF_SHORT = 3;
+  static final short TIFF_LONG = 4;
+
+  static final PImageEncoder defaultEncoder = new PImageEncoder();
+
+  protected int level = 4;
+  protected int filter = FILTER_ADAPTIVE;
+  protected boolean parallel = true;
+
+
+  public PImageEncoder() { }
+
+
+  /** The encoder used by PImage.save(). */
+  static public PImageEncoder getDefault() {
+    return defaultEncoder;
+  }
+
+
+  /**
+   * Sets the PNG compression level, from 0 (none, fastest) to 9 (smallest
+   * files, slowest). The default is 4.
+   */
+  public void level(int level) {
+    if (level < 0 || level > 9) {
+      throw new IllegalArgumentException("The compression level must be " +
+                                         "between 0 and 9, not " + level);
+    }
+    this.level = level;
+  }
+
+
+  public int getLevel() {
+    return level;
+  }
+
+
+  /**
+   * Sets the PNG row filter, one of FILTER_NONE, FILTER_SUB, FILTER_UP,
+   * FILTER_AVERAGE, FILTER_PAETH, or FILTER_ADAPTIVE to try each of them
+   * on every row and keep the one that looks most compressible.
+   */
+  public void filter(int filter) {
+    if (filter < FILTER_ADAPTIVE || filter > FILTER_PAETH) {
+      throw new IllegalArgumentException("Unknown PNG filter " + filter);
+    }
+    this.filter = filter;
+  }
+
+
+  public int getFilter() {
+    return filter;
+  }
+
+
+  /** Whether large PNG images are compressed on several threads. */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+
+  /** Whether the file name ends with an extension this class can write. */
+  static public boolean canEncode(String path) {
+    String lower = path.toLowerCase();
+    return lower.endsWith(".tif") || lower.endsWith(".tiff") ||
+      lower.endsWith(".png");
+  }
+
+
+  /**
+   * Writes image to path, as PNG or TIFF depending on the extension.
+   * The pixels of image must be loaded.
+   */
+  public void save(PImage image, String path) throws IOException {
+    boolean png = path.toLowerCase().endsWith(".png");
+    if (!png && !canEncode(path)) {
+      throw new IllegalArgumentException("Cannot write " + path +
+                                         ", only PNG and TIFF are supported");
+    }
+    try (FileChannel channel =
+         FileChannel.open(Paths.get(path), StandardOpenOption.CREATE,
+                          StandardOpenOption.WRITE,
+                          StandardOpenOption.TRUNCATE_EXISTING)) {
+      if (png) {
+        writePNG(image, channel);
+      } else {
+        writeTIFF(image, channel);
+      }
+    }
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // TIFF
+
+
+  /**
+   * Writes image as a baseline TIFF file, uncompressed, in a single strip.
+   */
+  public void writeTIFF(PImage image, WritableByteChannel channel) throws IOException {
+    int width = image.pixelWidth;
+    int height = image.pixelHeight;
+    int samples = samples(image);
+    int rowSize = width * samples;
+    long dataSize = (long) rowSize * height;
+    if (dataSize > 0xFFFF0000L) {
+      throw new IOException("The image is too large for a TIFF file");
+    }
+
+    int entries = (samples == 4) ? 11 : 10;
+    int bitsOffset = 8 + 2 + entries*12 + 4;
+    int dataOffset = bitsOffset + ((samples > 1) ? samples*2 : 0);
+
+    ByteBuffer header =
+      ByteBuffer.allocate(dataOffset).order(ByteOrder.LITTLE_ENDIAN);
+    header.put((byte) 'I').put((byte) 'I').putShort((short) 42).putInt(8);
+    header.putShort((short) entries);
+    tiffEntry(header, 256, TIFF_LONG, 1, width);
+    tiffEntry(header, 257, TIFF_LONG, 1, height);
+    // BitsPerSample, stored after the directory when there's more than one
+    tiffEntry(header, 258, TIFF_SHORT, samples, (samples > 1) ? bitsOffset : 8);
+    tiffEntry(header, 259, TIFF_SHORT, 1, 1);  // no compression
+    // photometric interpretation, black is zero or RGB
+    tiffEntry(header, 262, TIFF_SHORT, 1, (samples == 1) ? 1 : 2);
+    tiffEntry(header, 273, TIFF_LONG, 1, dataOffset);
+    tiffEntry(header, 277, TIFF_SHORT, 1, samples);
+    tiffEntry(header, 278, TIFF_LONG, 1, height);
+    tiffEntry(header, 279, TIFF_LONG, 1, (int) dataSize);
+    tiffEntry(header, 284, TIFF_SHORT, 1, 1);  // planar config, interleaved
+    if (samples == 4) {
+      tiffEntry(header, 338, TIFF_SHORT, 1, 2);  // unassociated alpha
+    }
+    header.putInt(0);  // no more directories
+    if (samples > 1) {
+      for (int i = 0; i < samples; i++) {
+        header.putShort((short) 8);
+      }
+    }
+    header.flip();
+    writeFully(channel, header);
+
+    int rows = Math.max(1, Math.min(height, STRIP_SIZE / Math.max(1, rowSize)));
+    byte[] buffer = new byte[rows * rowSize];
+    for (int y = 0; y < height; y += rows) {
+      int count = Math.min(rows, height - y);
+      for (int i = 0; i < count; i++) {
+        getRow(image, y + i, samples, buffer, i * rowSize);
+      }
+      writeFully(channel, ByteBuffer.wrap(buffer, 0, count * rowSize));
+    }
+  }
+
+
+  static private void tiffEntry(ByteBuffer buffer, int tag, short type,
+                                int count, int value) {
+    buffer.putShort((short) tag);
+    buffer.putShort(type);
+    buffer.putInt(count);
+    // little endian, so a single short lands in the first two bytes
+    buffer.putInt(value);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // PNG
+
+
+  /**
+   * Writes image as a PNG file, using the level and filter settings.
+   */
+  public void writePNG(PImage image, WritableByteChannel channel) throws IOException {
+    int width = image.pixelWidth;
+    int height = image.pixelHeight;
+    if (width <= 0 || height <= 0) {
+      throw new IOException("Cannot write an empty image as PNG");
+    }
+    int samples = samples(image);
+    int lineSize = 1 + width * samples;  // filter type, then the row
+    int rowsPerStrip = Math.max(1, STRIP_SIZE / lineSize);
+    int strips = (height + rowsPerStrip - 1) / rowsPerStrip;
+
+    writeFully(channel, ByteBuffer.wrap(PNG_SIGNATURE));
+
+    ByteBuffer ihdr = ByteBuffer.allocate(13);
+    ihdr.putInt(width).putInt(height);
+    ihdr.put((byte) 8);  // bits per sample
+    ihdr.put((byte) ((samples == 1) ? 0 : (samples == 3) ? 2 : 6));
+    ihdr.put((byte) 0).put((byte) 0).put((byte) 0);
+    writeChunk(channel, "IHDR", ihdr);
+
+    ByteBuffer phys = ByteBuffer.allocate(9);
+    phys.putInt(PIXELS_PER_METER).putInt(PIXELS_PER_METER).put((byte) 1);
+    writeChunk(channel, "pHYs", phys);
+
+    if (parallel && strips > 1 &&
+        ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ArrayList<ForkJoinTask<Strip>> tasks = new ArrayList<>(strips);
+      for (int s = 0; s < strips; s++) {
+        final int from = s * rowsPerStrip;
+        final int to = Math.min(height, from + rowsPerStrip);
+        tasks.add(ForkJoinPool.commonPool().submit(() ->
+          compressStrip(image, samples, from, to, to == height)));
+      }
+      long adler = 1;
+      for (int s = 0; s < strips; s++) {
+        Strip strip = tasks.get(s).join();
+        adler = adler32Combine(adler, strip.adler, strip.size);
+        writeData(channel, strip, s == 0, s == strips-1, adler);
+      }
+
+    } else {
+      // one deflate stream over the whole image, a strip at a time
+      Deflater deflater = new Deflater(level, true);
+      try {
+        Adler32 adler = new Adler32();
+        byte[] lines = new byte[Math.min(height, rowsPerStrip) * lineSize];
+        Strip strip = new Strip();
+        for (int s = 0; s < strips; s++) {
+          int from = s * rowsPerStrip;
+          int to = Math.min(height, from + rowsPerStrip);
+          int length = (to - from) * lineSize;
+          filterRows(image, samples, from, to, lines);
+          adler.update(lines, 0, length);
+          deflater.setInput(lines, 0, length);
+          boolean last = (to == height);
+          strip.length = 0;
+          deflate(deflater, last, strip);
+          writeData(channel, strip, s == 0, last, adler.getValue());
+        }
+      } finally {
+        deflater.end();
+      }
+    }
+    writeChunk(channel, "IEND", ByteBuffer.allocate(0));
+  }
+
+
+  /** Compressed data for a run of rows, part of the zlib stream. */
+  static class Strip {
+    byte[] data = new byte[8192];
+    int length;
+    /** Adler-32 checksum and size of the uncompressed rows. */
+    long adler;
+    int size;
+  }
+
+
+  /**
+   * Filters and compresses rows from up to to, as a piece of a larger
+   * deflate stream. The filtered rows just before the strip are set as the
+   * dictionary, they are the same bytes the previous strip compressed.
+   */
+  protected Strip compressStrip(PImage image, int samples,
+                                int from, int to, boolean last) {
+    int lineSize = 1 + image.pixelWidth * samples;
+    int before = Math.min(from, (WINDOW + lineSize - 1) / lineSize);
+    byte[] lines = new byte[(before + to - from) * lineSize];
+    filterRows(image, samples, from - before, to, lines);
+
+    int offset = before * lineSize;
+    Strip strip = new Strip();
+    strip.size = lines.length - offset;
+    Adler32 adler = new Adler32();
+    adler.update(lines, offset, strip.size);
+    strip.adler = adler.getValue();
+
+    Deflater deflater = new Deflater(level, true);
+    try {
+      if (offset > 0) {
+        int start = Math.max(0, offset - WINDOW);
+        deflater.setDictionary(lines, start, offset - start);
+      }
+      deflater.setInput(lines, offset, strip.size);
+      deflate(deflater, last, strip);
+    } finally {
+      deflater.end();
+    }
+    return strip;
+  }
+
+
+  /**
+   * Runs deflater over its input, appending the output to strip. The last
+   * strip finishes the stream, the others end on a byte boundary so that
+   * the next one can follow directly.
+   */
+  static private void deflate(Deflater deflater, boolean last, Strip strip) {
+    if (last) deflater.finish();
+    int flush = last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH;
+    while (true) {
+      if (strip.length == strip.data.length) {
+        strip.data = Arrays.copyOf(strip.data, strip.data.length * 2);
+      }
+      int room = strip.data.length - strip.length;
+      int count =
+        deflater.deflate(strip.data, strip.length, room, flush);
+      strip.length += count;
+      if (last ? deflater.finished() : count < room) break;
+    }
+  }
+
+
+  /**
+   * Filtered rows from up to to, each one starting with its filter type.
+   */
+  protected void filterRows(PImage image, int samples,
+                            int from, int to, byte[] lines) {
+    int rowSize = image.pixelWidth * samples;
+    byte[] prev = new byte[rowSize];
+    byte[] curr = new byte[rowSize];
+    byte[][] trials = null;
+    if (filter == FILTER_ADAPTIVE) {
+      trials = new byte[5][rowSize];
+    }
+    if (from > 0) {
+      getRow(image, from - 1, samples, prev, 0);
+    }
+    int offset = 0;
+    for (int y = from; y < to; y++) {
+      getRow(image, y, samples, curr, 0);
+      if (trials != null) {
+        int best = FILTER_NONE;
+        long bestSum = Long.MAX_VALUE;
+        for (int type = FILTER_NONE; type <= FILTER_PAETH; type++) {
+          long sum = filterRow(type, curr, prev, samples, trials[type], 0);
+          if (sum < bestSum) {
+            bestSum = sum;
+            best = type;
+          }
+        }
+        lines[offset] = (byte) best;
+        System.arraycopy(trials[best], 0, lines, offset + 1, rowSize);
+      } else {
+        lines[offset] = (byte) filter;
+        filterRow(filter, curr, prev, samples, lines, offset + 1);
+      }
+      offset += rowSize + 1;
+      byte[] temp = prev;
+      prev = curr;
+      curr = temp;
+    }
+  }
+
+
+  /**
+   * Applies one PNG filter to a row, and returns the sum of the absolute
+   * values of the result, taken as signed bytes, which is the usual guess
+   * of how well the row will compress.
+   */
+  static protected long filterRow(int type, byte[] curr, byte[] prev, int bpp,
+                                  byte[] out, int offset) {
+    int n = curr.length;
+    long sum = 0;
+    switch (type) {
+    case FILTER_NONE:
+      for (int i = 0; i < n; i++) {
+        byte v = curr[i];
+        out[offset + i] = v;
+        sum += Math.abs(v);
+      }
+      break;
+    case FILTER_SUB:
+      for (int i = 0; i < n; i++) {
+        int left = (i >= bpp) ? curr[i - bpp] : 0;
+        byte v = (byte) (curr[i] - left);
+        out[offset + i] = v;
+        sum += Math.abs(v);
+      }
+      break;
+    case FILTER_UP:
+      for (int i = 0; i < n; i++) {
+        byte v = (byte) (curr[i] - prev[i]);
+        out[offset + i] = v;
+        sum += Math.abs(v);
+      }
+      break;
+    case FILTER_AVERAGE:
+      for (int i = 0; i < n; i++) {
+        int left = (i >= bpp) ? curr[i - bpp] & 0xff : 0;
+        byte v = (byte) (curr[i] - ((left + (prev[i] & 0xff)) >>> 1));
+        out[offset + i] = v;
+        sum += Math.abs(v);
+      }
+      break;
+    case FILTER_PAETH:
+      for (int i = 0; i < n; i++) {
+        int a = (i >= bpp) ? curr[i - bpp] & 0xff : 0;
+        int b = prev[i] & 0xff;
+        int c = (i >= bpp) ? prev[i - bpp] & 0xff : 0;
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        int predictor = (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+        byte v = (byte) (curr[i] - predictor);
+        out[offset + i] = v;
+        sum += Math.abs(v);
+      }
+      break;
+    }
+    return sum;
+  }
+
+
+  /**
+   * Writes compressed data as an IDAT chunk, with the zlib header in front
+   * of the first one and the checksum of all the rows after the last.
+   */
+  static private void writeData(WritableByteChannel channel, Strip strip,
+                                boolean first, boolean last,
+                                long adler) throws IOException {
+    if (strip.length == 0 && !first && !last) return;
+
+    ByteBuffer data =
+      ByteBuffer.allocate(strip.length + (first ? 2 : 0) + (last ? 4 : 0));
+    if (first) {
+      // deflate with a 32K window, no dictionary, FCHECK so it divides by 31
+      data.put((byte) 0x78).put((byte) 0x9C);
+    }
+    data.put(strip.data, 0, strip.length);
+    if (last) {
+      data.putInt((int) adler);
+    }
+    writeChunk(channel, "IDAT", data);
+  }
+
+
+  /** Writes a PNG chunk, data is written from its start to its position. */
+  static private void writeChunk(WritableByteChannel channel, String type,
+                                 ByteBuffer data) throws IOException {
+    int length = data.position();
+    ByteBuffer chunk = ByteBuffer.allocate(12 + length);
+    chunk.putInt(length);
+    for (int i = 0; i < 4; i++) {
+      chunk.put((byte) type.charAt(i));
+    }
+    chunk.put(data.array(), 0, length);
+    CRC32 crc = new CRC32();
+    crc.update(chunk.array(), 4, 4 + length);
+    chunk.putInt((int) crc.getValue());
+    chunk.flip();
+    writeFully(channel, chunk);
+  }
+
+
+  /**
+   * The Adler-32 checksum of two pieces of data put together, from the
+   * checksums of each and the length of the second, as in zlib.
+   */
+  static long adler32Combine(long adler1, long adler2, long length2) {
+    final long BASE = 65521;
+    long rem = length2 % BASE;
+    long sum1 = adler1 & 0xffff;
+    long sum2 = (rem * sum1) % BASE;
+    sum1 += (adler2 & 0xffff) + BASE - 1;
+    sum2 += ((adler1 >> 16) & 0xffff) + ((adler2 >> 16) & 0xffff) + BASE - rem;
+    if (sum1 >= BASE) sum1 -= BASE;
+    if (sum1 >= BASE) sum1 -= BASE;
+    if (sum2 >= (BASE << 1)) sum2 -= (BASE << 1);
+    if (sum2 >= BASE) sum2 -= BASE;
+    return sum1 | (sum2 << 16);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+
+  static private int samples(PImage image) {
+    switch (image.format) {
+    case PConstants.ALPHA: return 1;
+    case PConstants.RGB: return 3;
+    case PConstants.ARGB: return 4;
+    }
+    throw new RuntimeException("Image format not recognized: " + image.format);
+  }
+
+
+  /** Writes row y as 8 bit samples, gray, RGB, or RGBA. */
+  static private void getRow(PImage image, int y, int samples,
+                             byte[] out, int offset) {
+    int[] pixels = image.pixels;
+    int index = y * image.pixelWidth;
+    int stop = index + image.pixelWidth;
+    switch (samples) {
+    case 1:
+      while (index < stop) {
+        out[offset++] = (byte) pixels[index++];
+      }
+      break;
+    case 3:
+      while (index < stop) {
+        int argb = pixels[index++];
+        out[offset++] = (byte) (argb >> 16);
+        out[offset++] = (byte) (argb >> 8);
+        out[offset++] = (byte) argb;
+      }
+      break;
+    case 4:
+      while (index < stop) {
+        int argb = pixels[index++];
+        out[offset++] = (byte) (argb >> 16);
+        out[offset++] = (byte) (argb >> 8);
+        out[offset++] = (byte) argb;
+        out[offset++] = (byte) (argb >>> 24);
+      }
+      break;
+    }
+  }
+
+
+  static private void writeFully(WritableByteChannel channel,
+                                 ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+  }
+}
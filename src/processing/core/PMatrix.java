@@ -177,7 +177,38 @@ public interface PMatrix {
    * recommended if you call this many times in draw().
    */
   public double[] mult(double[] source, double[] target);
-  
+
+
+  /**
+   * Multiply count points packed in source, stride values per point,
+   * starting with point number first. Source and target can be the same
+   * array to transform the points in place, and if target is null a new
+   * array the length of source is returned.
+   * <p>
+   * This version transforms one point at a time with mult(double[],
+   * double[]), and copies the values of each point past the ones that call
+   * returns. PMatrix2D and PMatrix3D replace it with faster ones.
+   */
+  public default double[] mult(double[] source, double[] target,
+                               int first, int count, int stride) {
+    if (target == null) {
+      target = new double[source.length];
+    }
+    double[] point = new double[stride];
+    double[] result = new double[stride];
+    for (int p = first; p < first + count; p++) {
+      int i = stride * p;
+      System.arraycopy(source, i, point, 0, stride);
+      result = mult(point, result);
+      int n = Math.min(stride, result.length);
+      System.arraycopy(result, 0, target, i, n);
+      if (target != source) {
+        System.arraycopy(source, i + n, target, i + n, stride - n);
+      }
+    }
+    return target;
+  }
+
   
 //  public double multX(double x, double y);
 //  public double multY(double x, double y);
@@ -402,6 +402,52 @@ public class PMatrix2D implements PMatrix {
   }
 
 
+  /**
+   * Multiply count points packed one after the other in source, starting
+   * with point number first, and write them to the same place in target.
+   * Each point takes stride values, of which the first two are x and y and
+   * the others (z, w, ...) are copied as they are. Source and target can be
+   * the same array to transform the points in place, and if target is null
+   * a new array the length of source is returned. Large batches are split
+   * across the fork-join pool.
+   */
+  public double[] mult(double[] source, double[] target,
+                       int first, int count, int stride) {
+    if (stride < 2) {
+      throw new IllegalArgumentException("The stride must be at least 2");
+    }
+    if (first < 0 || count < 0 || source.length < stride * (first + count)) {
+      throw new IllegalArgumentException("The source array does not hold points " +
+                                         first + " to " + (first + count));
+    }
+    if (target == null) {
+      target = new double[source.length];
+    } else if (target.length < stride * (first + count)) {
+      throw new IllegalArgumentException("The target array is too short");
+    }
+    final double[] out = target;
+    final double n00 = m00, n01 = m01, n02 = m02;
+    final double n10 = m10, n11 = m11, n12 = m12;
+
+    PVectorBuffer.run((from, to) -> {
+      int start = stride * (first + from);
+      int stop = stride * (first + to);
+      for (int i = start; i < stop; i += stride) {
+        double x = source[i];
+        double y = source[i+1];
+        out[i]   = n00*x + n01*y + n02;
+        out[i+1] = n10*x + n11*y + n12;
+      }
+      if (out != source && stride > 2) {
+        for (int i = start; i < stop; i += stride) {
+          System.arraycopy(source, i + 2, out, i + 2, stride - 2);
+        }
+      }
+    }, count, true);
+    return target;
+  }
+
+
   /**
    * Returns the x-coordinate of the result of multiplying the point (x, y)
    * by this matrix.
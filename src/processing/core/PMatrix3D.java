@@ -526,6 +526,90 @@ public final class PMatrix3D implements PMatrix /*, PConstants*/ {
   }
 
 
+  /**
+   * Multiply count points packed one after the other in source, starting
+   * with point number first, and write them to the same place in target.
+   * Each point takes stride values: x, y for 2 (z is taken as 0), x, y, z
+   * for 3, and x, y, z, w for 4. As with mult(PVector, PVector), the bottom
+   * row is only used with a stride of 4. Source and target can be the same
+   * array to transform the points in place, and if target is null a new
+   * array the length of source is returned. Large batches are split across
+   * the fork-join pool.
+   */
+  public double[] mult(double[] source, double[] target,
+                       int first, int count, int stride) {
+    if (stride < 2 || stride > 4) {
+      throw new IllegalArgumentException("The stride must be 2, 3 or 4");
+    }
+    if (first < 0 || count < 0 || source.length < stride * (first + count)) {
+      throw new IllegalArgumentException("The source array does not hold points " +
+                                         first + " to " + (first + count));
+    }
+    if (target == null) {
+      target = new double[source.length];
+    } else if (target.length < stride * (first + count)) {
+      throw new IllegalArgumentException("The target array is too short");
+    }
+    final double[] out = target;
+    final double n00 = m00, n01 = m01, n02 = m02, n03 = m03;
+    final double n10 = m10, n11 = m11, n12 = m12, n13 = m13;
+    final double n20 = m20, n21 = m21, n22 = m22, n23 = m23;
+    final double n30 = m30, n31 = m31, n32 = m32, n33 = m33;
+
+    PVectorBuffer.Range range;
+    if (stride == 2) {
+      range = (from, to) -> {
+        for (int i = 2 * (first + from), stop = 2 * (first + to); i < stop; i += 2) {
+          double x = source[i];
+          double y = source[i+1];
+          out[i]   = n00*x + n01*y + n03;
+          out[i+1] = n10*x + n11*y + n13;
+        }
+      };
+    } else if (stride == 3) {
+      range = (from, to) -> {
+        for (int i = 3 * (first + from), stop = 3 * (first + to); i < stop; i += 3) {
+          double x = source[i];
+          double y = source[i+1];
+          double z = source[i+2];
+          out[i]   = n00*x + n01*y + n02*z + n03;
+          out[i+1] = n10*x + n11*y + n12*z + n13;
+          out[i+2] = n20*x + n21*y + n22*z + n23;
+        }
+      };
+    } else if (n30 == 0 && n31 == 0 && n32 == 0 && n33 == 1) {
+      // Affine, w stays the same
+      range = (from, to) -> {
+        for (int i = 4 * (first + from), stop = 4 * (first + to); i < stop; i += 4) {
+          double x = source[i];
+          double y = source[i+1];
+          double z = source[i+2];
+          double w = source[i+3];
+          out[i]   = n00*x + n01*y + n02*z + n03*w;
+          out[i+1] = n10*x + n11*y + n12*z + n13*w;
+          out[i+2] = n20*x + n21*y + n22*z + n23*w;
+          out[i+3] = w;
+        }
+      };
+    } else {
+      range = (from, to) -> {
+        for (int i = 4 * (first + from), stop = 4 * (first + to); i < stop; i += 4) {
+          double x = source[i];
+          double y = source[i+1];
+          double z = source[i+2];
+          double w = source[i+3];
+          out[i]   = n00*x + n01*y + n02*z + n03*w;
+          out[i+1] = n10*x + n11*y + n12*z + n13*w;
+          out[i+2] = n20*x + n21*y + n22*z + n23*w;
+          out[i+3] = n30*x + n31*y + n32*z + n33*w;
+        }
+      };
+    }
+    PVectorBuffer.run(range, count, true);
+    return target;
+  }
+
+
   /**
    * Returns the x-coordinate of the result of multiplying the point (x, y)
    * by this matrix.
@@ -0,0 +1,633 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.util.Random;
+
+
+/**
+ * A noise generator with its own seed and settings, for when the single
+ * <b>noise()</b> of the sketch is not enough: several independent noise
+ * fields, noise evaluated from other threads, or whole grids and images
+ * filled at once.
+ * <p>
+ * Two kinds of noise are available. <b>CLASSIC</b> is the value noise used
+ * by <b>PApplet.noise()</b>, and a <b>PNoise</b> created with a seed gives
+ * exactly the same values as <b>noise()</b> after <b>noiseSeed()</b> with
+ * that seed. <b>SIMPLEX</b> is Ken Perlin's simplex noise, in 2, 3 or 4
+ * dimensions, which has fewer grid artifacts and is cheaper in 3D and 4D.
+ * Both add up several octaves, set with <b>detail()</b>, and return values
+ * from 0 to 1.
+ * <p>
+ * Evaluating noise does not change the generator, so one instance can be
+ * used from several threads, as long as its settings are not changed at the
+ * same time. The <b>fill()</b> methods split large grids across the
+ * fork-join pool, see <b>setParallel()</b>.
+ *
+ * @see PApplet#noise(double, double, double)
+ */
+public class PNoise {
+  /** Classic Processing noise, the same as PApplet.noise(). */
+  static public final int CLASSIC = 0;
+  /** Simplex noise. */
+  static public final int SIMPLEX = 1;
+
+  static final int PERLIN_YWRAPB = 4;
+  static final int PERLIN_YWRAP = 1<<PERLIN_YWRAPB;
+  static final int PERLIN_ZWRAPB = 8;
+  static final int PERLIN_ZWRAP = 1<<PERLIN_ZWRAPB;
+  static final int PERLIN_SIZE = 4095;
+
+  static final double F2 = 0.5 * (Math.sqrt(3) - 1);
+  static final double G2 = (3 - Math.sqrt(3)) / 6;
+  static final double F3 = 1.0 / 3;
+  static final double G3 = 1.0 / 6;
+  static final double F4 = (Math.sqrt(5) - 1) / 4;
+  static final double G4 = (5 - Math.sqrt(5)) / 20;
+
+  // Gradients to the edges of a cube and of a 4D hypercube
+  static final int[] GRAD3 = {
+    1,1,0, -1,1,0, 1,-1,0, -1,-1,0,
+    1,0,1, -1,0,1, 1,0,-1, -1,0,-1,
+    0,1,1, 0,-1,1, 0,1,-1, 0,-1,-1
+  };
+  static final int[] GRAD4 = {
+    0,1,1,1, 0,1,1,-1, 0,1,-1,1, 0,1,-1,-1,
+    0,-1,1,1, 0,-1,1,-1, 0,-1,-1,1, 0,-1,-1,-1,
+    1,0,1,1, 1,0,1,-1, 1,0,-1,1, 1,0,-1,-1,
+    -1,0,1,1, -1,0,1,-1, -1,0,-1,1, -1,0,-1,-1,
+    1,1,0,1, 1,1,0,-1, 1,-1,0,1, 1,-1,0,-1,
+    -1,1,0,1, -1,1,0,-1, -1,-1,0,1, -1,-1,0,-1,
+    1,1,1,0, 1,1,-1,0, 1,-1,1,0, 1,-1,-1,0,
+    -1,1,1,0, -1,1,-1,0, -1,-1,1,0, -1,-1,-1,0
+  };
+
+  protected int mode = CLASSIC;
+  protected int octaves = 4;
+  protected double falloff = 0.5;
+  protected boolean parallel = true;
+
+  /** Random values for the classic noise. */
+  protected double[] perlin;
+  /** Permutation of 0 to 255, twice, for the simplex noise. */
+  protected int[] perm;
+  protected int[] permMod12;
+
+
+  /** Creates a generator with a random seed. */
+  public PNoise() {
+    build(new Random());
+  }
+
+
+  public PNoise(long seed) {
+    build(new Random(seed));
+  }
+
+
+  public PNoise(long seed, int mode) {
+    this(seed);
+    this.mode = checkMode(mode);
+  }
+
+
+  /** Sets the seed, as with noiseSeed(). */
+  public void seed(long seed) {
+    build(new Random(seed));
+  }
+
+
+  // Private, since the constructors call it before a subclass is set up
+  private void build(Random random) {
+    // Same order as PApplet.noise(), so that the classic values match
+    double[] perlin = new double[PERLIN_SIZE + 1];
+    for (int i = 0; i < perlin.length; i++) {
+      perlin[i] = random.nextDouble();
+    }
+    int[] perm = new int[512];
+    int[] permMod12 = new int[512];
+    for (int i = 0; i < 256; i++) {
+      perm[i] = i;
+    }
+    for (int i = 255; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int temp = perm[i];
+      perm[i] = perm[j];
+      perm[j] = temp;
+    }
+    for (int i = 0; i < 512; i++) {
+      perm[i] = perm[i & 255];
+      permMod12[i] = perm[i] % 12;
+    }
+    this.perlin = perlin;
+    this.perm = perm;
+    this.permMod12 = permMod12;
+  }
+
+
+  /** CLASSIC or SIMPLEX */
+  public void mode(int mode) {
+    this.mode = checkMode(mode);
+  }
+
+
+  static private int checkMode(int mode) {
+    if (mode != CLASSIC && mode != SIMPLEX) {
+      throw new IllegalArgumentException("Use CLASSIC or SIMPLEX for the noise mode");
+    }
+    return mode;
+  }
+
+
+  public int getMode() {
+    return mode;
+  }
+
+
+  /** Sets the number of octaves, as with noiseDetail(). */
+  public void detail(int octaves) {
+    if (octaves > 0) this.octaves = octaves;
+  }
+
+
+  /**
+   * Sets the number of octaves and how much each one counts compared to
+   * the previous one, as with noiseDetail().
+   */
+  public void detail(int octaves, double falloff) {
+    if (octaves > 0) this.octaves = octaves;
+    if (falloff > 0) this.falloff = falloff;
+  }
+
+
+  /** Whether large grids are filled on several threads, true by default. */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  public double noise(double x) {
+    return noise(x, 0);
+  }
+
+
+  public double noise(double x, double y) {
+    if (mode == CLASSIC) {
+      return classic(x, y, 0);
+    }
+    double r = 0;
+    double ampl = 0.5;
+    for (int i = 0; i < octaves; i++) {
+      r += ampl * (0.5 + 0.5 * simplex(x, y));
+      ampl *= falloff;
+      x *= 2;
+      y *= 2;
+    }
+    return r;
+  }
+
+
+  public double noise(double x, double y, double z) {
+    if (mode == CLASSIC) {
+      return classic(x, y, z);
+    }
+    double r = 0;
+    double ampl = 0.5;
+    for (int i = 0; i < octaves; i++) {
+      r += ampl * (0.5 + 0.5 * simplex(x, y, z));
+      ampl *= falloff;
+      x *= 2;
+      y *= 2;
+      z *= 2;
+    }
+    return r;
+  }
+
+
+  /** 4D noise, only available with SIMPLEX. */
+  public double noise(double x, double y, double z, double w) {
+    if (mode == CLASSIC) {
+      throw new RuntimeException("4D noise is only available in SIMPLEX mode");
+    }
+    double r = 0;
+    double ampl = 0.5;
+    for (int i = 0; i < octaves; i++) {
+      r += ampl * (0.5 + 0.5 * simplex(x, y, z, w));
+      ampl *= falloff;
+      x *= 2;
+      y *= 2;
+      z *= 2;
+      w *= 2;
+    }
+    return r;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Evaluates count points packed in coords, x, y (and z, and w) one after
+   * the other, and returns the values in target, or in a new array if
+   * target is null.
+   */
+  public double[] noise(double[] coords, int count, int dimensions,
+                        double[] target) {
+    if (dimensions < 1 || dimensions > 4) {
+      throw new IllegalArgumentException("Noise has 1 to 4 dimensions");
+    }
+    if (coords.length < count * dimensions) {
+      throw new IllegalArgumentException("coords holds less than " + count + " points");
+    }
+    if (target == null || target.length < count) {
+      target = new double[count];
+    }
+    final double[] out = target;
+    PVectorBuffer.run((from, to) -> {
+      for (int i = from, c = from * dimensions; i < to; i++, c += dimensions) {
+        switch (dimensions) {
+        case 1: out[i] = noise(coords[c]); break;
+        case 2: out[i] = noise(coords[c], coords[c+1]); break;
+        case 3: out[i] = noise(coords[c], coords[c+1], coords[c+2]); break;
+        default: out[i] = noise(coords[c], coords[c+1], coords[c+2], coords[c+3]);
+        }
+      }
+    }, count, parallel);
+    return target;
+  }
+
+
+  /**
+   * Fills target with a cols by rows grid of 2D noise, one row after the
+   * other. The value in column i of row j is noise(x + i*step, y + j*step).
+   */
+  public double[] fill(double[] target, int cols, int rows,
+                       double x, double y, double step) {
+    return fill(target, cols, 0, 0, cols, rows, x, y, step);
+  }
+
+
+  /** Same as above, with 3D noise at depth z. */
+  public double[] fill(double[] target, int cols, int rows,
+                       double x, double y, double z, double step) {
+    return fill(target, cols, 0, 0, cols, rows, x, y, z, step);
+  }
+
+
+  /**
+   * Fills the part of a larger grid, width values wide, that starts at
+   * column left of row top and is cols by rows. The values are the same as
+   * when filling the whole grid, so a grid can be filled in tiles.
+   */
+  public double[] fill(double[] target, int width, int left, int top,
+                       int cols, int rows, double x, double y, double step) {
+    return fill(target, width, left, top, cols, rows, x, y, 0, step, false);
+  }
+
+
+  public double[] fill(double[] target, int width, int left, int top,
+                       int cols, int rows, double x, double y, double z,
+                       double step) {
+    return fill(target, width, left, top, cols, rows, x, y, z, step, true);
+  }
+
+
+  protected double[] fill(double[] target, int width, int left, int top,
+                          int cols, int rows, double x, double y, double z,
+                          double step, boolean depth) {
+    if (left < 0 || top < 0 || cols < 0 || rows < 0 || left + cols > width) {
+      throw new IllegalArgumentException("The region is outside the grid");
+    }
+    int length = width * (top + rows);
+    if (target == null) {
+      target = new double[length];
+    } else if (target.length < length) {
+      throw new IllegalArgumentException("The target array is too short for the grid");
+    }
+    final double[] out = target;
+    if (cols == 0) return out;
+    PVectorBuffer.run((from, to) -> {
+      int i = from % cols;
+      int j = from / cols;
+      for (int k = from; k < to; k++) {
+        double nx = x + (left + i) * step;
+        double ny = y + (top + j) * step;
+        out[(top + j) * width + left + i] = depth ? noise(nx, ny, z) : noise(nx, ny);
+        if (++i == cols) {
+          i = 0;
+          j++;
+        }
+      }
+    }, cols * rows, parallel);
+    return out;
+  }
+
+
+  /**
+   * Fills an image with 2D noise as gray levels, pixel i, j getting
+   * noise(x + i*step, y + j*step). Values above 1 are clamped.
+   */
+  public PImage fill(PImage img, double x, double y, double step) {
+    return fill(img, x, y, 0, step, false);
+  }
+
+
+  /** Same as above, with 3D noise at depth z. */
+  public PImage fill(PImage img, double x, double y, double z, double step) {
+    return fill(img, x, y, z, step, true);
+  }
+
+
+  protected PImage fill(PImage img, double x, double y, double z,
+                        double step, boolean depth) {
+    img.loadPixels();
+    final int[] pixels = img.pixels;
+    final int cols = img.pixelWidth;
+    int rows = img.pixelHeight;
+    if (cols > 0) {
+      PVectorBuffer.run((from, to) -> {
+        int i = from % cols;
+        int j = from / cols;
+        for (int k = from; k < to; k++) {
+          double nx = x + i * step;
+          double ny = y + j * step;
+          double n = depth ? noise(nx, ny, z) : noise(nx, ny);
+          int gray = (int) (255 * n);
+          if (gray > 255) gray = 255;
+          pixels[k] = 0xff000000 | (gray << 16) | (gray << 8) | gray;
+          if (++i == cols) {
+            i = 0;
+            j++;
+          }
+        }
+      }, cols * rows, parallel);
+    }
+    img.updatePixels();
+    return img;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** The sum of the octaves of the classic noise, see PApplet.noise(). */
+  protected double classic(double x, double y, double z) {
+    final double[] perlin = this.perlin;
+    final double[] cosTable = PGraphics.cosLUT;
+    final int full = PGraphics.SINCOS_LENGTH;
+    final int half = full >> 1;
+
+    if (x<0) x=-x;
+    if (y<0) y=-y;
+    if (z<0) z=-z;
+
+    int xi=(int)x, yi=(int)y, zi=(int)z;
+    double xf = x - xi;
+    double yf = y - yi;
+    double zf = z - zi;
+    double rxf, ryf;
+
+    double r=0;
+    double ampl=0.5;
+
+    double n1,n2,n3;
+
+    for (int i=0; i<octaves; i++) {
+      int of=xi+(yi<<PERLIN_YWRAPB)+(zi<<PERLIN_ZWRAPB);
+
+      rxf=0.5*(1.0-cosTable[(int)(xf*half)%full]);
+      ryf=0.5*(1.0-cosTable[(int)(yf*half)%full]);
+
+      n1  = perlin[of&PERLIN_SIZE];
+      n1 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n1);
+      n2  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+      n2 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n2);
+      n1 += ryf*(n2-n1);
+
+      of += PERLIN_ZWRAP;
+      n2  = perlin[of&PERLIN_SIZE];
+      n2 += rxf*(perlin[(of+1)&PERLIN_SIZE]-n2);
+      n3  = perlin[(of+PERLIN_YWRAP)&PERLIN_SIZE];
+      n3 += rxf*(perlin[(of+PERLIN_YWRAP+1)&PERLIN_SIZE]-n3);
+      n2 += ryf*(n3-n2);
+
+      n1 += 0.5*(1.0-cosTable[(int)(zf*half)%full])*(n2-n1);
+
+      r += n1*ampl;
+      ampl *= falloff;
+      xi<<=1; xf*=2;
+      yi<<=1; yf*=2;
+      zi<<=1; zf*=2;
+
+      if (xf>=1.0) { xi++; xf--; }
+      if (yf>=1.0) { yi++; yf--; }
+      if (zf>=1.0) { zi++; zf--; }
+    }
+    return r;
+  }
+
+
+  static protected int floor(double v) {
+    int i = (int) v;
+    return (v < i) ? i - 1 : i;
+  }
+
+
+  /** Single octave of 2D simplex noise, from -1 to 1. */
+  protected double simplex(double x, double y) {
+    final int[] perm = this.perm;
+    final int[] permMod12 = this.permMod12;
+
+    // Skew the input space to find the simplex cell
+    double s = (x + y) * F2;
+    int i = floor(x + s);
+    int j = floor(y + s);
+    double t = (i + j) * G2;
+    double x0 = x - (i - t);
+    double y0 = y - (j - t);
+
+    // Lower or upper triangle of the cell
+    int i1 = 0, j1 = 1;
+    if (x0 > y0) {
+      i1 = 1;
+      j1 = 0;
+    }
+    double x1 = x0 - i1 + G2;
+    double y1 = y0 - j1 + G2;
+    double x2 = x0 - 1 + 2*G2;
+    double y2 = y0 - 1 + 2*G2;
+
+    int ii = i & 255;
+    int jj = j & 255;
+    double n = 0;
+    double t0 = 0.5 - x0*x0 - y0*y0;
+    if (t0 > 0) {
+      int g = 3 * permMod12[ii + perm[jj]];
+      t0 *= t0;
+      n += t0 * t0 * (GRAD3[g]*x0 + GRAD3[g+1]*y0);
+    }
+    double t1 = 0.5 - x1*x1 - y1*y1;
+    if (t1 > 0) {
+      int g = 3 * permMod12[ii + i1 + perm[jj + j1]];
+      t1 *= t1;
+      n += t1 * t1 * (GRAD3[g]*x1 + GRAD3[g+1]*y1);
+    }
+    double t2 = 0.5 - x2*x2 - y2*y2;
+    if (t2 > 0) {
+      int g = 3 * permMod12[ii + 1 + perm[jj + 1]];
+      t2 *= t2;
+      n += t2 * t2 * (GRAD3[g]*x2 + GRAD3[g+1]*y2);
+    }
+    return 70 * n;
+  }
+
+
+  /** Single octave of 3D simplex noise, from -1 to 1. */
+  protected double simplex(double x, double y, double z) {
+    final int[] perm = this.perm;
+    final int[] permMod12 = this.permMod12;
+
+    double s = (x + y + z) * F3;
+    int i = floor(x + s);
+    int j = floor(y + s);
+    int k = floor(z + s);
+    double t = (i + j + k) * G3;
+    double x0 = x - (i - t);
+    double y0 = y - (j - t);
+    double z0 = z - (k - t);
+
+    // Which of the six tetrahedra of the cell
+    int i1, j1, k1, i2, j2, k2;
+    if (x0 >= y0) {
+      if (y0 >= z0) {
+        i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+      } else if (x0 >= z0) {
+        i1 = 1; j1 = 0; k1 = 0; i2 = 1; j2 = 0; k2 = 1;
+      } else {
+        i1 = 0; j1 = 0; k1 = 1; i2 = 1; j2 = 0; k2 = 1;
+      }
+    } else {
+      if (y0 < z0) {
+        i1 = 0; j1 = 0; k1 = 1; i2 = 0; j2 = 1; k2 = 1;
+      } else if (x0 < z0) {
+        i1 = 0; j1 = 1; k1 = 0; i2 = 0; j2 = 1; k2 = 1;
+      } else {
+        i1 = 0; j1 = 1; k1 = 0; i2 = 1; j2 = 1; k2 = 0;
+      }
+    }
+    double x1 = x0 - i1 + G3;
+    double y1 = y0 - j1 + G3;
+    double z1 = z0 - k1 + G3;
+    double x2 = x0 - i2 + 2*G3;
+    double y2 = y0 - j2 + 2*G3;
+    double z2 = z0 - k2 + 2*G3;
+    double x3 = x0 - 1 + 3*G3;
+    double y3 = y0 - 1 + 3*G3;
+    double z3 = z0 - 1 + 3*G3;
+
+    int ii = i & 255;
+    int jj = j & 255;
+    int kk = k & 255;
+    double n = 0;
+    double t0 = 0.6 - x0*x0 - y0*y0 - z0*z0;
+    if (t0 > 0) {
+      int g = 3 * permMod12[ii + perm[jj + perm[kk]]];
+      t0 *= t0;
+      n += t0 * t0 * (GRAD3[g]*x0 + GRAD3[g+1]*y0 + GRAD3[g+2]*z0);
+    }
+    double t1 = 0.6 - x1*x1 - y1*y1 - z1*z1;
+    if (t1 > 0) {
+      int g = 3 * permMod12[ii + i1 + perm[jj + j1 + perm[kk + k1]]];
+      t1 *= t1;
+      n += t1 * t1 * (GRAD3[g]*x1 + GRAD3[g+1]*y1 + GRAD3[g+2]*z1);
+    }
+    double t2 = 0.6 - x2*x2 - y2*y2 - z2*z2;
+    if (t2 > 0) {
+      int g = 3 * permMod12[ii + i2 + perm[jj + j2 + perm[kk + k2]]];
+      t2 *= t2;
+      n += t2 * t2 * (GRAD3[g]*x2 + GRAD3[g+1]*y2 + GRAD3[g+2]*z2);
+    }
+    double t3 = 0.6 - x3*x3 - y3*y3 - z3*z3;
+    if (t3 > 0) {
+      int g = 3 * permMod12[ii + 1 + perm[jj + 1 + perm[kk + 1]]];
+      t3 *= t3;
+      n += t3 * t3 * (GRAD3[g]*x3 + GRAD3[g+1]*y3 + GRAD3[g+2]*z3);
+    }
+    return 32 * n;
+  }
+
+
+  /** Single octave of 4D simplex noise, from -1 to 1. */
+  protected double simplex(double x, double y, double z, double w) {
+    final int[] perm = this.perm;
+
+    double s = (x + y + z + w) * F4;
+    int i = floor(x + s);
+    int j = floor(y + s);
+    int k = floor(z + s);
+    int l = floor(w + s);
+    double t = (i + j + k + l) * G4;
+    double x0 = x - (i - t);
+    double y0 = y - (j - t);
+    double z0 = z - (k - t);
+    double w0 = w - (l - t);
+
+    // Rank the coordinates to find which of the 24 simplices of the cell
+    int rankx = 0, ranky = 0, rankz = 0, rankw = 0;
+    if (x0 > y0) rankx++; else ranky++;
+    if (x0 > z0) rankx++; else rankz++;
+    if (x0 > w0) rankx++; else rankw++;
+    if (y0 > z0) ranky++; else rankz++;
+    if (y0 > w0) ranky++; else rankw++;
+    if (z0 > w0) rankz++; else rankw++;
+
+    int ii = i & 255;
+    int jj = j & 255;
+    int kk = k & 255;
+    int ll = l & 255;
+    double n = 0;
+    for (int corner = 0; corner <= 4; corner++) {
+      // Step along the axes in order of rank, one more at each corner
+      int min = 4 - corner;
+      int di = (corner == 0) ? 0 : (rankx >= min ? 1 : 0);
+      int dj = (corner == 0) ? 0 : (ranky >= min ? 1 : 0);
+      int dk = (corner == 0) ? 0 : (rankz >= min ? 1 : 0);
+      int dl = (corner == 0) ? 0 : (rankw >= min ? 1 : 0);
+      double xc = x0 - di + corner*G4;
+      double yc = y0 - dj + corner*G4;
+      double zc = z0 - dk + corner*G4;
+      double wc = w0 - dl + corner*G4;
+      double tc = 0.6 - xc*xc - yc*yc - zc*zc - wc*wc;
+      if (tc > 0) {
+        int g = 4 * (perm[ii + di + perm[jj + dj + perm[kk + dk + perm[ll + dl]]]] & 31);
+        tc *= tc;
+        n += tc * tc * (GRAD4[g]*xc + GRAD4[g+1]*yc + GRAD4[g+2]*zc + GRAD4[g+3]*wc);
+      }
+    }
+    return 27 * n;
+  }
+}
@@ -0,0 +1,190 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class is not part of the Processing API and should not be used
+ * directly. It is used by the packed OBJ loader and the SVG path parser
+ * to read numbers from text without creating a string for each one.
+ * <p>
+ * Numbers are read with the grammar [+-] digits [. digits] [e [+-] digits],
+ * where either the integer or the fractional digits may be missing. They
+ * are converted exactly: directly when the mantissa and the power of ten
+ * are exactly representable as doubles (which covers most of the numbers
+ * in model and path files), and otherwise through Double.parseDouble().
+ */
+public class PNumberParser {
+  static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+    1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+  static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+  protected int end;
+  protected ByteText bytes = new ByteText();
+
+
+  /**
+   * Parses the longest number that starts at start and ends before limit,
+   * and returns it. Returns NaN when there is no number at start, in which
+   * case end() returns start.
+   */
+  public double parse(CharSequence text, int start, int limit) {
+    int pos = start;
+    end = start;
+
+    boolean negative = false;
+    if (pos < limit && (text.charAt(pos) == '-' || text.charAt(pos) == '+')) {
+      negative = text.charAt(pos) == '-';
+      pos++;
+    }
+
+    long mantissa = 0;
+    int digits = 0;
+    int exponent = 0;
+    boolean valid = false;
+    boolean exact = true;
+    char c;
+    while (pos < limit && (c = text.charAt(pos)) >= '0' && c <= '9') {
+      int d = c - '0';
+      pos++;
+      valid = true;
+      if (digits < 18) {
+        if (mantissa != 0 || d != 0) {
+          mantissa = 10 * mantissa + d;
+          digits++;
+        }
+      } else {
+        exponent++;
+        if (d != 0) exact = false;
+      }
+    }
+    if (pos < limit && text.charAt(pos) == '.') {
+      pos++;
+      while (pos < limit && (c = text.charAt(pos)) >= '0' && c <= '9') {
+        int d = c - '0';
+        pos++;
+        valid = true;
+        if (digits < 18) {
+          if (mantissa != 0 || d != 0) {
+            mantissa = 10 * mantissa + d;
+            digits++;
+          }
+          exponent--;
+        } else if (d != 0) {
+          exact = false;
+        }
+      }
+    }
+    if (!valid) {
+      return Double.NaN;
+    }
+
+    // The exponent is only part of the number when it has digits.
+    if (pos < limit && (text.charAt(pos) == 'e' || text.charAt(pos) == 'E')) {
+      int p = pos + 1;
+      boolean negExp = false;
+      if (p < limit && (text.charAt(p) == '-' || text.charAt(p) == '+')) {
+        negExp = text.charAt(p) == '-';
+        p++;
+      }
+      int exp = 0;
+      boolean expDigits = false;
+      while (p < limit && (c = text.charAt(p)) >= '0' && c <= '9') {
+        if (exp < 100000) exp = 10 * exp + (c - '0');
+        expDigits = true;
+        p++;
+      }
+      if (expDigits) {
+        exponent += negExp ? -exp : exp;
+        pos = p;
+      }
+    }
+    end = pos;
+
+    while (mantissa != 0 && mantissa % 10 == 0) {
+      mantissa /= 10;
+      exponent++;
+    }
+    if (mantissa == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+    if (exact && mantissa <= MAX_EXACT_MANTISSA &&
+        -22 <= exponent && exponent <= 22) {
+      double value = mantissa;
+      value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] :
+                             value * POWERS_OF_TEN[exponent];
+      return negative ? -value : value;
+    }
+    return Double.parseDouble(text.subSequence(start, pos).toString());
+  }
+
+
+  /**
+   * Parses a number from text stored as single byte characters, such as
+   * ASCII or ISO-8859-1.
+   */
+  public double parse(byte[] data, int start, int limit) {
+    bytes.data = data;
+    return parse(bytes, start, limit);
+  }
+
+
+  /**
+   * Returns the position after the last number parsed.
+   */
+  public int end() {
+    return end;
+  }
+
+
+  // Single byte characters seen as a CharSequence, so that both kinds of
+  // text go through the same parsing code.
+  static protected class ByteText implements CharSequence {
+    byte[] data;
+
+    @Override
+    public int length() {
+      return data.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (data[index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new String(data, start, end - start,
+                        StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+      return new String(data, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
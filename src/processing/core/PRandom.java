@@ -0,0 +1,198 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+import processing.data.DoubleList;
+
+
+/**
+ * A random number generator with the same methods as the ones in
+ * <b>PApplet</b>, that can be split into independent streams for other
+ * threads. Unlike <b>java.util.Random</b>, a generator is not shared
+ * between threads: each thread gets its own with <b>split()</b>, so the
+ * threads never wait on each other, and the streams are the same from one
+ * run to the next when the first generator was seeded.
+ * <p>
+ * This is what <b>random()</b> uses in a sketch, see
+ * <b>PApplet.randomStreams()</b> to get reproducible streams for worker
+ * threads.
+ *
+ * @see PApplet#random(double, double)
+ * @see PApplet#randomStreams(int)
+ */
+public class PRandom {
+  /** Used when the runtime has it, as it splits into better streams. */
+  static final String ALGORITHM = "L64X128MixRandom";
+
+  protected RandomGenerator.SplittableGenerator generator;
+  /** Which randomSeed() of the sketch this came from, see PApplet. */
+  int generation;
+
+
+  /** Creates a generator with a random seed. */
+  public PRandom() {
+    generator = create(null);
+  }
+
+
+  public PRandom(long seed) {
+    generator = create(seed);
+  }
+
+
+  protected PRandom(RandomGenerator.SplittableGenerator generator) {
+    this.generator = generator;
+  }
+
+
+  static protected RandomGenerator.SplittableGenerator create(Long seed) {
+    try {
+      RandomGeneratorFactory<RandomGenerator.SplittableGenerator> factory =
+        RandomGeneratorFactory.of(ALGORITHM);
+      return (seed == null) ? factory.create() : factory.create(seed);
+    } catch (IllegalArgumentException e) {
+      // The jdk.random module is left out of some runtimes
+      return (seed == null) ? new SplittableRandom() : new SplittableRandom(seed);
+    }
+  }
+
+
+  /** The underlying generator, for the methods not wrapped here. */
+  public RandomGenerator getGenerator() {
+    return generator;
+  }
+
+
+  /**
+   * Returns a new generator with its own stream, for use on another
+   * thread. The stream only depends on the state of this one.
+   */
+  public PRandom split() {
+    return new PRandom(generator.split());
+  }
+
+
+  /** Returns count new generators, see split(). */
+  public PRandom[] split(int count) {
+    PRandom[] outgoing = new PRandom[count];
+    for (int i = 0; i < count; i++) {
+      outgoing[i] = split();
+    }
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /** From 0 up to (but not including) high, see PApplet.random(). */
+  public double random(double high) {
+    // avoid returning NaN when 0 or NaN are passed in
+    if (high == 0 || high != high) {
+      return 0;
+    }
+    double value = generator.nextDouble() * high;
+    if (value == high) {
+      // rounding up, step back towards zero
+      value = (high > 0) ? Math.nextDown(high) : Math.nextUp(high);
+    }
+    return value;
+  }
+
+
+  /** From low up to (but not including) high, see PApplet.random(). */
+  public double random(double low, double high) {
+    if (low >= high) return low;
+    double r = generator.nextDouble();
+    double diff = high - low;
+    double value = (diff < Double.POSITIVE_INFINITY) ?
+      low + r * diff : r * high + (1 - r) * low;
+    return (value < high) ? value : Math.nextDown(high);
+  }
+
+
+  /** Mean of 0 and standard deviation of 1, see PApplet.randomGaussian(). */
+  public double randomGaussian() {
+    return generator.nextGaussian();
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Fills count values of target, starting at offset, with random numbers
+   * from low up to (but not including) high.
+   */
+  public double[] fill(double[] target, int offset, int count,
+                       double low, double high) {
+    for (int i = offset, stop = offset + count; i < stop; i++) {
+      target[i] = random(low, high);
+    }
+    return target;
+  }
+
+
+  public double[] fill(double[] target, double low, double high) {
+    return fill(target, 0, target.length, low, high);
+  }
+
+
+  /** Replaces the contents of list with count random numbers. */
+  public DoubleList fill(DoubleList list, int count, double low, double high) {
+    list.resize(count);
+    fill(list.values(), 0, count, low, high);
+    return list;
+  }
+
+
+  /**
+   * Fills count values of target, starting at offset, with numbers from
+   * a normal distribution.
+   */
+  public double[] fillGaussian(double[] target, int offset, int count,
+                               double mean, double deviation) {
+    for (int i = offset, stop = offset + count; i < stop; i++) {
+      target[i] = mean + deviation * generator.nextGaussian();
+    }
+    return target;
+  }
+
+
+  public double[] fillGaussian(double[] target, double mean, double deviation) {
+    return fillGaussian(target, 0, target.length, mean, deviation);
+  }
+
+
+  public DoubleList fillGaussian(DoubleList list, int count,
+                                 double mean, double deviation) {
+    list.resize(count);
+    fillGaussian(list.values(), 0, count, mean, deviation);
+    return list;
+  }
+}
@@ -111,6 +111,13 @@ public class PShape implements PConstants {
   /** The shape type, one of GROUP, PRIMITIVE, PATH, or GEOMETRY. */
   protected int family;
 
+  /** Winding rules for contains(x, y, rule). */
+  static public final int EVEN_ODD = 0;
+  static public final int NON_ZERO = 1;
+
+  /** Data used by contains(), see getHitTest(). */
+  protected HitTest hitTest;
+
   /** ELLIPSE, LINE, QUAD; TRIANGLE_FAN, QUAD_STRIP; etc. */
   protected int kind;
 
@@ -820,6 +827,7 @@ public class PShape implements PConstants {
 
     // this is the state of the shape
     openShape = false;
+    invalidateHitTest();
   }
 
 
@@ -2159,6 +2167,7 @@ public class PShape implements PConstants {
     }
     children[childCount++] = who;
     who.parent = this;
+    invalidateHitTest();
 
     if (who.getName() != null) {
       addName(who.getName(), who);
@@ -2185,6 +2194,7 @@ public class PShape implements PConstants {
       children[idx] = who;
 
       who.parent = this;
+      invalidateHitTest();
 
       if (who.getName() != null) {
         addName(who.getName(), who);
@@ -2205,6 +2215,7 @@ public class PShape implements PConstants {
         children[i] = children[i + 1];
       }
       childCount--;
+      invalidateHitTest();
 
       if (child.getName() != null && nameTable != null) {
         nameTable.remove(child.getName());
@@ -2329,6 +2340,7 @@ public class PShape implements PConstants {
       vertexCodes = new int[vertexCodeCount];
       PApplet.arrayCopy(codes, vertexCodes, vertexCodeCount);
     }
+    invalidateHitTest();
   }
 
   /**
@@ -2422,6 +2434,7 @@ public class PShape implements PConstants {
 
     vertices[index][X] = x;
     vertices[index][Y] = y;
+    invalidateHitTest();
   }
 
 
@@ -2437,6 +2450,7 @@ public class PShape implements PConstants {
     vertices[index][X] = x;
     vertices[index][Y] = y;
     vertices[index][Z] = z;
+    invalidateHitTest();
   }
 
 
@@ -2457,6 +2471,7 @@ public class PShape implements PConstants {
     } else if (vec.z != 0 && vec.z == vec.z) {
       throw new IllegalArgumentException("Cannot set a z-coordinate on a 2D shape");
     }
+    invalidateHitTest();
   }
 
 
@@ -3085,48 +3100,540 @@ public class PShape implements PConstants {
   /**
    * Return true if this x, y coordinate is part of this shape. Only works
    * with PATH shapes or GROUP shapes that contain other GROUPs or PATHs.
-   * This method is not imperfect and doesn't account for all cases
-   * (not all complex shapes: concave shapes or holes may have issues).
+   * The coordinate is taken in the space the shape is drawn in, so the
+   * matrix of the shape (and of each group on the way down) is undone
+   * first. Contours inside the shape are handled with the even-odd rule,
+   * see contains(x, y, rule) for the nonzero one. Curves are approximated
+   * by the polygon through their control points.
    */
   public boolean contains(double x, double y) {
-    if (family == PATH || family == GEOMETRY) {
-      PVector p = new PVector(x, y);
-      if (matrix != null) {
-        // apply the inverse transformation matrix to the point coordinates
-        PMatrix inverseCoords = matrix.get();
-        // TODO why is this called twice? [fry 190724]
-        // commit was https://github.com/processing/processing/commit/027fc7a4f8e8d0a435366eae754304eea282512a
-        inverseCoords.invert();  // maybe cache this?
-        inverseCoords.invert();  // maybe cache this?
-        inverseCoords.mult(new PVector(x, y), p);
+    return contains(x, y, EVEN_ODD);
+  }
+
+
+  /**
+   * @param rule EVEN_ODD or NON_ZERO, decides whether contours that overlap
+   * with the same winding count as holes or not
+   */
+  public boolean contains(double x, double y, int rule) {
+    if (family == PATH || family == GEOMETRY || family == GROUP) {
+      return getHitTest().contains(x, y, rule);
+
+    } else {
+      // https://github.com/processing/processing/issues/1280
+      throw new IllegalArgumentException("The contains() method is only implemented for paths.");
+    }
+  }
+
+
+  /**
+   * Returns the data used by contains(), building it if needed. Groups
+   * build the data of all their children at the same time.
+   */
+  protected HitTest getHitTest() {
+    HitTest hit = hitTest;
+    if (hit == null) {
+      if (family == GROUP) {
+        hit = HitTest.group(children, childCount);
+      } else if (family == PATH || family == GEOMETRY) {
+        hit = createOutlineHitTest();
+      } else {
+        hit = HitTest.unbounded();
       }
+      hit.setMatrix(matrix);
+      hitTest = hit;
+    }
+    return hit;
+  }
 
-      // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-      boolean c = false;
-      for (int i = 0, j = vertexCount-1; i < vertexCount; j = i++) {
-        if (((vertices[i][Y] > p.y) != (vertices[j][Y] > p.y)) &&
-            (p.x <
-                (vertices[j][X]-vertices[i][X]) *
-                (y-vertices[i][Y]) /
-                (vertices[j][1]-vertices[i][Y]) +
-                vertices[i][X])) {
-          c = !c;
+
+  /**
+   * Builds the data used by contains() from the vertices of this shape.
+   * Subclasses that keep their vertices elsewhere override this.
+   */
+  protected HitTest createOutlineHitTest() {
+    double[] coords = new double[2 * vertexCount];
+    for (int i = 0; i < vertexCount; i++) {
+      coords[2*i + 0] = vertices[i][X];
+      coords[2*i + 1] = vertices[i][Y];
+    }
+    return HitTest.outline(coords, 2, vertexCount,
+                           vertexCodes, vertexCodeCount);
+  }
+
+
+  /**
+   * Drops the data used by contains() after the geometry or the matrix of
+   * this shape changed. The groups above it depend on its bounds, so their
+   * data goes as well.
+   */
+  protected void invalidateHitTest() {
+    // A group builds the data of its children along with its own, so once
+    // a shape without data is found, there is none further up either.
+    for (PShape s = this; s != null && s.hitTest != null; s = s.parent) {
+      s.hitTest = null;
+    }
+  }
+
+
+  /**
+   * Data used by contains(), built the first time it's called on a shape.
+   * Keeps the bounds of the shape and the inverse of its matrix, plus the
+   * edges of its outline sorted into horizontal bands, or for a group, a
+   * bounding volume hierarchy over its children. Testing a point allocates
+   * nothing, and only looks at the edges in its band or the children whose
+   * bounds hold it.
+   */
+  static protected class HitTest {
+    /** Polygons with fewer edges than this are not split into bands. */
+    static final int MIN_BAND_EDGES = 32;
+    static final int MAX_BANDS = 1 << 16;
+    /** Maximum average number of bands in which each edge is stored. */
+    static final int MAX_BAND_ENTRIES = 8;
+    /** Maximum number of children in a leaf of the hierarchy. */
+    static final int LEAF_SIZE = 4;
+
+    /** False if the bounds can't be known, so the shape is always tested. */
+    boolean bounded = true;
+
+    /** Bounds in the coordinates of the shape. */
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+
+    /** Bounds in the coordinates of the parent, once the matrix is applied. */
+    double parentMinX, parentMinY, parentMaxX, parentMaxY;
+
+    /** Inverse of the x/y part of the matrix of the shape, if it has one. */
+    boolean transformed;
+    double i00, i01, i02;
+    double i10, i11, i12;
+
+    // Edges of the outline as xi, yi, xj, yj, grouped by band. An edge goes
+    // in every band it spans, bandStart[b] is the first edge of band b.
+    double[] edges;
+    int[] bandStart;
+    int bandCount;
+    double bandY0;
+    double bandScale;
+
+    // Children of a group. boxes holds their bounds in the coordinates of
+    // the group, four values per child. The nodes of the hierarchy are
+    // stored depth first, so the left child of a node is the next one.
+    // Leaves have a non-zero nodeCount and cover a range of order.
+    PShape[] kids;
+    double[] boxes;
+    int[] order;
+    double[] nodeBox;
+    int[] nodeFirst;
+    int[] nodeCount;
+    int[] nodeRight;
+    int nodeTotal;
+    int[] alwaysTested;
+
+
+    static public HitTest unbounded() {
+      HitTest hit = new HitTest();
+      hit.bounded = false;
+      return hit;
+    }
+
+
+    /**
+     * Builds the data for an outline. Vertex i is at coords[stride*i] and
+     * coords[stride*i + 1]. The codes (VERTEX, BEZIER_VERTEX, BREAK, etc.)
+     * are only used to find where contours start; if there are none, all
+     * the vertices make a single contour.
+     */
+    static public HitTest outline(double[] coords, int stride, int vertexCount,
+                                  int[] codes, int codeCount) {
+      HitTest hit = new HitTest();
+
+      // Each contour is a range of vertices, closed back to its start.
+      int[] contourEnds = new int[1];
+      int contourCount = 0;
+      if (codes != null && 0 < codeCount) {
+        int index = 0;
+        for (int i = 0; i < codeCount; i++) {
+          switch (codes[i]) {
+          case VERTEX:
+          case CURVE_VERTEX:
+            index++;
+            break;
+          case QUADRATIC_VERTEX:
+            index += 2;
+            break;
+          case BEZIER_VERTEX:
+            index += 3;
+            break;
+          case BREAK:
+            if (contourCount == contourEnds.length) {
+              contourEnds = PApplet.expand(contourEnds);
+            }
+            contourEnds[contourCount++] = PApplet.min(index, vertexCount);
+            break;
+          }
         }
       }
-      return c;
+      if (contourCount == contourEnds.length) {
+        contourEnds = PApplet.expand(contourEnds);
+      }
+      contourEnds[contourCount++] = vertexCount;
+
+      for (int i = 0; i < vertexCount; i++) {
+        double x = coords[stride*i];
+        double y = coords[stride*i + 1];
+        if (x < hit.minX) hit.minX = x;
+        if (x > hit.maxX) hit.maxX = x;
+        if (y < hit.minY) hit.minY = y;
+        if (y > hit.maxY) hit.maxY = y;
+      }
+
+      // Horizontal edges never cross the ray used in contains(), skip them.
+      int edgeCount = 0;
+      int start = 0;
+      for (int c = 0; c < contourCount; c++) {
+        int end = contourEnds[c];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+          if (coords[stride*i + 1] != coords[stride*j + 1]) edgeCount++;
+        }
+        start = end;
+      }
+
+      // An edge goes in every band it spans, so a few long edges could make
+      // the bands take O(edges * bands) memory. Use fewer bands when the
+      // edges would be stored more than MAX_BAND_ENTRIES times on average.
+      int bands = 1;
+      if (MIN_BAND_EDGES <= edgeCount) {
+        bands = PApplet.min(edgeCount / 4, MAX_BANDS);
+      }
+      hit.bandY0 = hit.minY;
+      while (true) {
+        hit.bandCount = bands;
+        hit.bandScale = (hit.maxY > hit.minY) ? bands / (hit.maxY - hit.minY) : 0;
+        if (bands == 1 ||
+            hit.bandEntries(coords, stride, contourEnds, contourCount) <=
+            (long) MAX_BAND_ENTRIES * edgeCount) break;
+        bands /= 2;
+      }
 
-    } else if (family == GROUP) {
-      // If this is a group, loop through children until we find one that
-      // contains the supplied coordinates. If a child does not support
-      // contains() throw a warning and continue.
+      // Count the edges in each band, then place them.
+      int[] bandStart = new int[bands + 1];
+      for (int pass = 0; pass < 2; pass++) {
+        int[] fill = null;
+        if (pass == 1) {
+          for (int b = 0; b < bands; b++) {
+            bandStart[b + 1] += bandStart[b];
+          }
+          hit.edges = new double[4 * bandStart[bands]];
+          fill = new int[bands];
+          System.arraycopy(bandStart, 0, fill, 0, bands);
+        }
+        start = 0;
+        for (int c = 0; c < contourCount; c++) {
+          int end = contourEnds[c];
+          for (int i = start, j = end - 1; i < end; j = i++) {
+            double yi = coords[stride*i + 1];
+            double yj = coords[stride*j + 1];
+            if (yi == yj) continue;
+            int first = hit.band(Math.min(yi, yj));
+            int last = hit.band(Math.max(yi, yj));
+            for (int b = first; b <= last; b++) {
+              if (pass == 0) {
+                bandStart[b + 1]++;
+              } else {
+                int e = 4 * fill[b]++;
+                hit.edges[e + 0] = coords[stride*i];
+                hit.edges[e + 1] = yi;
+                hit.edges[e + 2] = coords[stride*j];
+                hit.edges[e + 3] = yj;
+              }
+            }
+          }
+          start = end;
+        }
+      }
+      hit.bandStart = bandStart;
+      return hit;
+    }
+
+
+    /**
+     * Builds the data for a group, along with the data of its children.
+     */
+    static public HitTest group(PShape[] children, int childCount) {
+      HitTest hit = new HitTest();
+      hit.kids = children;
+      hit.boxes = new double[4 * childCount];
+      hit.order = new int[childCount];
+      int count = 0;
+      int[] always = new int[0];
       for (int i = 0; i < childCount; i++) {
-        if (children[i].contains(x, y)) return true;
+        HitTest kid = children[i].getHitTest();
+        if (kid.bounded) {
+          if (kid.parentMinX <= kid.parentMaxX &&
+              kid.parentMinY <= kid.parentMaxY) {
+            hit.boxes[4*i + 0] = kid.parentMinX;
+            hit.boxes[4*i + 1] = kid.parentMinY;
+            hit.boxes[4*i + 2] = kid.parentMaxX;
+            hit.boxes[4*i + 3] = kid.parentMaxY;
+            hit.order[count++] = i;
+          }  // else empty, can't contain anything
+        } else {
+          always = PApplet.append(always, i);
+          hit.bounded = false;
+        }
+      }
+      hit.alwaysTested = always;
+
+      if (0 < count) {
+        hit.nodeBox = new double[4 * 2 * count];
+        hit.nodeFirst = new int[2 * count];
+        hit.nodeCount = new int[2 * count];
+        hit.nodeRight = new int[2 * count];
+        hit.build(0, count);
+        hit.minX = hit.nodeBox[0];
+        hit.minY = hit.nodeBox[1];
+        hit.maxX = hit.nodeBox[2];
+        hit.maxY = hit.nodeBox[3];
+      }
+      return hit;
+    }
+
+
+    /**
+     * Sets the matrix of the shape: keeps its inverse to bring points into
+     * the coordinates of the shape, and computes the bounds in the parent.
+     * Only the x/y part of a 3D matrix is used.
+     */
+    public void setMatrix(PMatrix matrix) {
+      double a = 1, b = 0, c = 0;
+      double d = 0, e = 1, f = 0;
+      if (matrix instanceof PMatrix2D) {
+        PMatrix2D m = (PMatrix2D) matrix;
+        a = m.m00; b = m.m01; c = m.m02;
+        d = m.m10; e = m.m11; f = m.m12;
+      } else if (matrix instanceof PMatrix3D) {
+        PMatrix3D m = (PMatrix3D) matrix;
+        a = m.m00; b = m.m01; c = m.m03;
+        d = m.m10; e = m.m11; f = m.m13;
+      }
+
+      transformed = (a != 1 || b != 0 || c != 0 || d != 0 || e != 1 || f != 0);
+      if (!transformed) {
+        parentMinX = minX; parentMinY = minY;
+        parentMaxX = maxX; parentMaxY = maxY;
+        return;
+      }
+
+      double det = a * e - b * d;
+      if (det == 0) {
+        // Flattened to a line or a point, nothing can be inside.
+        bounded = true;
+        minX = minY = parentMinX = parentMinY = Double.POSITIVE_INFINITY;
+        maxX = maxY = parentMaxX = parentMaxY = Double.NEGATIVE_INFINITY;
+        return;
+      }
+      i00 =  e / det;  i01 = -b / det;  i02 = (b * f - c * e) / det;
+      i10 = -d / det;  i11 =  a / det;  i12 = (c * d - a * f) / det;
+
+      parentMinX = parentMinY = Double.POSITIVE_INFINITY;
+      parentMaxX = parentMaxY = Double.NEGATIVE_INFINITY;
+      if (minX <= maxX && minY <= maxY) {
+        for (int corner = 0; corner < 4; corner++) {
+          double x = (corner & 1) == 0 ? minX : maxX;
+          double y = (corner & 2) == 0 ? minY : maxY;
+          double px = a * x + b * y + c;
+          double py = d * x + e * y + f;
+          if (px < parentMinX) parentMinX = px;
+          if (px > parentMaxX) parentMaxX = px;
+          if (py < parentMinY) parentMinY = py;
+          if (py > parentMaxY) parentMaxY = py;
+        }
+      }
+    }
+
+
+    /**
+     * Tests a point given in the coordinates of the parent of the shape.
+     */
+    public boolean contains(double x, double y, int rule) {
+      double lx = x;
+      double ly = y;
+      if (transformed) {
+        lx = i00 * x + i01 * y + i02;
+        ly = i10 * x + i11 * y + i12;
+      }
+      if (bounded && (lx < minX || lx > maxX || ly < minY || ly > maxY)) {
+        return false;
+      }
+
+      if (kids == null) {
+        return containsOutline(lx, ly, rule);
+      }
+      if (nodeTotal > 0 && containsNode(0, lx, ly, rule)) {
+        return true;
+      }
+      for (int i : alwaysTested) {
+        if (kids[i].contains(lx, ly, rule)) return true;
       }
       return false;
+    }
 
-    } else {
-      // https://github.com/processing/processing/issues/1280
-      throw new IllegalArgumentException("The contains() method is only implemented for paths.");
+
+    protected boolean containsOutline(double x, double y, int rule) {
+      if (edges == null) return false;
+
+      // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
+      // counting the crossings for even-odd, and their direction for nonzero
+      int b = band(y);
+      int crossings = 0;
+      int winding = 0;
+      for (int e = 4 * bandStart[b], stop = 4 * bandStart[b + 1]; e < stop; e += 4) {
+        double xi = edges[e];
+        double yi = edges[e + 1];
+        double xj = edges[e + 2];
+        double yj = edges[e + 3];
+        if (((yi > y) != (yj > y)) &&
+            (x < (xj - xi) * (y - yi) / (yj - yi) + xi)) {
+          crossings++;
+          winding += (yi > y) ? 1 : -1;
+        }
+      }
+      return (rule == NON_ZERO) ? (winding != 0) : ((crossings & 1) != 0);
+    }
+
+
+    protected boolean containsNode(int node, double x, double y, int rule) {
+      int nb = 4 * node;
+      if (x < nodeBox[nb] || y < nodeBox[nb + 1] ||
+          x > nodeBox[nb + 2] || y > nodeBox[nb + 3]) {
+        return false;
+      }
+      int count = nodeCount[node];
+      if (count > 0) {
+        for (int k = nodeFirst[node], stop = k + count; k < stop; k++) {
+          int i = order[k];
+          int kb = 4 * i;
+          if (boxes[kb] <= x && boxes[kb + 1] <= y &&
+              x <= boxes[kb + 2] && y <= boxes[kb + 3] &&
+              kids[i].contains(x, y, rule)) {
+            return true;
+          }
+        }
+        return false;
+      }
+      return containsNode(node + 1, x, y, rule) ||
+             containsNode(nodeRight[node], x, y, rule);
+    }
+
+
+    protected int band(double y) {
+      int b = (int) ((y - bandY0) * bandScale);
+      if (b < 0) return 0;
+      return (b < bandCount) ? b : bandCount - 1;
+    }
+
+
+    // Number of edges that the current bands would hold, counting an edge
+    // once for each band it spans.
+    protected long bandEntries(double[] coords, int stride,
+                               int[] contourEnds, int contourCount) {
+      long entries = 0;
+      int start = 0;
+      for (int c = 0; c < contourCount; c++) {
+        int end = contourEnds[c];
+        for (int i = start, j = end - 1; i < end; j = i++) {
+          double yi = coords[stride*i + 1];
+          double yj = coords[stride*j + 1];
+          if (yi == yj) continue;
+          entries += band(Math.max(yi, yj)) - band(Math.min(yi, yj)) + 1;
+        }
+        start = end;
+      }
+      return entries;
+    }
+
+
+    /**
+     * Builds the node for order[lo, hi), splitting at the median center
+     * along the longer side, and returns its index.
+     */
+    protected int build(int lo, int hi) {
+      int node = nodeTotal++;
+      int nb = 4 * node;
+      double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+      double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+      double cx0 = Double.POSITIVE_INFINITY, cy0 = Double.POSITIVE_INFINITY;
+      double cx1 = Double.NEGATIVE_INFINITY, cy1 = Double.NEGATIVE_INFINITY;
+      for (int k = lo; k < hi; k++) {
+        int kb = 4 * order[k];
+        x0 = Math.min(x0, boxes[kb]);
+        y0 = Math.min(y0, boxes[kb + 1]);
+        x1 = Math.max(x1, boxes[kb + 2]);
+        y1 = Math.max(y1, boxes[kb + 3]);
+        double cx = boxes[kb] + boxes[kb + 2];
+        double cy = boxes[kb + 1] + boxes[kb + 3];
+        cx0 = Math.min(cx0, cx);
+        cx1 = Math.max(cx1, cx);
+        cy0 = Math.min(cy0, cy);
+        cy1 = Math.max(cy1, cy);
+      }
+      nodeBox[nb] = x0;
+      nodeBox[nb + 1] = y0;
+      nodeBox[nb + 2] = x1;
+      nodeBox[nb + 3] = y1;
+
+      if (hi - lo <= LEAF_SIZE) {
+        nodeFirst[node] = lo;
+        nodeCount[node] = hi - lo;
+        return node;
+      }
+      int axis = (cx1 - cx0 >= cy1 - cy0) ? 0 : 1;
+      int mid = (lo + hi) >>> 1;
+      select(lo, hi - 1, mid, axis);
+      build(lo, mid);
+      nodeRight[node] = build(mid, hi);
+      return node;
+    }
+
+
+    /** Twice the center of child order[k] along the axis. */
+    protected double center(int k, int axis) {
+      int kb = 4 * order[k] + axis;
+      return boxes[kb] + boxes[kb + 2];
+    }
+
+
+    /**
+     * Partially sorts order[lo, hi] so that the k-th element is in place,
+     * with nothing larger before it and nothing smaller after it.
+     */
+    protected void select(int lo, int hi, int k, int axis) {
+      while (lo < hi) {
+        double pivot = center((lo + hi) >>> 1, axis);
+        int i = lo;
+        int j = hi;
+        while (i <= j) {
+          while (center(i, axis) < pivot) i++;
+          while (center(j, axis) > pivot) j--;
+          if (i <= j) {
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+            i++;
+            j--;
+          }
+        }
+        if (k <= j) {
+          hi = j;
+        } else if (k >= i) {
+          lo = i;
+        } else {
+          return;
+        }
+      }
     }
   }
 
@@ -3437,6 +3944,9 @@ public class PShape implements PConstants {
    * that can handle <em>at least</em> the specified number of dimensions.
    */
   protected void checkMatrix(int dimensions) {
+    // Called before every change to the matrix.
+    invalidateHitTest();
+
     if (matrix == null) {
       if (dimensions == 2) {
         matrix = new PMatrix2D();
@@ -0,0 +1,633 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is not part of the Processing API and should not be used
+ * directly. Instead, use loadShape() with the "cache" option, which will
+ * make use of this class.
+ * <p>
+ * Stores a PShape tree in a compact binary file next to the file it was
+ * loaded from, so that later loads read the binary file in one go instead
+ * of parsing the source again. The cache covers the family, kind, parameters,
+ * vertices, vertex codes, styles, matrix, name and children of each shape,
+ * as well as the name tables. Shapes with textures are not cached.
+ * <p>
+ * The cache is valid while the source file keeps the same size and either
+ * the same modification time or the same contents (the hash of the source
+ * is only computed when the modification time changed, and the new time
+ * is then stored in the cache). The same check is made for the other files
+ * the loader read, such as the MTL files of an OBJ and the texture maps
+ * they name, which the loaders report with addDependency(). A dependency
+ * that was missing when the cache was written must still be missing.
+ * <p>
+ * The cache file is read into the heap rather than memory-mapped, since
+ * a mapping stays open until the buffer is garbage collected, and on
+ * Windows an open mapping keeps a changed shape from being written over
+ * the old cache. Only the OpenGL renderers use the cache, loadShape() in
+ * JAVA2D ignores the "cache" option, because it loads SVG files as
+ * PShapeJava2D, with gradients and other paints the cache can't store.
+ */
+public class PShapeCache {
+  static public final String EXTENSION = ".pshape";
+
+  static final int MAGIC = 0x50534850; // "PSHP"
+  static final int VERSION = 2;
+
+  // Position of the modification time of the source in the header, after
+  // the magic number, the version and the length of the source.
+  static final int MODIFIED_OFFSET = 16;
+
+  static final int VISIBLE     = 1;
+  static final int STROKE      = 1 << 1;
+  static final int FILL        = 1 << 2;
+  static final int TINT        = 1 << 3;
+  static final int SET_AMBIENT = 1 << 4;
+  static final int STYLE       = 1 << 5;
+  static final int CLOSE       = 1 << 6;
+  static final int IS_3D       = 1 << 7;
+
+  // Stored as the length of dependencies that did not exist
+  static final long MISSING = -1;
+
+  static final int NO_MATRIX = 0;
+  static final int MATRIX_2D = 2;
+  static final int MATRIX_3D = 3;
+
+  // Files other than the source read while load() runs the loader on this
+  // thread, see addDependency().
+  static final ThreadLocal<ArrayList<File>> dependencies = new ThreadLocal<>();
+
+
+  /**
+   * Returns the shape stored in the cache of the given source file, or
+   * calls loader and writes its result to the cache when the cache is
+   * missing or out of date. The key identifies the loading options, a cache
+   * written with a different key is not used. When the source is not a
+   * local file, the loader is called without caching.
+   */
+  static public PShape load(PApplet parent, String filename, String key,
+                            Supplier<PShape> loader) {
+    File source = sourceFile(parent, filename);
+    if (source == null) {
+      return loader.get();
+    }
+
+    File cache = new File(source.getPath() + EXTENSION);
+    if (cache.exists()) {
+      try {
+        PShape shape = read(cache, source, key);
+        if (shape != null) return shape;
+      } catch (IOException | RuntimeException e) {
+        System.err.println("Could not read the shape cache " + cache +
+                           ", loading " + filename + " again");
+      }
+    }
+
+    ArrayList<File> files = new ArrayList<>();
+    dependencies.set(files);
+    PShape shape;
+    try {
+      shape = loader.get();
+    } finally {
+      dependencies.remove();
+    }
+    if (shape != null && isCacheable(shape)) {
+      try {
+        write(shape, cache, source, key, files);
+      } catch (IOException e) {
+        // Read-only folders, or similar, just skip the cache.
+        cache.delete();
+      }
+    }
+    return shape;
+  }
+
+
+  /**
+   * Called by the shape loaders for each file besides the source that the
+   * shape is built from, whether it exists or not, so that the cache is
+   * loaded again when that file changes. Does nothing unless load() is
+   * running a loader on the calling thread.
+   */
+  static public void addDependency(PApplet parent, String filename) {
+    ArrayList<File> files = dependencies.get();
+    if (files != null) {
+      File file = new File(filename);
+      if (!file.isAbsolute()) {
+        file = new File(parent.dataPath(filename));
+      }
+      if (!files.contains(file)) {
+        files.add(file);
+      }
+    }
+  }
+
+
+  static protected File sourceFile(PApplet parent, String filename) {
+    if (filename.contains(":") && !new File(filename).isAbsolute()) {
+      return null;  // smells like a URL
+    }
+    File file = new File(parent.dataPath(filename));
+    if (!file.exists()) {
+      file = parent.sketchFile(filename);
+    }
+    return file.isFile() ? file : null;
+  }
+
+
+  static public boolean isCacheable(PShape shape) {
+    if (shape.image != null) return false;
+    for (int i = 0; i < shape.childCount; i++) {
+      if (!isCacheable(shape.children[i])) return false;
+    }
+    return true;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // WRITING
+
+
+  static public void write(PShape shape, File cache,
+                           File source, String key) throws IOException {
+    write(shape, cache, source, key, new ArrayList<>());
+  }
+
+
+  /**
+   * Writes the shape to the cache file, along with the loading key and the
+   * size, modification time and hash of the source file and of each of
+   * the dependencies.
+   */
+  static public void write(PShape shape, File cache, File source, String key,
+                           ArrayList<File> files) throws IOException {
+    IdentityHashMap<PShape, int[]> paths = new IdentityHashMap<>();
+    findPaths(shape, new int[0], paths);
+
+    File temp = new File(cache.getPath() + ".tmp");
+    try (DataOutputStream output = new DataOutputStream(
+           new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+      output.writeInt(MAGIC);
+      output.writeInt(VERSION);
+      output.writeLong(source.length());
+      output.writeLong(source.lastModified());
+      output.writeLong(hash(source));
+      writeString(output, key);
+      output.writeInt(files.size());
+      for (File file : files) {
+        writeString(output, file.getPath());
+        if (file.isFile()) {
+          output.writeLong(file.length());
+          output.writeLong(file.lastModified());
+          output.writeLong(hash(file));
+        } else {
+          output.writeLong(MISSING);
+          output.writeLong(0);
+          output.writeLong(0);
+        }
+      }
+      writeShape(output, shape, paths);
+    }
+    if (!temp.renameTo(cache)) {
+      cache.delete();
+      if (!temp.renameTo(cache)) {
+        temp.delete();
+        throw new IOException("Could not write " + cache);
+      }
+    }
+  }
+
+
+  static protected void findPaths(PShape shape, int[] path,
+                                  IdentityHashMap<PShape, int[]> paths) {
+    paths.put(shape, path);
+    for (int i = 0; i < shape.childCount; i++) {
+      int[] childPath = PApplet.append(path, i);
+      findPaths(shape.children[i], childPath, paths);
+    }
+  }
+
+
+  static protected void writeShape(DataOutputStream output, PShape shape,
+                                   IdentityHashMap<PShape, int[]> paths)
+                                   throws IOException {
+    writeString(output, shape.name);
+    output.writeInt(shape.family);
+    output.writeInt(shape.kind);
+
+    int flags = 0;
+    if (shape.visible) flags |= VISIBLE;
+    if (shape.stroke) flags |= STROKE;
+    if (shape.fill) flags |= FILL;
+    if (shape.tint) flags |= TINT;
+    if (shape.setAmbient) flags |= SET_AMBIENT;
+    if (shape.style) flags |= STYLE;
+    if (shape.close) flags |= CLOSE;
+    if (shape.is3D) flags |= IS_3D;
+    output.writeInt(flags);
+
+    output.writeInt(shape.strokeColor);
+    output.writeFloat(shape.strokeWeight);
+    output.writeInt(shape.strokeCap);
+    output.writeInt(shape.strokeJoin);
+    output.writeInt(shape.fillColor);
+    output.writeInt(shape.tintColor);
+    output.writeInt(shape.ambientColor);
+    output.writeInt(shape.specularColor);
+    output.writeInt(shape.emissiveColor);
+    output.writeDouble(shape.shininess);
+    output.writeInt(shape.sphereDetailU);
+    output.writeInt(shape.sphereDetailV);
+    output.writeInt(shape.rectMode);
+    output.writeInt(shape.ellipseMode);
+    output.writeInt(shape.textureMode);
+
+    output.writeInt(shape.colorMode);
+    output.writeDouble(shape.colorModeX);
+    output.writeDouble(shape.colorModeY);
+    output.writeDouble(shape.colorModeZ);
+    output.writeDouble(shape.colorModeA);
+
+    output.writeDouble(shape.width);
+    output.writeDouble(shape.height);
+    output.writeDouble(shape.depth);
+
+    writeDoubles(output, shape.params, shape.params == null ? 0 : shape.params.length);
+
+    if (shape.matrix instanceof PMatrix2D) {
+      output.writeInt(MATRIX_2D);
+      writeDoubles(output, shape.matrix.get(null), 6);
+    } else if (shape.matrix instanceof PMatrix3D) {
+      output.writeInt(MATRIX_3D);
+      writeDoubles(output, shape.matrix.get(null), 16);
+    } else {
+      output.writeInt(NO_MATRIX);
+    }
+
+    // Vertices are stored as rows of the same length, the longest one.
+    int vertexCount = shape.vertices == null ? 0 : shape.vertexCount;
+    int width = 0;
+    for (int i = 0; i < vertexCount; i++) {
+      width = Math.max(width, shape.vertices[i].length);
+    }
+    output.writeInt(vertexCount);
+    output.writeInt(width);
+    for (int i = 0; i < vertexCount; i++) {
+      double[] vert = shape.vertices[i];
+      for (int j = 0; j < width; j++) {
+        output.writeDouble(j < vert.length ? vert[j] : 0);
+      }
+    }
+
+    int codeCount = shape.vertexCodes == null ? 0 : shape.vertexCodeCount;
+    output.writeInt(codeCount);
+    for (int i = 0; i < codeCount; i++) {
+      output.writeInt(shape.vertexCodes[i]);
+    }
+
+    // Names of the shapes in the subtree, stored as child index paths
+    // relative to this shape.
+    int[] path = paths.get(shape);
+    ArrayList<String> names = new ArrayList<>();
+    ArrayList<int[]> targets = new ArrayList<>();
+    if (shape.nameTable != null) {
+      for (Map.Entry<String, PShape> entry : shape.nameTable.entrySet()) {
+        int[] target = paths.get(entry.getValue());
+        if (target != null && isPrefix(path, target)) {
+          names.add(entry.getKey());
+          targets.add(PApplet.subset(target, path.length));
+        }
+      }
+    }
+    output.writeInt(names.size());
+    for (int i = 0; i < names.size(); i++) {
+      writeString(output, names.get(i));
+      int[] target = targets.get(i);
+      output.writeInt(target.length);
+      for (int idx : target) {
+        output.writeInt(idx);
+      }
+    }
+
+    output.writeInt(shape.childCount);
+    for (int i = 0; i < shape.childCount; i++) {
+      writeShape(output, shape.children[i], paths);
+    }
+  }
+
+
+  static protected boolean isPrefix(int[] prefix, int[] path) {
+    if (path.length < prefix.length) return false;
+    for (int i = 0; i < prefix.length; i++) {
+      if (prefix[i] != path[i]) return false;
+    }
+    return true;
+  }
+
+
+  static protected void writeDoubles(DataOutputStream output,
+                                     double[] values, int count)
+                                     throws IOException {
+    output.writeInt(values == null ? -1 : count);
+    for (int i = 0; i < count; i++) {
+      output.writeDouble(values[i]);
+    }
+  }
+
+
+  static protected void writeString(DataOutputStream output,
+                                    String str) throws IOException {
+    if (str == null) {
+      output.writeInt(-1);
+    } else {
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      output.writeInt(bytes.length);
+      output.write(bytes);
+    }
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // READING
+
+
+  /**
+   * Reads the cache file and returns the shape stored in it, or null if the
+   * cache does not match the key, the source file or its dependencies.
+   */
+  static public PShape read(File cache, File source,
+                            String key) throws IOException {
+    ByteBuffer buffer = readFile(cache);
+    if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+      return null;
+    }
+    long length = buffer.getLong();
+    long modified = buffer.getLong();
+    long hash = buffer.getLong();
+    if (length != source.length()) {
+      return null;
+    }
+    long sourceModified = source.lastModified();
+    if (modified != sourceModified && hash != hash(source)) {
+      return null;
+    }
+    String cacheKey = readString(buffer);
+    if (key == null ? cacheKey != null : !key.equals(cacheKey)) {
+      return null;
+    }
+    if (modified != sourceModified) {
+      // Same contents with a new time (the source was touched or copied),
+      // so that the next load does not hash the source again.
+      writeModified(cache, MODIFIED_OFFSET, sourceModified);
+    }
+
+    int dependencyCount = buffer.getInt();
+    for (int i = 0; i < dependencyCount; i++) {
+      File file = new File(readString(buffer));
+      long fileLength = buffer.getLong();
+      int modifiedOffset = buffer.position();
+      long fileModified = buffer.getLong();
+      long fileHash = buffer.getLong();
+      if (fileLength == MISSING) {
+        if (file.exists()) return null;
+      } else {
+        if (!file.isFile() || fileLength != file.length()) {
+          return null;
+        }
+        long current = file.lastModified();
+        if (fileModified != current) {
+          if (fileHash != hash(file)) return null;
+          writeModified(cache, modifiedOffset, current);
+        }
+      }
+    }
+    return readShape(buffer);
+  }
+
+
+  // Read into the heap rather than memory-mapped, see the class comment.
+  static protected ByteBuffer readFile(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (Integer.MAX_VALUE < size) {
+        throw new IOException(file + " is too large");
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer) < 0) {
+          throw new EOFException("Unexpected end of " + file);
+        }
+      }
+      buffer.flip();
+      return buffer;
+    }
+  }
+
+
+  static protected void writeModified(File cache, int offset, long modified) {
+    try (FileChannel channel = FileChannel.open(cache.toPath(),
+                                                StandardOpenOption.WRITE)) {
+      ByteBuffer value = ByteBuffer.allocate(8);
+      value.putLong(modified).flip();
+      while (value.hasRemaining()) {
+        channel.write(value, offset + value.position());
+      }
+    } catch (IOException e) {
+      // Read-only folders, the source is hashed again on the next load.
+    }
+  }
+
+
+  static protected PShape readShape(ByteBuffer buffer) {
+    PShape shape = new PShape();
+    shape.name = readString(buffer);
+    shape.family = buffer.getInt();
+    shape.kind = buffer.getInt();
+
+    int flags = buffer.getInt();
+    shape.visible = (flags & VISIBLE) != 0;
+    shape.stroke = (flags & STROKE) != 0;
+    shape.fill = (flags & FILL) != 0;
+    shape.tint = (flags & TINT) != 0;
+    shape.setAmbient = (flags & SET_AMBIENT) != 0;
+    shape.style = (flags & STYLE) != 0;
+    shape.close = (flags & CLOSE) != 0;
+    shape.is3D = (flags & IS_3D) != 0;
+
+    shape.strokeColor = buffer.getInt();
+    shape.strokeWeight = buffer.getFloat();
+    shape.strokeCap = buffer.getInt();
+    shape.strokeJoin = buffer.getInt();
+    shape.fillColor = buffer.getInt();
+    shape.tintColor = buffer.getInt();
+    shape.ambientColor = buffer.getInt();
+    shape.specularColor = buffer.getInt();
+    shape.emissiveColor = buffer.getInt();
+    shape.shininess = buffer.getDouble();
+    shape.sphereDetailU = buffer.getInt();
+    shape.sphereDetailV = buffer.getInt();
+    shape.rectMode = buffer.getInt();
+    shape.ellipseMode = buffer.getInt();
+    shape.textureMode = buffer.getInt();
+
+    shape.colorMode = buffer.getInt();
+    shape.colorModeX = buffer.getDouble();
+    shape.colorModeY = buffer.getDouble();
+    shape.colorModeZ = buffer.getDouble();
+    shape.colorModeA = buffer.getDouble();
+
+    shape.width = buffer.getDouble();
+    shape.height = buffer.getDouble();
+    shape.depth = buffer.getDouble();
+
+    shape.params = readDoubles(buffer);
+
+    int matrixType = buffer.getInt();
+    if (matrixType == MATRIX_2D) {
+      shape.matrix = new PMatrix2D();
+      shape.matrix.set(readDoubles(buffer));
+    } else if (matrixType == MATRIX_3D) {
+      shape.matrix = new PMatrix3D();
+      shape.matrix.set(readDoubles(buffer));
+    }
+
+    int vertexCount = buffer.getInt();
+    int width = buffer.getInt();
+    if (0 < vertexCount) {
+      DoubleBuffer values = buffer.asDoubleBuffer();
+      double[][] vertices = new double[vertexCount][width];
+      for (int i = 0; i < vertexCount; i++) {
+        values.get(vertices[i]);
+      }
+      buffer.position(buffer.position() + 8 * vertexCount * width);
+      shape.vertices = vertices;
+      shape.vertexCount = vertexCount;
+    }
+
+    int codeCount = buffer.getInt();
+    if (0 < codeCount) {
+      int[] codes = new int[codeCount];
+      buffer.asIntBuffer().get(codes);
+      buffer.position(buffer.position() + 4 * codeCount);
+      shape.vertexCodes = codes;
+      shape.vertexCodeCount = codeCount;
+    }
+
+    int nameCount = buffer.getInt();
+    String[] names = new String[nameCount];
+    int[][] targets = new int[nameCount][];
+    for (int i = 0; i < nameCount; i++) {
+      names[i] = readString(buffer);
+      targets[i] = new int[buffer.getInt()];
+      for (int j = 0; j < targets[i].length; j++) {
+        targets[i][j] = buffer.getInt();
+      }
+    }
+
+    int childCount = buffer.getInt();
+    if (0 < childCount) {
+      shape.children = new PShape[childCount];
+      for (int i = 0; i < childCount; i++) {
+        PShape child = readShape(buffer);
+        child.parent = shape;
+        shape.children[i] = child;
+      }
+      shape.childCount = childCount;
+    }
+
+    if (0 < nameCount) {
+      shape.nameTable = new HashMap<>();
+      for (int i = 0; i < nameCount; i++) {
+        PShape target = shape;
+        for (int idx : targets[i]) {
+          target = target.children[idx];
+        }
+        shape.nameTable.put(names[i], target);
+      }
+    }
+    return shape;
+  }
+
+
+  static protected double[] readDoubles(ByteBuffer buffer) {
+    int count = buffer.getInt();
+    if (count < 0) return null;
+    double[] values = new double[count];
+    buffer.asDoubleBuffer().get(values);
+    buffer.position(buffer.position() + 8 * count);
+    return values;
+  }
+
+
+  static protected String readString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0) return null;
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // HASHING
+
+
+  // The files are read in blocks instead of memory-mapped, for the same
+  // reason as in readFile(): the sketch may want to save over them.
+  static protected long hash(File file) throws IOException {
+    CRC32C crc = new CRC32C();
+    try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                StandardOpenOption.READ)) {
+      ByteBuffer block = ByteBuffer.allocate(1 << 16);
+      while (channel.read(block) >= 0) {
+        block.flip();
+        crc.update(block);
+        block.clear();
+      }
+    }
+    return crc.getValue();
+  }
+}
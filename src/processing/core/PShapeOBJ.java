@@ -2,9 +2,13 @@ package processing.core;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * This class is not part of the Processing API and should not be used
@@ -20,6 +24,10 @@ import java.util.Map;
  */
 public class PShapeOBJ extends PShape {
 
+  // Files larger than this are parsed in several chunks, on the fork-join
+  // pool.
+  static protected int MIN_PARALLEL_BYTES = 1 << 20;
+
   /**
    * Initializes a new OBJ Object with the given filename.
    */
@@ -47,6 +55,47 @@ public class PShapeOBJ extends PShape {
   }
 
 
+  /**
+   * Initializes a new OBJ Object with the given filename. When packed is
+   * true, the file is read with the packed loader, which stores the faces
+   * that use the same material in a single child shape of triangles instead
+   * of creating one child per face. This is much faster and lighter for
+   * large meshes, such as 3D scans.
+   */
+  public PShapeOBJ(PApplet parent, String filename, boolean packed) {
+    this(loadChildren(parent, filename, getBasePath(parent, filename),
+                      packed));
+  }
+
+
+  /**
+   * Initializes a new OBJ Object from the contents of an OBJ file, using
+   * the packed loader.
+   */
+  public PShapeOBJ(PApplet parent, byte[] data, String basePath) {
+    this(packedChildren(parent, data, basePath));
+  }
+
+
+  // The children are created before this shape, so that the constructors
+  // above do not call methods that a subclass could override before it is
+  // initialized. This sets them as addChild() would.
+  private PShapeOBJ(PShape[] kids) {
+    family = GROUP;
+    children = kids;
+    childCount = kids.length;
+    for (PShape kid: kids) {
+      kid.parent = this;
+      if (kid.name != null) {
+        if (nameTable == null) {
+          nameTable = new HashMap<>();
+        }
+        nameTable.put(kid.name, kid);
+      }
+    }
+  }
+
+
   protected PShapeOBJ(OBJFace face, OBJMaterial mtl,
                       ArrayList<PVector> coords,
                       ArrayList<PVector> normals,
@@ -64,15 +113,7 @@ public class PShapeOBJ extends PShape {
     fill = true;
 
     // Setting material properties for the new face
-    fillColor = rgbaValue(mtl.kd);
-    ambientColor = rgbaValue(mtl.ka);
-    specularColor = rgbaValue(mtl.ks);
-    shininess = mtl.ns;
-    if (mtl.kdMap != null) {
-      // If current material is textured, then tinting the texture using the
-      // diffuse color.
-      tintColor = rgbaValue(mtl.kd, mtl.d);
-    }
+    setMaterial(mtl);
 
     vertexCount = face.vertIdx.size();
     vertices = new double[vertexCount][12];
@@ -126,11 +167,57 @@ public class PShapeOBJ extends PShape {
   }
 
 
+  // Creates a shape with the triangles of one material, the vertices are
+  // given in the same format as in the per-face shapes.
+  private PShapeOBJ(OBJMaterial mtl, double[][] vertices) {
+    family = GEOMETRY;
+    kind = TRIANGLES;
+
+    stroke = false;
+    fill = true;
+
+    setMaterial(mtl);
+    if (mtl.kdMap != null) {
+      image = mtl.kdMap;
+    }
+
+    setName(mtl.name);
+    this.vertices = vertices;
+    vertexCount = vertices.length;
+  }
+
+
+  private void setMaterial(OBJMaterial mtl) {
+    fillColor = rgbaValue(mtl.kd);
+    ambientColor = rgbaValue(mtl.ka);
+    specularColor = rgbaValue(mtl.ks);
+    shininess = mtl.ns;
+    if (mtl.kdMap != null) {
+      // If current material is textured, then tinting the texture using the
+      // diffuse color.
+      tintColor = rgbaValue(mtl.kd, mtl.d);
+    }
+  }
+
+
   protected void addChildren(ArrayList<OBJFace> faces,
                              ArrayList<OBJMaterial> materials,
                              ArrayList<PVector> coords,
                              ArrayList<PVector> normals,
                              ArrayList<PVector> texcoords) {
+    for (PShape child: faceChildren(faces, materials,
+                                    coords, normals, texcoords)) {
+      addChild(child);
+    }
+  }
+
+
+  static protected PShape[] faceChildren(ArrayList<OBJFace> faces,
+                                         ArrayList<OBJMaterial> materials,
+                                         ArrayList<PVector> coords,
+                                         ArrayList<PVector> normals,
+                                         ArrayList<PVector> texcoords) {
+    PShape[] kids = new PShape[faces.size()];
     int mtlIdxCur = -1;
     OBJMaterial mtl = null;
     for (int i = 0; i < faces.size(); i++) {
@@ -144,12 +231,273 @@ public class PShapeOBJ extends PShape {
       }
 
       // Creating child shape for current face.
-      PShape child = new PShapeOBJ(face, mtl, coords, normals, texcoords);
-      addChild(child);
+      kids[i] = new PShapeOBJ(face, mtl, coords, normals, texcoords);
+    }
+    return kids;
+  }
+
+
+  static protected PShape[] loadChildren(PApplet parent, String filename,
+                                         String basePath, boolean packed) {
+    if (packed) {
+      byte[] data = parent.loadBytes(filename);
+      if (data == null) {
+        throw new RuntimeException("Could not read the OBJ file " + filename);
+      }
+      return packedChildren(parent, data, basePath);
+    }
+
+    ArrayList<OBJFace> faces = new ArrayList<OBJFace>();
+    ArrayList<OBJMaterial> materials = new ArrayList<OBJMaterial>();
+    ArrayList<PVector> coords = new ArrayList<PVector>();
+    ArrayList<PVector> normals = new ArrayList<PVector>();
+    ArrayList<PVector> texcoords = new ArrayList<PVector>();
+    parseOBJ(parent, basePath, parent.createReader(filename),
+             faces, materials, coords, normals, texcoords);
+    return faceChildren(faces, materials, coords, normals, texcoords);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // PACKED LOADER
+
+  // The packed loader tokenizes the raw bytes of the file and stores the
+  // coordinates, normals and texture coordinates in flat arrays, without
+  // creating any per-line strings or objects. Large files are split in
+  // chunks at line boundaries and the chunks are parsed in parallel, then
+  // merged in file order. Faces are triangulated as fans and added to one
+  // child shape per material.
+
+
+  static protected PShape[] packedChildren(PApplet parent, byte[] data,
+                                           String basePath) {
+    OBJChunk[] chunks = parseChunks(data);
+
+    // Materials are loaded in the order in which the libraries are
+    // referenced, adding the default one if there are none.
+    ArrayList<OBJMaterial> materials = new ArrayList<OBJMaterial>();
+    Map<String, Integer> mtlTable = new HashMap<String, Integer>();
+    for (OBJChunk chunk: chunks) {
+      for (String fn: chunk.mtlLibs) {
+        loadMTL(parent, basePath, fn, materials, mtlTable);
+      }
+    }
+    if (materials.size() == 0) {
+      materials.add(new OBJMaterial());
+    }
+
+    OBJChunk all = mergeChunks(chunks);
+
+    // Material of each face, with faces before the first usemtl (or with
+    // an unknown one) using the first material, as in addChildren().
+    int[] faceMaterial = new int[all.faceCount];
+    int mtlIdxCur = 0;
+    for (int f = 0, r = 0; f < all.faceCount; f++) {
+      while (r < all.mtlRunCount && all.mtlRunFace[r] == f) {
+        Integer idx = mtlTable.get(all.mtlRunName[r]);
+        mtlIdxCur = idx == null ? 0 : idx.intValue();
+        r++;
+      }
+      faceMaterial[f] = mtlIdxCur;
+    }
+
+    // Number of triangles of each material
+    int[] triCount = new int[materials.size()];
+    for (int f = 0; f < all.faceCount; f++) {
+      int n = all.faceStart[f + 1] - all.faceStart[f];
+      if (2 < n) triCount[faceMaterial[f]] += n - 2;
+    }
+
+    // The rows of each material are allocated together, and filled below.
+    double[][][] vertices = new double[materials.size()][][];
+    int[] vertexCount = new int[materials.size()];
+    for (int m = 0; m < materials.size(); m++) {
+      if (0 < triCount[m]) {
+        vertices[m] = new double[3 * triCount[m]][12];
+      }
+    }
+
+    for (int f = 0; f < all.faceCount; f++) {
+      int first = all.faceStart[f];
+      int last = all.faceStart[f + 1] - 1;
+      if (last - first < 2) continue;
+      int m = faceMaterial[f];
+      OBJMaterial mtl = materials.get(m);
+      double[][] verts = vertices[m];
+      for (int c = first + 1; c < last; c++) {
+        packedVertex(all, first, mtl, verts[vertexCount[m]++]);
+        packedVertex(all, c, mtl, verts[vertexCount[m]++]);
+        packedVertex(all, c + 1, mtl, verts[vertexCount[m]++]);
+      }
+    }
+
+    ArrayList<PShape> kids = new ArrayList<PShape>();
+    for (int m = 0; m < materials.size(); m++) {
+      if (vertices[m] != null) {
+        kids.add(new PShapeOBJ(materials.get(m), vertices[m]));
+      }
+    }
+    return kids.toArray(new PShape[0]);
+  }
+
+
+  static protected void packedVertex(OBJChunk all, int corner,
+                                     OBJMaterial mtl, double[] vert) {
+    int v = all.corners[3 * corner];
+    int vt = all.corners[3 * corner + 1];
+    int vn = all.corners[3 * corner + 2];
+
+    if (0 <= v && v < all.coordCount) {
+      vert[X] = all.coords[3 * v];
+      vert[Y] = all.coords[3 * v + 1];
+      vert[Z] = all.coords[3 * v + 2];
+    }
+
+    vert[PGraphics.R] = mtl.kd.x;
+    vert[PGraphics.G] = mtl.kd.y;
+    vert[PGraphics.B] = mtl.kd.z;
+    vert[PGraphics.A] = 1;
+
+    if (0 <= vn && vn < all.normalCount) {
+      vert[PGraphics.NX] = all.normals[3 * vn];
+      vert[PGraphics.NY] = all.normals[3 * vn + 1];
+      vert[PGraphics.NZ] = all.normals[3 * vn + 2];
+    }
+
+    if (0 <= vt && vt < all.texcoordCount) {
+      vert[PGraphics.U] = all.texcoords[2 * vt];
+      vert[PGraphics.V] = all.texcoords[2 * vt + 1];
     }
   }
 
 
+  static protected void loadMTL(PApplet parent, String path, String fn,
+                                ArrayList<OBJMaterial> materials,
+                                Map<String, Integer> mtlTable) {
+    if (fn.indexOf(File.separator) == -1 && !path.equals("")) {
+      // Relative file name, adding the base path.
+      fn = path + File.separator + fn;
+    }
+    PShapeCache.addDependency(parent, fn);
+    BufferedReader mreader = parent.createReader(fn);
+    if (mreader != null) {
+      parseMTL(parent, fn, path, mreader, materials, mtlTable);
+      try {
+        mreader.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+  }
+
+
+  static protected OBJChunk[] parseChunks(byte[] data) {
+    int count = 1;
+    int threads = ForkJoinPool.getCommonPoolParallelism();
+    if (MIN_PARALLEL_BYTES <= data.length && 1 < threads) {
+      count = Math.min(threads, data.length / (MIN_PARALLEL_BYTES / 2));
+    }
+
+    OBJChunk[] chunks = new OBJChunk[count];
+    int start = 0;
+    for (int i = 0; i < count; i++) {
+      int end = i == count - 1 ? data.length :
+        nextStatement(data, Math.max(start, (int) ((long) data.length * (i + 1) / count)));
+      chunks[i] = new OBJChunk(data, start, end);
+      start = end;
+    }
+
+    // The first chunk is parsed on this thread while the pool does the rest.
+    ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[count];
+    for (int i = 1; i < count; i++) {
+      tasks[i] = ForkJoinPool.commonPool().submit(chunks[i]::parse);
+    }
+    chunks[0].parse();
+    for (int i = 1; i < count; i++) {
+      tasks[i].join();
+    }
+    return chunks;
+  }
+
+
+  // Returns the position after the first line break at or after pos that
+  // ends a statement, that is, whose line is not continued on the next one
+  // with a backslash.
+  static protected int nextStatement(byte[] data, int pos) {
+    int lineStart = pos;
+    while (0 < lineStart && data[lineStart - 1] != '\n') lineStart--;
+    boolean continued = false;
+    for (int i = lineStart; i < data.length; i++) {
+      byte c = data[i];
+      if (c == '\\') {
+        continued = true;
+      } else if (c == '\n') {
+        if (!continued && pos <= i) return i + 1;
+        continued = false;
+      }
+    }
+    return data.length;
+  }
+
+
+  // Concatenates the chunks into a single one, resolving the indices that
+  // are relative to the end of the vertex lists of each chunk.
+  static protected OBJChunk mergeChunks(OBJChunk[] chunks) {
+    if (chunks.length == 1) {
+      OBJChunk all = chunks[0];
+      all.resolve(0, 0, 0);
+      return all;
+    }
+
+    OBJChunk all = new OBJChunk(null, 0, 0);
+    int coordCount = 0, normalCount = 0, texcoordCount = 0;
+    int cornerCount = 0, faceCount = 0, runCount = 0;
+    for (OBJChunk chunk: chunks) {
+      chunk.resolve(coordCount, normalCount, texcoordCount);
+      coordCount += chunk.coordCount;
+      normalCount += chunk.normalCount;
+      texcoordCount += chunk.texcoordCount;
+      cornerCount += chunk.cornerCount;
+      faceCount += chunk.faceCount;
+      runCount += chunk.mtlRunCount;
+    }
+
+    all.coords = new double[3 * coordCount];
+    all.normals = new double[3 * normalCount];
+    all.texcoords = new double[2 * texcoordCount];
+    all.corners = new int[3 * cornerCount];
+    all.faceStart = new int[faceCount + 1];
+    all.mtlRunFace = new int[runCount];
+    all.mtlRunName = new String[runCount];
+    for (OBJChunk chunk: chunks) {
+      System.arraycopy(chunk.coords, 0, all.coords,
+                       3 * all.coordCount, 3 * chunk.coordCount);
+      System.arraycopy(chunk.normals, 0, all.normals,
+                       3 * all.normalCount, 3 * chunk.normalCount);
+      System.arraycopy(chunk.texcoords, 0, all.texcoords,
+                       2 * all.texcoordCount, 2 * chunk.texcoordCount);
+      System.arraycopy(chunk.corners, 0, all.corners,
+                       3 * all.cornerCount, 3 * chunk.cornerCount);
+      for (int f = 0; f < chunk.faceCount; f++) {
+        all.faceStart[all.faceCount + f] = all.cornerCount + chunk.faceStart[f];
+      }
+      for (int r = 0; r < chunk.mtlRunCount; r++) {
+        all.mtlRunFace[all.mtlRunCount + r] = all.faceCount + chunk.mtlRunFace[r];
+        all.mtlRunName[all.mtlRunCount + r] = chunk.mtlRunName[r];
+      }
+      all.coordCount += chunk.coordCount;
+      all.normalCount += chunk.normalCount;
+      all.texcoordCount += chunk.texcoordCount;
+      all.cornerCount += chunk.cornerCount;
+      all.faceCount += chunk.faceCount;
+      all.mtlRunCount += chunk.mtlRunCount;
+    }
+    all.faceStart[all.faceCount] = all.cornerCount;
+    return all;
+  }
+
+
   static protected void parseOBJ(PApplet parent, String path,
                                  BufferedReader reader,
                                  ArrayList<OBJFace> faces,
@@ -226,6 +574,7 @@ public class PShapeOBJ extends PShape {
                 // Relative file name, adding the base path.
                 fn = path + File.separator + fn;
               }
+              PShapeCache.addDependency(parent, fn);
               BufferedReader mreader = parent.createReader(fn);
               if (mreader != null) {
                 parseMTL(parent, fn, path, mreader, materials, mtlTable);
@@ -347,6 +696,7 @@ public class PShapeOBJ extends PShape {
                 texname = path + File.separator + texname;
               }
 
+              PShapeCache.addDependency(parent, texname);
               File file = new File(parent.dataPath(texname));
               if (file.exists()) {
                 currentMtl.kdMap = parent.loadImage(texname);
@@ -430,6 +780,249 @@ public class PShapeOBJ extends PShape {
   }
 
 
+  // A range of lines from an OBJ file, and the data parsed from it by the
+  // packed loader. Indices in corners are 0-based, -1 when missing, and the
+  // relative (negative) ones are stored relative to the start of the chunk
+  // until resolve() is called with the number of items in the previous ones.
+  static protected class OBJChunk {
+    byte[] data;
+    int start, end;
+    int pos;
+
+    double[] coords = new double[3 * 16];
+    double[] normals = new double[3 * 16];
+    double[] texcoords = new double[2 * 16];
+    int coordCount, normalCount, texcoordCount;
+
+    // v, vt and vn index of each face corner, and first corner of each face
+    int[] corners = new int[3 * 16];
+    int[] faceStart = new int[16];
+    int cornerCount, faceCount;
+
+    // Items of corners holding relative indices
+    int[] relative = new int[0];
+    int relativeCount;
+
+    // Materials set with usemtl, and the face from which they apply
+    int[] mtlRunFace = new int[0];
+    String[] mtlRunName = new String[0];
+    int mtlRunCount;
+
+    ArrayList<String> mtlLibs = new ArrayList<String>();
+
+    PNumberParser numbers = new PNumberParser();
+
+    OBJChunk(byte[] data, int start, int end) {
+      this.data = data;
+      this.start = start;
+      this.end = end;
+    }
+
+    void parse() {
+      pos = start;
+      while (pos < end) {
+        if (!nextToken()) {
+          skipStatement();
+          continue;
+        }
+        int p = pos;
+        int len = tokenEnd(p) - p;
+        pos += len;
+        byte c0 = data[p];
+        byte c1 = 1 < len ? data[p + 1] : 0;
+        if (len == 1 && c0 == 'v') {
+          if (coords.length < 3 * coordCount + 3) {
+            coords = PApplet.expand(coords);
+          }
+          coords[3 * coordCount] = nextDouble();
+          coords[3 * coordCount + 1] = nextDouble();
+          coords[3 * coordCount + 2] = nextDouble();
+          coordCount++;
+        } else if (len == 2 && c0 == 'v' && c1 == 'n') {
+          if (normals.length < 3 * normalCount + 3) {
+            normals = PApplet.expand(normals);
+          }
+          normals[3 * normalCount] = nextDouble();
+          normals[3 * normalCount + 1] = nextDouble();
+          normals[3 * normalCount + 2] = nextDouble();
+          normalCount++;
+        } else if (len == 2 && c0 == 'v' && c1 == 't') {
+          // uv, inverting v to take into account Processing's inverted Y
+          // axis with respect to OpenGL.
+          if (texcoords.length < 2 * texcoordCount + 2) {
+            texcoords = PApplet.expand(texcoords);
+          }
+          texcoords[2 * texcoordCount] = nextDouble();
+          texcoords[2 * texcoordCount + 1] = 1 - nextDouble();
+          texcoordCount++;
+        } else if (len == 1 && c0 == 'f') {
+          parseFace();
+        } else if (len == 6 && startsWith(p, "usemtl")) {
+          if (nextToken()) {
+            if (mtlRunName.length == mtlRunCount) {
+              mtlRunFace = PApplet.expand(mtlRunFace, mtlRunCount + 4);
+              mtlRunName = PApplet.expand(mtlRunName, mtlRunCount + 4);
+            }
+            mtlRunFace[mtlRunCount] = faceCount;
+            mtlRunName[mtlRunCount] = nextString();
+            mtlRunCount++;
+          }
+        } else if (len == 6 && startsWith(p, "mtllib")) {
+          if (nextToken()) {
+            mtlLibs.add(nextString());
+          }
+        }
+        skipStatement();
+      }
+    }
+
+    void parseFace() {
+      if (faceStart.length <= faceCount + 1) {
+        faceStart = PApplet.expand(faceStart);
+      }
+      faceStart[faceCount] = cornerCount;
+      while (nextToken()) {
+        if (corners.length < 3 * cornerCount + 3) {
+          corners = PApplet.expand(corners);
+        }
+        int item = 3 * cornerCount;
+        int tokenEnd = tokenEnd(pos);
+        corners[item] = nextIndex(item, coordCount, tokenEnd);
+        corners[item + 1] = -1;
+        corners[item + 2] = -1;
+        if (pos < tokenEnd && data[pos] == '/') {
+          pos++;
+          corners[item + 1] = nextIndex(item + 1, texcoordCount, tokenEnd);
+          if (pos < tokenEnd && data[pos] == '/') {
+            pos++;
+            corners[item + 2] = nextIndex(item + 2, normalCount, tokenEnd);
+          }
+        }
+        pos = tokenEnd;
+        cornerCount++;
+      }
+      faceCount++;
+    }
+
+    // Parses an index at pos, stopping at a slash, and returns it 0-based.
+    // Relative indices are stored relative to the start of the chunk, and
+    // item is recorded so they can be resolved later.
+    int nextIndex(int item, int count, int tokenEnd) {
+      boolean negative = false;
+      if (pos < tokenEnd && data[pos] == '-') {
+        negative = true;
+        pos++;
+      }
+      int value = 0;
+      boolean digits = false;
+      while (pos < tokenEnd) {
+        int d = data[pos] - '0';
+        if (d < 0 || 9 < d) break;
+        value = 10 * value + d;
+        digits = true;
+        pos++;
+      }
+      if (!digits || value == 0) {
+        return -1;
+      } else if (negative) {
+        if (relative.length == relativeCount) {
+          relative = PApplet.expand(relative, relativeCount + 16);
+        }
+        relative[relativeCount++] = item;
+        return count - value;
+      }
+      return value - 1;
+    }
+
+    // Turns the relative indices into absolute ones, given the number of
+    // coordinates, texture coordinates and normals before this chunk.
+    void resolve(int coordBase, int normalBase, int texcoordBase) {
+      for (int i = 0; i < relativeCount; i++) {
+        int item = relative[i];
+        int type = item % 3;
+        corners[item] += type == 0 ? coordBase :
+                         (type == 1 ? texcoordBase : normalBase);
+      }
+      relativeCount = 0;
+      if (faceStart.length <= faceCount) {
+        faceStart = PApplet.expand(faceStart, faceCount + 1);
+      }
+      faceStart[faceCount] = cornerCount;
+    }
+
+    // Skips the spaces and line continuations, and returns whether there
+    // is another token in the current statement.
+    boolean nextToken() {
+      while (pos < end) {
+        byte c = data[pos];
+        if (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+          pos++;
+        } else if (c == '\\') {
+          // Statements can be broken in multiple lines using '\', the
+          // rest of the line is ignored (fix for Rhino OBJ files).
+          while (pos < end && data[pos] != '\n') pos++;
+          pos++;
+        } else {
+          return c != '\n' && c != '#';
+        }
+      }
+      return false;
+    }
+
+    // Moves to the start of the next statement.
+    void skipStatement() {
+      while (pos < end) {
+        byte c = data[pos++];
+        if (c == '\n') {
+          return;
+        } else if (c == '\\') {
+          while (pos < end && data[pos] != '\n') pos++;
+          pos++;
+        }
+      }
+    }
+
+    int tokenEnd(int p) {
+      while (p < end) {
+        byte c = data[p];
+        if (c == ' ' || c == '\t' || c == '\r' || c == '\f' ||
+            c == '\n' || c == '\\') break;
+        p++;
+      }
+      return p;
+    }
+
+    boolean startsWith(int p, String keyword) {
+      for (int i = 0; i < keyword.length(); i++) {
+        if (data[p + i] != keyword.charAt(i)) return false;
+      }
+      return true;
+    }
+
+    String nextString() {
+      int p = pos;
+      pos = tokenEnd(p);
+      return new String(data, p, pos - p, StandardCharsets.UTF_8);
+    }
+
+    // Parses the next number in the statement, or returns 0 if there is
+    // none. Tokens that are not plain decimal numbers, such as "nan", go
+    // through Double.parseDouble().
+    double nextDouble() {
+      if (!nextToken()) return 0;
+      int tokenStart = pos;
+      pos = tokenEnd(tokenStart);
+      double value = numbers.parse(data, tokenStart, pos);
+      if (numbers.end() != pos) {
+        value = Double.parseDouble(new String(data, tokenStart,
+                                              pos - tokenStart,
+                                              StandardCharsets.ISO_8859_1));
+      }
+      return value;
+    }
+  }
+
+
   static protected String getBasePath(PApplet parent, String filename) {
     // Obtaining the path
     File file = new File(parent.dataPath(filename));
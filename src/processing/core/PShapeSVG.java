@@ -31,6 +31,9 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import processing.data.*;
@@ -110,12 +113,34 @@ public class PShapeSVG extends PShape {
   protected Gradient fillGradient;
   String fillName;  // id of another object
 
+  /**
+   * Transforms, styles and colors already parsed in this file, shared by
+   * all the shapes loaded from it. Emptied once the file is loaded.
+   */
+  ParseCache parseCache;
+
+  /**
+   * Groups with fewer children than this are always parsed on the calling
+   * thread, the tasks would cost more than they save.
+   */
+  static final int MIN_PARALLEL_CHILDREN = 64;
+
+  /**
+   * Set while a child is parsed on a worker thread. Its names are only added
+   * to the name table once it is back in the tree, in document order.
+   */
+  static final ThreadLocal<Boolean> parsingDetached = new ThreadLocal<>();
+
+  static final Pattern MANGLED_NAME = Pattern.compile("_x([A-Za-z0-9]{2})_");
+  static final Pattern SINGLE_TRANSFORM = Pattern.compile("[,\\s]*(\\w+)\\((.*)\\)");
+
 
   /**
    * Initializes a new SVG object from the given XML object.
    */
   public PShapeSVG(XML svg) {
     this(null, svg, true);
+    parseCache.clear();
 
     if (!svg.getName().equals("svg")) {
       if (svg.getName().equalsIgnoreCase("html")) {
@@ -187,7 +212,7 @@ public class PShapeSVG extends PShape {
     // @#$(* adobe illustrator mangles names of objects when re-saving
     if (name != null) {
       while (true) {
-        String[] m = PApplet.match(name, "_x([A-Za-z0-9]{2})_");
+        String[] m = match(MANGLED_NAME, name);
         if (m == null) break;
         char repair = (char) PApplet.unhex(m[1]);
         name = name.replace(m[0], "" + repair);
@@ -200,9 +225,9 @@ public class PShapeSVG extends PShape {
     String transformStr = properties.getString("transform");
     if (transformStr != null) {
       if (matrix == null) {
-        matrix = parseTransform(transformStr);
+        matrix = cachedTransform(transformStr);
       } else {
-        matrix.preApply(parseTransform(transformStr));
+        matrix.preApply(cachedTransform(transformStr));
       }
     }
 
@@ -221,6 +246,8 @@ public class PShapeSVG extends PShape {
     this.parent = parent;
 
     if (parent == null) {
+      parseCache = new ParseCache();
+
       // set values to their defaults according to the SVG spec
       stroke = false;
       strokeColor = 0xff000000;
@@ -267,6 +294,7 @@ public class PShapeSVG extends PShape {
       svgSizeXY = parent.svgSizeXY;
 
       opacity = parent.opacity;
+      parseCache = parent.parseCache;
     }
 
     // The rect and ellipse modes are set to CORNER since it is the expected
@@ -287,14 +315,114 @@ public class PShapeSVG extends PShape {
     children = new PShape[elements.length];
     childCount = 0;
 
-    for (XML elem : elements) {
-      PShape kid = parseChild(elem);
+    // Large groups of plain geometry are parsed on the fork-join pool.
+    // Anything that can look up other parts of the file (gradients, fonts,
+    // text, url() references) stays on this thread, in document order.
+    boolean[] detached = null;
+    PShape[] parsed = null;
+    ForkJoinTask<?>[] tasks = null;
+    int chunk = 1;
+    if (elements.length >= MIN_PARALLEL_CHILDREN &&
+        getClass() == PShapeSVG.class &&
+        parsingDetached.get() == null &&
+        Runtime.getRuntime().availableProcessors() > 1) {
+      // This also reads every node and attribute once up front, so that the
+      // lazy parts of the DOM are filled in before other threads see them.
+      detached = new boolean[elements.length];
+      for (int i = 0; i < elements.length; i++) {
+        detached[i] = isDetachable(elements[i]);
+      }
+
+      parsed = new PShape[elements.length];
+      int procs = Runtime.getRuntime().availableProcessors();
+      chunk = Math.max(16, (elements.length + 4*procs - 1) / (4*procs));
+      tasks = new ForkJoinTask<?>[(elements.length + chunk - 1) / chunk];
+      final boolean[] which = detached;
+      final PShape[] results = parsed;
+      for (int t = 0; t < tasks.length; t++) {
+        final int start = t * chunk;
+        final int stop = Math.min(start + chunk, elements.length);
+        tasks[t] = ForkJoinPool.commonPool().submit(() -> {
+          parsingDetached.set(Boolean.TRUE);
+          try {
+            for (int i = start; i < stop; i++) {
+              if (which[i]) results[i] = parseChild(elements[i]);
+            }
+          } finally {
+            parsingDetached.remove();
+          }
+        });
+      }
+    }
+
+    for (int i = 0; i < elements.length; i++) {
+      PShape kid;
+      if (detached != null && detached[i]) {
+        tasks[i / chunk].join();
+        kid = parsed[i];
+        if (kid != null) addDetachedNames(kid);
+      } else {
+        kid = parseChild(elements[i]);
+      }
       if (kid != null) addChild(kid);
     }
     children = (PShape[]) PApplet.subset(children, 0, childCount);
   }
 
 
+  /**
+   * Whether this element can be parsed away from the rest of the tree: only
+   * geometry and groups of geometry, with no url() references to other
+   * elements. Reads all the attributes and children on the way.
+   */
+  static protected boolean isDetachable(XML elem) {
+    String name = elem.getName();
+    if (name == null || name.startsWith("#")) {
+      return true;  // whitespace and comments
+    }
+    switch (name) {
+      case "g": case "line": case "circle": case "ellipse": case "rect":
+      case "image": case "polygon": case "polyline": case "path":
+      case "metadata": case "title": case "desc":
+        break;
+      default:
+        return false;
+    }
+    boolean detachable = true;
+    for (String attr : elem.listAttributes()) {
+      if (elem.getString(attr).contains("url(")) detachable = false;
+    }
+    for (XML kid : elem.getChildren()) {
+      if (!isDetachable(kid)) detachable = false;
+    }
+    return detachable;
+  }
+
+
+  /**
+   * Adds the names found in a shape that was parsed on another thread,
+   * in the same order addChild() would have added them.
+   */
+  static protected void addDetachedNames(PShape shape) {
+    for (int i = 0; i < shape.childCount; i++) {
+      PShape kid = shape.children[i];
+      addDetachedNames(kid);
+      if (kid.getName() != null) {
+        shape.addName(kid.getName(), kid);
+      }
+    }
+  }
+
+
+  @Override
+  public void addName(String nom, PShape shape) {
+    // Added later by addDetachedNames(), see parseChildren()
+    if (parsingDetached.get() == null) {
+      super.addName(nom, shape);
+    }
+  }
+
+
   /**
    * Parse a child XML element.
    * Override this method to add parsing for more SVG elements.
@@ -508,103 +636,15 @@ public class PShapeSVG extends PShape {
     if (pathData == null || PApplet.trim(pathData).length() == 0) {
       return;
     }
-    char[] pathDataChars = pathData.toCharArray();
-
-    StringBuilder pathBuffer = new StringBuilder();
-
-    // The states of the lexical sanner
-    enum LexState {
-      AFTER_CMD,// Just after a command (i.e. a single alphabet)
-      NEUTRAL,  // Neutral state, waiting for a number expression or a command
-      INTEGER,  // On a sequence of digits possibly led by the '-' sign 
-      DECIMAL,  // On a digit sequence following the decimal point '.'
-      EXP_HEAD, // On the head of the exponent part of a scientific notation; the '-' sign or a digit
-      EXP_TAIL, // On the integer expression in the exponent part
-    }
-    LexState lexState = LexState.NEUTRAL;
+    PathLexer lexer = new PathLexer(pathData);
 
-    for (int i = 0; i < pathDataChars.length; i++) {
-      char c = pathDataChars[i];
-
-      // Put a separator after a command.
-      if (lexState == LexState.AFTER_CMD) {
-        pathBuffer.append("|");
-        lexState = LexState.NEUTRAL;
-      }
-
-      if (c >= '0' && c <= '9') {
-        // If it is a head of a number representation, enter the 'inside' of the digit sequence.
-        if (lexState == LexState.NEUTRAL) {
-          lexState = LexState.INTEGER;
-        }
-        else if (lexState == LexState.EXP_HEAD) {
-          lexState = LexState.EXP_TAIL;
-        }
-        pathBuffer.append(c);
-        continue;
-      }
-
-      if (c == '-') {
-        if (lexState == LexState.NEUTRAL) {
-          // In neutral state, enter 'digit sequence'.
-          lexState = LexState.INTEGER;
-        }
-        else if (lexState == LexState.EXP_HEAD) {
-          // In the begining of an exponent, enter 'exponent digit sequence'.
-          lexState = LexState.EXP_TAIL;
-        }
-        else {
-          // Otherwise, begin a new number representation.
-          pathBuffer.append("|");
-          lexState = LexState.INTEGER;
-        }
-        pathBuffer.append("-");
-        continue;
-      }
-
-      if (c == '.') {
-        if (lexState == LexState.DECIMAL || lexState == LexState.EXP_HEAD || lexState == LexState.EXP_TAIL) {
-          // Begin a new decimal number unless it is in a neutral state or after a digit sequence
-          pathBuffer.append("|");
-        }
-        pathBuffer.append(".");
-        lexState = LexState.DECIMAL;
-        continue;
-      }
-
-      if (c == 'e' || c == 'E') {
-        // Found 'e' or 'E', enter the 'exponent' state immediately.
-        pathBuffer.append("e");
-        lexState = LexState.EXP_HEAD;
-        continue;
-      }
-
-      // The following are executed for non-numeral elements
-
-      if (lexState != LexState.NEUTRAL) {
-        pathBuffer.append("|");
-        lexState = LexState.NEUTRAL;
-      }
-
-      if (c != ',') {
-        pathBuffer.append(c);
-      }
-
-      if ((c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z')) {
-        // Every alphabet character except for 'e' and 'E' are considered as a command.
-        lexState = LexState.AFTER_CMD;
-      }
-    }
-
-    // use whitespace constant to get rid of extra spaces and CR or LF
-    String[] pathTokens =
-      PApplet.splitTokens(pathBuffer.toString(), "|" + WHITESPACE);
-    vertices = new double[pathTokens.length][2];
-    vertexCodes = new int[pathTokens.length];
+    // Rough guess of the number of vertices, the arrays grow as needed
+    int capacity = pathData.length() / 8 + 4;
+    vertices = new double[capacity][2];
+    vertexCodes = new int[capacity];
 
     double cx = 0;
     double cy = 0;
-    int i = 0;
 
     char implicitCommand = '\0';
     boolean prevCurve = false;
@@ -613,104 +653,94 @@ public class PShapeSVG extends PShape {
     double movetoX = 0;
     double movetoY = 0;
 
-    while (i < pathTokens.length) {
-      char c = pathTokens[i].charAt(0);
-      if (((c >= '0' && c <= '9') || (c == '-') || (c == '.')) && implicitCommand != '\0') {
+    while (lexer.skipSeparators()) {
+      char c;
+      if (lexer.atNumber() && implicitCommand != '\0') {
         c = implicitCommand;
-        i--;
       } else {
+        c = lexer.nextCommand();
         implicitCommand = c;
       }
       switch (c) {
 
       case 'M':  // M - move to (absolute)
-        cx = PApplet.parseDouble(pathTokens[i + 1]);
-        cy = PApplet.parseDouble(pathTokens[i + 2]);
+        cx = lexer.nextNumber();
+        cy = lexer.nextNumber();
         movetoX = cx;
         movetoY = cy;
         parsePathMoveto(cx, cy);
         implicitCommand = 'L';
-        i += 3;
         break;
 
       case 'm':  // m - move to (relative)
-        cx = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        cy = cy + PApplet.parseDouble(pathTokens[i + 2]);
+        cx = cx + lexer.nextNumber();
+        cy = cy + lexer.nextNumber();
         movetoX = cx;
         movetoY = cy;
         parsePathMoveto(cx, cy);
         implicitCommand = 'l';
-        i += 3;
         break;
 
       case 'L':
-        cx = PApplet.parseDouble(pathTokens[i + 1]);
-        cy = PApplet.parseDouble(pathTokens[i + 2]);
+        cx = lexer.nextNumber();
+        cy = lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 3;
         break;
 
       case 'l':
-        cx = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        cy = cy + PApplet.parseDouble(pathTokens[i + 2]);
+        cx = cx + lexer.nextNumber();
+        cy = cy + lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 3;
         break;
 
         // horizontal lineto absolute
       case 'H':
-        cx = PApplet.parseDouble(pathTokens[i + 1]);
+        cx = lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 2;
         break;
 
         // horizontal lineto relative
       case 'h':
-        cx = cx + PApplet.parseDouble(pathTokens[i + 1]);
+        cx = cx + lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 2;
         break;
 
       case 'V':
-        cy = PApplet.parseDouble(pathTokens[i + 1]);
+        cy = lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 2;
         break;
 
       case 'v':
-        cy = cy + PApplet.parseDouble(pathTokens[i + 1]);
+        cy = cy + lexer.nextNumber();
         parsePathLineto(cx, cy);
-        i += 2;
         break;
 
         // C - curve to (absolute)
       case 'C': {
-        double ctrlX1 = PApplet.parseDouble(pathTokens[i + 1]);
-        double ctrlY1 = PApplet.parseDouble(pathTokens[i + 2]);
-        double ctrlX2 = PApplet.parseDouble(pathTokens[i + 3]);
-        double ctrlY2 = PApplet.parseDouble(pathTokens[i + 4]);
-        double endX = PApplet.parseDouble(pathTokens[i + 5]);
-        double endY = PApplet.parseDouble(pathTokens[i + 6]);
+        double ctrlX1 = lexer.nextNumber();
+        double ctrlY1 = lexer.nextNumber();
+        double ctrlX2 = lexer.nextNumber();
+        double ctrlY2 = lexer.nextNumber();
+        double endX = lexer.nextNumber();
+        double endY = lexer.nextNumber();
         parsePathCurveto(ctrlX1, ctrlY1, ctrlX2, ctrlY2, endX, endY);
         cx = endX;
         cy = endY;
-        i += 7;
         prevCurve = true;
       }
       break;
 
         // c - curve to (relative)
       case 'c': {
-        double ctrlX1 = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        double ctrlY1 = cy + PApplet.parseDouble(pathTokens[i + 2]);
-        double ctrlX2 = cx + PApplet.parseDouble(pathTokens[i + 3]);
-        double ctrlY2 = cy + PApplet.parseDouble(pathTokens[i + 4]);
-        double endX = cx + PApplet.parseDouble(pathTokens[i + 5]);
-        double endY = cy + PApplet.parseDouble(pathTokens[i + 6]);
+        double ctrlX1 = cx + lexer.nextNumber();
+        double ctrlY1 = cy + lexer.nextNumber();
+        double ctrlX2 = cx + lexer.nextNumber();
+        double ctrlY2 = cy + lexer.nextNumber();
+        double endX = cx + lexer.nextNumber();
+        double endY = cy + lexer.nextNumber();
         parsePathCurveto(ctrlX1, ctrlY1, ctrlX2, ctrlY2, endX, endY);
         cx = endX;
         cy = endY;
-        i += 7;
         prevCurve = true;
       }
       break;
@@ -740,14 +770,13 @@ public class PShapeSVG extends PShape {
           ctrlX = px + (px - ppx);
           ctrlY = py + (py - ppy);
         }
-        double ctrlX2 = PApplet.parseDouble(pathTokens[i + 1]);
-        double ctrlY2 = PApplet.parseDouble(pathTokens[i + 2]);
-        double endX = PApplet.parseDouble(pathTokens[i + 3]);
-        double endY = PApplet.parseDouble(pathTokens[i + 4]);
+        double ctrlX2 = lexer.nextNumber();
+        double ctrlY2 = lexer.nextNumber();
+        double endX = lexer.nextNumber();
+        double endY = lexer.nextNumber();
         parsePathCurveto(ctrlX, ctrlY, ctrlX2, ctrlY2, endX, endY);
         cx = endX;
         cy = endY;
-        i += 5;
         prevCurve = true;
       }
       break;
@@ -765,14 +794,13 @@ public class PShapeSVG extends PShape {
           ctrlX = px + (px - ppx);
           ctrlY = py + (py - ppy);
         }
-        double ctrlX2 = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        double ctrlY2 = cy + PApplet.parseDouble(pathTokens[i + 2]);
-        double endX = cx + PApplet.parseDouble(pathTokens[i + 3]);
-        double endY = cy + PApplet.parseDouble(pathTokens[i + 4]);
+        double ctrlX2 = cx + lexer.nextNumber();
+        double ctrlY2 = cy + lexer.nextNumber();
+        double endX = cx + lexer.nextNumber();
+        double endY = cy + lexer.nextNumber();
         parsePathCurveto(ctrlX, ctrlY, ctrlX2, ctrlY2, endX, endY);
         cx = endX;
         cy = endY;
-        i += 5;
         prevCurve = true;
       }
       break;
@@ -785,30 +813,28 @@ public class PShapeSVG extends PShape {
       // to draw a polybézier. At the end of the command, the new current point
       // becomes the final (x,y) coordinate pair used in the polybézier.
       case 'Q': {
-        ctrlX = PApplet.parseDouble(pathTokens[i + 1]);
-        ctrlY = PApplet.parseDouble(pathTokens[i + 2]);
-        double endX = PApplet.parseDouble(pathTokens[i + 3]);
-        double endY = PApplet.parseDouble(pathTokens[i + 4]);
+        ctrlX = lexer.nextNumber();
+        ctrlY = lexer.nextNumber();
+        double endX = lexer.nextNumber();
+        double endY = lexer.nextNumber();
         //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
         parsePathQuadto(ctrlX, ctrlY, endX, endY);
         cx = endX;
         cy = endY;
-        i += 5;
         prevCurve = true;
       }
       break;
 
       // q - quadratic curve to (relative)
       case 'q': {
-        ctrlX = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        ctrlY = cy + PApplet.parseDouble(pathTokens[i + 2]);
-        double endX = cx + PApplet.parseDouble(pathTokens[i + 3]);
-        double endY = cy + PApplet.parseDouble(pathTokens[i + 4]);
+        ctrlX = cx + lexer.nextNumber();
+        ctrlY = cy + lexer.nextNumber();
+        double endX = cx + lexer.nextNumber();
+        double endY = cy + lexer.nextNumber();
         //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
         parsePathQuadto(ctrlX, ctrlY, endX, endY);
         cx = endX;
         cy = endY;
-        i += 5;
         prevCurve = true;
       }
       break;
@@ -831,13 +857,12 @@ public class PShapeSVG extends PShape {
           ctrlX = px + (px - ppx);
           ctrlY = py + (py - ppy);
         }
-        double endX = PApplet.parseDouble(pathTokens[i + 1]);
-        double endY = PApplet.parseDouble(pathTokens[i + 2]);
+        double endX = lexer.nextNumber();
+        double endY = lexer.nextNumber();
         //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
         parsePathQuadto(ctrlX, ctrlY, endX, endY);
         cx = endX;
         cy = endY;
-        i += 3;
         prevCurve = true;
       }
         break;
@@ -855,47 +880,44 @@ public class PShapeSVG extends PShape {
           ctrlX = px + (px - ppx);
           ctrlY = py + (py - ppy);
         }
-        double endX = cx + PApplet.parseDouble(pathTokens[i + 1]);
-        double endY = cy + PApplet.parseDouble(pathTokens[i + 2]);
+        double endX = cx + lexer.nextNumber();
+        double endY = cy + lexer.nextNumber();
         //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
         parsePathQuadto(ctrlX, ctrlY, endX, endY);
         cx = endX;
         cy = endY;
-        i += 3;
         prevCurve = true;
       }
         break;
 
       // A - elliptical arc to (absolute)
       case 'A': {
-        double rx = PApplet.parseDouble(pathTokens[i + 1]);
-        double ry = PApplet.parseDouble(pathTokens[i + 2]);
-        double angle = PApplet.parseDouble(pathTokens[i + 3]);
-        boolean fa = PApplet.parseDouble(pathTokens[i + 4]) != 0;
-        boolean fs = PApplet.parseDouble(pathTokens[i + 5]) != 0;
-        double endX = PApplet.parseDouble(pathTokens[i + 6]);
-        double endY = PApplet.parseDouble(pathTokens[i + 7]);
+        double rx = lexer.nextNumber();
+        double ry = lexer.nextNumber();
+        double angle = lexer.nextNumber();
+        boolean fa = lexer.nextFlag();
+        boolean fs = lexer.nextFlag();
+        double endX = lexer.nextNumber();
+        double endY = lexer.nextNumber();
         parsePathArcto(cx, cy, rx, ry, angle, fa, fs, endX, endY);
         cx = endX;
         cy = endY;
-        i += 8;
         prevCurve = true;
       }
       break;
 
       // a - elliptical arc to (relative)
       case 'a': {
-        double rx = PApplet.parseDouble(pathTokens[i + 1]);
-        double ry = PApplet.parseDouble(pathTokens[i + 2]);
-        double angle = PApplet.parseDouble(pathTokens[i + 3]);
-        boolean fa = PApplet.parseDouble(pathTokens[i + 4]) != 0;
-        boolean fs = PApplet.parseDouble(pathTokens[i + 5]) != 0;
-        double endX = cx + PApplet.parseDouble(pathTokens[i + 6]);
-        double endY = cy + PApplet.parseDouble(pathTokens[i + 7]);
+        double rx = lexer.nextNumber();
+        double ry = lexer.nextNumber();
+        double angle = lexer.nextNumber();
+        boolean fa = lexer.nextFlag();
+        boolean fs = lexer.nextFlag();
+        double endX = cx + lexer.nextNumber();
+        double endY = cy + lexer.nextNumber();
         parsePathArcto(cx, cy, rx, ry, angle, fa, fs, endX, endY);
         cx = endX;
         cy = endY;
-        i += 8;
         prevCurve = true;
       }
       break;
@@ -908,23 +930,95 @@ public class PShapeSVG extends PShape {
         cx = movetoX;
         cy = movetoY;
         close = true;
-        i++;
+        implicitCommand = '\0';
         break;
 
       default:
-        String parsed =
-          PApplet.join(PApplet.subset(pathTokens, 0, i), ",");
-        String unparsed =
-          PApplet.join(PApplet.subset(pathTokens, i), ",");
-        System.err.println("parsed: " + parsed);
-        System.err.println("unparsed: " + unparsed);
-        throw new RuntimeException("shape command not handled: " + pathTokens[i]);
+        System.err.println("parsed: " + lexer.parsed());
+        System.err.println("unparsed: " + lexer.unparsed());
+        throw new RuntimeException("shape command not handled: " + c);
       }
 //      prevCommand = c;
     }
   }
 
 
+  // Reads the numbers and commands of the path data in a single pass,
+  // without splitting it into strings. Numbers follow the SVG grammar, so
+  // that "1-2" or "0.5.5" are two numbers each, and are converted exactly
+  // by PNumberParser.
+  static class PathLexer {
+    String data;
+    int pos;
+    PNumberParser numbers = new PNumberParser();
+
+    PathLexer(String data) {
+      this.data = data;
+    }
+
+    // Skips whitespace and commas, returns false at the end of the data.
+    boolean skipSeparators() {
+      while (pos < data.length()) {
+        char c = data.charAt(pos);
+        if (c == ',' || WHITESPACE.indexOf(c) != -1) {
+          pos++;
+        } else {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    boolean atNumber() {
+      char c = data.charAt(pos);
+      return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.';
+    }
+
+    char nextCommand() {
+      return data.charAt(pos++);
+    }
+
+    // Arc flags are single digits, and can be written without separators.
+    boolean nextFlag() {
+      skipSeparators();
+      if (pos < data.length() &&
+          (data.charAt(pos) == '0' || data.charAt(pos) == '1')) {
+        return data.charAt(pos++) == '1';
+      }
+      return nextNumber() != 0;
+    }
+
+    double nextNumber() {
+      if (!skipSeparators() || !atNumber()) {
+        throw new RuntimeException("Missing number in path data after: " +
+                                   parsed());
+      }
+      double value = numbers.parse(data, pos, data.length());
+      if (numbers.end() == pos) {
+        // A sign or a dot without digits
+        int end = pos;
+        while (end < data.length() && data.charAt(end) != ',' &&
+               WHITESPACE.indexOf(data.charAt(end)) == -1) {
+          end++;
+        }
+        throw new RuntimeException("Invalid number \"" +
+                                   data.substring(pos, end) +
+                                   "\" in path data after: " + parsed());
+      }
+      pos = numbers.end();
+      return value;
+    }
+
+    String parsed() {
+      return data.substring(0, pos);
+    }
+
+    String unparsed() {
+      return data.substring(pos);
+    }
+  }
+
+
 //      private void parsePathCheck(int num) {
 //        if (vertexCount + num-1 >= vertices.length) {
 //          //vertices = (double[][]) PApplet.expand(vertices);
@@ -1117,9 +1211,27 @@ public class PShapeSVG extends PShape {
   }
 
 
+  /**
+   * Same as parseTransform(), but reuses the result when the same transform
+   * text was already seen in this file. Returns a copy that can be modified.
+   */
+  protected PMatrix2D cachedTransform(String matrixStr) {
+    if (parseCache == null) {
+      return parseTransform(matrixStr);
+    }
+    PMatrix2D m = parseCache.transforms.get(matrixStr);
+    if (m == null) {
+      m = parseTransform(matrixStr);
+      if (m == null) return null;
+      parseCache.transforms.put(matrixStr, m);
+    }
+    return m.get();
+  }
+
+
   static protected PMatrix2D parseSingleTransform(String matrixStr) {
     //String[] pieces = PApplet.match(matrixStr, "^\\s*(\\w+)\\((.*)\\)\\s*$");
-    String[] pieces = PApplet.match(matrixStr, "[,\\s]*(\\w+)\\((.*)\\)");
+    String[] pieces = match(SINGLE_TRANSFORM, matrixStr);
     if (pieces == null) {
       System.err.println("Could not parse transform " + matrixStr);
       return null;
@@ -1210,15 +1322,8 @@ public class PShapeSVG extends PShape {
 
     if (properties.hasAttribute("style")) {
       String styleText = properties.getString("style");
-      String[] styleTokens = PApplet.splitTokens(styleText, ";");
-
-      //PApplet.println(styleTokens);
-      for (int i = 0; i < styleTokens.length; i++) {
-        String[] tokens = PApplet.splitTokens(styleTokens[i], ":");
-        //PApplet.println(tokens);
-
-        tokens[0] = PApplet.trim(tokens[0]);
 
+      for (String[] tokens : cachedStyle(styleText)) {
         if (tokens[0].equals("fill")) {
           setColor(tokens[1], true);
 
@@ -1251,6 +1356,30 @@ public class PShapeSVG extends PShape {
   }
 
 
+  /**
+   * Splits a style attribute into name/value pairs, with the names trimmed.
+   * The same text is only split once per file, so the arrays are shared and
+   * must not be modified.
+   */
+  protected String[][] cachedStyle(String styleText) {
+    String[][] pairs = (parseCache == null) ?
+      null : parseCache.styles.get(styleText);
+    if (pairs == null) {
+      String[] styleTokens = PApplet.splitTokens(styleText, ";");
+      pairs = new String[styleTokens.length][];
+      for (int i = 0; i < styleTokens.length; i++) {
+        String[] tokens = PApplet.splitTokens(styleTokens[i], ":");
+        tokens[0] = PApplet.trim(tokens[0]);
+        pairs[i] = tokens;
+      }
+      if (parseCache != null) {
+        parseCache.styles.put(styleText, pairs);
+      }
+    }
+    return pairs;
+  }
+
+
   void setOpacity(String opacityText) {
     opacity = PApplet.parseDouble(opacityText);
     strokeColor = ((int) (opacity * 255)) << 24 | strokeColor & 0xFFFFFF;
@@ -1331,7 +1460,7 @@ public class PShapeSVG extends PShape {
       }
     } else {
       // Prints errors itself.
-      color = opacityMask | parseSimpleColor(colorText);
+      color = opacityMask | cachedColor(colorText);
     }
     if (isFill) {
       fill = visible;
@@ -1349,6 +1478,23 @@ public class PShapeSVG extends PShape {
   }
 
 
+  /**
+   * Same as parseSimpleColor(), but reuses the result when the same color
+   * text was already seen in this file.
+   */
+  protected int cachedColor(String colorText) {
+    if (parseCache == null) {
+      return parseSimpleColor(colorText);
+    }
+    Integer color = parseCache.colors.get(colorText);
+    if (color == null) {
+      color = parseSimpleColor(colorText);
+      parseCache.colors.put(colorText, color);
+    }
+    return color;
+  }
+
+
   /**
    * Parses the "color" datatype only, and prints an error if it is not of this form.
    * http://www.w3.org/TR/SVG/types.html#DataTypeColor
@@ -1526,6 +1672,45 @@ public class PShapeSVG extends PShape {
   }
 
 
+  /**
+   * Same as PApplet.match(), but with a pattern compiled up front. The
+   * pattern cache in PApplet is not safe to use from several threads.
+   */
+  static protected String[] match(Pattern p, String str) {
+    Matcher m = p.matcher(str);
+    if (m.find()) {
+      int count = m.groupCount() + 1;
+      String[] groups = new String[count];
+      for (int i = 0; i < count; i++) {
+        groups[i] = m.group(i);
+      }
+      return groups;
+    }
+    return null;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Results of parsing transform, style and color text, keyed by the text.
+   * Files exported from drawing tools tend to repeat the same few values
+   * on thousands of elements.
+   */
+  static class ParseCache {
+    final Map<String, PMatrix2D> transforms = new ConcurrentHashMap<>();
+    final Map<String, String[][]> styles = new ConcurrentHashMap<>();
+    final Map<String, Integer> colors = new ConcurrentHashMap<>();
+
+    void clear() {
+      transforms.clear();
+      styles.clear();
+      colors.clear();
+    }
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -376,6 +376,12 @@ public class PSurfaceNone implements PSurface {
         // separate thread, meaning that the next frame will start
         // before the update/paint is completed
 
+        if (sketch.headless && sketch.looping) {
+          // Drawing offline (--headless), time is simulated by the sketch
+          // so there's no reason to wait for the next frame.
+          continue;
+        }
+
         long afterTime = System.nanoTime();
         long timeDiff = afterTime - beforeTime;
         //System.out.println("time diff is " + timeDiff);
@@ -400,6 +406,10 @@ public class PSurfaceNone implements PSurface {
         }
 
         beforeTime = System.nanoTime();
+        PFrameStats stats = sketch.frameStats;
+        if (stats != null) {
+          stats.record(PFrameStats.SLEEP, beforeTime - afterTime);
+        }
       }
 
       sketch.dispose();  // call to shutdown libs?
@@ -0,0 +1,481 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * A batch of vectors stored as three arrays, one per component, instead of
+ * an array of <b>PVector</b> objects. Millions of particles fit in a few
+ * large arrays, and each of the operations below is a plain loop over them
+ * with no allocation, which the JIT can turn into SIMD code.
+ * <p>
+ * Like <b>PVector</b>, the operations change the buffer itself and return
+ * it, so they can be chained: <b>pos.add(vel, dt).transform(m)</b>. The
+ * operations that take another buffer work element by element, and need it
+ * to have at least as many vectors.
+ * <p>
+ * A <b>PVector</b> can't be a live view into the arrays, so to use the
+ * existing <b>PVector</b> methods, copy an element out with
+ * <b>get(i, target)</b> and back in with <b>set(i, vector)</b>.
+ * <p>
+ * With <b>setParallel(true)</b>, large buffers are split across the
+ * fork-join pool.
+ *
+ * @see PVector
+ */
+public class PVectorBuffer {
+  /** Buffers smaller than this are always processed on one thread. */
+  static final int MIN_PARALLEL_COUNT = 1 << 16;
+  /** Smallest range handed to a single task. */
+  static final int PARALLEL_GRAIN = 1 << 14;
+
+  /** The components, valid up to size(). */
+  public double[] x;
+  public double[] y;
+  public double[] z;
+
+  protected int count;
+  protected boolean parallel;
+
+
+  public PVectorBuffer(int count) {
+    this.count = count;
+    x = new double[count];
+    y = new double[count];
+    z = new double[count];
+  }
+
+
+  /** Copies the vectors into a new buffer. */
+  public PVectorBuffer(PVector[] source) {
+    this(source.length);
+    for (int i = 0; i < count; i++) {
+      x[i] = source[i].x;
+      y[i] = source[i].y;
+      z[i] = source[i].z;
+    }
+  }
+
+
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Changes the number of vectors. The ones that are kept keep their value,
+   * new ones are zero.
+   */
+  public void resize(int count) {
+    if (count > x.length) {
+      int length = Math.max(count, x.length << 1);
+      x = PApplet.expand(x, length);
+      y = PApplet.expand(y, length);
+      z = PApplet.expand(z, length);
+    } else if (count < this.count) {
+      Arrays.fill(x, count, this.count, 0);
+      Arrays.fill(y, count, this.count, 0);
+      Arrays.fill(z, count, this.count, 0);
+    }
+    this.count = count;
+  }
+
+
+  /**
+   * Split the operations on large buffers across the fork-join pool. Only
+   * pays off for buffers with hundreds of thousands of vectors.
+   */
+  public void setParallel(boolean parallel) {
+    this.parallel = parallel;
+  }
+
+
+  public boolean isParallel() {
+    return parallel;
+  }
+
+
+  public PVectorBuffer copy() {
+    PVectorBuffer outgoing = new PVectorBuffer(count);
+    System.arraycopy(x, 0, outgoing.x, 0, count);
+    System.arraycopy(y, 0, outgoing.y, 0, count);
+    System.arraycopy(z, 0, outgoing.z, 0, count);
+    outgoing.parallel = parallel;
+    return outgoing;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+  // Single elements, for use with the PVector API
+
+
+  /**
+   * Copies vector i into target, or into a new PVector if target is null.
+   */
+  public PVector get(int i, PVector target) {
+    if (target == null) {
+      target = new PVector();
+    }
+    target.set(x[i], y[i], z[i]);
+    return target;
+  }
+
+
+  public PVector get(int i) {
+    return get(i, null);
+  }
+
+
+  public void set(int i, double x, double y, double z) {
+    this.x[i] = x;
+    this.y[i] = y;
+    this.z[i] = z;
+  }
+
+
+  public void set(int i, double x, double y) {
+    set(i, x, y, 0);
+  }
+
+
+  public void set(int i, PVector v) {
+    set(i, v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Copies all the vectors into target, which needs at least size()
+   * elements. Entries that are null are filled with new vectors.
+   */
+  public PVector[] get(PVector[] target) {
+    if (target == null) {
+      target = new PVector[count];
+    }
+    for (int i = 0; i < count; i++) {
+      target[i] = get(i, target[i]);
+    }
+    return target;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+  // Bulk operations. Each component has its own loop, that's what lets the
+  // JIT vectorize them.
+
+
+  /** Adds v to every vector. */
+  public PVectorBuffer add(double vx, double vy, double vz) {
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) x[i] += vx;
+      for (int i = from; i < to; i++) y[i] += vy;
+      for (int i = from; i < to; i++) z[i] += vz;
+    });
+    return this;
+  }
+
+
+  /** Adds each vector of v to the vector at the same index. */
+  public PVectorBuffer add(PVectorBuffer v) {
+    checkSize(v);
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      double[] vx = v.x, vy = v.y, vz = v.z;
+      for (int i = from; i < to; i++) x[i] += vx[i];
+      for (int i = from; i < to; i++) y[i] += vy[i];
+      for (int i = from; i < to; i++) z[i] += vz[i];
+    });
+    return this;
+  }
+
+
+  /**
+   * Adds each vector of v times scale, for instance to move positions by
+   * velocities over a time step.
+   */
+  public PVectorBuffer add(PVectorBuffer v, double scale) {
+    checkSize(v);
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      double[] vx = v.x, vy = v.y, vz = v.z;
+      for (int i = from; i < to; i++) x[i] += vx[i] * scale;
+      for (int i = from; i < to; i++) y[i] += vy[i] * scale;
+      for (int i = from; i < to; i++) z[i] += vz[i] * scale;
+    });
+    return this;
+  }
+
+
+  public PVectorBuffer sub(double vx, double vy, double vz) {
+    return add(-vx, -vy, -vz);
+  }
+
+
+  public PVectorBuffer sub(PVectorBuffer v) {
+    checkSize(v);
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      double[] vx = v.x, vy = v.y, vz = v.z;
+      for (int i = from; i < to; i++) x[i] -= vx[i];
+      for (int i = from; i < to; i++) y[i] -= vy[i];
+      for (int i = from; i < to; i++) z[i] -= vz[i];
+    });
+    return this;
+  }
+
+
+  public PVectorBuffer mult(double n) {
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) x[i] *= n;
+      for (int i = from; i < to; i++) y[i] *= n;
+      for (int i = from; i < to; i++) z[i] *= n;
+    });
+    return this;
+  }
+
+
+  public PVectorBuffer div(double n) {
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) x[i] /= n;
+      for (int i = from; i < to; i++) y[i] /= n;
+      for (int i = from; i < to; i++) z[i] /= n;
+    });
+    return this;
+  }
+
+
+  /**
+   * Makes every vector unit length, leaving zero vectors as they are.
+   * Same results as calling PVector.normalize() on each one.
+   */
+  public PVectorBuffer normalize() {
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) {
+        double m = Math.sqrt(x[i]*x[i] + y[i]*y[i] + z[i]*z[i]);
+        double d = (m == 0) ? 1 : m;
+        x[i] /= d;
+        y[i] /= d;
+        z[i] /= d;
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Shortens the vectors longer than max down to max.
+   * Same results as calling PVector.limit() on each one.
+   */
+  public PVectorBuffer limit(double max) {
+    double maxSq = max * max;
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) {
+        double sq = x[i]*x[i] + y[i]*y[i] + z[i]*z[i];
+        if (sq > maxSq) {
+          double m = Math.sqrt(sq);
+          x[i] = x[i] / m * max;
+          y[i] = y[i] / m * max;
+          z[i] = z[i] / m * max;
+        }
+      }
+    });
+    return this;
+  }
+
+
+  /** Moves each vector amt of the way toward the same one in v. */
+  public PVectorBuffer lerp(PVectorBuffer v, double amt) {
+    checkSize(v);
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      double[] vx = v.x, vy = v.y, vz = v.z;
+      for (int i = from; i < to; i++) x[i] += (vx[i] - x[i]) * amt;
+      for (int i = from; i < to; i++) y[i] += (vy[i] - y[i]) * amt;
+      for (int i = from; i < to; i++) z[i] += (vz[i] - z[i]) * amt;
+    });
+    return this;
+  }
+
+
+  /**
+   * Rotates the x and y components by theta, like PVector.rotate().
+   */
+  public PVectorBuffer rotate(double theta) {
+    double c = Math.cos(theta);
+    double s = Math.sin(theta);
+    run((from, to) -> {
+      double[] x = this.x, y = this.y;
+      for (int i = from; i < to; i++) {
+        double vx = x[i];
+        double vy = y[i];
+        x[i] = vx*c - vy*s;
+        y[i] = vx*s + vy*c;
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Multiplies the x and y components by the matrix, like
+   * PMatrix2D.mult(PVector, PVector). The z components are not changed.
+   */
+  public PVectorBuffer transform(PMatrix2D m) {
+    double m00 = m.m00, m01 = m.m01, m02 = m.m02;
+    double m10 = m.m10, m11 = m.m11, m12 = m.m12;
+    run((from, to) -> {
+      double[] x = this.x, y = this.y;
+      for (int i = from; i < to; i++) {
+        double vx = x[i];
+        double vy = y[i];
+        x[i] = m00*vx + m01*vy + m02;
+        y[i] = m10*vx + m11*vy + m12;
+      }
+    });
+    return this;
+  }
+
+
+  /**
+   * Multiplies the vectors by the matrix, like
+   * PMatrix3D.mult(PVector, PVector).
+   */
+  public PVectorBuffer transform(PMatrix3D m) {
+    double m00 = m.m00, m01 = m.m01, m02 = m.m02, m03 = m.m03;
+    double m10 = m.m10, m11 = m.m11, m12 = m.m12, m13 = m.m13;
+    double m20 = m.m20, m21 = m.m21, m22 = m.m22, m23 = m.m23;
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) {
+        double vx = x[i];
+        double vy = y[i];
+        double vz = z[i];
+        x[i] = m00*vx + m01*vy + m02*vz + m03;
+        y[i] = m10*vx + m11*vy + m12*vz + m13;
+        z[i] = m20*vx + m21*vy + m22*vz + m23;
+      }
+    });
+    return this;
+  }
+
+
+  public PVectorBuffer transform(PMatrix m) {
+    if (m instanceof PMatrix2D) {
+      return transform((PMatrix2D) m);
+    }
+    return transform((PMatrix3D) m);
+  }
+
+
+  /**
+   * Writes the magnitude of each vector into target, or a new array if
+   * target is null or too short.
+   */
+  public double[] mag(double[] target) {
+    if (target == null || target.length < count) {
+      target = new double[count];
+    }
+    double[] mags = target;
+    run((from, to) -> {
+      double[] x = this.x, y = this.y, z = this.z;
+      for (int i = from; i < to; i++) {
+        mags[i] = Math.sqrt(x[i]*x[i] + y[i]*y[i] + z[i]*z[i]);
+      }
+    });
+    return target;
+  }
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  protected void checkSize(PVectorBuffer v) {
+    if (v.count < count) {
+      throw new IllegalArgumentException("The other buffer has " + v.count +
+                                         " vectors, " + count + " are needed");
+    }
+  }
+
+
+  /** Body of a bulk operation, over the vectors from (inclusive) to to. */
+  protected interface Range {
+    void run(int from, int to);
+  }
+
+
+  protected void run(Range range) {
+    run(range, count, parallel);
+  }
+
+
+  /**
+   * Runs range over 0 to count, split across the fork-join pool if parallel
+   * is set and there is enough work. Also used by the batched transforms in
+   * <b>PMatrix2D</b> and <b>PMatrix3D</b>.
+   */
+  static void run(Range range, int count, boolean parallel) {
+    if (parallel && count >= MIN_PARALLEL_COUNT &&
+        ForkJoinPool.getCommonPoolParallelism() > 1) {
+      ForkJoinPool.commonPool().invoke(new RangeTask(range, 0, count));
+    } else {
+      range.run(0, count);
+    }
+  }
+
+
+  // Tasks are never serialized, the range is transient only because
+  // RecursiveAction is Serializable.
+  static class RangeTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    final transient Range range;
+    final int from, to;
+
+    RangeTask(Range range, int from, int to) {
+      this.range = range;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= PARALLEL_GRAIN) {
+        range.run(from, to);
+      } else {
+        int mid = (from + to) >>> 1;
+        invokeAll(new RangeTask(range, from, mid),
+                  new RangeTask(range, mid, to));
+      }
+    }
+  }
+}
@@ -0,0 +1,300 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+import java.util.Arrays;
+
+
+/**
+ * A uniform grid over 2D or 3D points, with the cells kept in a hash table
+ * so that only cells with points in them use memory. Works best when the
+ * cell size is close to the radius of the typical query. Unlike the
+ * <b>KDTree</b>, moving a point with <b>update()</b> costs the same no
+ * matter how far it goes, so this is the better choice for particles.
+ *
+ * @see KDTree
+ */
+public final class HashGrid extends PointIndex {
+  protected double cellSize;
+  protected double inverse;
+
+  // Each bucket of the table is a doubly linked list of points. Different
+  // cells can share a bucket, so points are checked against the cell.
+  protected int mask;
+  protected int[] head = new int[0];
+  protected int[] next = new int[0];
+  protected int[] prev = new int[0];
+  protected int[] bucketOf = new int[0];
+
+
+  public HashGrid(int dimensions, double cellSize) {
+    super(dimensions);
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("The cell size must be positive");
+    }
+    this.cellSize = cellSize;
+    this.inverse = 1 / cellSize;
+  }
+
+
+  public HashGrid(double[] coords, int count, int dimensions, double cellSize) {
+    this(dimensions, cellSize);
+    set(coords, count);
+  }
+
+
+  public double getCellSize() {
+    return cellSize;
+  }
+
+
+  /** Changes the cell size and rebuilds the grid. */
+  public void setCellSize(double cellSize) {
+    if (!(cellSize > 0)) {
+      throw new IllegalArgumentException("The cell size must be positive");
+    }
+    this.cellSize = cellSize;
+    this.inverse = 1 / cellSize;
+    rebuild();
+  }
+
+
+  @Override
+  public void rebuild() {
+    int buckets = 16;
+    while (buckets < count) buckets <<= 1;
+    if (head.length != buckets) {
+      head = new int[buckets];
+    }
+    mask = buckets - 1;
+    Arrays.fill(head, -1);
+    if (next.length < count) {
+      next = new int[count];
+      prev = new int[count];
+      bucketOf = new int[count];
+    }
+    // Added backwards so that each bucket lists its points in order.
+    for (int i = count - 1; i >= 0; i--) {
+      link(i, bucket(i));
+    }
+  }
+
+
+  @Override
+  protected void moved(int index) {
+    int b = bucket(index);
+    if (b != bucketOf[index]) {
+      unlink(index);
+      link(index, b);
+    }
+  }
+
+
+  protected void link(int index, int b) {
+    int h = head[b];
+    next[index] = h;
+    prev[index] = -1;
+    if (h != -1) prev[h] = index;
+    head[b] = index;
+    bucketOf[index] = b;
+  }
+
+
+  protected void unlink(int index) {
+    int p = prev[index];
+    int n = next[index];
+    if (p != -1) {
+      next[p] = n;
+    } else {
+      head[bucketOf[index]] = n;
+    }
+    if (n != -1) prev[n] = p;
+  }
+
+
+  protected int cell(double v) {
+    return (int) Math.floor(v * inverse);
+  }
+
+
+  protected int hash(int cx, int cy, int cz) {
+    int h = cx * 73856093 ^ cy * 19349663 ^ cz * 83492791;
+    return (h ^ (h >>> 16)) & mask;
+  }
+
+
+  protected int bucket(int index) {
+    int c = dimensions * index;
+    int cz = (dimensions == 3) ? cell(coords[c + 2]) : 0;
+    return hash(cell(coords[c]), cell(coords[c + 1]), cz);
+  }
+
+
+  protected boolean inCell(int index, int cx, int cy, int cz) {
+    int c = dimensions * index;
+    return cell(coords[c]) == cx && cell(coords[c + 1]) == cy &&
+      (dimensions == 2 || cell(coords[c + 2]) == cz);
+  }
+
+
+  /**
+   * Whether looking up the cells from x0, y0, z0 to x1, y1, z1 one by one
+   * would take longer than going through every point.
+   */
+  protected boolean tooManyCells(int x0, int y0, int z0,
+                                 int x1, int y1, int z1) {
+    double cells = ((double) x1 - x0 + 1) * ((double) y1 - y0 + 1) *
+      ((double) z1 - z0 + 1);
+    return cells > count;
+  }
+
+
+  @Override
+  protected void findNearest(double x, double y, double z) {
+    int cx = cell(x);
+    int cy = cell(y);
+    int cz = (dimensions == 3) ? cell(z) : 0;
+    int depth = (dimensions == 3) ? 1 : 0;
+
+    // Search shells of cells around the one holding the point. After
+    // shell s, anything not seen yet is at least s cells away.
+    int seen = 0;
+    for (int s = 0; seen < count; s++) {
+      if (tooManyCells(cx - s, cy - s, cz - s*depth,
+                       cx + s, cy + s, cz + s*depth)) {
+        // Far out from most of the points, just check all of them
+        // (starting over, so that none is offered twice).
+        heapSize = 0;
+        for (int i = 0; i < count; i++) {
+          double dsq = distSq(i, x, y, z);
+          if (dsq < worstNearest()) offerNearest(i, dsq);
+        }
+        return;
+      }
+      for (int dz = -s*depth; dz <= s*depth; dz++) {
+        boolean zEdge = (dz == -s || dz == s);
+        for (int dy = -s; dy <= s; dy++) {
+          boolean yEdge = zEdge || dy == -s || dy == s;
+          // Inside the shell only the first and last cells of a row are new
+          int step = yEdge ? 1 : Math.max(1, 2*s);
+          for (int dx = -s; dx <= s; dx += step) {
+            seen += nearestInCell(cx + dx, cy + dy, cz + dz, x, y, z);
+          }
+        }
+      }
+      double reach = s * cellSize;
+      if (heapSize == heapLimit && heapDist[0] <= reach * reach) return;
+    }
+  }
+
+
+  protected int nearestInCell(int cx, int cy, int cz,
+                              double x, double y, double z) {
+    int found = 0;
+    for (int i = head[hash(cx, cy, cz)]; i != -1; i = next[i]) {
+      if (inCell(i, cx, cy, cz)) {
+        found++;
+        double dsq = distSq(i, x, y, z);
+        if (dsq < worstNearest()) offerNearest(i, dsq);
+      }
+    }
+    return found;
+  }
+
+
+  @Override
+  protected void findWithinRadius(double x, double y, double z,
+                                  double radius, IntList result) {
+    double rsq = radius * radius;
+    int x0 = cell(x - radius), x1 = cell(x + radius);
+    int y0 = cell(y - radius), y1 = cell(y + radius);
+    int z0 = 0, z1 = 0;
+    if (dimensions == 3) {
+      z0 = cell(z - radius);
+      z1 = cell(z + radius);
+    }
+    if (tooManyCells(x0, y0, z0, x1, y1, z1)) {
+      for (int i = 0; i < count; i++) {
+        if (distSq(i, x, y, z) <= rsq) result.append(i);
+      }
+      return;
+    }
+    for (int cz = z0; cz <= z1; cz++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        for (int cx = x0; cx <= x1; cx++) {
+          for (int i = head[hash(cx, cy, cz)]; i != -1; i = next[i]) {
+            if (inCell(i, cx, cy, cz) && distSq(i, x, y, z) <= rsq) {
+              result.append(i);
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  @Override
+  protected void findWithinBox(double minX, double minY, double minZ,
+                               double maxX, double maxY, double maxZ,
+                               IntList result) {
+    if (minX > maxX || minY > maxY || minZ > maxZ) return;
+    int x0 = cell(minX), x1 = cell(maxX);
+    int y0 = cell(minY), y1 = cell(maxY);
+    int z0 = 0, z1 = 0;
+    if (dimensions == 3) {
+      z0 = cell(minZ);
+      z1 = cell(maxZ);
+    }
+    if (tooManyCells(x0, y0, z0, x1, y1, z1)) {
+      for (int i = 0; i < count; i++) {
+        if (inBox(i, minX, minY, minZ, maxX, maxY, maxZ)) result.append(i);
+      }
+      return;
+    }
+    for (int cz = z0; cz <= z1; cz++) {
+      for (int cy = y0; cy <= y1; cy++) {
+        for (int cx = x0; cx <= x1; cx++) {
+          for (int i = head[hash(cx, cy, cz)]; i != -1; i = next[i]) {
+            if (inCell(i, cx, cy, cz) &&
+                inBox(i, minX, minY, minZ, maxX, maxY, maxZ)) {
+              result.append(i);
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  protected boolean inBox(int index,
+                          double minX, double minY, double minZ,
+                          double maxX, double maxY, double maxZ) {
+    int c = dimensions * index;
+    double x = coords[c];
+    double y = coords[c + 1];
+    if (x < minX || x > maxX || y < minY || y > maxY) return false;
+    if (dimensions == 2) return true;
+    double z = coords[c + 2];
+    return minZ <= z && z <= maxZ;
+  }
+}
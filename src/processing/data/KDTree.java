@@ -0,0 +1,303 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+
+/**
+ * A k-d tree over 2D or 3D points, for nearest neighbour, radius and box
+ * queries in roughly logarithmic time. Each node keeps the bounding box of
+ * its points. Moving a point with <b>update()</b> only grows the boxes
+ * above it, so the tree stays correct but gets slower to search as points
+ * drift; once as many updates have been made as there are points, the tree
+ * is rebuilt before the next query. When most of the points move every
+ * frame, calling <b>set()</b> once is cheaper.
+ *
+ * @see HashGrid
+ */
+public final class KDTree extends PointIndex {
+  /** Maximum number of points in a leaf. */
+  static final int LEAF_SIZE = 8;
+
+  /** Point indices, each leaf covers a range of them. */
+  protected int[] order = new int[0];
+  /** Leaf that holds each point. */
+  protected int[] leafOf = new int[0];
+
+  // Nodes are stored depth first, so the left child of a node is the next
+  // one. Leaves have a non-zero size.
+  protected int nodeCount;
+  protected double[] box = new double[0];  // min x, y, z, max x, y, z
+  protected int[] first = new int[0];
+  protected int[] size = new int[0];
+  protected int[] right = new int[0];
+  protected int[] parent = new int[0];
+
+  protected int updates;
+
+
+  public KDTree(int dimensions) {
+    super(dimensions);
+  }
+
+
+  public KDTree(double[] coords, int count, int dimensions) {
+    super(dimensions);
+    set(coords, count);
+  }
+
+
+  @Override
+  public void rebuild() {
+    updates = 0;
+    if (order.length < count) {
+      order = new int[count];
+      leafOf = new int[count];
+    }
+    for (int i = 0; i < count; i++) {
+      order[i] = i;
+    }
+    // Leaves that come from a split hold at least half of LEAF_SIZE points
+    int maxNodes = 2 * (count / (LEAF_SIZE / 2) + 1);
+    if (first.length < maxNodes) {
+      box = new double[6 * maxNodes];
+      first = new int[maxNodes];
+      size = new int[maxNodes];
+      right = new int[maxNodes];
+      parent = new int[maxNodes];
+    }
+    nodeCount = 0;
+    if (count > 0) build(0, count, -1);
+  }
+
+
+  @Override
+  protected void moved(int index) {
+    // Grow the boxes up from the leaf until one already holds the point.
+    int c = dimensions * index;
+    for (int node = leafOf[index]; node != -1; node = parent[node]) {
+      int b = 6 * node;
+      boolean grown = false;
+      for (int axis = 0; axis < dimensions; axis++) {
+        double v = coords[c + axis];
+        if (v < box[b + axis]) {
+          box[b + axis] = v;
+          grown = true;
+        }
+        if (v > box[b + 3 + axis]) {
+          box[b + 3 + axis] = v;
+          grown = true;
+        }
+      }
+      if (!grown) break;
+    }
+    updates++;
+  }
+
+
+  protected void checkUpdates() {
+    if (updates > count) rebuild();
+  }
+
+
+  protected int build(int lo, int hi, int up) {
+    int node = nodeCount++;
+    parent[node] = up;
+    int b = 6 * node;
+    for (int axis = 0; axis < 3; axis++) {
+      box[b + axis] = Double.POSITIVE_INFINITY;
+      box[b + 3 + axis] = Double.NEGATIVE_INFINITY;
+    }
+    if (dimensions == 2) {
+      box[b + 2] = box[b + 5] = 0;
+    }
+    for (int k = lo; k < hi; k++) {
+      int c = dimensions * order[k];
+      for (int axis = 0; axis < dimensions; axis++) {
+        double v = coords[c + axis];
+        if (v < box[b + axis]) box[b + axis] = v;
+        if (v > box[b + 3 + axis]) box[b + 3 + axis] = v;
+      }
+    }
+
+    if (hi - lo <= LEAF_SIZE) {
+      first[node] = lo;
+      size[node] = hi - lo;
+      for (int k = lo; k < hi; k++) {
+        leafOf[order[k]] = node;
+      }
+      return node;
+    }
+
+    int axis = 0;
+    double widest = box[b + 3] - box[b];
+    for (int a = 1; a < dimensions; a++) {
+      double extent = box[b + 3 + a] - box[b + a];
+      if (extent > widest) {
+        widest = extent;
+        axis = a;
+      }
+    }
+    int mid = (lo + hi) >>> 1;
+    select(lo, hi - 1, mid, axis);
+    size[node] = 0;
+    build(lo, mid, node);
+    right[node] = build(mid, hi, node);
+    return node;
+  }
+
+
+  /**
+   * Partially sorts order[lo, hi] along axis so that the k-th point is in
+   * place, with nothing larger before it and nothing smaller after it.
+   */
+  protected void select(int lo, int hi, int k, int axis) {
+    while (lo < hi) {
+      double pivot = coords[dimensions * order[(lo + hi) >>> 1] + axis];
+      int i = lo;
+      int j = hi;
+      while (i <= j) {
+        while (coords[dimensions * order[i] + axis] < pivot) i++;
+        while (coords[dimensions * order[j] + axis] > pivot) j--;
+        if (i <= j) {
+          int temp = order[i];
+          order[i] = order[j];
+          order[j] = temp;
+          i++;
+          j--;
+        }
+      }
+      if (k <= j) {
+        hi = j;
+      } else if (k >= i) {
+        lo = i;
+      } else {
+        return;
+      }
+    }
+  }
+
+
+  /** Squared distance from a point to the box of a node, 0 if inside. */
+  protected double boxDistSq(int node, double x, double y, double z) {
+    int b = 6 * node;
+    double dx = Math.max(0, Math.max(box[b] - x, x - box[b + 3]));
+    double dy = Math.max(0, Math.max(box[b + 1] - y, y - box[b + 4]));
+    if (dimensions == 2) {
+      return dx*dx + dy*dy;
+    }
+    double dz = Math.max(0, Math.max(box[b + 2] - z, z - box[b + 5]));
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+
+  @Override
+  protected void findNearest(double x, double y, double z) {
+    checkUpdates();
+    nearestNode(0, x, y, z);
+  }
+
+
+  protected void nearestNode(int node, double x, double y, double z) {
+    if (size[node] > 0) {
+      for (int k = first[node], stop = k + size[node]; k < stop; k++) {
+        int index = order[k];
+        double dsq = distSq(index, x, y, z);
+        if (dsq < worstNearest()) offerNearest(index, dsq);
+      }
+      return;
+    }
+    // Closer child first, the other one is often pruned afterwards.
+    int left = node + 1;
+    int other = right[node];
+    double leftDist = boxDistSq(left, x, y, z);
+    double rightDist = boxDistSq(other, x, y, z);
+    if (rightDist < leftDist) {
+      if (rightDist < worstNearest()) nearestNode(other, x, y, z);
+      if (leftDist < worstNearest()) nearestNode(left, x, y, z);
+    } else {
+      if (leftDist < worstNearest()) nearestNode(left, x, y, z);
+      if (rightDist < worstNearest()) nearestNode(other, x, y, z);
+    }
+  }
+
+
+  @Override
+  protected void findWithinRadius(double x, double y, double z,
+                                  double radius, IntList result) {
+    checkUpdates();
+    radiusNode(0, x, y, z, radius * radius, result);
+  }
+
+
+  protected void radiusNode(int node, double x, double y, double z,
+                            double rsq, IntList result) {
+    if (boxDistSq(node, x, y, z) > rsq) return;
+    if (size[node] > 0) {
+      for (int k = first[node], stop = k + size[node]; k < stop; k++) {
+        int index = order[k];
+        if (distSq(index, x, y, z) <= rsq) result.append(index);
+      }
+      return;
+    }
+    radiusNode(node + 1, x, y, z, rsq, result);
+    radiusNode(right[node], x, y, z, rsq, result);
+  }
+
+
+  @Override
+  protected void findWithinBox(double minX, double minY, double minZ,
+                               double maxX, double maxY, double maxZ,
+                               IntList result) {
+    checkUpdates();
+    boxNode(0, minX, minY, minZ, maxX, maxY, maxZ, result);
+  }
+
+
+  protected void boxNode(int node,
+                         double minX, double minY, double minZ,
+                         double maxX, double maxY, double maxZ,
+                         IntList result) {
+    int b = 6 * node;
+    if (box[b] > maxX || box[b + 3] < minX ||
+        box[b + 1] > maxY || box[b + 4] < minY ||
+        box[b + 2] > maxZ || box[b + 5] < minZ) {
+      return;
+    }
+    if (size[node] > 0) {
+      for (int k = first[node], stop = k + size[node]; k < stop; k++) {
+        int index = order[k];
+        int c = dimensions * index;
+        double x = coords[c];
+        double y = coords[c + 1];
+        double z = (dimensions == 3) ? coords[c + 2] : 0;
+        if (minX <= x && x <= maxX && minY <= y && y <= maxY &&
+            minZ <= z && z <= maxZ) {
+          result.append(index);
+        }
+      }
+      return;
+    }
+    boxNode(node + 1, minX, minY, minZ, maxX, maxY, maxZ, result);
+    boxNode(right[node], minX, minY, minZ, maxX, maxY, maxZ, result);
+  }
+}
@@ -0,0 +1,386 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+import java.util.List;
+
+import processing.core.PVector;
+
+
+/**
+ * Base class for the spatial indices, <b>KDTree</b> and <b>HashGrid</b>.
+ * Points are kept as packed coordinates, x and y (and z in 3D) one point
+ * after the other, and are referred to by their position in that array.
+ * <p>
+ * Queries write the indices they find into an <b>IntList</b>, which is
+ * cleared first, so the same list can be passed every frame without
+ * allocating anything. The queries use some scratch space inside the index,
+ * so one index should not be queried from several threads at once.
+ * <p>
+ * Points that move can be updated one by one with <b>update()</b>, or all
+ * at once with <b>set()</b>, which rebuilds the index.
+ *
+ * @see KDTree
+ * @see HashGrid
+ */
+abstract public class PointIndex {
+  protected int dimensions;
+  protected int count;
+  protected double[] coords;
+
+  // Max-heap of the best candidates during a nearest() query
+  protected int heapLimit;
+  protected int heapSize;
+  protected double[] heapDist = new double[16];
+  protected int[] heapIndex = new int[16];
+
+
+  protected PointIndex(int dimensions) {
+    if (dimensions != 2 && dimensions != 3) {
+      throw new IllegalArgumentException("Only 2 or 3 dimensions are supported");
+    }
+    this.dimensions = dimensions;
+    coords = new double[0];
+  }
+
+
+  /** 2 or 3 */
+  public int dimensions() {
+    return dimensions;
+  }
+
+
+  /** Number of points in the index. */
+  public int size() {
+    return count;
+  }
+
+
+  public double getX(int index) {
+    return coords[dimensions * index];
+  }
+
+
+  public double getY(int index) {
+    return coords[dimensions * index + 1];
+  }
+
+
+  public double getZ(int index) {
+    return (dimensions == 3) ? coords[3 * index + 2] : 0;
+  }
+
+
+  public PVector get(int index, PVector target) {
+    if (target == null) target = new PVector();
+    target.set(getX(index), getY(index), getZ(index));
+    return target;
+  }
+
+
+  /**
+   * Replaces all the points with count points from source, packed as x, y
+   * (or x, y, z) and rebuilds the index.
+   */
+  public void set(double[] source, int count) {
+    if (coords.length < dimensions * count) {
+      coords = new double[dimensions * count];
+    }
+    System.arraycopy(source, 0, coords, 0, dimensions * count);
+    this.count = count;
+    rebuild();
+  }
+
+
+  /**
+   * Replaces all the points and rebuilds the index. Point i of the index
+   * is points[i], but later changes to the vectors are not seen until the
+   * next set() or update().
+   */
+  public void set(PVector[] points) {
+    setCount(points.length);
+    for (int i = 0; i < points.length; i++) {
+      store(i, points[i].x, points[i].y, points[i].z);
+    }
+    rebuild();
+  }
+
+
+  public void set(List<PVector> points) {
+    setCount(points.size());
+    int i = 0;
+    for (PVector p : points) {
+      store(i++, p.x, p.y, p.z);
+    }
+    rebuild();
+  }
+
+
+  /**
+   * Moves one point. Cheaper than rebuilding when only some of the points
+   * move, see the notes in each subclass.
+   */
+  public void update(int index, double x, double y) {
+    update(index, x, y, 0);
+  }
+
+
+  public void update(int index, double x, double y, double z) {
+    if (index < 0 || index >= count) {
+      throw new IndexOutOfBoundsException("Point " + index + " is not in the index");
+    }
+    store(index, x, y, z);
+    moved(index);
+  }
+
+
+  public void update(int index, PVector p) {
+    update(index, p.x, p.y, p.z);
+  }
+
+
+  /** Rebuilds the index from the current coordinates. */
+  abstract public void rebuild();
+
+
+  /** Called after the coordinates of a point changed. */
+  abstract protected void moved(int index);
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  /**
+   * Finds the k points nearest to x, y, z, closest first. Fewer are
+   * returned if the index has less than k points.
+   * @param distances if not null, receives the distance to each point
+   */
+  public void nearest(double x, double y, double z, int k,
+                      IntList result, DoubleList distances) {
+    result.clear();
+    if (distances != null) distances.clear();
+    if (k <= 0 || count == 0) return;
+
+    beginHeap(Math.min(k, count));
+    findNearest(x, y, z);
+    endHeap(result, distances);
+  }
+
+
+  public void nearest(double x, double y, double z, int k, IntList result) {
+    nearest(x, y, z, k, result, null);
+  }
+
+
+  public void nearest(double x, double y, int k, IntList result) {
+    nearest(x, y, 0, k, result, null);
+  }
+
+
+  public void nearest(PVector p, int k, IntList result) {
+    nearest(p.x, p.y, p.z, k, result, null);
+  }
+
+
+  /**
+   * Returns the index of the point nearest to x, y, z, or -1 if the index
+   * is empty.
+   */
+  public int nearest(double x, double y, double z) {
+    if (count == 0) return -1;
+    beginHeap(1);
+    findNearest(x, y, z);
+    return heapIndex[0];
+  }
+
+
+  public int nearest(double x, double y) {
+    return nearest(x, y, 0);
+  }
+
+
+  public int nearest(PVector p) {
+    return nearest(p.x, p.y, p.z);
+  }
+
+
+  /**
+   * Finds all the points within radius of x, y, z (inclusive), in no
+   * particular order.
+   */
+  public void withinRadius(double x, double y, double z, double radius,
+                           IntList result) {
+    result.clear();
+    if (count == 0 || radius < 0) return;
+    findWithinRadius(x, y, z, radius, result);
+  }
+
+
+  public void withinRadius(double x, double y, double radius, IntList result) {
+    withinRadius(x, y, 0, radius, result);
+  }
+
+
+  public void withinRadius(PVector p, double radius, IntList result) {
+    withinRadius(p.x, p.y, p.z, radius, result);
+  }
+
+
+  /**
+   * Finds all the points inside the box (inclusive), in no particular order.
+   */
+  public void withinBox(double minX, double minY, double minZ,
+                        double maxX, double maxY, double maxZ,
+                        IntList result) {
+    result.clear();
+    if (count == 0) return;
+    if (dimensions == 2) {
+      minZ = Double.NEGATIVE_INFINITY;
+      maxZ = Double.POSITIVE_INFINITY;
+    }
+    findWithinBox(minX, minY, minZ, maxX, maxY, maxZ, result);
+  }
+
+
+  /**
+   * Finds all the points inside the rectangle (inclusive), whatever their
+   * z coordinate when the index is 3D.
+   */
+  public void withinBox(double minX, double minY,
+                        double maxX, double maxY, IntList result) {
+    withinBox(minX, minY, Double.NEGATIVE_INFINITY,
+              maxX, maxY, Double.POSITIVE_INFINITY, result);
+  }
+
+
+  /** Offers every candidate to offerNearest(), see beginHeap(). */
+  abstract protected void findNearest(double x, double y, double z);
+
+  abstract protected void findWithinRadius(double x, double y, double z,
+                                           double radius, IntList result);
+
+  abstract protected void findWithinBox(double minX, double minY, double minZ,
+                                        double maxX, double maxY, double maxZ,
+                                        IntList result);
+
+
+  // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
+
+
+  protected void setCount(int count) {
+    if (coords.length < dimensions * count) {
+      coords = new double[dimensions * count];
+    }
+    this.count = count;
+  }
+
+
+  protected void store(int index, double x, double y, double z) {
+    int c = dimensions * index;
+    coords[c] = x;
+    coords[c + 1] = y;
+    if (dimensions == 3) coords[c + 2] = z;
+  }
+
+
+  protected double distSq(int index, double x, double y, double z) {
+    int c = dimensions * index;
+    double dx = coords[c] - x;
+    double dy = coords[c + 1] - y;
+    if (dimensions == 2) {
+      return dx*dx + dy*dy;
+    }
+    double dz = coords[c + 2] - z;
+    return dx*dx + dy*dy + dz*dz;
+  }
+
+
+  protected void beginHeap(int limit) {
+    if (heapDist.length < limit) {
+      heapDist = new double[limit];
+      heapIndex = new int[limit];
+    }
+    heapLimit = limit;
+    heapSize = 0;
+  }
+
+
+  /**
+   * Squared distance a candidate has to beat to be kept, infinite until
+   * there are enough candidates.
+   */
+  protected double worstNearest() {
+    return (heapSize < heapLimit) ? Double.POSITIVE_INFINITY : heapDist[0];
+  }
+
+
+  protected void offerNearest(int index, double dsq) {
+    if (heapSize < heapLimit) {
+      // sift up
+      int i = heapSize++;
+      while (i > 0) {
+        int parent = (i - 1) >> 1;
+        if (heapDist[parent] >= dsq) break;
+        heapDist[i] = heapDist[parent];
+        heapIndex[i] = heapIndex[parent];
+        i = parent;
+      }
+      heapDist[i] = dsq;
+      heapIndex[i] = index;
+
+    } else if (dsq < heapDist[0]) {
+      siftDown(0, heapSize, dsq, index);
+    }
+  }
+
+
+  protected void siftDown(int i, int size, double dsq, int index) {
+    while (true) {
+      int child = 2*i + 1;
+      if (child >= size) break;
+      if (child + 1 < size && heapDist[child + 1] > heapDist[child]) child++;
+      if (heapDist[child] <= dsq) break;
+      heapDist[i] = heapDist[child];
+      heapIndex[i] = heapIndex[child];
+      i = child;
+    }
+    heapDist[i] = dsq;
+    heapIndex[i] = index;
+  }
+
+
+  /** Sorts the heap in place, closest first, and copies it out. */
+  protected void endHeap(IntList result, DoubleList distances) {
+    for (int size = heapSize - 1; size > 0; size--) {
+      double dsq = heapDist[size];
+      int index = heapIndex[size];
+      heapDist[size] = heapDist[0];
+      heapIndex[size] = heapIndex[0];
+      siftDown(0, size, dsq, index);
+    }
+    for (int i = 0; i < heapSize; i++) {
+      result.append(heapIndex[i]);
+      if (distances != null) distances.append(Math.sqrt(heapDist[i]));
+    }
+  }
+}
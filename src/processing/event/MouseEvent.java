@@ -38,6 +38,7 @@ public class MouseEvent extends Event {
   protected int x, y;
   protected int button;
   protected int count;
+  protected int coalesced;
 
 
   public MouseEvent(Object nativeObject,
@@ -82,6 +83,24 @@ public class MouseEvent extends Event {
   }
 
 
+  /**
+   * Number of earlier MOVE or DRAG events that were skipped in favor of
+   * this one, when the sketch has PApplet.coalesceEvents() turned on.
+   */
+  public int getCoalesced() {
+    return coalesced;
+  }
+
+
+  /**
+   * Takes the place of an earlier event of the same kind, which won't be
+   * handled. Used by the sketch's event queue.
+   */
+  public void coalesce(MouseEvent earlier) {
+    coalesced += earlier.coalesced + 1;
+  }
+
+
   private String actionString() {
     switch (action) {
     default:
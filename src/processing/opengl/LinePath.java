@@ -426,82 +426,17 @@ public class LinePath {
   static public LinePath createStrokedPath(LinePath src, double weight,
                                            int caps, int join,
                                            double miterlimit, PMatrix2D transform) {
-    final LinePath dest = new LinePath();
+    LinePath dest = new LinePath();
 
-    strokeTo(src, weight, caps, join, miterlimit, transform, new LineStroker() {
-      @Override
-      public void moveTo(int x0, int y0, int c0) {
-        dest.moveTo(S15_16ToDouble(x0), S15_16ToDouble(y0), c0);
-      }
-
-      @Override
-      public void lineJoin() {
-      }
-
-      @Override
-      public void lineTo(int x1, int y1, int c1) {
-        dest.lineTo(S15_16ToDouble(x1), S15_16ToDouble(y1), c1);
-      }
-
-      @Override
-      public void close() {
-        dest.closePath();
-      }
-
-      @Override
-      public void end() {
-      }
-    });
+    PathStroker stroker = PathStroker.get();
+    stroker.setParameters(weight, caps, join, miterlimit,
+                          transform == null ? identity : transform);
+    stroker.strokeTo(src, dest);
 
     return dest;
   }
 
 
-  private static void strokeTo(LinePath src, double width, int caps, int join,
-                               double miterlimit, PMatrix2D transform,
-                               LineStroker lsink) {
-    lsink = new LineStroker(lsink, DoubleToS15_16(width), caps, join,
-                            DoubleToS15_16(miterlimit),
-                            transform == null ? identity : transform);
-
-    PathIterator pi = src.getPathIterator();
-    pathTo(pi, lsink);
-  }
-
-
-  private static void pathTo(PathIterator pi, LineStroker lsink) {
-    double[] coords = new double[6];
-    while (!pi.isDone()) {
-      int color;
-      switch (pi.currentSegment(coords)) {
-      case SEG_MOVETO:
-        color = ((int)coords[2]<<24) |
-                ((int)coords[3]<<16) |
-                ((int)coords[4]<< 8) |
-                 (int)coords[5];
-        lsink.moveTo(DoubleToS15_16(coords[0]), DoubleToS15_16(coords[1]), color);
-        break;
-      case SEG_LINETO:
-        color = ((int)coords[2]<<24) |
-                ((int)coords[3]<<16) |
-                ((int)coords[4]<< 8) |
-                 (int)coords[5];
-        lsink.lineJoin();
-        lsink.lineTo(DoubleToS15_16(coords[0]), DoubleToS15_16(coords[1]), color);
-        break;
-      case SEG_CLOSE:
-        lsink.lineJoin();
-        lsink.close();
-        break;
-      default:
-        throw new InternalError("unknown flattened segment type");
-      }
-      pi.next();
-    }
-    lsink.end();
-  }
-
-
   /////////////////////////////////////////////////////////////////////////////
   //
   // Utility methods
@@ -29,6 +29,13 @@ package processing.opengl;
 
 import processing.core.PMatrix2D;
 
+/**
+ * Fixed-point (S15.16) stroker from the Pisces renderer.
+ *
+ * @deprecated replaced by {@link PathStroker}, which works in double
+ * precision and is the one used by {@link LinePath#createStrokedPath}.
+ */
+@Deprecated
 public class LineStroker  {
   private LineStroker output;
   private int capStyle;
@@ -98,6 +98,12 @@ public abstract class PGL {
   protected static int MAX_VERTEX_INDEX  = 32767;
   protected static int MAX_VERTEX_INDEX1 = MAX_VERTEX_INDEX + 1;
 
+  /** Maximum index value when 32-bit indices are enabled (see
+   * setIntIndices()). This is only bounded by MAX_VERTEX_INDEX1 having to
+   * fit in an int, so in practice a block is as large as the mesh.
+   */
+  protected static int MAX_INT_VERTEX_INDEX = Integer.MAX_VALUE - 1;
+
   /** Count of tessellated fill, line or point vertices that will
    * trigger a flush in the immediate mode. It doesn't necessarily
    * be equal to MAX_VERTEX_INDEX1, since the number of vertices can
@@ -144,6 +150,13 @@ public abstract class PGL {
   static public boolean bufferStreamingImmediate = false;
   static public boolean bufferStreamingRetained = true;
 
+  /** Whether vertex indices are 32-bit unsigned ints (see setIntIndices()) */
+  static protected boolean intIndices = false;
+
+  /** Set once the first renderer is created, after which the index type
+   * can't change, since drawElements() uses it for all the index buffers. */
+  static protected boolean intIndicesLocked = false;
+
   /** Controls the usage of the buffer data store:
    * https://www.khronos.org/registry/OpenGL-Refpages/gl4/html/glBufferData.xhtml
    * Supported options include STATIC_DRAW, DYNAMIC_DRAW, STREAM_DRAW, and STREAM_READ.
@@ -352,6 +365,10 @@ public abstract class PGL {
     "if using any of the built-in OpenGL renderers. If you are using a contributed " +
     "library, contact the library's developers.";
 
+  protected static final String INT_INDICES_ERROR =
+    "setIntIndices() can only be called before the first OpenGL renderer " +
+    "is created, for example in settings(). The call will be ignored.";
+
   protected static final String DEPTH_READING_NOT_ENABLED_ERROR =
     "Reading depth and stencil values from this multisampled buffer is not enabled. " +
     "You can enable it by calling hint(ENABLE_DEPTH_READING) once. " +
@@ -365,6 +382,8 @@ public abstract class PGL {
   protected static int SIZEOF_SHORT = Short.SIZE / 8;
   protected static int SIZEOF_INT   = Integer.SIZE / 8;
   protected static int SIZEOF_FLOAT = Double.SIZE / 8;
+  // 4 byte floats, used by the relative vertices, see VertexPacker
+  protected static int SIZEOF_SINGLE = Float.SIZE / 8;
   protected static int SIZEOF_BYTE  = Byte.SIZE / 8;
   protected static int SIZEOF_INDEX = SIZEOF_SHORT;
   protected static int INDEX_TYPE   = 0x1403; // GL_UNSIGNED_SHORT
@@ -435,6 +454,7 @@ public abstract class PGL {
 
   public PGL(PGraphicsOpenGL pg) {
     this.graphics = pg;
+    intIndicesLocked = true;
     if (glColorTex == null) {
       glColorFbo = allocateIntBuffer(1);
       glColorTex = allocateIntBuffer(2);
@@ -2440,6 +2460,37 @@ public abstract class PGL {
   }
 
 
+  /**
+   * Enables or disables 32-bit vertex indices. By default indices are 16-bit
+   * unsigned shorts, so the tessellated geometry is split in blocks of at
+   * most MAX_VERTEX_INDEX1 vertices, each one drawn with a separate call and
+   * with the vertices shared between blocks duplicated. With 32-bit indices
+   * a block can hold up to MAX_INT_VERTEX_INDEX + 1 vertices, so large meshes
+   * are drawn with a single call. It has to be called before the first
+   * renderer is created, for example in settings(), since the index buffers
+   * that already exist are not converted. Later calls that would change the
+   * index type print a warning and are ignored.
+   */
+  static public void setIntIndices(boolean enable) {
+    if (enable == intIndices) return;
+    if (intIndicesLocked) {
+      PGraphics.showWarning(INT_INDICES_ERROR);
+      return;
+    }
+    intIndices = enable;
+    if (enable) {
+      SIZEOF_INDEX = SIZEOF_INT;
+      INDEX_TYPE = 0x1405; // GL_UNSIGNED_INT
+      MAX_VERTEX_INDEX = MAX_INT_VERTEX_INDEX;
+    } else {
+      SIZEOF_INDEX = SIZEOF_SHORT;
+      INDEX_TYPE = 0x1403; // GL_UNSIGNED_SHORT
+      MAX_VERTEX_INDEX = 32767;
+    }
+    MAX_VERTEX_INDEX1 = MAX_VERTEX_INDEX + 1;
+  }
+
+
   protected static ShortBuffer allocateDirectShortBuffer(int size) {
     int bytes = PApplet.max(MIN_DIRECT_BUFFER_SIZE, size) * SIZEOF_SHORT;
     return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).
@@ -2623,6 +2674,22 @@ public abstract class PGL {
   }
 
 
+  protected static FloatBuffer allocateDirectFloatBuffer(int size) {
+    int bytes = PApplet.max(MIN_DIRECT_BUFFER_SIZE, size) * SIZEOF_SINGLE;
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).
+           asFloatBuffer();
+  }
+
+
+  protected static FloatBuffer allocateFloatBuffer(int size) {
+    if (USE_DIRECT_BUFFERS) {
+      return allocateDirectFloatBuffer(size);
+    } else {
+      return FloatBuffer.allocate(size);
+    }
+  }
+
+
   protected static DoubleBuffer allocateDirectDoubleBuffer(int size) {
     int bytes = PApplet.max(MIN_DIRECT_BUFFER_SIZE, size) * SIZEOF_FLOAT;
     return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder()).asDoubleBuffer();
@@ -27,6 +27,7 @@ package processing.opengl;
 import processing.core.PGraphics;
 import processing.core.PMatrix3D;
 import processing.core.PShape;
+import processing.core.PShapeCache;
 import processing.core.PShapeSVG;
 
 
@@ -241,10 +242,18 @@ public class PGraphics2D extends PGraphicsOpenGL {
   }
 
 
-  static protected PShape loadShapeImpl(PGraphics pg,
-                                        String filename, String extension) {
+  // The "cache" option stores the loaded shape in a binary file next to
+  // the source, see PShapeCache.
+  static protected PShape loadShapeImpl(PGraphics pg, String filename,
+                                        String extension, String options) {
     if (extension.equals("svg") || extension.equals("svgz")) {
-      PShapeSVG svg = new PShapeSVG(pg.parent.loadXML(filename));
+      PShape svg;
+      if (hasOption(options, "cache")) {
+        svg = PShapeCache.load(pg.parent, filename, null,
+                               () -> new PShapeSVG(pg.parent.loadXML(filename)));
+      } else {
+        svg = new PShapeSVG(pg.parent.loadXML(filename));
+      }
       return PShapeOpenGL.createShape((PGraphicsOpenGL) pg, svg);
     }
     return null;
@@ -26,6 +26,7 @@ package processing.opengl;
 
 import processing.core.PGraphics;
 import processing.core.PShape;
+import processing.core.PShapeCache;
 import processing.core.PShapeOBJ;
 
 
@@ -120,12 +121,21 @@ public class PGraphics3D extends PGraphicsOpenGL {
   }
 
 
+  // The "packed" option loads OBJ files with one child shape per material
+  // instead of one per face, see PShapeOBJ, and the "cache" option stores
+  // the loaded shape in a binary file next to the source, see PShapeCache.
   static protected PShape loadShapeImpl(PGraphics pg, String filename,
-                                                      String extension) {
-    PShapeOBJ obj = null;
+                                        String extension, String options) {
+    PShape obj = null;
 
     if (extension.equals("obj")) {
-      obj = new PShapeOBJ(pg.parent, filename);
+      boolean packed = hasOption(options, "packed");
+      if (hasOption(options, "cache")) {
+        obj = PShapeCache.load(pg.parent, filename, packed ? "packed" : null,
+                               () -> new PShapeOBJ(pg.parent, filename, packed));
+      } else {
+        obj = new PShapeOBJ(pg.parent, filename, packed);
+      }
       int prevTextureMode = pg.textureMode;
       pg.textureMode = NORMAL;
       PShapeOpenGL p3d = PShapeOpenGL.createShape((PGraphicsOpenGL)pg, obj);
@@ -30,6 +30,11 @@ import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import processing.core.*;
 
 
@@ -233,6 +238,14 @@ public class PGraphicsOpenGL extends PGraphics {
 
   // ........................................................
 
+  // Worker threads, shared by the CPU tasks that can be split across
+  // several cores (tessellation of large groups, depth sorting)
+
+  static private final String WORKER_THREAD_PREFIX = "PGraphicsOpenGL worker";
+  static private ExecutorService workerExecutor;
+
+  // ........................................................
+
   // Async pixel reader
 
   protected AsyncPixelReader asyncPixelReader;
@@ -289,6 +302,10 @@ public class PGraphicsOpenGL extends PGraphics {
   protected double[] glProjmodelview;
   protected double[] glNormal;
 
+  // Origin of the relative vertices being drawn, applied to glModelview
+  // and glProjmodelview. It is null when vertices are absolute.
+  protected double[] vertexOrigin;
+
   // Useful to have around.
   static protected PMatrix3D identity = new PMatrix3D();
 
@@ -1721,6 +1738,10 @@ public class PGraphicsOpenGL extends PGraphics {
     glModelview[13] = modelview.m13;
     glModelview[14] = modelview.m23;
     glModelview[15] = modelview.m33;
+
+    if (vertexOrigin != null) {
+      VertexPacker.translate(glModelview, vertexOrigin);
+    }
   }
 
 
@@ -1748,6 +1769,10 @@ public class PGraphicsOpenGL extends PGraphics {
     glProjmodelview[13] = projmodelview.m13;
     glProjmodelview[14] = projmodelview.m23;
     glProjmodelview[15] = projmodelview.m33;
+
+    if (vertexOrigin != null) {
+      VertexPacker.translate(glProjmodelview, vertexOrigin);
+    }
   }
 
 
@@ -1867,6 +1892,12 @@ public class PGraphicsOpenGL extends PGraphics {
       restartPGL();
     } else if (which == DISABLE_BUFFER_READING) {
       restartPGL();
+    } else if (which == ENABLE_RELATIVE_VERTICES) {
+      flush();
+      tessGeo.relativeVertices = true;
+    } else if (which == DISABLE_RELATIVE_VERTICES) {
+      flush();
+      tessGeo.relativeVertices = false;
     }
   }
 
@@ -2336,6 +2367,7 @@ public class PGraphicsOpenGL extends PGraphics {
     boolean needTexCoords = customShader && polyShader.accessTexCoords();
 
     updatePolyBuffers(lights, texCache.hasTextures, needNormals, needTexCoords);
+    if (tessGeo.relativeVertices) vertexOrigin = tessGeo.polyOrigin;
 
     for (int i = 0; i < texCache.size; i++) {
       Texture tex = texCache.getTexture(i);
@@ -2356,7 +2388,7 @@ public class PGraphicsOpenGL extends PGraphics {
         int voffset = cache.vertexOffset[n];
 
         shader.setVertexAttribute(bufPolyVertex.glId, 4, PGL.FLOAT, 0,
-                                  4 * voffset * PGL.SIZEOF_FLOAT);
+                                  4 * voffset * tessGeo.sizeofVertexFloat());
         shader.setColorAttribute(bufPolyColor.glId, 4, PGL.UNSIGNED_BYTE, 0,
                                  4 * voffset * PGL.SIZEOF_BYTE);
 
@@ -2401,6 +2433,7 @@ public class PGraphicsOpenGL extends PGraphics {
       shader.unbind();
     }
     unbindPolyBuffers();
+    vertexOrigin = null;
   }
 
   protected void flushSortedPolys() {
@@ -2417,6 +2450,7 @@ public class PGraphicsOpenGL extends PGraphics {
     int[] vertexOffset = tessGeo.polyIndexCache.vertexOffset;
 
     updatePolyBuffers(lights, texCache.hasTextures, needNormals, needTexCoords);
+    if (tessGeo.relativeVertices) vertexOrigin = tessGeo.polyOrigin;
 
     int ti = 0;
 
@@ -2447,7 +2481,7 @@ public class PGraphicsOpenGL extends PGraphics {
       shader.bind();
 
       shader.setVertexAttribute(bufPolyVertex.glId, 4, PGL.FLOAT, 0,
-                                4 * voffset * PGL.SIZEOF_FLOAT);
+                                4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(bufPolyColor.glId, 4, PGL.UNSIGNED_BYTE, 0,
                                4 * voffset * PGL.SIZEOF_BYTE);
 
@@ -2491,6 +2525,7 @@ public class PGraphicsOpenGL extends PGraphics {
       shader.unbind();
     }
     unbindPolyBuffers();
+    vertexOrigin = null;
   }
 
 
@@ -2502,7 +2537,6 @@ public class PGraphicsOpenGL extends PGraphics {
     double[] vertices = tessGeo.polyVertices;
     int[] color = tessGeo.polyColors;
     double[] uv = tessGeo.polyTexCoords;
-    short[] indices = tessGeo.polyIndices;
 
     for (int i = 0; i < texCache.size; i++) {
       PImage textureImage = texCache.getTextureImage(i);
@@ -2519,9 +2553,9 @@ public class PGraphicsOpenGL extends PGraphics {
         int voffset = cache.vertexOffset[n];
 
         for (int tr = ioffset / 3; tr < (ioffset + icount) / 3; tr++) {
-          int i0 = voffset + indices[3 * tr + 0];
-          int i1 = voffset + indices[3 * tr + 1];
-          int i2 = voffset + indices[3 * tr + 2];
+          int i0 = voffset + tessGeo.polyIndex(3 * tr + 0);
+          int i1 = voffset + tessGeo.polyIndex(3 * tr + 1);
+          int i2 = voffset + tessGeo.polyIndex(3 * tr + 2);
 
           double[] pt0 = {0, 0, 0, 0};
           double[] pt1 = {0, 0, 0, 0};
@@ -2609,7 +2643,6 @@ public class PGraphicsOpenGL extends PGraphics {
     double[] vertices = tessGeo.polyVertices;
     int[] color = tessGeo.polyColors;
     double[] uv = tessGeo.polyTexCoords;
-    short[] indices = tessGeo.polyIndices;
 
     sorter.sort(tessGeo);
     int[] triangleIndices = sorter.triangleIndices;
@@ -2623,9 +2656,9 @@ public class PGraphicsOpenGL extends PGraphics {
       PImage tex = texCache.getTextureImage(texMap[ti]);
       int voffset = vertexOffset[voffsetMap[ti]];
 
-      int i0 = voffset + indices[3*ti+0];
-      int i1 = voffset + indices[3*ti+1];
-      int i2 = voffset + indices[3*ti+2];
+      int i0 = voffset + tessGeo.polyIndex(3*ti+0);
+      int i1 = voffset + tessGeo.polyIndex(3*ti+1);
+      int i2 = voffset + tessGeo.polyIndex(3*ti+2);
 
       double[] pt0 = {0, 0, 0, 0};
       double[] pt1 = {0, 0, 0, 0};
@@ -2704,6 +2737,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
   protected void flushLines() {
     updateLineBuffers();
+    if (tessGeo.relativeVertices) vertexOrigin = tessGeo.lineOrigin;
 
     PShader shader = getLineShader();
     shader.bind();
@@ -2715,7 +2749,7 @@ public class PGraphicsOpenGL extends PGraphics {
       int voffset = cache.vertexOffset[n];
 
       shader.setVertexAttribute(bufLineVertex.glId, 4, PGL.FLOAT, 0,
-                                4 * voffset * PGL.SIZEOF_FLOAT);
+                                4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(bufLineColor.glId, 4, PGL.UNSIGNED_BYTE, 0,
                                4 * voffset * PGL.SIZEOF_BYTE);
       shader.setLineAttribute(bufLineAttrib.glId, 4, PGL.FLOAT, 0,
@@ -2726,6 +2760,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
     shader.unbind();
     unbindLineBuffers();
+    vertexOrigin = null;
   }
 
 
@@ -2739,7 +2774,6 @@ public class PGraphicsOpenGL extends PGraphics {
     double[] vertices = tessGeo.lineVertices;
     int[] color = tessGeo.lineColors;
     double[] attribs = tessGeo.lineDirections;
-    short[] indices = tessGeo.lineIndices;
 
     IndexCache cache = tessGeo.lineIndexCache;
     for (int n = 0; n < cache.size; n++) {
@@ -2752,8 +2786,8 @@ public class PGraphicsOpenGL extends PGraphics {
         // formed by two triangles. Only need the first and last verts.
         // This bunch of vertices could also be the bevel triangles,
         // with we detect this situation by looking at the line weight.
-        int i0 = voffset + indices[6 * ln];
-        int i1 = voffset + indices[6 * ln + 5];
+        int i0 = voffset + tessGeo.lineIndex(6 * ln);
+        int i1 = voffset + tessGeo.lineIndex(6 * ln + 5);
         double sw0 = 2 * attribs[4 * i0 + 3];
         double sw1 = 2 * attribs[4 * i1 + 3];
 
@@ -2804,6 +2838,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
   protected void flushPoints() {
     updatePointBuffers();
+    if (tessGeo.relativeVertices) vertexOrigin = tessGeo.pointOrigin;
 
     PShader shader = getPointShader();
     shader.bind();
@@ -2815,7 +2850,7 @@ public class PGraphicsOpenGL extends PGraphics {
       int voffset = cache.vertexOffset[n];
 
       shader.setVertexAttribute(bufPointVertex.glId, 4, PGL.FLOAT, 0,
-                                4 * voffset * PGL.SIZEOF_FLOAT);
+                                4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(bufPointColor.glId, 4, PGL.UNSIGNED_BYTE, 0,
                                4 * voffset * PGL.SIZEOF_BYTE);
       shader.setPointAttribute(bufPointAttrib.glId, 2, PGL.FLOAT, 0,
@@ -2826,6 +2861,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
     shader.unbind();
     unbindPointBuffers();
+    vertexOrigin = null;
   }
 
 
@@ -2838,7 +2874,6 @@ public class PGraphicsOpenGL extends PGraphics {
     double[] vertices = tessGeo.pointVertices;
     int[] color = tessGeo.pointColors;
     double[] attribs = tessGeo.pointOffsets;
-    short[] indices = tessGeo.pointIndices;
 
     IndexCache cache = tessGeo.pointIndexCache;
     for (int n = 0; n < cache.size; n++) {
@@ -2860,7 +2895,7 @@ public class PGraphicsOpenGL extends PGraphics {
           perim = 5;
         }
 
-        int i0 = voffset + indices[3 * pt];
+        int i0 = voffset + tessGeo.pointIndex(3 * pt);
         int argb0 = PGL.nativeToJavaARGB(color[i0]);
         double[] pt0 = {0, 0, 0, 0};
 
@@ -3376,12 +3411,12 @@ public class PGraphicsOpenGL extends PGraphics {
 
 
   @Override
-  public PShape loadShape(String filename) {
+  public PShape loadShape(String filename, String options) {
     String ext = PApplet.getExtension(filename);
     if (PGraphics2D.isSupportedExtension(ext)) {
-      return PGraphics2D.loadShapeImpl(this, filename, ext);
+      return PGraphics2D.loadShapeImpl(this, filename, ext, options);
     } if (PGraphics3D.isSupportedExtension(ext)) {
-      return PGraphics3D.loadShapeImpl(this, filename, ext);
+      return PGraphics3D.loadShapeImpl(this, filename, ext, options);
     } else {
       PGraphics.showWarning(UNSUPPORTED_SHAPE_FORMAT_ERROR);
       return null;
@@ -3389,6 +3424,17 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  // Options are given as a comma separated list, as in loadTable()
+  static protected boolean hasOption(String options, String option) {
+    if (options != null) {
+      for (String opt : PApplet.trim(PApplet.split(options, ','))) {
+        if (opt.equals(option)) return true;
+      }
+    }
+    return false;
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // TEXT SETTINGS
@@ -7351,6 +7397,20 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  static synchronized protected ExecutorService getWorkerExecutor() {
+    if (workerExecutor == null) {
+      ThreadFactory factory = r -> {
+        Thread thread = new Thread(r, WORKER_THREAD_PREFIX);
+        thread.setDaemon(true);
+        return thread;
+      };
+      int count = Runtime.getRuntime().availableProcessors();
+      workerExecutor = Executors.newFixedThreadPool(count, factory);
+    }
+    return workerExecutor;
+  }
+
+
   // Holds an array of textures and the range of vertex
   // indices each texture applies to.
   static protected class TexCache {
@@ -7515,6 +7575,19 @@ public class PGraphicsOpenGL extends PGraphics {
       return size - 1;
     }
 
+    // Adds all the entries of other at the end of this cache, shifting
+    // their offsets by the given index and vertex bases.
+    void append(IndexCache other, int indexBase, int vertexBase) {
+      for (int n = 0; n < other.size; n++) {
+        arrayCheck();
+        indexCount[size] = other.indexCount[n];
+        indexOffset[size] = indexBase + other.indexOffset[n];
+        vertexCount[size] = other.vertexCount[n];
+        vertexOffset[size] = vertexBase + other.vertexOffset[n];
+        size++;
+      }
+    }
+
     int getLast() {
       if (size == 0) {
         arrayCheck();
@@ -9108,7 +9181,7 @@ public class PGraphicsOpenGL extends PGraphics {
     int polyIndexCount;
     int firstPolyIndex;
     int lastPolyIndex;
-    ShortBuffer polyIndicesBuffer;
+    Buffer polyIndicesBuffer;
     IndexCache polyIndexCache = new IndexCache();
 
     // Tessellated line data
@@ -9122,7 +9195,7 @@ public class PGraphicsOpenGL extends PGraphics {
     int lineIndexCount;
     int firstLineIndex;
     int lastLineIndex;
-    ShortBuffer lineIndicesBuffer;
+    Buffer lineIndicesBuffer;
     IndexCache lineIndexCache = new IndexCache();
 
     // Tessellated point data
@@ -9136,7 +9209,7 @@ public class PGraphicsOpenGL extends PGraphics {
     int pointIndexCount;
     int firstPointIndex;
     int lastPointIndex;
-    ShortBuffer pointIndicesBuffer;
+    Buffer pointIndicesBuffer;
     IndexCache pointIndexCache = new IndexCache();
 
     // Backing arrays
@@ -9158,15 +9231,41 @@ public class PGraphicsOpenGL extends PGraphics {
     double[] pointOffsets;
     short[] pointIndices;
 
+    // Index arrays used instead of the short ones above when 32-bit indices
+    // are enabled (see PGL.setIntIndices()). Only one of each pair is
+    // allocated, chosen when the geometry is, and the accessors below
+    // read and write whichever it is.
+    boolean intIndices;
+    int[] polyIntIndices;
+    int[] lineIntIndices;
+    int[] pointIntIndices;
+
     HashMap<String, double[]> fpolyAttribs = new HashMap<>();
     HashMap<String, int[]> ipolyAttribs = new HashMap<>();
     HashMap<String, byte[]> bpolyAttribs = new HashMap<>();
 
+    // Relative vertices: the vertices are uploaded as floats after
+    // subtracting an origin, which is added back in the modelview matrix
+    // (see VertexPacker).
+    boolean relativeVertices;
+    double[] polyOrigin = new double[3];
+    double[] lineOrigin = new double[3];
+    double[] pointOrigin = new double[3];
+    FloatBuffer polyVerticesFloatBuffer;
+    FloatBuffer lineVerticesFloatBuffer;
+    FloatBuffer pointVerticesFloatBuffer;
+
+    // Bytes per coordinate in the poly, line and point vertex buffers
+    int sizeofVertexFloat() {
+      return relativeVertices ? PGL.SIZEOF_SINGLE : PGL.SIZEOF_FLOAT;
+    }
+
     TessGeometry(PGraphicsOpenGL pg, AttributeMap attr, int mode, boolean stream) {
       this.pg = pg;
       this.polyAttribs = attr;
       renderMode = mode;
       bufObjStreaming = stream;
+      relativeVertices = pg.getHint(ENABLE_RELATIVE_VERTICES);
       allocate();
     }
 
@@ -9175,6 +9274,8 @@ public class PGraphicsOpenGL extends PGraphics {
     // Allocate/dispose
 
     void allocate() {
+      intIndices = PGL.intIndices;
+
       polyVertices = new double[4 * PGL.DEFAULT_TESS_VERTICES];
       polyColors = new int[PGL.DEFAULT_TESS_VERTICES];
       polyNormals = new double[3 * PGL.DEFAULT_TESS_VERTICES];
@@ -9183,17 +9284,29 @@ public class PGraphicsOpenGL extends PGraphics {
       polySpecular = new int[PGL.DEFAULT_TESS_VERTICES];
       polyEmissive = new int[PGL.DEFAULT_TESS_VERTICES];
       polyShininess = new double[PGL.DEFAULT_TESS_VERTICES];
-      polyIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      if (intIndices) {
+        polyIntIndices = new int[PGL.DEFAULT_TESS_VERTICES];
+      } else {
+        polyIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      }
 
       lineVertices = new double[4 * PGL.DEFAULT_TESS_VERTICES];
       lineColors = new int[PGL.DEFAULT_TESS_VERTICES];
       lineDirections = new double[4 * PGL.DEFAULT_TESS_VERTICES];
-      lineIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      if (intIndices) {
+        lineIntIndices = new int[PGL.DEFAULT_TESS_VERTICES];
+      } else {
+        lineIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      }
 
       pointVertices = new double[4 * PGL.DEFAULT_TESS_VERTICES];
       pointColors = new int[PGL.DEFAULT_TESS_VERTICES];
       pointOffsets = new double[2 * PGL.DEFAULT_TESS_VERTICES];
-      pointIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      if (intIndices) {
+        pointIntIndices = new int[PGL.DEFAULT_TESS_VERTICES];
+      } else {
+        pointIndices = new short[PGL.DEFAULT_TESS_VERTICES];
+      }
 
       if (!bufObjStreaming) {
         polyVerticesBuffer = PGL.allocateDoubleBuffer(polyVertices);
@@ -9205,17 +9318,17 @@ public class PGraphicsOpenGL extends PGraphics {
         polySpecularBuffer = PGL.allocateIntBuffer(polySpecular);
         polyEmissiveBuffer = PGL.allocateIntBuffer(polyEmissive);
         polyShininessBuffer = PGL.allocateDoubleBuffer(polyShininess);
-        polyIndicesBuffer = PGL.allocateShortBuffer(polyIndices);
+        polyIndicesBuffer = allocateIndexBuffer(polyIndices, polyIntIndices);
 
         lineVerticesBuffer = PGL.allocateDoubleBuffer(lineVertices);
         lineColorsBuffer = PGL.allocateIntBuffer(lineColors);
         lineDirectionsBuffer = PGL.allocateDoubleBuffer(lineDirections);
-        lineIndicesBuffer = PGL.allocateShortBuffer(lineIndices);
+        lineIndicesBuffer = allocateIndexBuffer(lineIndices, lineIntIndices);
 
         pointVerticesBuffer = PGL.allocateDoubleBuffer(pointVertices);
         pointColorsBuffer = PGL.allocateIntBuffer(pointColors);
         pointOffsetsBuffer = PGL.allocateDoubleBuffer(pointOffsets);
-        pointIndicesBuffer = PGL.allocateShortBuffer(pointIndices);
+        pointIndicesBuffer = allocateIndexBuffer(pointIndices, pointIntIndices);
       }
 
       clear();
@@ -9306,7 +9419,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void polyIndexCheck(int count) {
-      int oldSize = polyIndices.length;
+      int oldSize = indexCapacity(polyIndices, polyIntIndices);
       if (polyIndexCount + count > oldSize) {
         int newSize = expandArraySize(oldSize, polyIndexCount + count);
 
@@ -9319,7 +9432,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void polyIndexCheck() {
-      if (polyIndexCount == polyIndices.length) {
+      if (polyIndexCount == indexCapacity(polyIndices, polyIntIndices)) {
         int newSize = polyIndexCount << 1;
 
         expandPolyIndices(newSize);
@@ -9346,7 +9459,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void lineIndexCheck(int count) {
-      int oldSize = lineIndices.length;
+      int oldSize = indexCapacity(lineIndices, lineIntIndices);
       if (lineIndexCount + count > oldSize) {
         int newSize = expandArraySize(oldSize, lineIndexCount + count);
 
@@ -9374,7 +9487,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void pointIndexCheck(int count) {
-      int oldSize = pointIndices.length;
+      int oldSize = indexCapacity(pointIndices, pointIntIndices);
       if (pointIndexCount + count > oldSize) {
         int newSize = expandArraySize(oldSize, pointIndexCount + count);
 
@@ -9386,6 +9499,167 @@ public class PGraphicsOpenGL extends PGraphics {
       lastPointIndex = pointIndexCount - 1;
     }
 
+    // -----------------------------------------------------------------
+    //
+    // Index access
+
+    int polyIndex(int i) {
+      return intIndices ? polyIntIndices[i] : polyIndices[i];
+    }
+
+    void setPolyIndex(int i, int index) {
+      if (intIndices) {
+        polyIntIndices[i] = index;
+      } else {
+        polyIndices[i] = (short) index;
+      }
+    }
+
+    int lineIndex(int i) {
+      return intIndices ? lineIntIndices[i] : lineIndices[i];
+    }
+
+    void setLineIndex(int i, int index) {
+      if (intIndices) {
+        lineIntIndices[i] = index;
+      } else {
+        lineIndices[i] = (short) index;
+      }
+    }
+
+    int pointIndex(int i) {
+      return intIndices ? pointIntIndices[i] : pointIndices[i];
+    }
+
+    void setPointIndex(int i, int index) {
+      if (intIndices) {
+        pointIntIndices[i] = index;
+      } else {
+        pointIndices[i] = (short) index;
+      }
+    }
+
+    static int indexCapacity(short[] indices, int[] intIndices) {
+      return intIndices != null ? intIndices.length : indices.length;
+    }
+
+    static Buffer allocateIndexBuffer(short[] indices, int[] intIndices) {
+      if (intIndices != null) {
+        return PGL.allocateIntBuffer(intIndices);
+      } else {
+        return PGL.allocateShortBuffer(indices);
+      }
+    }
+
+    static void updateIndexBuffer(Buffer buf, short[] indices,
+                                  int[] intIndices, int offset, int size) {
+      if (intIndices != null) {
+        PGL.updateIntBuffer((IntBuffer) buf, intIndices, offset, size);
+      } else {
+        PGL.updateShortBuffer((ShortBuffer) buf, indices, offset, size);
+      }
+    }
+
+    Buffer asIndexBuffer(ByteBuffer buf) {
+      return intIndices ? buf.asIntBuffer() : buf.asShortBuffer();
+    }
+
+    // -----------------------------------------------------------------
+    //
+    // Merge
+
+    // Appends the tessellated data in other at the end of this geometry.
+    // The entries of the index caches are appended too, with their offsets
+    // shifted by the current counts, so the result is the same as if the
+    // geometry in other had been tessellated directly into this object.
+    // Only the backing arrays are written, the buffers are left to the
+    // usual update methods.
+    void append(TessGeometry other) {
+      int polyIndexBase = polyIndexCount;
+      int polyVertexBase = polyVertexCount;
+      int lineIndexBase = lineIndexCount;
+      int lineVertexBase = lineVertexCount;
+      int pointIndexBase = pointIndexCount;
+      int pointVertexBase = pointVertexCount;
+
+      int count = other.polyVertexCount;
+      if (0 < count) {
+        polyVertexCheck(count);
+        int offset = polyVertexBase;
+        PApplet.arrayCopy(other.polyVertices, 0, polyVertices, 4 * offset, 4 * count);
+        PApplet.arrayCopy(other.polyColors, 0, polyColors, offset, count);
+        PApplet.arrayCopy(other.polyNormals, 0, polyNormals, 3 * offset, 3 * count);
+        PApplet.arrayCopy(other.polyTexCoords, 0, polyTexCoords, 2 * offset, 2 * count);
+        PApplet.arrayCopy(other.polyAmbient, 0, polyAmbient, offset, count);
+        PApplet.arrayCopy(other.polySpecular, 0, polySpecular, offset, count);
+        PApplet.arrayCopy(other.polyEmissive, 0, polyEmissive, offset, count);
+        PApplet.arrayCopy(other.polyShininess, 0, polyShininess, offset, count);
+        for (String name: polyAttribs.keySet()) {
+          VertexAttribute attrib = polyAttribs.get(name);
+          int size = attrib.tessSize;
+          if (attrib.type == PGL.FLOAT) {
+            PApplet.arrayCopy(other.fpolyAttribs.get(name), 0,
+                              fpolyAttribs.get(name), size * offset, size * count);
+          } else if (attrib.type == PGL.INT) {
+            PApplet.arrayCopy(other.ipolyAttribs.get(name), 0,
+                              ipolyAttribs.get(name), size * offset, size * count);
+          } else if (attrib.type == PGL.BOOL) {
+            PApplet.arrayCopy(other.bpolyAttribs.get(name), 0,
+                              bpolyAttribs.get(name), size * offset, size * count);
+          }
+        }
+      }
+      count = other.polyIndexCount;
+      if (0 < count) {
+        polyIndexCheck(count);
+        if (intIndices) {
+          PApplet.arrayCopy(other.polyIntIndices, 0, polyIntIndices, polyIndexBase, count);
+        } else {
+          PApplet.arrayCopy(other.polyIndices, 0, polyIndices, polyIndexBase, count);
+        }
+      }
+
+      count = other.lineVertexCount;
+      if (0 < count) {
+        lineVertexCheck(count);
+        int offset = lineVertexBase;
+        PApplet.arrayCopy(other.lineVertices, 0, lineVertices, 4 * offset, 4 * count);
+        PApplet.arrayCopy(other.lineColors, 0, lineColors, offset, count);
+        PApplet.arrayCopy(other.lineDirections, 0, lineDirections, 4 * offset, 4 * count);
+      }
+      count = other.lineIndexCount;
+      if (0 < count) {
+        lineIndexCheck(count);
+        if (intIndices) {
+          PApplet.arrayCopy(other.lineIntIndices, 0, lineIntIndices, lineIndexBase, count);
+        } else {
+          PApplet.arrayCopy(other.lineIndices, 0, lineIndices, lineIndexBase, count);
+        }
+      }
+
+      count = other.pointVertexCount;
+      if (0 < count) {
+        pointVertexCheck(count);
+        int offset = pointVertexBase;
+        PApplet.arrayCopy(other.pointVertices, 0, pointVertices, 4 * offset, 4 * count);
+        PApplet.arrayCopy(other.pointColors, 0, pointColors, offset, count);
+        PApplet.arrayCopy(other.pointOffsets, 0, pointOffsets, 2 * offset, 2 * count);
+      }
+      count = other.pointIndexCount;
+      if (0 < count) {
+        pointIndexCheck(count);
+        if (intIndices) {
+          PApplet.arrayCopy(other.pointIntIndices, 0, pointIntIndices, pointIndexBase, count);
+        } else {
+          PApplet.arrayCopy(other.pointIndices, 0, pointIndices, pointIndexBase, count);
+        }
+      }
+
+      polyIndexCache.append(other.polyIndexCache, polyIndexBase, polyVertexBase);
+      lineIndexCache.append(other.lineIndexCache, lineIndexBase, lineVertexBase);
+      pointIndexCache.append(other.pointIndexCache, pointIndexBase, pointVertexBase);
+    }
+
     // -----------------------------------------------------------------
     //
     // Query
@@ -9486,12 +9760,16 @@ public class PGraphicsOpenGL extends PGraphics {
     // Buffer mapping methods
 
     protected void mapPolyVerticesBuffer() {
-      polyVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      if (relativeVertices) {
+        polyVerticesFloatBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asFloatBuffer();
+      } else {
+        polyVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      }
     }
 
     protected void initPolyVerticesBuffer(boolean onlymap, boolean unmap, int usage) {
       PGL pgl = pg.pgl;
-      int sizef = polyVertexCount * PGL.SIZEOF_FLOAT;
+      int sizef = polyVertexCount * sizeofVertexFloat();
       if (bufObjStreaming) {
         if (onlymap) {
           mapPolyVerticesBuffer();
@@ -9503,6 +9781,9 @@ public class PGraphicsOpenGL extends PGraphics {
         if (unmap) {
           pgl.unmapBuffer(PGL.ARRAY_BUFFER);
         }
+      } else if (relativeVertices) {
+        updatePolyVerticesBuffer();
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, polyVerticesFloatBuffer, usage);
       } else {
         pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, polyVerticesBuffer, usage);
       }
@@ -9516,13 +9797,14 @@ public class PGraphicsOpenGL extends PGraphics {
     protected void copyPolyVertices(int usage) {
       PGL pgl = pg.pgl;
       if (bufObjStreaming) {
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * polyVertexCount * PGL.SIZEOF_FLOAT, null, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * polyVertexCount * sizeofVertexFloat(), null, usage);
         mapPolyVerticesBuffer();
         updatePolyVerticesBuffer();
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updatePolyVerticesBuffer();
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * polyVertexCount * PGL.SIZEOF_FLOAT, polyVerticesBuffer, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * polyVertexCount * sizeofVertexFloat(),
+                       relativeVertices ? polyVerticesFloatBuffer : polyVerticesBuffer, usage);
       }
     }
 
@@ -9534,9 +9816,10 @@ public class PGraphicsOpenGL extends PGraphics {
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updatePolyVerticesBuffer(offset, size);
-        polyVerticesBuffer.position(4 * offset);
-        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * PGL.SIZEOF_FLOAT, 4 * size * PGL.SIZEOF_FLOAT, polyVerticesBuffer);
-        polyVerticesBuffer.rewind();
+        Buffer buf = relativeVertices ? polyVerticesFloatBuffer : polyVerticesBuffer;
+        buf.position(4 * offset);
+        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * sizeofVertexFloat(), 4 * size * sizeofVertexFloat(), buf);
+        buf.rewind();
       }
     }
 
@@ -9989,7 +10272,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void mapPolyIndicesBuffer() {
-      polyIndicesBuffer = pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess).asShortBuffer();
+      polyIndicesBuffer = asIndexBuffer(pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess));
     }
 
     protected void initPolyIndicesBuffer(boolean onlymap, boolean unmap, int usage) {
@@ -10025,12 +10308,16 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void mapLineVerticesBuffer() {
-      lineVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      if (relativeVertices) {
+        lineVerticesFloatBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asFloatBuffer();
+      } else {
+        lineVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      }
     }
 
     protected void initLineVerticesBuffer(boolean onlymap, boolean unmap, int usage) {
       PGL pgl = pg.pgl;
-      int sizef = lineVertexCount * PGL.SIZEOF_FLOAT;
+      int sizef = lineVertexCount * sizeofVertexFloat();
       if (bufObjStreaming) {
         if (onlymap) {
           mapLineVerticesBuffer();
@@ -10042,6 +10329,9 @@ public class PGraphicsOpenGL extends PGraphics {
         if (unmap) {
           pgl.unmapBuffer(PGL.ARRAY_BUFFER);
         }
+      } else if (relativeVertices) {
+        updateLineVerticesBuffer();
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, lineVerticesFloatBuffer, usage);
       } else {
         pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, lineVerticesBuffer, usage);
       }
@@ -10055,13 +10345,14 @@ public class PGraphicsOpenGL extends PGraphics {
     protected void copyLineVertices(int usage) {
       PGL pgl = pg.pgl;
       if (bufObjStreaming) {
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * lineVertexCount * PGL.SIZEOF_FLOAT, null, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * lineVertexCount * sizeofVertexFloat(), null, usage);
         mapLineVerticesBuffer();
         updateLineVerticesBuffer();
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updateLineVerticesBuffer();
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * lineVertexCount * PGL.SIZEOF_FLOAT, lineVerticesBuffer, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * lineVertexCount * sizeofVertexFloat(),
+                       relativeVertices ? lineVerticesFloatBuffer : lineVerticesBuffer, usage);
       }
     }
 
@@ -10073,9 +10364,10 @@ public class PGraphicsOpenGL extends PGraphics {
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updateLineVerticesBuffer(offset, size);
-        lineVerticesBuffer.position(4 * offset);
-        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * PGL.SIZEOF_FLOAT, 4 * size * PGL.SIZEOF_FLOAT, lineVerticesBuffer);
-        lineVerticesBuffer.rewind();
+        Buffer buf = relativeVertices ? lineVerticesFloatBuffer : lineVerticesBuffer;
+        buf.position(4 * offset);
+        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * sizeofVertexFloat(), 4 * size * sizeofVertexFloat(), buf);
+        buf.rewind();
       }
     }
 
@@ -10190,7 +10482,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void mapLineIndicesBuffer() {
-      lineIndicesBuffer = pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess).asShortBuffer();
+      lineIndicesBuffer = asIndexBuffer(pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess));
     }
 
     protected void initLineIndicesBuffer(boolean onlymap, boolean unmap, int usage) {
@@ -10226,12 +10518,16 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void mapPointVerticesBuffer() {
-      pointVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      if (relativeVertices) {
+        pointVerticesFloatBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asFloatBuffer();
+      } else {
+        pointVerticesBuffer = pg.pgl.mapBuffer(PGL.ARRAY_BUFFER, PGL.bufferMapAccess).asDoubleBuffer();
+      }
     }
 
     protected void initPointVerticesBuffer(boolean onlymap, boolean unmap, int usage) {
       PGL pgl = pg.pgl;
-      int sizef = pointVertexCount * PGL.SIZEOF_FLOAT;
+      int sizef = pointVertexCount * sizeofVertexFloat();
       if (bufObjStreaming) {
         if (onlymap) {
           mapPointVerticesBuffer();
@@ -10243,6 +10539,9 @@ public class PGraphicsOpenGL extends PGraphics {
         if (unmap) {
           pgl.unmapBuffer(PGL.ARRAY_BUFFER);
         }
+      } else if (relativeVertices) {
+        updatePointVerticesBuffer();
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, pointVerticesFloatBuffer, usage);
       } else {
         pgl.bufferData(PGL.ARRAY_BUFFER, 4 * sizef, pointVerticesBuffer, usage);
       }
@@ -10256,13 +10555,14 @@ public class PGraphicsOpenGL extends PGraphics {
     protected void copyPointVertices(int usage) {
       PGL pgl = pg.pgl;
       if (bufObjStreaming) {
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * pointVertexCount * PGL.SIZEOF_FLOAT, null, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * pointVertexCount * sizeofVertexFloat(), null, usage);
         mapPointVerticesBuffer();
         updatePointVerticesBuffer();
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updatePointVerticesBuffer();
-        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * pointVertexCount * PGL.SIZEOF_FLOAT, pointVerticesBuffer, usage);
+        pgl.bufferData(PGL.ARRAY_BUFFER, 4 * pointVertexCount * sizeofVertexFloat(),
+                       relativeVertices ? pointVerticesFloatBuffer : pointVerticesBuffer, usage);
       }
     }
 
@@ -10274,9 +10574,10 @@ public class PGraphicsOpenGL extends PGraphics {
         pgl.unmapBuffer(PGL.ARRAY_BUFFER);
       } else {
         updatePointVerticesBuffer(offset, size);
-        pointVerticesBuffer.position(4 * offset);
-        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * PGL.SIZEOF_FLOAT, 4 * size * PGL.SIZEOF_FLOAT, pointVerticesBuffer);
-        pointVerticesBuffer.rewind();
+        Buffer buf = relativeVertices ? pointVerticesFloatBuffer : pointVerticesBuffer;
+        buf.position(4 * offset);
+        pgl.bufferSubData(PGL.ARRAY_BUFFER, 4 * offset * sizeofVertexFloat(), 4 * size * sizeofVertexFloat(), buf);
+        buf.rewind();
       }
     }
 
@@ -10391,7 +10692,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void mapPointIndicesBuffer() {
-      pointIndicesBuffer = pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess).asShortBuffer();
+      pointIndicesBuffer = asIndexBuffer(pg.pgl.mapBuffer(PGL.ELEMENT_ARRAY_BUFFER, PGL.bufferMapAccess));
     }
 
     protected void initPointIndicesBuffer(boolean onlymap, boolean unmap, int usage) {
@@ -10431,11 +10732,24 @@ public class PGraphicsOpenGL extends PGraphics {
     // Methods to prepare buffers for relative read/write operations
 
     protected void updatePolyVerticesBuffer() {
+      if (relativeVertices) {
+        VertexPacker.computeOrigin(polyVertices, 4, 0, polyVertexCount, polyOrigin);
+      }
       updatePolyVerticesBuffer(0, polyVertexCount);
     }
 
     protected void updatePolyVerticesBuffer(int offset, int size) {
-      PGL.updateDoubleBuffer(polyVerticesBuffer, polyVertices, 4 * offset, 4 * size);
+      if (relativeVertices) {
+        if (!bufObjStreaming && (polyVerticesFloatBuffer == null ||
+                                 polyVerticesFloatBuffer.capacity() < polyVertices.length)) {
+          polyVerticesFloatBuffer = PGL.allocateFloatBuffer(polyVertices.length);
+          offset = 0;
+          size = polyVertexCount;
+        }
+        VertexPacker.pack(polyVertices, 4, offset, size, polyOrigin, polyVerticesFloatBuffer);
+      } else {
+        PGL.updateDoubleBuffer(polyVerticesBuffer, polyVertices, 4 * offset, 4 * size);
+      }
     }
 
     protected void updatePolyColorsBuffer() {
@@ -10523,15 +10837,28 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void updatePolyIndicesBuffer(int offset, int size) {
-      PGL.updateShortBuffer(polyIndicesBuffer, polyIndices, offset, size);
+      updateIndexBuffer(polyIndicesBuffer, polyIndices, polyIntIndices, offset, size);
     }
 
     protected void updateLineVerticesBuffer() {
+      if (relativeVertices) {
+        VertexPacker.computeOrigin(lineVertices, 4, 0, lineVertexCount, lineOrigin);
+      }
       updateLineVerticesBuffer(0, lineVertexCount);
     }
 
     protected void updateLineVerticesBuffer(int offset, int size) {
-      PGL.updateDoubleBuffer(lineVerticesBuffer, lineVertices, 4 * offset, 4 * size);
+      if (relativeVertices) {
+        if (!bufObjStreaming && (lineVerticesFloatBuffer == null ||
+                                 lineVerticesFloatBuffer.capacity() < lineVertices.length)) {
+          lineVerticesFloatBuffer = PGL.allocateFloatBuffer(lineVertices.length);
+          offset = 0;
+          size = lineVertexCount;
+        }
+        VertexPacker.pack(lineVertices, 4, offset, size, lineOrigin, lineVerticesFloatBuffer);
+      } else {
+        PGL.updateDoubleBuffer(lineVerticesBuffer, lineVertices, 4 * offset, 4 * size);
+      }
     }
 
     protected void updateLineColorsBuffer() {
@@ -10555,15 +10882,28 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void updateLineIndicesBuffer(int offset, int size) {
-      PGL.updateShortBuffer(lineIndicesBuffer, lineIndices, offset, size);
+      updateIndexBuffer(lineIndicesBuffer, lineIndices, lineIntIndices, offset, size);
     }
 
     protected void updatePointVerticesBuffer() {
+      if (relativeVertices) {
+        VertexPacker.computeOrigin(pointVertices, 4, 0, pointVertexCount, pointOrigin);
+      }
       updatePointVerticesBuffer(0, pointVertexCount);
     }
 
     protected void updatePointVerticesBuffer(int offset, int size) {
-      PGL.updateDoubleBuffer(pointVerticesBuffer, pointVertices, 4 * offset, 4 * size);
+      if (relativeVertices) {
+        if (!bufObjStreaming && (pointVerticesFloatBuffer == null ||
+                                 pointVerticesFloatBuffer.capacity() < pointVertices.length)) {
+          pointVerticesFloatBuffer = PGL.allocateFloatBuffer(pointVertices.length);
+          offset = 0;
+          size = pointVertexCount;
+        }
+        VertexPacker.pack(pointVertices, 4, offset, size, pointOrigin, pointVerticesFloatBuffer);
+      } else {
+        PGL.updateDoubleBuffer(pointVerticesBuffer, pointVertices, 4 * offset, 4 * size);
+      }
     }
 
     protected void updatePointColorsBuffer() {
@@ -10587,7 +10927,7 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     protected void updatePointIndicesBuffer(int offset, int size) {
-      PGL.updateShortBuffer(pointIndicesBuffer, pointIndices, offset, size);
+      updateIndexBuffer(pointIndicesBuffer, pointIndices, pointIntIndices, offset, size);
     }
 
     // -----------------------------------------------------------------
@@ -10688,10 +11028,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void expandPolyIndices(int n) {
-      short[] temp = new short[n];
-      PApplet.arrayCopy(polyIndices, 0, temp, 0, polyIndexCount);
-      polyIndices = temp;
-      if (!bufObjStreaming) polyIndicesBuffer = PGL.allocateShortBuffer(polyIndices);
+      if (intIndices) {
+        int[] temp = new int[n];
+        PApplet.arrayCopy(polyIntIndices, 0, temp, 0, polyIndexCount);
+        polyIntIndices = temp;
+      } else {
+        short[] temp = new short[n];
+        PApplet.arrayCopy(polyIndices, 0, temp, 0, polyIndexCount);
+        polyIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        polyIndicesBuffer = allocateIndexBuffer(polyIndices, polyIntIndices);
+      }
     }
 
     void expandLineVertices(int n) {
@@ -10716,10 +11064,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void expandLineIndices(int n) {
-      short[] temp = new short[n];
-      PApplet.arrayCopy(lineIndices, 0, temp, 0, lineIndexCount);
-      lineIndices = temp;
-      if (!bufObjStreaming) lineIndicesBuffer = PGL.allocateShortBuffer(lineIndices);
+      if (intIndices) {
+        int[] temp = new int[n];
+        PApplet.arrayCopy(lineIntIndices, 0, temp, 0, lineIndexCount);
+        lineIntIndices = temp;
+      } else {
+        short[] temp = new short[n];
+        PApplet.arrayCopy(lineIndices, 0, temp, 0, lineIndexCount);
+        lineIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        lineIndicesBuffer = allocateIndexBuffer(lineIndices, lineIntIndices);
+      }
     }
 
     void expandPointVertices(int n) {
@@ -10744,10 +11100,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void expandPointIndices(int n) {
-      short[] temp = new short[n];
-      PApplet.arrayCopy(pointIndices, 0, temp, 0, pointIndexCount);
-      pointIndices = temp;
-      if (!bufObjStreaming) pointIndicesBuffer = PGL.allocateShortBuffer(pointIndices);
+      if (intIndices) {
+        int[] temp = new int[n];
+        PApplet.arrayCopy(pointIntIndices, 0, temp, 0, pointIndexCount);
+        pointIntIndices = temp;
+      } else {
+        short[] temp = new short[n];
+        PApplet.arrayCopy(pointIndices, 0, temp, 0, pointIndexCount);
+        pointIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        pointIndicesBuffer = allocateIndexBuffer(pointIndices, pointIntIndices);
+      }
     }
 
     // -----------------------------------------------------------------
@@ -10767,7 +11131,7 @@ public class PGraphicsOpenGL extends PGraphics {
         trimPolyAttributes();
       }
 
-      if (0 < polyIndexCount && polyIndexCount < polyIndices.length) {
+      if (0 < polyIndexCount && polyIndexCount < indexCapacity(polyIndices, polyIntIndices)) {
         trimPolyIndices();
       }
 
@@ -10777,7 +11141,7 @@ public class PGraphicsOpenGL extends PGraphics {
         trimLineDirections();
       }
 
-      if (0 < lineIndexCount && lineIndexCount < lineIndices.length) {
+      if (0 < lineIndexCount && lineIndexCount < indexCapacity(lineIndices, lineIntIndices)) {
         trimLineIndices();
       }
 
@@ -10787,7 +11151,7 @@ public class PGraphicsOpenGL extends PGraphics {
         trimPointOffsets();
       }
 
-      if (0 < pointIndexCount && pointIndexCount < pointIndices.length) {
+      if (0 < pointIndexCount && pointIndexCount < indexCapacity(pointIndices, pointIntIndices)) {
         trimPointIndices();
       }
     }
@@ -10886,10 +11250,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void trimPolyIndices() {
-      short[] temp = new short[polyIndexCount];
-      PApplet.arrayCopy(polyIndices, 0, temp, 0, polyIndexCount);
-      polyIndices = temp;
-      if (!bufObjStreaming) polyIndicesBuffer = PGL.allocateShortBuffer(polyIndices);
+      if (intIndices) {
+        int[] temp = new int[polyIndexCount];
+        PApplet.arrayCopy(polyIntIndices, 0, temp, 0, polyIndexCount);
+        polyIntIndices = temp;
+      } else {
+        short[] temp = new short[polyIndexCount];
+        PApplet.arrayCopy(polyIndices, 0, temp, 0, polyIndexCount);
+        polyIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        polyIndicesBuffer = allocateIndexBuffer(polyIndices, polyIntIndices);
+      }
     }
 
     void trimLineVertices() {
@@ -10914,10 +11286,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void trimLineIndices() {
-      short[] temp = new short[lineIndexCount];
-      PApplet.arrayCopy(lineIndices, 0, temp, 0, lineIndexCount);
-      lineIndices = temp;
-      if (!bufObjStreaming) lineIndicesBuffer = PGL.allocateShortBuffer(lineIndices);
+      if (intIndices) {
+        int[] temp = new int[lineIndexCount];
+        PApplet.arrayCopy(lineIntIndices, 0, temp, 0, lineIndexCount);
+        lineIntIndices = temp;
+      } else {
+        short[] temp = new short[lineIndexCount];
+        PApplet.arrayCopy(lineIndices, 0, temp, 0, lineIndexCount);
+        lineIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        lineIndicesBuffer = allocateIndexBuffer(lineIndices, lineIntIndices);
+      }
     }
 
     void trimPointVertices() {
@@ -10942,10 +11322,18 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     void trimPointIndices() {
-      short[] temp = new short[pointIndexCount];
-      PApplet.arrayCopy(pointIndices, 0, temp, 0, pointIndexCount);
-      pointIndices = temp;
-      if (!bufObjStreaming) pointIndicesBuffer = PGL.allocateShortBuffer(pointIndices);
+      if (intIndices) {
+        int[] temp = new int[pointIndexCount];
+        PApplet.arrayCopy(pointIntIndices, 0, temp, 0, pointIndexCount);
+        pointIntIndices = temp;
+      } else {
+        short[] temp = new short[pointIndexCount];
+        PApplet.arrayCopy(pointIndices, 0, temp, 0, pointIndexCount);
+        pointIndices = temp;
+      }
+      if (!bufObjStreaming) {
+        pointIndicesBuffer = allocateIndexBuffer(pointIndices, pointIntIndices);
+      }
     }
 
     // -----------------------------------------------------------------
@@ -10954,19 +11342,19 @@ public class PGraphicsOpenGL extends PGraphics {
 
     void incPolyIndices(int first, int last, int inc) {
       for (int i = first; i <= last; i++) {
-        polyIndices[i] += inc;
+        setPolyIndex(i, polyIndex(i) + inc);
       }
     }
 
     void incLineIndices(int first, int last, int inc) {
       for (int i = first; i <= last; i++) {
-        lineIndices[i] += inc;
+        setLineIndex(i, lineIndex(i) + inc);
       }
     }
 
     void incPointIndices(int first, int last, int inc) {
       for (int i = first; i <= last; i++) {
-        pointIndices[i] += inc;
+        setPointIndex(i, pointIndex(i) + inc);
       }
     }
 
@@ -11635,38 +12023,30 @@ public class PGraphicsOpenGL extends PGraphics {
       if (first < last) {
         int index;
 
-        for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = polyVertices[index++];
-          double y = polyVertices[index  ];
+        int count = last - first + 1;
+        tr.mult(polyVertices, polyVertices, first, count, 4);
 
+        for (int i = first; i <= last; i++) {
           index = 3 * i;
           double nx = polyNormals[index++];
           double ny = polyNormals[index  ];
 
-          index = 4 * i;
-          polyVertices[index++] = x*tr.m00 + y*tr.m01 + tr.m02;
-          polyVertices[index  ] = x*tr.m10 + y*tr.m11 + tr.m12;
-
           index = 3 * i;
           polyNormals[index++] = nx*tr.m00 + ny*tr.m01;
           polyNormals[index  ] = nx*tr.m10 + ny*tr.m11;
+        }
 
-          for (String name: polyAttribs.keySet()) {
-            VertexAttribute attrib = polyAttribs.get(name);
-            if (attrib.isColor() || attrib.isOther()) continue;
-            double[] values = fpolyAttribs.get(name);
-            if (attrib.isPosition()) {
-              index = 4 * i;
-              x = values[index++];
-              y = values[index  ];
-              index = 4 * i;
-              values[index++] = x*tr.m00 + y*tr.m01 + tr.m02;
-              values[index  ] = x*tr.m10 + y*tr.m11 + tr.m12;
-            } else {
+        for (String name: polyAttribs.keySet()) {
+          VertexAttribute attrib = polyAttribs.get(name);
+          if (attrib.isColor() || attrib.isOther()) continue;
+          double[] values = fpolyAttribs.get(name);
+          if (attrib.isPosition()) {
+            tr.mult(values, values, first, count, 4);
+          } else {
+            for (int i = first; i <= last; i++) {
               index = 3 * i;
-              nx = values[index++];
-              ny = values[index  ];
+              double nx = values[index++];
+              double ny = values[index  ];
               index = 3 * i;
               values[index++] = nx*tr.m00 + ny*tr.m01;
               values[index  ] = nx*tr.m10 + ny*tr.m11;
@@ -11681,19 +12061,12 @@ public class PGraphicsOpenGL extends PGraphics {
         int index;
 
         double scaleFactor = matrixScale(tr);
+        tr.mult(lineVertices, lineVertices, first, last - first + 1, 4);
         for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = lineVertices[index++];
-          double y = lineVertices[index  ];
-
           index = 4 * i;
           double dx = lineDirections[index++];
           double dy = lineDirections[index  ];
 
-          index = 4 * i;
-          lineVertices[index++] = x*tr.m00 + y*tr.m01 + tr.m02;
-          lineVertices[index  ] = x*tr.m10 + y*tr.m11 + tr.m12;
-
           index = 4 * i;
           lineDirections[index++] = dx*tr.m00 + dy*tr.m01;
           lineDirections[index  ] = dx*tr.m10 + dy*tr.m11;
@@ -11707,15 +12080,8 @@ public class PGraphicsOpenGL extends PGraphics {
         int index;
 
         double matrixScale = matrixScale(tr);
+        tr.mult(pointVertices, pointVertices, first, last - first + 1, 4);
         for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = pointVertices[index++];
-          double y = pointVertices[index  ];
-
-          index = 4 * i;
-          pointVertices[index++] = x*tr.m00 + y*tr.m01 + tr.m02;
-          pointVertices[index  ] = x*tr.m10 + y*tr.m11 + tr.m12;
-
           index = 2 * i;
           pointOffsets[index++] *= matrixScale;
           pointOffsets[index] *= matrixScale;
@@ -11727,49 +12093,33 @@ public class PGraphicsOpenGL extends PGraphics {
       if (first < last) {
         int index;
 
-        for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = polyVertices[index++];
-          double y = polyVertices[index++];
-          double z = polyVertices[index++];
-          double w = polyVertices[index  ];
+        int count = last - first + 1;
+        tr.mult(polyVertices, polyVertices, first, count, 4);
 
+        for (int i = first; i <= last; i++) {
           index = 3 * i;
           double nx = polyNormals[index++];
           double ny = polyNormals[index++];
           double nz = polyNormals[index  ];
 
-          index = 4 * i;
-          polyVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          polyVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          polyVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          polyVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
           index = 3 * i;
           polyNormals[index++] = nx*tr.m00 + ny*tr.m01 + nz*tr.m02;
           polyNormals[index++] = nx*tr.m10 + ny*tr.m11 + nz*tr.m12;
           polyNormals[index  ] = nx*tr.m20 + ny*tr.m21 + nz*tr.m22;
+        }
 
-          for (String name: polyAttribs.keySet()) {
-            VertexAttribute attrib = polyAttribs.get(name);
-            if (attrib.isColor() || attrib.isOther()) continue;
-            double[] values = fpolyAttribs.get(name);
-            if (attrib.isPosition()) {
-              index = 4 * i;
-              x = values[index++];
-              y = values[index++];
-              z = values[index++];
-              w = values[index  ];
-              index = 4 * i;
-              values[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-              values[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-              values[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-              values[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-            } else {
+        for (String name: polyAttribs.keySet()) {
+          VertexAttribute attrib = polyAttribs.get(name);
+          if (attrib.isColor() || attrib.isOther()) continue;
+          double[] values = fpolyAttribs.get(name);
+          if (attrib.isPosition()) {
+            tr.mult(values, values, first, count, 4);
+          } else {
+            for (int i = first; i <= last; i++) {
               index = 3 * i;
-              nx = values[index++];
-              ny = values[index++];
-              nz = values[index  ];
+              double nx = values[index++];
+              double ny = values[index++];
+              double nz = values[index  ];
               index = 3 * i;
               values[index++] = nx*tr.m00 + ny*tr.m01 + nz*tr.m02;
               values[index++] = nx*tr.m10 + ny*tr.m11 + nz*tr.m12;
@@ -11785,24 +12135,13 @@ public class PGraphicsOpenGL extends PGraphics {
         int index;
 
         double scaleFactor = matrixScale(tr);
+        tr.mult(lineVertices, lineVertices, first, last - first + 1, 4);
         for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = lineVertices[index++];
-          double y = lineVertices[index++];
-          double z = lineVertices[index++];
-          double w = lineVertices[index  ];
-
           index = 4 * i;
           double dx = lineDirections[index++];
           double dy = lineDirections[index++];
           double dz = lineDirections[index  ];
 
-          index = 4 * i;
-          lineVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          lineVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          lineVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          lineVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
           index = 4 * i;
           lineDirections[index++] = dx*tr.m00 + dy*tr.m01 + dz*tr.m02;
           lineDirections[index++] = dx*tr.m10 + dy*tr.m11 + dz*tr.m12;
@@ -11817,19 +12156,8 @@ public class PGraphicsOpenGL extends PGraphics {
         int index;
 
         double matrixScale = matrixScale(tr);
+        tr.mult(pointVertices, pointVertices, first, last - first + 1, 4);
         for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          double x = pointVertices[index++];
-          double y = pointVertices[index++];
-          double z = pointVertices[index++];
-          double w = pointVertices[index  ];
-
-          index = 4 * i;
-          pointVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          pointVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          pointVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          pointVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
           index = 2 * i;
           pointOffsets[index++] *= matrixScale;
           pointOffsets[index] *= matrixScale;
@@ -12062,14 +12390,14 @@ public class PGraphicsOpenGL extends PGraphics {
         // Adding vert0 to take into account the triangles of all
         // the preceding points.
         for (int k = 1; k < nPtVert - 1; k++) {
-          tess.pointIndices[indIdx++] = (short) (count + 0);
-          tess.pointIndices[indIdx++] = (short) (count + k);
-          tess.pointIndices[indIdx++] = (short) (count + k + 1);
+          tess.setPointIndex(indIdx++, count + 0);
+          tess.setPointIndex(indIdx++, count + k);
+          tess.setPointIndex(indIdx++, count + k + 1);
         }
         // Final triangle between the last and first point:
-        tess.pointIndices[indIdx++] = (short) (count + 0);
-        tess.pointIndices[indIdx++] = (short) (count + 1);
-        tess.pointIndices[indIdx++] = (short) (count + nPtVert - 1);
+        tess.setPointIndex(indIdx++, count + 0);
+        tess.setPointIndex(indIdx++, count + 1);
+        tess.setPointIndex(indIdx++, count + nPtVert - 1);
 
         cache.incCounts(index, 3 * (nPtVert - 1), nPtVert);
       }
@@ -12114,14 +12442,14 @@ public class PGraphicsOpenGL extends PGraphics {
         // Adding vert0 to take into account the triangles of all
         // the preceding points.
         for (int k = 1; k < nPtVert - 1; k++) {
-          tess.polyIndices[indIdx++] = (short) (count + 0);
-          tess.polyIndices[indIdx++] = (short) (count + k);
-          tess.polyIndices[indIdx++] = (short) (count + k + 1);
+          tess.setPolyIndex(indIdx++, count + 0);
+          tess.setPolyIndex(indIdx++, count + k);
+          tess.setPolyIndex(indIdx++, count + k + 1);
         }
         // Final triangle between the last and first point:
-        tess.polyIndices[indIdx++] = (short) (count + 0);
-        tess.polyIndices[indIdx++] = (short) (count + 1);
-        tess.polyIndices[indIdx++] = (short) (count + nPtVert - 1);
+        tess.setPolyIndex(indIdx++, count + 0);
+        tess.setPolyIndex(indIdx++, count + 1);
+        tess.setPolyIndex(indIdx++, count + nPtVert - 1);
 
         cache.incCounts(index, 3 * (nPtVert - 1), nPtVert);
       }
@@ -12191,14 +12519,14 @@ public class PGraphicsOpenGL extends PGraphics {
         // Adding firstVert to take into account the triangles of all
         // the preceding points.
         for (int k = 1; k < nvert - 1; k++) {
-          tess.pointIndices[indIdx++] = (short) (count + 0);
-          tess.pointIndices[indIdx++] = (short) (count + k);
-          tess.pointIndices[indIdx++] = (short) (count + k + 1);
+          tess.setPointIndex(indIdx++, count + 0);
+          tess.setPointIndex(indIdx++, count + k);
+          tess.setPointIndex(indIdx++, count + k + 1);
         }
         // Final triangle between the last and first point:
-        tess.pointIndices[indIdx++] = (short) (count + 0);
-        tess.pointIndices[indIdx++] = (short) (count + 1);
-        tess.pointIndices[indIdx++] = (short) (count + nvert - 1);
+        tess.setPointIndex(indIdx++, count + 0);
+        tess.setPointIndex(indIdx++, count + 1);
+        tess.setPointIndex(indIdx++, count + nvert - 1);
 
         cache.incCounts(index, 12, 5);
       }
@@ -12239,14 +12567,14 @@ public class PGraphicsOpenGL extends PGraphics {
         }
 
         for (int k = 1; k < nvert - 1; k++) {
-          tess.polyIndices[indIdx++] = (short) (count + 0);
-          tess.polyIndices[indIdx++] = (short) (count + k);
-          tess.polyIndices[indIdx++] = (short) (count + k + 1);
+          tess.setPolyIndex(indIdx++, count + 0);
+          tess.setPolyIndex(indIdx++, count + k);
+          tess.setPolyIndex(indIdx++, count + k + 1);
         }
         // Final triangle between the last and first point:
-        tess.polyIndices[indIdx++] = (short) (count + 0);
-        tess.polyIndices[indIdx++] = (short) (count + 1);
-        tess.polyIndices[indIdx++] = (short) (count + nvert - 1);
+        tess.setPolyIndex(indIdx++, count + 0);
+        tess.setPolyIndex(indIdx++, count + 1);
+        tess.setPolyIndex(indIdx++, count + nvert - 1);
 
         cache.incCounts(index, 12, 5);
       }
@@ -12388,7 +12716,7 @@ public class PGraphicsOpenGL extends PGraphics {
                                               tess.lineIndexCache.getLast();
       firstLineIndexCache = index;
       int i0 = 0;
-      short[] lastInd = {-1, -1};
+      int[] lastInd = {-1, -1};
       int[] tmp = {0, 0};
       tess.lineIndexCache.setCounter(tmp);
       for (int ln = 0; ln < lineCount; ln++) {
@@ -12481,7 +12809,7 @@ public class PGraphicsOpenGL extends PGraphics {
       firstLineIndexCache = index;
       int i0 = 0;
       int i1 = -1;
-      short[] lastInd = {-1, -1};
+      int[] lastInd = {-1, -1};
       int[] tmp = {0, 0};
       tess.lineIndexCache.setCounter(tmp);
       for (int ln = 0; ln < lineCount - 1; ln++) {
@@ -12578,7 +12906,7 @@ public class PGraphicsOpenGL extends PGraphics {
       firstLineIndexCache = index;
       int fi0 = 0;
       int fi1 = 0;
-      short[] lastInd = {-1, -1};
+      int[] lastInd = {-1, -1};
       int pi0 = -1;
       int pi1 = -1;
 
@@ -12696,7 +13024,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
     // Adding the data that defines a quad starting at vertex i0 and
     // ending at i1.
-    int addLineSegment3D(int i0, int i1, int pi0, int pi1, int index, short[] lastInd,
+    int addLineSegment3D(int i0, int i1, int pi0, int pi1, int index, int[] lastInd,
                          boolean constStroke) {
       IndexCache cache = tess.lineIndexCache;
       int count = cache.vertexCount[index];
@@ -12718,24 +13046,24 @@ public class PGraphicsOpenGL extends PGraphics {
       weight *= transformScale();
 
       tess.setLineVertex(vidx++, strokeVertices, i0, i1, color, weight/2);
-      tess.lineIndices[iidx++] = (short) (count);
+      tess.setLineIndex(iidx++, count);
 
       tess.setLineVertex(vidx++, strokeVertices, i0, i1, color, -weight/2);
-      tess.lineIndices[iidx++] = (short) (count + 1);
+      tess.setLineIndex(iidx++, count + 1);
 
       color = constStroke ? strokeColor : strokeColors[i1];
       weight = constStroke ? strokeWeight : strokeWeights[i1];
       weight *= transformScale();
 
       tess.setLineVertex(vidx++, strokeVertices, i1, i0, color, -weight/2);
-      tess.lineIndices[iidx++] = (short) (count + 2);
+      tess.setLineIndex(iidx++, count + 2);
 
       // Starting a new triangle re-using prev vertices.
-      tess.lineIndices[iidx++] = (short) (count + 2);
-      tess.lineIndices[iidx++] = (short) (count + 1);
+      tess.setLineIndex(iidx++, count + 2);
+      tess.setLineIndex(iidx++, count + 1);
 
       tess.setLineVertex(vidx++, strokeVertices, i1, i0, color, +weight/2);
-      tess.lineIndices[iidx++] = (short) (count + 3);
+      tess.setLineIndex(iidx++, count + 3);
 
       cache.incCounts(index, 6, 4);
 
@@ -12754,26 +13082,26 @@ public class PGraphicsOpenGL extends PGraphics {
               tess.setLineVertex(vidx++, strokeVertices, pi1, pi0, color, -weight/2); // count+2 vert from previous block
               tess.setLineVertex(vidx, strokeVertices, pi1, pi0, color, +weight/2); // count+3 vert from previous block
 
-              tess.lineIndices[iidx++] = (short) (count + 4);
-              tess.lineIndices[iidx++] = (short) (count + 5);
-              tess.lineIndices[iidx++] = (short) (count);
+              tess.setLineIndex(iidx++, count + 4);
+              tess.setLineIndex(iidx++, count + 5);
+              tess.setLineIndex(iidx++, count);
 
-              tess.lineIndices[iidx++] = (short) (count + 4);
-              tess.lineIndices[iidx++] = (short) (count + 6);
-              tess.lineIndices[iidx  ] = (short) (count + 1);
+              tess.setLineIndex(iidx++, count + 4);
+              tess.setLineIndex(iidx++, count + 6);
+              tess.setLineIndex(iidx, count + 1);
 
               cache.incCounts(index, 6, 3);
             }
           } else {
             tess.setLineVertex(vidx, strokeVertices, i0, color0);
 
-            tess.lineIndices[iidx++] = (short) (count + 4);
-            tess.lineIndices[iidx++] = lastInd[0];
-            tess.lineIndices[iidx++] = (short) (count);
+            tess.setLineIndex(iidx++, count + 4);
+            tess.setLineIndex(iidx++, lastInd[0]);
+            tess.setLineIndex(iidx++, count);
 
-            tess.lineIndices[iidx++] = (short) (count + 4);
-            tess.lineIndices[iidx++] = lastInd[1];
-            tess.lineIndices[iidx  ] = (short) (count + 1);
+            tess.setLineIndex(iidx++, count + 4);
+            tess.setLineIndex(iidx++, lastInd[1]);
+            tess.setLineIndex(iidx, count + 1);
 
             cache.incCounts(index, 6, 1);
           }
@@ -12781,13 +13109,13 @@ public class PGraphicsOpenGL extends PGraphics {
 
         // The last two vertices of the segment will be used in the next
         // bevel triangle
-        lastInd[0] = (short) (count + 2);
-        lastInd[1] = (short) (count + 3);
+        lastInd[0] = count + 2;
+        lastInd[1] = count + 3;
       }
       return index;
     }
 
-    int addBevel3D(int fi0, int fi1, int pi0 ,int pi1, int index, short[] lastInd,
+    int addBevel3D(int fi0, int fi1, int pi0 ,int pi1, int index, int[] lastInd,
                    boolean constStroke) {
       IndexCache cache = tess.lineIndexCache;
       int count = cache.vertexCount[index];
@@ -12820,18 +13148,18 @@ public class PGraphicsOpenGL extends PGraphics {
         tess.setLineVertex(vidx++, strokeVertices, pi1, pi0, color, -weight/2);
         tess.setLineVertex(vidx  , strokeVertices, pi1, pi0, color, +weight/2);
 
-        lastInd[0] = (short) (count + 3);
-        lastInd[1] = (short) (count + 4);
+        lastInd[0] = count + 3;
+        lastInd[1] = count + 4;
         extra = 2;
       }
 
-      tess.lineIndices[iidx++] = (short) (count + 0);
-      tess.lineIndices[iidx++] = lastInd[0];
-      tess.lineIndices[iidx++] = (short) (count + 1);
+      tess.setLineIndex(iidx++, count + 0);
+      tess.setLineIndex(iidx++, lastInd[0]);
+      tess.setLineIndex(iidx++, count + 1);
 
-      tess.lineIndices[iidx++] = (short) (count + 0);
-      tess.lineIndices[iidx++] = (short) (count + 2);
-      tess.lineIndices[iidx  ] = lastInd[1];
+      tess.setLineIndex(iidx++, count + 0);
+      tess.setLineIndex(iidx++, count + 2);
+      tess.setLineIndex(iidx, lastInd[1]);
 
       cache.incCounts(index, 6, 3 + extra);
 
@@ -12887,11 +13215,11 @@ public class PGraphicsOpenGL extends PGraphics {
 
       tess.setPolyVertex(vidx++, x0 + normdx - dirdx, y0 + normdy - dirdy,
                          0, color, clamp);
-      tess.polyIndices[iidx++] = (short) (count + 0);
+      tess.setPolyIndex(iidx++, count + 0);
 
       tess.setPolyVertex(vidx++, x0 - normdx - dirdx, y0 - normdy - dirdy,
                          0, color, clamp);
-      tess.polyIndices[iidx++] = (short) (count + 1);
+      tess.setPolyIndex(iidx++, count + 1);
 
       if (clamp) {
         // Check for degeneracy due to coordinate clamping
@@ -12915,15 +13243,15 @@ public class PGraphicsOpenGL extends PGraphics {
 
       tess.setPolyVertex(vidx++, x1 - normdx + dirdx, y1 - normdy + dirdy,
                          0, color, clamp);
-      tess.polyIndices[iidx++] = (short) (count + 2);
+      tess.setPolyIndex(iidx++, count + 2);
 
       // Starting a new triangle re-using prev vertices.
-      tess.polyIndices[iidx++] = (short) (count + 2);
-      tess.polyIndices[iidx++] = (short) (count + 0);
+      tess.setPolyIndex(iidx++, count + 2);
+      tess.setPolyIndex(iidx++, count + 0);
 
       tess.setPolyVertex(vidx++, x1 + normdx + dirdx, y1 + normdy + dirdy,
                          0, color, clamp);
-      tess.polyIndices[iidx++] = (short) (count + 3);
+      tess.setPolyIndex(iidx++, count + 3);
 
       if (clamp) {
         // Check for degeneracy due to coordinate clamping
@@ -13300,9 +13628,9 @@ public class PGraphicsOpenGL extends PGraphics {
           ri2 = ii2;
         } else ri2 = count + ii2;
 
-        tess.polyIndices[offset + 3 * tr + 0] = (short) ri0;
-        tess.polyIndices[offset + 3 * tr + 1] = (short) ri1;
-        tess.polyIndices[offset + 3 * tr + 2] = (short) ri2;
+        tess.setPolyIndex(offset + 3 * tr + 0, ri0);
+        tess.setPolyIndex(offset + 3 * tr + 1, ri1);
+        tess.setPolyIndex(offset + 3 * tr + 2, ri2);
 
         inInd1 = 3 * tr + 2;
         inMaxVert1 = PApplet.max(inMaxVert1, PApplet.max(i0, i1, i2));
@@ -13322,10 +13650,10 @@ public class PGraphicsOpenGL extends PGraphics {
             // Adjusting the negative indices so they correspond to vertices
             // added at the end of the block.
             for (int i = inInd0; i <= inInd1; i++) {
-              int ri = tess.polyIndices[offset + i];
+              int ri = tess.polyIndex(offset + i);
               if (ri < 0) {
-                tess.polyIndices[offset + i] =
-                  (short) (inMaxVertRel + 1 + dupIndexPos(ri));
+                tess.setPolyIndex(offset + i,
+                                  inMaxVertRel + 1 + dupIndexPos(ri));
               }
             }
 
@@ -14095,8 +14423,7 @@ public class PGraphicsOpenGL extends PGraphics {
 
       protected void addIndex(int tessIdx) {
         tess.polyIndexCheck();
-        tess.polyIndices[tess.polyIndexCount - 1] =
-          (short) (vertFirst + tessIdx);
+        tess.setPolyIndex(tess.polyIndexCount - 1, vertFirst + tessIdx);
       }
 
       protected void calcTriNormal(int tessIdx0, int tessIdx1, int tessIdx2) {
@@ -14221,6 +14548,22 @@ public class PGraphicsOpenGL extends PGraphics {
     static final int Y2 = 7;
     static final int Z2 = 8;
 
+    // Number of triangles above which the projection, bounds and sorting
+    // steps are split across the worker threads.
+    static int MIN_PARALLEL_TRIANGLES = 20000;
+
+    // Triangles whose bounds cover more grid cells than this are not put
+    // in the grid, but tested against every active triangle instead.
+    static final int MAX_TRIANGLE_CELLS = 64;
+
+    // Maximum number of grid cells along each axis.
+    static final int MAX_GRID_SIZE = 512;
+
+    // The triangles overlapping the active one are fetched from the grid
+    // only when the cells hold this many times fewer triangles than the
+    // depth range, since they need to be sorted afterwards.
+    static final int CANDIDATE_SCAN_RATIO = 8;
+
     int[] triangleIndices = new int[0];
     int[] texMap = new int[0];
     int[] voffsetMap = new int[0];
@@ -14240,6 +14583,27 @@ public class PGraphicsOpenGL extends PGraphics {
     BitSet marked = new BitSet();
     BitSet swapped = new BitSet();
 
+    // Current position of each triangle in triangleIndices, scratch array
+    // for the merge sort, and query stamps to avoid testing a triangle
+    // twice when it is stored in several grid cells.
+    int[] trianglePositions = new int[0];
+    int[] sortBuffer = new int[0];
+    int[] queryStamps = new int[0];
+    int queryStamp;
+
+    // Screen-space grid, stored as the list of triangles of each cell
+    // (cellTriangles) with cellStart holding the first item of each cell.
+    int gridSizeX, gridSizeY;
+    double gridMinX, gridMinY;
+    double gridScaleX, gridScaleY;
+    int[] cellStart = new int[0];
+    int[] cellTriangles = new int[0];
+    int[] largeTriangles = new int[0];
+    int largeCount;
+
+    // Positions of the triangles that overlap the active one
+    int[] candidates = new int[0];
+
     PGraphicsOpenGL pg;
 
     DepthSorter (PGraphicsOpenGL pg) {
@@ -14258,6 +14622,12 @@ public class PGraphicsOpenGL extends PGraphics {
         maxXBuffer      = new double[newSize];
         maxYBuffer      = new double[newSize];
         maxZBuffer      = new double[newSize];
+        trianglePositions = new int[newSize];
+        sortBuffer      = new int[newSize];
+        queryStamps     = new int[newSize];
+        largeTriangles  = new int[newSize];
+        candidates      = new int[newSize];
+        queryStamp = 0;
       }
     }
 
@@ -14271,6 +14641,13 @@ public class PGraphicsOpenGL extends PGraphics {
 
     // Sorting --------------------------------------------
 
+    // Sorts the triangles back to front with the same tests as the classic
+    // painter's algorithm (Newell's tests): triangles are sorted by min Z,
+    // and each one is checked against the following ones that overlap it
+    // in depth, swapping them when they are in the wrong order. Instead of
+    // scanning all of these, only the ones whose screen bounds intersect
+    // the active triangle are fetched from a screen-space grid, which gives
+    // the same order while skipping most of the tests on large scenes.
     void sort(TessGeometry tessGeo) {
 
       int triangleCount = tessGeo.polyIndexCount / 3;
@@ -14307,126 +14684,68 @@ public class PGraphicsOpenGL extends PGraphics {
         }
       }
 
-      { // Map vertices to screen
-        int polyVertexCount = tessGeo.polyVertexCount;
-        checkVertexBuffer(polyVertexCount);
-        double[] screenVertices = this.screenVertices;
-
-        double[] polyVertices = tessGeo.polyVertices;
-
-        PMatrix3D projection = pg.projection;
-
-        for (int i = 0; i < polyVertexCount; i++) {
-          double x = polyVertices[4*i+X];
-          double y = polyVertices[4*i+Y];
-          double z = polyVertices[4*i+Z];
-          double w = polyVertices[4*i+W];
+      int polyVertexCount = tessGeo.polyVertexCount;
+      checkVertexBuffer(polyVertexCount);
+      boolean parallel = MIN_PARALLEL_TRIANGLES <= triangleCount &&
+                         1 < Runtime.getRuntime().availableProcessors();
 
-          double ox = projection.m00 * x + projection.m01 * y +
-              projection.m02 * z + projection.m03 * w;
-          double oy = projection.m10 * x + projection.m11 * y +
-              projection.m12 * z + projection.m13 * w;
-          double oz = projection.m20 * x + projection.m21 * y +
-              projection.m22 * z + projection.m23 * w;
-          double ow = projection.m30 * x + projection.m31 * y +
-              projection.m32 * z + projection.m33 * w;
-          if (nonZero(ow)) {
-            ox /= ow;
-            oy /= ow;
-            oz /= ow;
-          }
-          screenVertices[3*i+X] = ox;
-          screenVertices[3*i+Y] = oy;
-          screenVertices[3*i+Z] = -oz;
-        }
-      }
-      double[] screenVertices = this.screenVertices;
+      // Map vertices to screen
+      runRange(polyVertexCount, parallel, (i0, i1) ->
+               projectVertices(tessGeo.polyVertices, pg.projection, i0, i1));
 
+      // Triangle bounds
       int[] vertexOffset = tessGeo.polyIndexCache.vertexOffset;
-      short[] polyIndices = tessGeo.polyIndices;
+      runRange(triangleCount, parallel, (i0, i1) ->
+               computeBounds(vertexOffset, tessGeo, i0, i1));
 
-      double[] triA = this.triA;
-      double[] triB = this.triB;
+      sortByMinZ(triangleCount, parallel);
 
-      for (int i = 0; i < triangleCount; i++) {
-        fetchTriCoords(triA, i, vertexOffset, voffsetMap, screenVertices, polyIndices);
-        minXBuffer[i] = PApplet.min(triA[X0], triA[X1], triA[X2]);
-        maxXBuffer[i] = PApplet.max(triA[X0], triA[X1], triA[X2]);
-        minYBuffer[i] = PApplet.min(triA[Y0], triA[Y1], triA[Y2]);
-        maxYBuffer[i] = PApplet.max(triA[Y0], triA[Y1], triA[Y2]);
-        minZBuffer[i] = PApplet.min(triA[Z0], triA[Z1], triA[Z2]);
-        maxZBuffer[i] = PApplet.max(triA[Z0], triA[Z1], triA[Z2]);
-      }
+      buildGrid(triangleCount);
 
-      sortByMinZ(0, triangleCount - 1, triangleIndices, minZBuffer);
-
-      int activeTid = 0;
+      double[] screenVertices = this.screenVertices;
+      double[] triA = this.triA;
 
       BitSet marked = this.marked;
       BitSet swapped = this.swapped;
 
+      int[] positions = this.trianglePositions;
+      for (int tid = 0; tid < triangleCount; tid++) {
+        positions[triangleIndices[tid]] = tid;
+      }
+
       marked.clear();
 
+      int activeTid = 0;
       while (activeTid < triangleCount) {
-        int testTid = activeTid + 1;
-        boolean draw = false;
-
         swapped.clear();
 
         int ati = triangleIndices[activeTid];
-        double minXA = minXBuffer[ati];
-        double maxXA = maxXBuffer[ati];
-        double minYA = minYBuffer[ati];
-        double maxYA = maxYBuffer[ati];
-        double maxZA = maxZBuffer[ati];
-
-        fetchTriCoords(triA, ati, vertexOffset, voffsetMap, screenVertices, polyIndices);
-
-        while (!draw && testTid < triangleCount) {
-          int tti = triangleIndices[testTid];
-
-          // TEST 1 // Z overlap
-          if (maxZA <= minZBuffer[tti] && !marked.get(tti)) {
-            draw = true; // pass, not overlapping in Z, draw it
+        fetchTriCoords(triA, ati, vertexOffset, voffsetMap, screenVertices, tessGeo);
 
-            // TEST 2 // XY overlap using square window
-          } else if (maxXA <= minXBuffer[tti] || maxYA <= minYBuffer[tti] ||
-              minXA >= maxXBuffer[tti] || minYA >= maxYBuffer[tti]) {
-            testTid++; // pass, not overlapping in XY
-
-            // TEST 3 // test on which side ACTIVE is relative to TEST
+        boolean draw = false;
+        while (!draw) {
+          // TEST 1 // Z overlap: the active triangle is drawn when reaching
+          // the first unmarked triangle that does not overlap it in Z, so
+          // only the ones before it need to be tested.
+          int stopTid = findStop(activeTid + 1, triangleCount, maxZBuffer[ati]);
+
+          // TEST 2, 3 and 4 // XY overlap and relative sides
+          int swapTid = findSwap(ati, activeTid, stopTid,
+                                 vertexOffset, tessGeo);
+
+          if (swapTid == -1) {
+            draw = true;
           } else {
-            fetchTriCoords(triB, tti, vertexOffset, voffsetMap,
-                screenVertices, polyIndices);
-            if (side(triB, triA, -1) > 0) {
-              testTid++; // pass, ACTIVE is in halfspace behind current TEST
-
-              // TEST 4 // test on which side TEST is relative to ACTIVE
-            } else if (side(triA, triB, 1) > 0) {
-              testTid++; // pass, current TEST is in halfspace in front of ACTIVE
-
-              // FAIL, wrong depth order, swap
-            } else {
-              if (!swapped.get(tti)) {
-                swapped.set(ati);
-                marked.set(tti);
-                rotateRight(triangleIndices, activeTid, testTid);
-
-                ati = tti;
-                System.arraycopy(triB, 0, triA, 0, 9);
-                minXA = minXBuffer[ati];
-                maxXA = maxXBuffer[ati];
-                minYA = minYBuffer[ati];
-                maxYA = maxYBuffer[ati];
-                maxZA = maxZBuffer[ati];
-
-                testTid = activeTid + 1;
-              } else {
-                // oops, we already tested this one, either in one plane or
-                // interlocked in loop with others, just ignore it for now :(
-                testTid++;
-              }
+            int tti = triangleIndices[swapTid];
+            swapped.set(ati);
+            marked.set(tti);
+            rotateRight(triangleIndices, activeTid, swapTid);
+            for (int tid = activeTid; tid <= swapTid; tid++) {
+              positions[triangleIndices[tid]] = tid;
             }
+
+            ati = tti;
+            System.arraycopy(this.triB, 0, triA, 0, 9);
           }
         }
         activeTid++;
@@ -14438,9 +14757,9 @@ public class PGraphicsOpenGL extends PGraphics {
           if (id != mappedId) {
 
             // put the first index aside
-            short i0 = polyIndices[3*id+0];
-            short i1 = polyIndices[3*id+1];
-            short i2 = polyIndices[3*id+2];
+            int i0 = tessGeo.polyIndex(3*id+0);
+            int i1 = tessGeo.polyIndex(3*id+1);
+            int i2 = tessGeo.polyIndex(3*id+2);
             int texId = texMap[id];
             int voffsetId = voffsetMap[id];
 
@@ -14449,9 +14768,9 @@ public class PGraphicsOpenGL extends PGraphics {
             int nextId = mappedId;
             do {
               triangleIndices[currId] = currId;
-              polyIndices[3*currId+0] = polyIndices[3*nextId+0];
-              polyIndices[3*currId+1] = polyIndices[3*nextId+1];
-              polyIndices[3*currId+2] = polyIndices[3*nextId+2];
+              tessGeo.setPolyIndex(3*currId+0, tessGeo.polyIndex(3*nextId+0));
+              tessGeo.setPolyIndex(3*currId+1, tessGeo.polyIndex(3*nextId+1));
+              tessGeo.setPolyIndex(3*currId+2, tessGeo.polyIndex(3*nextId+2));
               texMap[currId] = texMap[nextId];
               voffsetMap[currId] = voffsetMap[nextId];
 
@@ -14461,9 +14780,9 @@ public class PGraphicsOpenGL extends PGraphics {
 
             // place the first index at the end
             triangleIndices[currId] = currId;
-            polyIndices[3*currId+0] = i0;
-            polyIndices[3*currId+1] = i1;
-            polyIndices[3*currId+2] = i2;
+            tessGeo.setPolyIndex(3*currId+0, i0);
+            tessGeo.setPolyIndex(3*currId+1, i1);
+            tessGeo.setPolyIndex(3*currId+2, i2);
             texMap[currId] = texId;
             voffsetMap[currId] = voffsetId;
           }
@@ -14472,12 +14791,373 @@ public class PGraphicsOpenGL extends PGraphics {
 
     }
 
+    void projectVertices(double[] polyVertices, PMatrix3D projection,
+                         int first, int last) {
+      double[] screenVertices = this.screenVertices;
+      for (int i = first; i < last; i++) {
+        double x = polyVertices[4*i+X];
+        double y = polyVertices[4*i+Y];
+        double z = polyVertices[4*i+Z];
+        double w = polyVertices[4*i+W];
+
+        double ox = projection.m00 * x + projection.m01 * y +
+            projection.m02 * z + projection.m03 * w;
+        double oy = projection.m10 * x + projection.m11 * y +
+            projection.m12 * z + projection.m13 * w;
+        double oz = projection.m20 * x + projection.m21 * y +
+            projection.m22 * z + projection.m23 * w;
+        double ow = projection.m30 * x + projection.m31 * y +
+            projection.m32 * z + projection.m33 * w;
+        if (nonZero(ow)) {
+          ox /= ow;
+          oy /= ow;
+          oz /= ow;
+        }
+        screenVertices[3*i+X] = ox;
+        screenVertices[3*i+Y] = oy;
+        screenVertices[3*i+Z] = -oz;
+      }
+    }
+
+    // Reads the screen vertices in place rather than through
+    // fetchTriCoords(), since the ranges run on several threads and
+    // would otherwise need a scratch array each.
+    void computeBounds(int[] vertexOffset, TessGeometry tessGeo,
+                       int first, int last) {
+      double[] screenVertices = this.screenVertices;
+      for (int i = first; i < last; i++) {
+        int voffset = vertexOffset[voffsetMap[i]];
+        int i0 = 3 * (voffset + tessGeo.polyIndex(3*i+0));
+        int i1 = 3 * (voffset + tessGeo.polyIndex(3*i+1));
+        int i2 = 3 * (voffset + tessGeo.polyIndex(3*i+2));
+        minXBuffer[i] = PApplet.min(screenVertices[i0+X], screenVertices[i1+X], screenVertices[i2+X]);
+        maxXBuffer[i] = PApplet.max(screenVertices[i0+X], screenVertices[i1+X], screenVertices[i2+X]);
+        minYBuffer[i] = PApplet.min(screenVertices[i0+Y], screenVertices[i1+Y], screenVertices[i2+Y]);
+        maxYBuffer[i] = PApplet.max(screenVertices[i0+Y], screenVertices[i1+Y], screenVertices[i2+Y]);
+        minZBuffer[i] = PApplet.min(screenVertices[i0+Z], screenVertices[i1+Z], screenVertices[i2+Z]);
+        maxZBuffer[i] = PApplet.max(screenVertices[i0+Z], screenVertices[i1+Z], screenVertices[i2+Z]);
+      }
+    }
+
+    // Returns the first position, starting at tid, of an unmarked triangle
+    // whose min Z is not below z, or count if there is none. Only marked
+    // triangles are ever moved by the sorting, so the unmarked ones keep
+    // their min Z order and can be binary searched, skipping the marked
+    // ones found along the way.
+    int findStop(int tid, int count, double z) {
+      int lo = tid;
+      int hi = count;
+      int stop = count;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        int m = mid;
+        while (m < hi && marked.get(triangleIndices[m])) m++;
+        if (m == hi) {
+          hi = mid;
+        } else if (z <= minZBuffer[triangleIndices[m]]) {
+          stop = m;
+          hi = mid;
+        } else {
+          lo = m + 1;
+        }
+      }
+      return stop;
+    }
+
+    // Returns the first position between activeTid and stopTid (both
+    // excluded) of a triangle that has to be drawn before triangle ati, or
+    // -1 if there is none, leaving its coordinates in triB. The triangles
+    // overlapping ati in XY are taken from the grid cells it covers, unless
+    // the range is not much larger than those cells, since the ones from
+    // the grid need to be sorted by position.
+    int findSwap(int ati, int activeTid, int stopTid,
+                 int[] vertexOffset, TessGeometry tessGeo) {
+      if (stopTid <= activeTid + 1) return -1;
+
+      double minXA = minXBuffer[ati];
+      double maxXA = maxXBuffer[ati];
+      double minYA = minYBuffer[ati];
+      double maxYA = maxYBuffer[ati];
+
+      int cx0 = cellX(minXA), cx1 = cellX(maxXA);
+      int cy0 = cellY(minYA), cy1 = cellY(maxYA);
+      int gridCount = largeCount;
+      for (int cy = cy0; cy <= cy1; cy++) {
+        gridCount += cellStart[cy * gridSizeX + cx1 + 1] -
+                     cellStart[cy * gridSizeX + cx0];
+      }
+
+      if (stopTid - activeTid - 1 <= CANDIDATE_SCAN_RATIO * gridCount) {
+        for (int tid = activeTid + 1; tid < stopTid; tid++) {
+          int tti = triangleIndices[tid];
+          if (maxXA <= minXBuffer[tti] || maxYA <= minYBuffer[tti] ||
+              minXA >= maxXBuffer[tti] || minYA >= maxYBuffer[tti]) {
+            continue; // pass, not overlapping in XY
+          }
+          if (mustSwap(tti, vertexOffset, tessGeo)) return tid;
+        }
+        return -1;
+      }
+
+      queryStamp++;
+      if (queryStamp == Integer.MAX_VALUE) {
+        Arrays.fill(queryStamps, 0);
+        queryStamp = 1;
+      }
+
+      int count = 0;
+      for (int cy = cy0; cy <= cy1; cy++) {
+        for (int cx = cx0; cx <= cx1; cx++) {
+          int cell = cy * gridSizeX + cx;
+          for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+            count = addCandidate(cellTriangles[k], minXA, maxXA, minYA, maxYA,
+                                 activeTid, stopTid, count);
+          }
+        }
+      }
+      for (int k = 0; k < largeCount; k++) {
+        count = addCandidate(largeTriangles[k], minXA, maxXA, minYA, maxYA,
+                             activeTid, stopTid, count);
+      }
+
+      Arrays.sort(candidates, 0, count);
+      for (int c = 0; c < count; c++) {
+        int tid = candidates[c];
+        if (mustSwap(triangleIndices[tid], vertexOffset, tessGeo)) {
+          return tid;
+        }
+      }
+      return -1;
+    }
+
+    // Tests whether triangle tti, which overlaps the active one (in triA)
+    // both in Z and XY, is in the wrong depth order with respect to it.
+    boolean mustSwap(int tti, int[] vertexOffset, TessGeometry tessGeo) {
+      if (swapped.get(tti)) {
+        // we already tested this one, either in one plane or interlocked
+        // in loop with others, just ignore it for now :(
+        return false;
+      }
+
+      // TEST 3 // test on which side ACTIVE is relative to TEST
+      fetchTriCoords(triB, tti, vertexOffset, voffsetMap,
+          screenVertices, tessGeo);
+      if (side(triB, triA, -1) > 0) {
+        // pass, ACTIVE is in halfspace behind current TEST
+        return false;
+
+        // TEST 4 // test on which side TEST is relative to ACTIVE
+      } else if (side(triA, triB, 1) > 0) {
+        // pass, current TEST is in halfspace in front of ACTIVE
+        return false;
+      }
+
+      // FAIL, wrong depth order, swap
+      return true;
+    }
+
+    int addCandidate(int tti, double minXA, double maxXA,
+                     double minYA, double maxYA,
+                     int activeTid, int stopTid, int count) {
+      if (queryStamps[tti] == queryStamp) return count;
+      queryStamps[tti] = queryStamp;
+      int tid = trianglePositions[tti];
+      if (tid <= activeTid || stopTid <= tid) return count;
+      if (maxXA <= minXBuffer[tti] || maxYA <= minYBuffer[tti] ||
+          minXA >= maxXBuffer[tti] || minYA >= maxYBuffer[tti]) {
+        return count; // not overlapping in XY
+      }
+      candidates[count] = tid;
+      return count + 1;
+    }
+
+    // Bins the triangles by their screen bounds in a uniform grid covering
+    // the part of the bounds of the scene that is inside the viewport. The
+    // triangles outside of it go to the cells on the border.
+    void buildGrid(int triangleCount) {
+      double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+      double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+      for (int i = 0; i < triangleCount; i++) {
+        if (minXBuffer[i] < minX) minX = minXBuffer[i];
+        if (maxXBuffer[i] > maxX) maxX = maxXBuffer[i];
+        if (minYBuffer[i] < minY) minY = minYBuffer[i];
+        if (maxYBuffer[i] > maxY) maxY = maxYBuffer[i];
+      }
+      minX = Math.max(minX, -1);
+      maxX = Math.min(maxX, 1);
+      minY = Math.max(minY, -1);
+      maxY = Math.min(maxY, 1);
+
+      int size = (int) Math.sqrt(triangleCount / 2.0);
+      size = PApplet.constrain(size, 1, MAX_GRID_SIZE);
+      if (!(minX < maxX) || !(minY < maxY)) size = 1;
+      gridSizeX = gridSizeY = size;
+      gridMinX = minX;
+      gridMinY = minY;
+      gridScaleX = 1 < size ? size / (maxX - minX) : 0;
+      gridScaleY = 1 < size ? size / (maxY - minY) : 0;
+
+      int cellCount = gridSizeX * gridSizeY;
+      if (cellStart.length < cellCount + 1) {
+        cellStart = new int[cellCount + 1];
+      }
+      Arrays.fill(cellStart, 0, cellCount + 1, 0);
+
+      // Count the triangles in each cell, turn the counts into start
+      // positions, and fill the cells using the starts as cursors, which
+      // leaves each of them at the start of the next cell.
+      largeCount = 0;
+      int total = 0;
+      for (int i = 0; i < triangleCount; i++) {
+        int cx0 = cellX(minXBuffer[i]), cx1 = cellX(maxXBuffer[i]);
+        int cy0 = cellY(minYBuffer[i]), cy1 = cellY(maxYBuffer[i]);
+        int cells = (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+        if (MAX_TRIANGLE_CELLS < cells) {
+          largeTriangles[largeCount++] = i;
+          continue;
+        }
+        for (int cy = cy0; cy <= cy1; cy++) {
+          for (int cx = cx0; cx <= cx1; cx++) {
+            cellStart[cy * gridSizeX + cx + 1]++;
+          }
+        }
+        total += cells;
+      }
+      for (int c = 0; c < cellCount; c++) {
+        cellStart[c + 1] += cellStart[c];
+      }
+      if (cellTriangles.length < total) {
+        cellTriangles = new int[(total / 4 + 1) * 5];
+      }
+      for (int i = 0; i < triangleCount; i++) {
+        int cx0 = cellX(minXBuffer[i]), cx1 = cellX(maxXBuffer[i]);
+        int cy0 = cellY(minYBuffer[i]), cy1 = cellY(maxYBuffer[i]);
+        if (MAX_TRIANGLE_CELLS < (cx1 - cx0 + 1) * (cy1 - cy0 + 1)) continue;
+        for (int cy = cy0; cy <= cy1; cy++) {
+          for (int cx = cx0; cx <= cx1; cx++) {
+            cellTriangles[cellStart[cy * gridSizeX + cx]++] = i;
+          }
+        }
+      }
+      for (int c = cellCount; 0 < c; c--) {
+        cellStart[c] = cellStart[c - 1];
+      }
+      cellStart[0] = 0;
+    }
+
+    int cellX(double x) {
+      int c = (int) ((x - gridMinX) * gridScaleX);
+      return c < 0 ? 0 : (c < gridSizeX ? c : gridSizeX - 1);
+    }
+
+    int cellY(double y) {
+      int c = (int) ((y - gridMinY) * gridScaleY);
+      return c < 0 ? 0 : (c < gridSizeY ? c : gridSizeY - 1);
+    }
+
+    // Stable merge sort of the triangle indices by min Z, so triangles with
+    // the same min Z stay in drawing order. The quicksort used before was
+    // not stable, so the order of such triangles used to be arbitrary.
+    // Large scenes are sorted in chunks by the worker threads, and the
+    // chunks then merged.
+    void sortByMinZ(int triangleCount, boolean parallel) {
+      int chunk = parallel ?
+        triangleCount / Runtime.getRuntime().availableProcessors() + 1 :
+        triangleCount;
+      runRange(triangleCount, chunk, parallel, (i0, i1) ->
+               mergeSort(triangleIndices, sortBuffer, i0, i1, minZBuffer));
+      for (int width = chunk; width < triangleCount; width *= 2) {
+        int w = width;
+        runRange(triangleCount, 2 * w, parallel, (i0, i1) -> {
+          int mid = Math.min(i0 + w, i1);
+          merge(triangleIndices, sortBuffer, i0, mid, i1, minZBuffer);
+        });
+      }
+    }
+
+    static void mergeSort(int[] indices, int[] temp, int lo, int hi,
+                          double[] keys) {
+      if (hi - lo < 16) {
+        for (int i = lo + 1; i < hi; i++) {
+          int idx = indices[i];
+          double key = keys[idx];
+          int j = i - 1;
+          while (lo <= j && key < keys[indices[j]]) {
+            indices[j + 1] = indices[j];
+            j--;
+          }
+          indices[j + 1] = idx;
+        }
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      mergeSort(indices, temp, lo, mid, keys);
+      mergeSort(indices, temp, mid, hi, keys);
+      merge(indices, temp, lo, mid, hi, keys);
+    }
+
+    static void merge(int[] indices, int[] temp, int lo, int mid, int hi,
+                      double[] keys) {
+      if (mid >= hi || keys[indices[mid - 1]] <= keys[indices[mid]]) return;
+      System.arraycopy(indices, lo, temp, lo, hi - lo);
+      int i = lo, j = mid, k = lo;
+      while (i < mid && j < hi) {
+        if (keys[temp[j]] < keys[temp[i]]) {
+          indices[k++] = temp[j++];
+        } else {
+          indices[k++] = temp[i++];
+        }
+      }
+      while (i < mid) indices[k++] = temp[i++];
+      while (j < hi) indices[k++] = temp[j++];
+    }
+
+    // Parallel ranges -------------------------------------
+
+    interface RangeTask {
+      void run(int first, int last);
+    }
+
+    void runRange(int count, boolean parallel, RangeTask task) {
+      int chunk = parallel ?
+        count / (4 * Runtime.getRuntime().availableProcessors()) + 1 : count;
+      runRange(count, chunk, parallel, task);
+    }
+
+    // Runs task on consecutive ranges of chunk elements, in the worker
+    // threads when parallel is true.
+    void runRange(int count, int chunk, boolean parallel, RangeTask task) {
+      if (!parallel || count <= chunk) {
+        for (int i = 0; i < count; i += Math.max(chunk, 1)) {
+          task.run(i, Math.min(i + chunk, count));
+        }
+        return;
+      }
+      ExecutorService executor = getWorkerExecutor();
+      ArrayList<Future<?>> tasks = new ArrayList<>();
+      for (int i = 0; i < count; i += chunk) {
+        int first = i;
+        int last = Math.min(i + chunk, count);
+        tasks.add(executor.submit(() -> task.run(first, last)));
+      }
+      try {
+        for (Future<?> f: tasks) {
+          f.get();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException("Interrupted while sorting triangles", e);
+      } catch (ExecutionException e) {
+        throw new RuntimeException("Error while sorting triangles", e.getCause());
+      }
+    }
+
     static void fetchTriCoords(double[] tri, int ti, int[] vertexOffset,
-        int[] voffsetMap, double[] screenVertices, short[] polyIndices) {
+        int[] voffsetMap, double[] screenVertices, TessGeometry tessGeo) {
       int voffset = vertexOffset[voffsetMap[ti]];
-      int i0 = 3 * (voffset + polyIndices[3*ti+0]);
-      int i1 = 3 * (voffset + polyIndices[3*ti+1]);
-      int i2 = 3 * (voffset + polyIndices[3*ti+2]);
+      int i0 = 3 * (voffset + tessGeo.polyIndex(3*ti+0));
+      int i1 = 3 * (voffset + tessGeo.polyIndex(3*ti+1));
+      int i2 = 3 * (voffset + tessGeo.polyIndex(3*ti+2));
       tri[X0] = screenVertices[i0+X];
       tri[Y0] = screenVertices[i0+Y];
       tri[Z0] = screenVertices[i0+Z];
@@ -14489,32 +15169,6 @@ public class PGraphicsOpenGL extends PGraphics {
       tri[Z2] = screenVertices[i2+Z];
     }
 
-    static void sortByMinZ(int leftTid, int rightTid, int[] triangleIndices,
-        double[] minZBuffer) {
-
-      // swap pivot to the front
-      swap(triangleIndices, leftTid, ((leftTid + rightTid) / 2));
-
-      int k = leftTid;
-      double leftMinZ = minZBuffer[triangleIndices[leftTid]];
-
-      // sort by min z
-      for (int tid = leftTid+1; tid <= rightTid; tid++) {
-        double minZ = minZBuffer[triangleIndices[tid]];
-        if (minZ < leftMinZ) {
-          swap(triangleIndices, ++k, tid);
-        }
-      }
-
-      // swap pivot back to the middle
-      swap(triangleIndices, leftTid, k);
-
-      if (leftTid  < k - 1) sortByMinZ(leftTid,  k - 1, triangleIndices,
-          minZBuffer);
-      if (k + 1 < rightTid) sortByMinZ(k + 1, rightTid, triangleIndices,
-          minZBuffer);
-    }
-
     // Math -----------------------------------------------
 
     static int side(double[] tri1, double[] tri2, double tz) {
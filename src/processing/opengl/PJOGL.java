@@ -123,7 +123,8 @@ public class PJOGL extends PGL {
 
   static {
     MIN_DIRECT_BUFFER_SIZE = 2;
-    INDEX_TYPE             = GL.GL_UNSIGNED_SHORT;
+    INDEX_TYPE             = intIndices ? GL.GL_UNSIGNED_INT :
+                                          GL.GL_UNSIGNED_SHORT;
   }
 
 
@@ -24,8 +24,12 @@
 
 package processing.opengl;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import processing.core.PApplet;
 import processing.core.PConstants;
 import processing.core.PGraphics;
@@ -90,6 +94,16 @@ public class PShapeOpenGL extends PShape {
 
   // ........................................................
 
+  // Parallel tessellation of large groups
+
+  // Minimum number of shapes in a group for their tessellation to be
+  // split across several threads, and minimum number of shapes handled
+  // by each task.
+  static protected int MIN_PARALLEL_TESS_SHAPES = 256;
+  static protected int MIN_TESS_CHUNK_SHAPES = 32;
+
+  // ........................................................
+
   // Texturing
 
   protected HashSet<PImage> textures;
@@ -1354,6 +1368,7 @@ public class PShapeOpenGL extends PShape {
 
   @Override
   public void resetMatrix() {
+    invalidateHitTest();
     if (shapeCreated && matrix != null && matrixInv != null) {
       if (family == GROUP) {
         updateTessellation();
@@ -1476,6 +1491,7 @@ public class PShapeOpenGL extends PShape {
 
   @Override
   protected void checkMatrix(int dimensions) {
+    invalidateHitTest();
     if (matrix == null) {
       if (dimensions == 2) {
         matrix = new PMatrix2D();
@@ -3112,7 +3128,6 @@ public class PShapeOpenGL extends PShape {
     double[] attribs;
     int[] color;
     double[] uv;
-    short[] indices;
 
     if (0 < tessGeo.polyVertexCount) {
       polyTess = pg.createShapeFamily(PShape.GEOMETRY);
@@ -3124,7 +3139,6 @@ public class PShapeOpenGL extends PShape {
       attribs = tessGeo.polyNormals;
       color = tessGeo.polyColors;
       uv = tessGeo.polyTexCoords;
-      indices = tessGeo.polyIndices;
       IndexCache cache = tessGeo.polyIndexCache;
       for (int n = firstPolyIndexCache; n <= lastPolyIndexCache; n++) {
         int ioffset = cache.indexOffset[n];
@@ -3132,9 +3146,9 @@ public class PShapeOpenGL extends PShape {
         int voffset = cache.vertexOffset[n];
 
         for (int tr = ioffset / 3; tr < (ioffset + icount) / 3; tr++) {
-          int i0 = voffset + indices[3 * tr + 0];
-          int i1 = voffset + indices[3 * tr + 1];
-          int i2 = voffset + indices[3 * tr + 2];
+          int i0 = voffset + tessGeo.polyIndex(3 * tr + 0);
+          int i1 = voffset + tessGeo.polyIndex(3 * tr + 1);
+          int i2 = voffset + tessGeo.polyIndex(3 * tr + 2);
 
           if (is3D()) {
             double x0 = vertices[4 * i0 + 0];
@@ -3203,7 +3217,6 @@ public class PShapeOpenGL extends PShape {
       vertices = tessGeo.lineVertices;
       attribs = tessGeo.lineDirections;
       color = tessGeo.lineColors;
-      indices = tessGeo.lineIndices;
       IndexCache cache = tessGeo.lineIndexCache;
       for (int n = firstLineIndexCache; n <= lastLineIndexCache; n++) {
         int ioffset = cache.indexOffset[n];
@@ -3212,8 +3225,8 @@ public class PShapeOpenGL extends PShape {
 
         for (int ln = ioffset / 6; ln < (ioffset + icount) / 6; ln++) {
           // Same as in rawLines()
-          int i0 = voffset + indices[6 * ln + 0];
-          int i1 = voffset + indices[6 * ln + 5];
+          int i0 = voffset + tessGeo.lineIndex(6 * ln + 0);
+          int i1 = voffset + tessGeo.lineIndex(6 * ln + 5);
           double sw0 = 2 * attribs[4 * i0 + 3];
           double sw1 = 2 * attribs[4 * i1 + 3];
 
@@ -3246,7 +3259,6 @@ public class PShapeOpenGL extends PShape {
       vertices = tessGeo.pointVertices;
       attribs = tessGeo.pointOffsets;
       color = tessGeo.pointColors;
-      indices = tessGeo.pointIndices;
       IndexCache cache = tessGeo.pointIndexCache;
       for (int n = 0; n < cache.size; n++) {
         int ioffset = cache.indexOffset[n];
@@ -3269,7 +3281,7 @@ public class PShapeOpenGL extends PShape {
             perim = 5;
           }
 
-          int i0 = voffset + indices[3 * pt];
+          int i0 = voffset + tessGeo.pointIndex(3 * pt);
           int argb0 = PGL.nativeToJavaARGB(color[i0]);
           double[] pt0 = {0, 0, 0, 0};
 
@@ -3479,30 +3491,17 @@ public class PShapeOpenGL extends PShape {
   //
 
   /**
-   * Return true if this x, y coordinate is part of this shape. Only works
-   * with PATH shapes or GROUP shapes that contain other GROUPs or PATHs.
-   * This method is not imperfect and doesn't account for all cases
-   * (not all complex shapes: concave shapes or holes may have issues).
+   * Paths keep their vertices in the PShape fields, the other shapes in the
+   * input geometry. Transformations are only applied to the tessellated
+   * geometry, so these are still in the coordinates of the shape.
    */
   @Override
-  public boolean contains(double x, double y) {
-    if (family == PATH || family == GEOMETRY) {
-      // http://www.ecse.rpi.edu/Homepages/wrf/Research/Short_Notes/pnpoly.html
-      boolean c = false;
-      for (int i = 0, j = inGeo.vertexCount-1; i < inGeo.vertexCount; j = i++) {
-        if (((inGeo.vertices[3 * i + 1] > y) != (inGeo.vertices[3 * j + 1] > y)) &&
-            (x <
-                (inGeo.vertices[3 * j]-inGeo.vertices[3 * i]) *
-                (y-inGeo.vertices[3 * i + 1]) /
-                (inGeo.vertices[3 * j + 1]-inGeo.vertices[3 * i + 1]) +
-                inGeo.vertices[3 * i])) {
-          c = !c;
-        }
-      }
-      return c;
-    } else {
-      throw new IllegalArgumentException("The contains() method is only implemented for paths.");
+  protected HitTest createOutlineHitTest() {
+    if (family == PATH) {
+      return super.createOutlineHitTest();
     }
+    return HitTest.outline(inGeo.vertices, 3, inGeo.vertexCount,
+                           inGeo.codes, inGeo.codeCount);
   }
 
 
@@ -3526,6 +3525,7 @@ public class PShapeOpenGL extends PShape {
   protected void markForTessellation() {
     root.tessellated = false;
     tessellated = false;
+    invalidateHitTest();
   }
 
 
@@ -3605,7 +3605,11 @@ public class PShapeOpenGL extends PShape {
         tessGeo.initAttrib(attrib);
       }
 
-      tessellateImpl();
+      if (family == GROUP) {
+        tessellateGroup();
+      } else {
+        tessellateImpl();
+      }
 
       // Tessellated arrays are trimmed since they are expanded
       // by doubling their old size, which might lead to arrays
@@ -3662,108 +3666,226 @@ public class PShapeOpenGL extends PShape {
       }
     } else {
       if (shapeCreated) {
-        // If the geometry was tessellated previously, then
-        // the edges information will still be stored in the
-        // input object, so it needs to be removed to avoid
-        // duplication.
-        inGeo.clearEdges();
-
-        tessellator.setInGeometry(inGeo);
-        tessellator.setTessGeometry(tessGeo);
-        tessellator.setFill(fill || image != null);
-        tessellator.setTexCache(null, null);
-        tessellator.setStroke(stroke);
-        tessellator.setStrokeColor(strokeColor);
-        tessellator.setStrokeWeight(strokeWeight);
-        tessellator.setStrokeCap(strokeCap);
-        tessellator.setStrokeJoin(strokeJoin);
-        tessellator.setRenderer(pg);
-        tessellator.setTransform(matrix);
-        tessellator.set3D(is3D());
-
-        if (family == GEOMETRY) {
-          if (kind == POINTS) {
-            tessellator.tessellatePoints();
-          } else if (kind == LINES) {
-            tessellator.tessellateLines();
-          } else if (kind == LINE_STRIP) {
-            tessellator.tessellateLineStrip();
-          } else if (kind == LINE_LOOP) {
-            tessellator.tessellateLineLoop();
-          } else if (kind == TRIANGLE || kind == TRIANGLES) {
-            if (stroke) inGeo.addTrianglesEdges();
-            if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTrianglesNormals();
-            tessellator.tessellateTriangles();
-          } else if (kind == TRIANGLE_FAN) {
-            if (stroke) inGeo.addTriangleFanEdges();
-            if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTriangleFanNormals();
-            tessellator.tessellateTriangleFan();
-          } else if (kind == TRIANGLE_STRIP) {
-            if (stroke) inGeo.addTriangleStripEdges();
-            if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTriangleStripNormals();
-            tessellator.tessellateTriangleStrip();
-          } else if (kind == QUAD || kind == QUADS) {
-            if (stroke) inGeo.addQuadsEdges();
-            if (normalMode == NORMAL_MODE_AUTO) inGeo.calcQuadsNormals();
-            tessellator.tessellateQuads();
-          } else if (kind == QUAD_STRIP) {
-            if (stroke) inGeo.addQuadStripEdges();
-            if (normalMode == NORMAL_MODE_AUTO) inGeo.calcQuadStripNormals();
-            tessellator.tessellateQuadStrip();
-          } else if (kind == POLYGON) {
-            boolean bez = inGeo.hasBezierVertex();
-            boolean quad = inGeo.hasQuadraticVertex();
-            boolean curv = inGeo.hasCurveVertex();
-            if (bez || quad) saveBezierVertexSettings();
-            if (curv) {
-              saveCurveVertexSettings();
-              tessellator.resetCurveVertexCount();
-            }
-            tessellator.tessellatePolygon(solid, close,
-                                          normalMode == NORMAL_MODE_AUTO);
-            if (bez ||quad) restoreBezierVertexSettings();
-            if (curv) restoreCurveVertexSettings();
-          }
-        } else if (family == PRIMITIVE) {
-          // The input geometry needs to be cleared because the geometry
-          // generation methods in InGeometry add the vertices of the
-          // new primitive to what is already stored.
-          inGeo.clear();
-
-          if (kind == POINT) {
-            tessellatePoint();
-          } else if (kind == LINE) {
-            tessellateLine();
-          } else if (kind == TRIANGLE) {
-            tessellateTriangle();
-          } else if (kind == QUAD) {
-            tessellateQuad();
-          } else if (kind == RECT) {
-            tessellateRect();
-          } else if (kind == ELLIPSE) {
-            tessellateEllipse();
-          } else if (kind == ARC) {
-            tessellateArc();
-          } else if (kind == BOX) {
-            tessellateBox();
-          } else if (kind == SPHERE) {
-            tessellateSphere();
-          }
-        } else if (family == PATH) {
-          inGeo.clear();
-          tessellatePath();
-        }
+        tessellateLeaf();
 
         if (image != null && parent != null) {
           ((PShapeOpenGL)parent).addTexture(image);
         }
+      }
+    }
+
+    firstPolyVertex = lastPolyVertex = -1;
+    firstLineVertex = lastLineVertex = -1;
+    firstPointVertex = lastPointVertex = -1;
+
+    tessellated = true;
+  }
+
+
+  // Runs the tessellator on the input geometry of this shape, which cannot
+  // be a group, and stores the resulting index caches.
+  protected void tessellateLeaf() {
+    // If the geometry was tessellated previously, then
+    // the edges information will still be stored in the
+    // input object, so it needs to be removed to avoid
+    // duplication.
+    inGeo.clearEdges();
+
+    tessellator.setInGeometry(inGeo);
+    tessellator.setTessGeometry(tessGeo);
+    tessellator.setFill(fill || image != null);
+    tessellator.setTexCache(null, null);
+    tessellator.setStroke(stroke);
+    tessellator.setStrokeColor(strokeColor);
+    tessellator.setStrokeWeight(strokeWeight);
+    tessellator.setStrokeCap(strokeCap);
+    tessellator.setStrokeJoin(strokeJoin);
+    tessellator.setRenderer(pg);
+    tessellator.setTransform(matrix);
+    tessellator.set3D(is3D());
+
+    if (family == GEOMETRY) {
+      if (kind == POINTS) {
+        tessellator.tessellatePoints();
+      } else if (kind == LINES) {
+        tessellator.tessellateLines();
+      } else if (kind == LINE_STRIP) {
+        tessellator.tessellateLineStrip();
+      } else if (kind == LINE_LOOP) {
+        tessellator.tessellateLineLoop();
+      } else if (kind == TRIANGLE || kind == TRIANGLES) {
+        if (stroke) inGeo.addTrianglesEdges();
+        if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTrianglesNormals();
+        tessellator.tessellateTriangles();
+      } else if (kind == TRIANGLE_FAN) {
+        if (stroke) inGeo.addTriangleFanEdges();
+        if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTriangleFanNormals();
+        tessellator.tessellateTriangleFan();
+      } else if (kind == TRIANGLE_STRIP) {
+        if (stroke) inGeo.addTriangleStripEdges();
+        if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTriangleStripNormals();
+        tessellator.tessellateTriangleStrip();
+      } else if (kind == QUAD || kind == QUADS) {
+        if (stroke) inGeo.addQuadsEdges();
+        if (normalMode == NORMAL_MODE_AUTO) inGeo.calcQuadsNormals();
+        tessellator.tessellateQuads();
+      } else if (kind == QUAD_STRIP) {
+        if (stroke) inGeo.addQuadStripEdges();
+        if (normalMode == NORMAL_MODE_AUTO) inGeo.calcQuadStripNormals();
+        tessellator.tessellateQuadStrip();
+      } else if (kind == POLYGON) {
+        boolean bez = inGeo.hasBezierVertex();
+        boolean quad = inGeo.hasQuadraticVertex();
+        boolean curv = inGeo.hasCurveVertex();
+        if (bez || quad) saveBezierVertexSettings();
+        if (curv) {
+          saveCurveVertexSettings();
+          tessellator.resetCurveVertexCount();
+        }
+        tessellator.tessellatePolygon(solid, close,
+                                      normalMode == NORMAL_MODE_AUTO);
+        if (bez ||quad) restoreBezierVertexSettings();
+        if (curv) restoreCurveVertexSettings();
+      }
+    } else if (family == PRIMITIVE) {
+      // The input geometry needs to be cleared because the geometry
+      // generation methods in InGeometry add the vertices of the
+      // new primitive to what is already stored.
+      inGeo.clear();
+
+      if (kind == POINT) {
+        tessellatePoint();
+      } else if (kind == LINE) {
+        tessellateLine();
+      } else if (kind == TRIANGLE) {
+        tessellateTriangle();
+      } else if (kind == QUAD) {
+        tessellateQuad();
+      } else if (kind == RECT) {
+        tessellateRect();
+      } else if (kind == ELLIPSE) {
+        tessellateEllipse();
+      } else if (kind == ARC) {
+        tessellateArc();
+      } else if (kind == BOX) {
+        tessellateBox();
+      } else if (kind == SPHERE) {
+        tessellateSphere();
+      }
+    } else if (family == PATH) {
+      inGeo.clear();
+      tessellatePath();
+    }
+
+    firstPolyIndexCache = tessellator.firstPolyIndexCache;
+    lastPolyIndexCache = tessellator.lastPolyIndexCache;
+    firstLineIndexCache = tessellator.firstLineIndexCache;
+    lastLineIndexCache = tessellator.lastLineIndexCache;
+    firstPointIndexCache = tessellator.firstPointIndexCache;
+    lastPointIndexCache = tessellator.lastPointIndexCache;
+  }
+
+
+  // Tessellates a root group. When the group holds enough shapes, these are
+  // split in chunks of consecutive shapes, each chunk is tessellated into its
+  // own TessGeometry, and the chunks are then appended to the geometry of the
+  // root in the original order, so the result is the same as the one from
+  // tessellateImpl(). Chunks run in parallel, except for the shapes that use
+  // the bezier, curve or sphere settings of the renderer, which are done on
+  // the calling thread once the parallel chunks are finished. No GL calls are
+  // made here, the merged geometry is uploaded later as usual.
+  protected void tessellateGroup() {
+    ArrayList<PShapeOpenGL> shapes = new ArrayList<>();
+    collectTessShapes(shapes);
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (shapes.size() < MIN_PARALLEL_TESS_SHAPES || threads < 2) {
+      tessellateImpl();
+      return;
+    }
+
+    tessellateGroupImpl();
+
+    int chunkSize = Math.max(MIN_TESS_CHUNK_SHAPES, shapes.size() / (4 * threads));
+    ArrayList<TessChunk> chunks = new ArrayList<>();
+    TessChunk chunk = null;
+    for (PShapeOpenGL shape: shapes) {
+      boolean serial = shape.tessellationUsesRenderer();
+      if (chunk == null || chunk.serial != serial ||
+          chunk.shapes.size() == chunkSize) {
+        chunk = new TessChunk(serial);
+        chunks.add(chunk);
+      }
+      chunk.shapes.add(shape);
+    }
+
+    ExecutorService executor = PGraphicsOpenGL.getWorkerExecutor();
+    ArrayList<Future<?>> tasks = new ArrayList<>();
+    for (TessChunk c: chunks) {
+      if (!c.serial) {
+        c.tessGeo = PGraphicsOpenGL.newTessGeometry(pg, polyAttribs,
+                                                    PGraphicsOpenGL.RETAINED, true);
+        initTessChunk(c);
+        tasks.add(executor.submit(() -> c.tessellate(new Tessellator())));
+      }
+    }
+    try {
+      for (Future<?> task: tasks) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while tessellating shape", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Error while tessellating shape", e.getCause());
+    }
+
+    for (TessChunk c: chunks) {
+      if (c.serial) {
+        c.tessGeo = PGraphicsOpenGL.newTessGeometry(pg, polyAttribs,
+                                                    PGraphicsOpenGL.RETAINED, true);
+        initTessChunk(c);
+        c.tessellate(pg.tessellator);
+      }
+      mergeTessChunk(c);
+    }
+  }
+
+
+  // Collects the shapes that are not groups in this hierarchy, in the same
+  // order as they are visited by tessellateImpl().
+  protected void collectTessShapes(ArrayList<PShapeOpenGL> shapes) {
+    for (int i = 0; i < childCount; i++) {
+      PShapeOpenGL child = (PShapeOpenGL) children[i];
+      if (child.family == GROUP) {
+        child.collectTessShapes(shapes);
+      } else {
+        shapes.add(child);
+      }
+    }
+  }
 
-        firstPolyIndexCache = tessellator.firstPolyIndexCache;
-        lastPolyIndexCache = tessellator.lastPolyIndexCache;
-        firstLineIndexCache = tessellator.firstLineIndexCache;
-        lastLineIndexCache = tessellator.lastLineIndexCache;
-        firstPointIndexCache = tessellator.firstPointIndexCache;
-        lastPointIndexCache = tessellator.lastPointIndexCache;
+
+  // Does what tessellateImpl() does for the groups in this hierarchy,
+  // leaving the other shapes untouched.
+  protected void tessellateGroupImpl() {
+    tessGeo = root.tessGeo;
+
+    firstPolyIndexCache = -1;
+    lastPolyIndexCache = -1;
+    firstLineIndexCache = -1;
+    lastLineIndexCache = -1;
+    firstPointIndexCache = -1;
+    lastPointIndexCache = -1;
+
+    if (polyAttribs == null) {
+      polyAttribs = PGraphicsOpenGL.newAttributeMap();
+      collectPolyAttribs();
+    }
+
+    for (int i = 0; i < childCount; i++) {
+      PShapeOpenGL child = (PShapeOpenGL) children[i];
+      if (child.family == GROUP) {
+        child.tessellateGroupImpl();
       }
     }
 
@@ -3775,6 +3897,108 @@ public class PShapeOpenGL extends PShape {
   }
 
 
+  // Returns true if tessellating this shape reads or changes the bezier,
+  // curve or sphere settings of the renderer, so it cannot be done in
+  // parallel with other shapes.
+  protected boolean tessellationUsesRenderer() {
+    if (family == GEOMETRY && kind == POLYGON) {
+      return inGeo.hasBezierVertex() || inGeo.hasQuadraticVertex() ||
+             inGeo.hasCurveVertex();
+    } else if (family == PRIMITIVE) {
+      return kind == SPHERE;
+    } else if (family == PATH) {
+      for (int i = 0; i < vertexCodeCount; i++) {
+        int code = vertexCodes[i];
+        if (code == BEZIER_VERTEX || code == QUADRATIC_VERTEX ||
+            code == CURVE_VERTEX) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+
+  protected void initTessChunk(TessChunk chunk) {
+    for (int i = 0; i < polyAttribs.size(); i++) {
+      VertexAttribute attrib = polyAttribs.get(i);
+      chunk.tessGeo.initAttrib(attrib);
+    }
+  }
+
+
+  // Appends the geometry of the chunk to the root, and updates the index
+  // caches of its shapes to point to the merged geometry. The cache entries
+  // are appended one for one: in RETAINED mode the tessellator opens a new
+  // entry for every shape (see the cache.addNew() calls in Tessellator), so
+  // the serial path never continues an entry across shapes either. Entries
+  // that end up sharing a vertex offset are joined into a single draw call
+  // later on by updatePolyIndexCache() and friends, the same way for both.
+  protected void mergeTessChunk(TessChunk chunk) {
+    int polyCacheBase = tessGeo.polyIndexCache.size;
+    int lineCacheBase = tessGeo.lineIndexCache.size;
+    int pointCacheBase = tessGeo.pointIndexCache.size;
+    tessGeo.append(chunk.tessGeo);
+
+    for (PShapeOpenGL shape: chunk.shapes) {
+      shape.tessGeo = tessGeo;
+      shape.tessellator = pg.tessellator;
+
+      // In 2D, lines and points are tessellated as polygons, so their
+      // caches are entries of the polygon cache.
+      int lineBase = shape.is3D() ? lineCacheBase : polyCacheBase;
+      int pointBase = shape.is3D() ? pointCacheBase : polyCacheBase;
+      if (-1 < shape.firstPolyIndexCache) shape.firstPolyIndexCache += polyCacheBase;
+      if (-1 < shape.lastPolyIndexCache) shape.lastPolyIndexCache += polyCacheBase;
+      if (-1 < shape.firstLineIndexCache) shape.firstLineIndexCache += lineBase;
+      if (-1 < shape.lastLineIndexCache) shape.lastLineIndexCache += lineBase;
+      if (-1 < shape.firstPointIndexCache) shape.firstPointIndexCache += pointBase;
+      if (-1 < shape.lastPointIndexCache) shape.lastPointIndexCache += pointBase;
+
+      if (shape.shapeCreated && shape.image != null && shape.parent != null) {
+        ((PShapeOpenGL)shape.parent).addTexture(shape.image);
+      }
+
+      shape.firstPolyVertex = shape.lastPolyVertex = -1;
+      shape.firstLineVertex = shape.lastLineVertex = -1;
+      shape.firstPointVertex = shape.lastPointVertex = -1;
+
+      shape.tessellated = true;
+    }
+  }
+
+
+  // A run of consecutive shapes from a group, tessellated together into a
+  // separate geometry object.
+  static protected class TessChunk {
+    boolean serial;
+    ArrayList<PShapeOpenGL> shapes = new ArrayList<>();
+    TessGeometry tessGeo;
+
+    TessChunk(boolean serial) {
+      this.serial = serial;
+    }
+
+    void tessellate(Tessellator tessellator) {
+      for (PShapeOpenGL shape: shapes) {
+        shape.tessGeo = tessGeo;
+        shape.tessellator = tessellator;
+
+        shape.firstPolyIndexCache = -1;
+        shape.lastPolyIndexCache = -1;
+        shape.firstLineIndexCache = -1;
+        shape.lastLineIndexCache = -1;
+        shape.firstPointIndexCache = -1;
+        shape.lastPointIndexCache = -1;
+
+        if (shape.shapeCreated) {
+          shape.tessellateLeaf();
+        }
+      }
+    }
+  }
+
+
   protected void tessellatePoint() {
     double x = 0, y = 0, z = 0;
     if (params.length == 2) {
@@ -5458,6 +5682,8 @@ public class PShapeOpenGL extends PShape {
 
     Texture tex = textureImage != null ? g.getTexture(textureImage) : null;
 
+    if (tessGeo.relativeVertices) g.vertexOrigin = tessGeo.polyOrigin;
+
     boolean renderingFill = false, renderingStroke = false;
     PShader shader = null;
     IndexCache cache = tessGeo.polyIndexCache;
@@ -5499,7 +5725,7 @@ public class PShapeOpenGL extends PShape {
       int voffset = cache.vertexOffset[n];
 
       shader.setVertexAttribute(root.bufPolyVertex.glId, 4, PGL.FLOAT,
-                                0, 4 * voffset * PGL.SIZEOF_FLOAT);
+                                0, 4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(root.bufPolyColor.glId, 4, PGL.UNSIGNED_BYTE,
                                0, 4 * voffset * PGL.SIZEOF_BYTE);
 
@@ -5543,6 +5769,7 @@ public class PShapeOpenGL extends PShape {
     if (shader != null && shader.bound()) {
       shader.unbind();
     }
+    g.vertexOrigin = null;
   }
 
 
@@ -5556,7 +5783,6 @@ public class PShapeOpenGL extends PShape {
     double[] vertices = tessGeo.polyVertices;
     int[] color = tessGeo.polyColors;
     double[] uv = tessGeo.polyTexCoords;
-    short[] indices = tessGeo.polyIndices;
 
     IndexCache cache = tessGeo.polyIndexCache;
     for (int n = firstPolyIndexCache; n <= lastPolyIndexCache; n++) {
@@ -5565,9 +5791,9 @@ public class PShapeOpenGL extends PShape {
       int voffset = cache.vertexOffset[n];
 
       for (int tr = ioffset / 3; tr < (ioffset + icount) / 3; tr++) {
-        int i0 = voffset + indices[3 * tr + 0];
-        int i1 = voffset + indices[3 * tr + 1];
-        int i2 = voffset + indices[3 * tr + 2];
+        int i0 = voffset + tessGeo.polyIndex(3 * tr + 0);
+        int i1 = voffset + tessGeo.polyIndex(3 * tr + 1);
+        int i2 = voffset + tessGeo.polyIndex(3 * tr + 2);
 
         double[] src0 = {0, 0, 0, 0};
         double[] src1 = {0, 0, 0, 0};
@@ -5642,6 +5868,7 @@ public class PShapeOpenGL extends PShape {
 
 
   protected void renderLines(PGraphicsOpenGL g) {
+    if (tessGeo.relativeVertices) g.vertexOrigin = tessGeo.lineOrigin;
     PShader shader = g.getLineShader();
     shader.bind();
 
@@ -5652,7 +5879,7 @@ public class PShapeOpenGL extends PShape {
       int voffset = cache.vertexOffset[n];
 
       shader.setVertexAttribute(root.bufLineVertex.glId, 4, PGL.FLOAT,
-                                0, 4 * voffset * PGL.SIZEOF_FLOAT);
+                                0, 4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(root.bufLineColor.glId, 4, PGL.UNSIGNED_BYTE,
                                0, 4 * voffset * PGL.SIZEOF_BYTE);
       shader.setLineAttribute(root.bufLineAttrib.glId, 4, PGL.FLOAT,
@@ -5662,6 +5889,7 @@ public class PShapeOpenGL extends PShape {
     }
 
     shader.unbind();
+    g.vertexOrigin = null;
   }
 
 
@@ -5677,7 +5905,6 @@ public class PShapeOpenGL extends PShape {
     double[] vertices = tessGeo.lineVertices;
     int[] color = tessGeo.lineColors;
     double[] attribs = tessGeo.lineDirections;
-    short[] indices = tessGeo.lineIndices;
 
     IndexCache cache = tessGeo.lineIndexCache;
     for (int n = firstLineIndexCache; n <= lastLineIndexCache; n++) {
@@ -5691,8 +5918,8 @@ public class PShapeOpenGL extends PShape {
         // vertices.
         // This bunch of vertices could also be the bevel triangles,
         // with we detect this situation by looking at the line weight.
-        int i0 = voffset + indices[6 * ln + 0];
-        int i1 = voffset + indices[6 * ln + 5];
+        int i0 = voffset + tessGeo.lineIndex(6 * ln + 0);
+        int i1 = voffset + tessGeo.lineIndex(6 * ln + 5);
         double sw0 = 2 * attribs[4 * i0 + 3];
         double sw1 = 2 * attribs[4 * i1 + 3];
 
@@ -5739,6 +5966,7 @@ public class PShapeOpenGL extends PShape {
 
 
   protected void renderPoints(PGraphicsOpenGL g) {
+    if (tessGeo.relativeVertices) g.vertexOrigin = tessGeo.pointOrigin;
     PShader shader = g.getPointShader();
     shader.bind();
 
@@ -5749,7 +5977,7 @@ public class PShapeOpenGL extends PShape {
       int voffset = cache.vertexOffset[n];
 
       shader.setVertexAttribute(root.bufPointVertex.glId, 4, PGL.FLOAT,
-                                0, 4 * voffset * PGL.SIZEOF_FLOAT);
+                                0, 4 * voffset * tessGeo.sizeofVertexFloat());
       shader.setColorAttribute(root.bufPointColor.glId, 4, PGL.UNSIGNED_BYTE,
                                0, 4 * voffset * PGL.SIZEOF_BYTE);
       shader.setPointAttribute(root.bufPointAttrib.glId, 2, PGL.FLOAT,
@@ -5759,6 +5987,7 @@ public class PShapeOpenGL extends PShape {
     }
 
     shader.unbind();
+    g.vertexOrigin = null;
   }
 
 
@@ -5773,7 +6002,6 @@ public class PShapeOpenGL extends PShape {
     double[] vertices = tessGeo.pointVertices;
     int[] color = tessGeo.pointColors;
     double[] attribs = tessGeo.pointOffsets;
-    short[] indices = tessGeo.pointIndices;
 
     IndexCache cache = tessGeo.pointIndexCache;
     for (int n = 0; n < cache.size; n++) {
@@ -5797,7 +6025,7 @@ public class PShapeOpenGL extends PShape {
           perim = 5;
         }
 
-        int i0 = voffset + indices[3 * pt];
+        int i0 = voffset + tessGeo.pointIndex(3 * pt);
         int argb0 = PGL.nativeToJavaARGB(color[i0]);
         double[] pt0 = {0, 0, 0, 0};
 
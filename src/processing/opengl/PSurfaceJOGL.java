@@ -1057,11 +1057,11 @@ public class PSurfaceJOGL implements PSurface {
       }
     }
 
-    MouseEvent me = new MouseEvent(nativeEvent, nativeEvent.getWhen(),
-                                   peAction, modifiers,
-                                   mx, my,
-                                   peButton,
-                                   peCount);
+    MouseEvent me = sketch.createMouseEvent(nativeEvent, nativeEvent.getWhen(),
+                                            peAction, modifiers,
+                                            mx, my,
+                                            peButton,
+                                            peCount);
 
     sketch.postEvent(me);
   }
@@ -0,0 +1,639 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+ * Copyright (c) 2007, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.  Oracle designates this
+ * particular file as subject to the "Classpath" exception as provided
+ * by Oracle in the LICENSE file that accompanied this code.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ */
+
+package processing.opengl;
+
+import processing.core.PMatrix2D;
+
+/**
+ * Double precision version of {@link LineStroker}. The outline of the
+ * stroke is built the same way (offset segments on both sides of the path,
+ * joins and caps on the outside, and a reverse buffer for the inner side),
+ * but all the arithmetic is done in doubles instead of S15.16 fixed point,
+ * so paths far from the origin do not overflow and keep their precision.
+ * Round joins and caps are flattened adaptively from the pen radius instead
+ * of using a fixed pen polygon.
+ * <p>
+ * A stroker keeps its scratch buffers between calls, so stroking a path
+ * does not allocate anything per segment. Use {@link #get()} to obtain the
+ * instance owned by the current thread.
+ */
+public class PathStroker {
+  // Maximum distance, in pixels, between a round join or cap and the
+  // polygon used to approximate it.
+  static public final double FLATTENING_TOLERANCE = 0.1;
+
+  // Same thresholds used by LineStroker, converted from S15.16 units
+  static private final double ROUND_JOIN_THRESHOLD =
+    100000000.0 / (65536.0 * 65536.0);
+  static private final double ROUND_JOIN_INTERNAL_THRESHOLD =
+    1000000000.0 / (65536.0 * 65536.0);
+
+  static private final ThreadLocal<PathStroker> pool =
+    ThreadLocal.withInitial(PathStroker::new);
+
+  private LinePath output;
+  private int capStyle;
+  private int joinStyle;
+  private double m00, m01;
+  private double m10, m11;
+  private double det;
+  private double lineWidth2;
+  private double miterLimitSq;
+  private double m00_2_m01_2;
+  private double m10_2_m11_2;
+  private double m00_m10_m01_m11;
+
+  // Angular step used to flatten round joins and caps
+  private double arcStep;
+
+  private double[] offset = new double[2];
+  private double[] miter = new double[2];
+  private double[] reverse = new double[200];
+  private int[] reverseColors = new int[100];
+  private int rindex;
+
+  private int prev;
+  private boolean started;
+  private boolean lineToOrigin;
+  private boolean joinToOrigin;
+  private boolean joinSegment;
+  private double sx0, sy0, sx1, sy1, x0, y0;
+  private int scolor0, pcolor0, color0;
+  private double mx0, my0, omx, omy;
+  private double px0, py0;
+
+
+  /**
+   * Returns the stroker owned by the calling thread. The stroker is not
+   * thread safe, and should not be shared across threads.
+   */
+  static public PathStroker get() {
+    return pool.get();
+  }
+
+
+  /**
+   * Empty constructor. <code>setParameters</code> must be called prior to
+   * stroking any path.
+   */
+  public PathStroker() {
+  }
+
+
+  /**
+   * Sets the parameters of this <code>PathStroker</code>.
+   *
+   * @param lineWidth
+   *          the desired line width in pixels.
+   * @param capStyle
+   *          the desired end cap style, one of <code>CAP_BUTT</code>,
+   *          <code>CAP_ROUND</code> or <code>CAP_SQUARE</code>.
+   * @param joinStyle
+   *          the desired line join style, one of <code>JOIN_MITER</code>,
+   *          <code>JOIN_ROUND</code> or <code>JOIN_BEVEL</code>.
+   * @param miterLimit
+   *          the desired miter limit.
+   * @param transform
+   *          the transform that has been previously applied to all incoming
+   *          coordinates. This is required in order to produce consistently
+   *          shaped end caps and joins.
+   */
+  public void setParameters(double lineWidth, int capStyle, int joinStyle,
+                            double miterLimit, PMatrix2D transform) {
+    this.m00 = transform.m00;
+    this.m01 = transform.m01;
+    this.m10 = transform.m10;
+    this.m11 = transform.m11;
+    this.det = m00 * m11 - m01 * m10;
+
+    this.lineWidth2 = lineWidth / 2;
+    this.capStyle = capStyle;
+    this.joinStyle = joinStyle;
+
+    this.m00_2_m01_2 = m00 * m00 + m01 * m01;
+    this.m10_2_m11_2 = m10 * m10 + m11 * m11;
+    this.m00_m10_m01_m11 = m00 * m10 + m01 * m11;
+
+    if (joinStyle == LinePath.JOIN_MITER) {
+      double limit = miterLimit * lineWidth2 * det;
+      this.miterLimitSq = limit * limit;
+    }
+
+    // Largest radius of the transformed pen, used to pick how many segments
+    // are needed to keep the arcs within the flattening tolerance.
+    double scale = Math.sqrt(Math.max(m00 * m00 + m10 * m10,
+                                      m01 * m01 + m11 * m11));
+    double radius = lineWidth2 * scale;
+    if (radius > FLATTENING_TOLERANCE) {
+      arcStep = 2 * Math.acos(1 - FLATTENING_TOLERANCE / radius);
+    } else {
+      arcStep = Math.PI;
+    }
+
+    prev = LinePath.SEG_CLOSE;
+    rindex = 0;
+    started = false;
+    lineToOrigin = false;
+    joinSegment = false;
+  }
+
+
+  /**
+   * Appends the outline of the stroke of <code>src</code> to
+   * <code>dest</code>, using the current parameters.
+   */
+  public void strokeTo(LinePath src, LinePath dest) {
+    output = dest;
+    prev = LinePath.SEG_CLOSE;
+    rindex = 0;
+    started = false;
+    lineToOrigin = false;
+    joinSegment = false;
+
+    byte[] types = src.pointTypes;
+    double[] coords = src.doubleCoords;
+    int[] colors = src.pointColors;
+    int pointIdx = 0;
+    for (int i = 0; i < src.numTypes; i++) {
+      switch (types[i]) {
+      case LinePath.SEG_MOVETO:
+        moveTo(coords[pointIdx], coords[pointIdx + 1], colors[pointIdx / 2]);
+        pointIdx += 2;
+        break;
+      case LinePath.SEG_LINETO:
+        lineJoin();
+        lineTo(coords[pointIdx], coords[pointIdx + 1], colors[pointIdx / 2]);
+        pointIdx += 2;
+        break;
+      case LinePath.SEG_CLOSE:
+        lineJoin();
+        close();
+        break;
+      default:
+        throw new InternalError("unknown flattened segment type");
+      }
+    }
+    end();
+    output = null;
+  }
+
+
+  private void moveTo(double x0, double y0, int c0) {
+    if (lineToOrigin) {
+      // not closing the path, do the previous lineTo
+      lineToImpl(sx0, sy0, scolor0, joinToOrigin);
+      lineToOrigin = false;
+    }
+
+    if (prev == LinePath.SEG_LINETO) {
+      finish();
+    }
+
+    this.sx0 = this.x0 = x0;
+    this.sy0 = this.y0 = y0;
+    this.scolor0 = this.color0 = c0;
+    this.rindex = 0;
+    this.started = false;
+    this.joinSegment = false;
+    this.prev = LinePath.SEG_MOVETO;
+  }
+
+
+  private void lineJoin() {
+    this.joinSegment = true;
+  }
+
+
+  private void lineTo(double x1, double y1, int c1) {
+    if (lineToOrigin) {
+      if (x1 == sx0 && y1 == sy0) {
+        // staying in the starting point
+        return;
+      }
+
+      // not closing the path, do the previous lineTo
+      lineToImpl(sx0, sy0, scolor0, joinToOrigin);
+      lineToOrigin = false;
+    } else if (x1 == x0 && y1 == y0) {
+      return;
+    } else if (x1 == sx0 && y1 == sy0) {
+      lineToOrigin = true;
+      joinToOrigin = joinSegment;
+      joinSegment = false;
+      return;
+    }
+
+    lineToImpl(x1, y1, c1, joinSegment);
+    joinSegment = false;
+  }
+
+
+  private void close() {
+    if (lineToOrigin) {
+      // ignore the previous lineTo
+      lineToOrigin = false;
+    }
+
+    if (!started) {
+      finish();
+      return;
+    }
+
+    computeOffset(x0, y0, sx0, sy0, offset);
+    double mx = offset[0];
+    double my = offset[1];
+
+    // Draw penultimate join
+    boolean ccw = isCCW(px0, py0, x0, y0, sx0, sy0);
+    if (joinSegment) {
+      if (joinStyle == LinePath.JOIN_MITER) {
+        drawMiter(px0, py0, x0, y0, sx0, sy0, omx, omy, mx, my, pcolor0, ccw);
+      } else if (joinStyle == LinePath.JOIN_ROUND) {
+        drawRoundJoin(x0, y0, omx, omy, mx, my, color0, ccw,
+                      ROUND_JOIN_THRESHOLD);
+      }
+    } else {
+      // Draw internal joins as round
+      drawRoundJoin(x0, y0, omx, omy, mx, my, color0, ccw,
+                    ROUND_JOIN_INTERNAL_THRESHOLD);
+    }
+
+    emitLineTo(x0 + mx, y0 + my, color0);
+    emitLineTo(sx0 + mx, sy0 + my, scolor0);
+
+    ccw = isCCW(x0, y0, sx0, sy0, sx1, sy1);
+
+    // Draw final join on the outside
+    if (!ccw) {
+      if (joinStyle == LinePath.JOIN_MITER) {
+        drawMiter(x0, y0, sx0, sy0, sx1, sy1, mx, my, mx0, my0, color0, false);
+      } else if (joinStyle == LinePath.JOIN_ROUND) {
+        drawRoundJoin(sx0, sy0, mx, my, mx0, my0, scolor0, false,
+                      ROUND_JOIN_THRESHOLD);
+      }
+    }
+
+    emitLineTo(sx0 + mx0, sy0 + my0, scolor0);
+    emitLineTo(sx0 - mx0, sy0 - my0, scolor0); // same as reverse[0], reverse[1]
+
+    // Draw final join on the inside
+    if (ccw) {
+      if (joinStyle == LinePath.JOIN_MITER) {
+        drawMiter(x0, y0, sx0, sy0, sx1, sy1, -mx, -my, -mx0, -my0, color0,
+                  false);
+      } else if (joinStyle == LinePath.JOIN_ROUND) {
+        drawRoundJoin(sx0, sy0, -mx, -my, -mx0, -my0, scolor0, false,
+                      ROUND_JOIN_THRESHOLD);
+      }
+    }
+
+    emitLineTo(sx0 - mx, sy0 - my, scolor0);
+    emitLineTo(x0 - mx, y0 - my, color0);
+    emitReverse();
+
+    this.x0 = this.sx0;
+    this.y0 = this.sy0;
+    this.started = false;
+    this.joinSegment = false;
+    this.prev = LinePath.SEG_CLOSE;
+    emitClose();
+  }
+
+
+  private void end() {
+    if (lineToOrigin) {
+      // not closing the path, do the previous lineTo
+      lineToImpl(sx0, sy0, scolor0, joinToOrigin);
+      lineToOrigin = false;
+    }
+
+    if (prev == LinePath.SEG_LINETO) {
+      finish();
+    }
+
+    this.joinSegment = false;
+    this.prev = LinePath.SEG_MOVETO;
+  }
+
+
+  private void lineToImpl(double x1, double y1, int c1, boolean joinSegment) {
+    computeOffset(x0, y0, x1, y1, offset);
+    double mx = offset[0];
+    double my = offset[1];
+
+    if (!started) {
+      emitMoveTo(x0 + mx, y0 + my, color0);
+      this.sx1 = x1;
+      this.sy1 = y1;
+      this.mx0 = mx;
+      this.my0 = my;
+      started = true;
+    } else {
+      boolean ccw = isCCW(px0, py0, x0, y0, x1, y1);
+      if (joinSegment) {
+        if (joinStyle == LinePath.JOIN_MITER) {
+          drawMiter(px0, py0, x0, y0, x1, y1, omx, omy, mx, my, color0, ccw);
+        } else if (joinStyle == LinePath.JOIN_ROUND) {
+          drawRoundJoin(x0, y0, omx, omy, mx, my, color0, ccw,
+                        ROUND_JOIN_THRESHOLD);
+        }
+      } else {
+        // Draw internal joins as round
+        drawRoundJoin(x0, y0, omx, omy, mx, my, color0, ccw,
+                      ROUND_JOIN_INTERNAL_THRESHOLD);
+      }
+
+      emitLineTo(x0, y0, color0, !ccw);
+    }
+
+    emitLineTo(x0 + mx, y0 + my, color0, false);
+    emitLineTo(x1 + mx, y1 + my, c1, false);
+
+    emitLineTo(x0 - mx, y0 - my, color0, true);
+    emitLineTo(x1 - mx, y1 - my, c1, true);
+
+    this.omx = mx;
+    this.omy = my;
+    this.px0 = x0;
+    this.py0 = y0;
+    this.pcolor0 = color0;
+    this.x0 = x1;
+    this.y0 = y1;
+    this.color0 = c1;
+    this.prev = LinePath.SEG_LINETO;
+  }
+
+
+  private void finish() {
+    if (capStyle == LinePath.CAP_ROUND) {
+      drawRoundCap(x0, y0, omx, omy, x0 - px0, y0 - py0, color0);
+    } else if (capStyle == LinePath.CAP_SQUARE) {
+      double ldx = px0 - x0;
+      double ldy = py0 - y0;
+      double llen = lineLength(ldx, ldy);
+      if (0 < llen) {
+        double s = lineWidth2 / llen;
+
+        double capx = x0 - ldx * s;
+        double capy = y0 - ldy * s;
+
+        emitLineTo(capx + omx, capy + omy, color0);
+        emitLineTo(capx - omx, capy - omy, color0);
+      }
+    }
+
+    emitReverse();
+
+    if (capStyle == LinePath.CAP_ROUND) {
+      drawRoundCap(sx0, sy0, -mx0, -my0, sx0 - sx1, sy0 - sy1, scolor0);
+    } else if (capStyle == LinePath.CAP_SQUARE) {
+      double ldx = sx1 - sx0;
+      double ldy = sy1 - sy0;
+      double llen = lineLength(ldx, ldy);
+      if (0 < llen) {
+        double s = lineWidth2 / llen;
+
+        double capx = sx0 - ldx * s;
+        double capy = sy0 - ldy * s;
+
+        emitLineTo(capx - mx0, capy - my0, scolor0);
+        emitLineTo(capx + mx0, capy + my0, scolor0);
+      }
+    }
+
+    emitClose();
+    this.joinSegment = false;
+  }
+
+
+  private void computeOffset(double x0, double y0, double x1, double y1,
+                             double[] m) {
+    double dlx = x1 - x0;
+    double dly = y1 - y0;
+    double a = dly * m00 - dlx * m10;
+    double b = dly * m01 - dlx * m11;
+    double dh = Math.sqrt(a * a + b * b);
+    if (dh == 0) {
+      m[0] = m[1] = 0;
+      return;
+    }
+    double div = (det > 0 ? 1 : -1) * lineWidth2 / dh;
+    m[0] = (dly * m00_2_m01_2 - dlx * m00_m10_m01_m11) * div;
+    m[1] = (dly * m00_m10_m01_m11 - dlx * m10_2_m11_2) * div;
+  }
+
+
+  private double lineLength(double ldx, double ldy) {
+    double la = (ldy * m00 - ldx * m10) / det;
+    double lb = (ldy * m01 - ldx * m11) / det;
+    return Math.sqrt(la * la + lb * lb);
+  }
+
+
+  private boolean isCCW(double x0, double y0, double x1, double y1,
+                        double x2, double y2) {
+    double dx0 = x1 - x0;
+    double dy0 = y1 - y0;
+    double dx1 = x2 - x1;
+    double dy1 = y2 - y1;
+    return dx0 * dy1 < dy0 * dx1;
+  }
+
+
+  private void drawRoundJoin(double x, double y, double omx, double omy,
+                             double mx, double my, int color, boolean rev,
+                             double threshold) {
+    if ((omx == 0 && omy == 0) || (mx == 0 && my == 0)) {
+      return;
+    }
+
+    double domx = omx - mx;
+    double domy = omy - my;
+    if (domx * domx + domy * domy < threshold) {
+      return;
+    }
+
+    if (rev) {
+      omx = -omx;
+      omy = -omy;
+      mx = -mx;
+      my = -my;
+    }
+
+    // Work with the untransformed pen, where the offsets lie on a circle,
+    // and go along the shortest arc between them.
+    double ax = (m11 * omx - m01 * omy) / det;
+    double ay = (m00 * omy - m10 * omx) / det;
+    double bx = (m11 * mx - m01 * my) / det;
+    double by = (m00 * my - m10 * mx) / det;
+    double sweep = Math.atan2(ax * by - ay * bx, ax * bx + ay * by);
+    drawArc(x, y, ax, ay, sweep, color, rev);
+  }
+
+
+  private void drawRoundCap(double x, double y, double mx, double my,
+                            double dx, double dy, int color) {
+    if (mx == 0 && my == 0) {
+      return;
+    }
+
+    // Half turn from the offset to its opposite, going through the
+    // direction of the line (dx, dy).
+    double ax = (m11 * mx - m01 * my) / det;
+    double ay = (m00 * my - m10 * mx) / det;
+    double ux = (m11 * dx - m01 * dy) / det;
+    double uy = (m00 * dy - m10 * dx) / det;
+    double sweep = ax * uy - ay * ux < 0 ? -Math.PI : Math.PI;
+    drawArc(x, y, ax, ay, sweep, color, false);
+  }
+
+
+  // Emits the interior points of the arc centered at (x, y) that starts at
+  // the untransformed pen offset (ax, ay) and turns by sweep radians.
+  private void drawArc(double x, double y, double ax, double ay,
+                       double sweep, int color, boolean rev) {
+    int n = (int) Math.ceil(Math.abs(sweep) / arcStep);
+    if (n < 2) {
+      return;
+    }
+
+    // Rotate by a constant step, computing sin/cos only once per arc
+    double step = sweep / n;
+    double cos = Math.cos(step);
+    double sin = Math.sin(step);
+
+    double px = ax, py = ay;
+    for (int i = 1; i < n; i++) {
+      double tx = px * cos - py * sin;
+      py = px * sin + py * cos;
+      px = tx;
+      emitLineTo(x + m00 * px + m01 * py, y + m10 * px + m11 * py, color, rev);
+    }
+  }
+
+
+  // Return the intersection point of the lines (x0, y0) -> (x1, y1)
+  // and (x0p, y0p) -> (x1p, y1p) in m[0] and m[1]
+  private void computeMiter(double x0, double y0, double x1, double y1,
+                            double x0p, double y0p, double x1p, double y1p,
+                            double[] m) {
+    double x10 = x1 - x0;
+    double y10 = y1 - y0;
+    double x10p = x1p - x0p;
+    double y10p = y1p - y0p;
+
+    double den = x10 * y10p - x10p * y10;
+    if (den == 0) {
+      m[0] = x0;
+      m[1] = y0;
+      return;
+    }
+
+    // Relative to (x0, y0), to keep precision far from the origin
+    double t = ((x0p - x0) * y10p - (y0p - y0) * x10p) / den;
+    m[0] = x0 + t * x10;
+    m[1] = y0 + t * y10;
+  }
+
+
+  private void drawMiter(double px0, double py0, double x0, double y0,
+                         double x1, double y1,
+                         double omx, double omy, double mx, double my,
+                         int color, boolean rev) {
+    if (mx == omx && my == omy) {
+      return;
+    }
+    if (px0 == x0 && py0 == y0) {
+      return;
+    }
+    if (x0 == x1 && y0 == y1) {
+      return;
+    }
+
+    if (rev) {
+      omx = -omx;
+      omy = -omy;
+      mx = -mx;
+      my = -my;
+    }
+
+    computeMiter(px0 + omx, py0 + omy, x0 + omx, y0 + omy,
+                 x0 + mx, y0 + my, x1 + mx, y1 + my, miter);
+
+    // Compute miter length in untransformed coordinates
+    double dx = miter[0] - x0;
+    double dy = miter[1] - y0;
+    double a = dy * m00 - dx * m10;
+    double b = dy * m01 - dx * m11;
+    double lenSq = a * a + b * b;
+
+    if (lenSq < miterLimitSq) {
+      emitLineTo(miter[0], miter[1], color, rev);
+    }
+  }
+
+
+  private void emitMoveTo(double x0, double y0, int c0) {
+    output.moveTo(x0, y0, c0);
+  }
+
+
+  private void emitLineTo(double x1, double y1, int c1) {
+    output.lineTo(x1, y1, c1);
+  }
+
+
+  private void emitLineTo(double x1, double y1, int c1, boolean rev) {
+    if (rev) {
+      if (reverseColors.length == rindex) {
+        int size = rindex << 1;
+        reverse = LinePath.copyOf(reverse, 2 * size);
+        reverseColors = LinePath.copyOf(reverseColors, size);
+      }
+      reverse[2 * rindex] = x1;
+      reverse[2 * rindex + 1] = y1;
+      reverseColors[rindex] = c1;
+      rindex++;
+    } else {
+      emitLineTo(x1, y1, c1);
+    }
+  }
+
+
+  private void emitReverse() {
+    for (int i = rindex - 1; i >= 0; i--) {
+      emitLineTo(reverse[2 * i], reverse[2 * i + 1], reverseColors[i]);
+    }
+    rindex = 0;
+  }
+
+
+  private void emitClose() {
+    output.closePath();
+  }
+}
@@ -0,0 +1,159 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Packs double precision vertices into single precision buffers relative
+ * to an origin (relative-to-center rendering). The origin is subtracted in
+ * double precision before converting to float, so the values sent to the
+ * GPU stay small, and the same origin is then added back by translating the
+ * modelview matrix, which is also done in double precision on the CPU.
+ * <p>
+ * None of these methods touch OpenGL, they only work on arrays and NIO
+ * buffers.
+ */
+public class VertexPacker {
+
+  /**
+   * Computes the center of the bounding box of count vertices, starting at
+   * vertex offset. Vertices are stored with the given stride (3 or 4
+   * components, the 4th being the homogeneous coordinate), and the result
+   * is written in the first three elements of origin.
+   */
+  static public void computeOrigin(double[] vertices, int stride,
+                                   int offset, int count, double[] origin) {
+    if (count <= 0) {
+      origin[0] = origin[1] = origin[2] = 0;
+      return;
+    }
+
+    double minX = Double.POSITIVE_INFINITY;
+    double minY = Double.POSITIVE_INFINITY;
+    double minZ = Double.POSITIVE_INFINITY;
+    double maxX = Double.NEGATIVE_INFINITY;
+    double maxY = Double.NEGATIVE_INFINITY;
+    double maxZ = Double.NEGATIVE_INFINITY;
+    int end = stride * (offset + count);
+    for (int i = stride * offset; i < end; i += stride) {
+      double x = vertices[i];
+      double y = vertices[i + 1];
+      double z = vertices[i + 2];
+      if (x < minX) minX = x;
+      if (x > maxX) maxX = x;
+      if (y < minY) minY = y;
+      if (y > maxY) maxY = y;
+      if (z < minZ) minZ = z;
+      if (z > maxZ) maxZ = z;
+    }
+    origin[0] = 0.5 * (minX + maxX);
+    origin[1] = 0.5 * (minY + maxY);
+    origin[2] = 0.5 * (minZ + maxZ);
+  }
+
+
+  /**
+   * Writes count vertices, starting at vertex offset, into dest at the same
+   * vertex offset, after subtracting origin from them. When the stride is
+   * 4 the origin is scaled by the homogeneous coordinate of each vertex.
+   */
+  static public void pack(double[] vertices, int stride, int offset,
+                          int count, double[] origin, float[] dest) {
+    double ox = origin[0];
+    double oy = origin[1];
+    double oz = origin[2];
+    int end = stride * (offset + count);
+    if (stride == 4) {
+      for (int i = 4 * offset; i < end; i += 4) {
+        double w = vertices[i + 3];
+        dest[i]     = (float) (vertices[i]     - ox * w);
+        dest[i + 1] = (float) (vertices[i + 1] - oy * w);
+        dest[i + 2] = (float) (vertices[i + 2] - oz * w);
+        dest[i + 3] = (float) w;
+      }
+    } else {
+      for (int i = stride * offset; i < end; i += stride) {
+        dest[i]     = (float) (vertices[i]     - ox);
+        dest[i + 1] = (float) (vertices[i + 1] - oy);
+        dest[i + 2] = (float) (vertices[i + 2] - oz);
+        for (int j = 3; j < stride; j++) {
+          dest[i + j] = (float) vertices[i + j];
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Same as {@link #pack(double[], int, int, int, double[], float[])} but
+   * writing into a float buffer, using absolute puts so that the position
+   * of the buffer is not modified.
+   */
+  static public void pack(double[] vertices, int stride, int offset,
+                          int count, double[] origin, FloatBuffer dest) {
+    if (dest.hasArray()) {
+      pack(vertices, stride, offset, count, origin, dest.array());
+      return;
+    }
+
+    double ox = origin[0];
+    double oy = origin[1];
+    double oz = origin[2];
+    int end = stride * (offset + count);
+    if (stride == 4) {
+      for (int i = 4 * offset; i < end; i += 4) {
+        double w = vertices[i + 3];
+        dest.put(i,     (float) (vertices[i]     - ox * w));
+        dest.put(i + 1, (float) (vertices[i + 1] - oy * w));
+        dest.put(i + 2, (float) (vertices[i + 2] - oz * w));
+        dest.put(i + 3, (float) w);
+      }
+    } else {
+      for (int i = stride * offset; i < end; i += stride) {
+        dest.put(i,     (float) (vertices[i]     - ox));
+        dest.put(i + 1, (float) (vertices[i + 1] - oy));
+        dest.put(i + 2, (float) (vertices[i + 2] - oz));
+        for (int j = 3; j < stride; j++) {
+          dest.put(i + j, (float) vertices[i + j]);
+        }
+      }
+    }
+  }
+
+
+  /**
+   * Post-multiplies the column-major 4x4 matrix mat by a translation to
+   * origin, so that mat applied to the packed vertices gives the same
+   * result as the original matrix applied to the unpacked ones.
+   */
+  static public void translate(double[] mat, double[] origin) {
+    double ox = origin[0];
+    double oy = origin[1];
+    double oz = origin[2];
+    mat[12] += mat[0] * ox + mat[4] * oy + mat[8] * oz;
+    mat[13] += mat[1] * ox + mat[5] * oy + mat[9] * oz;
+    mat[14] += mat[2] * ox + mat[6] * oy + mat[10] * oz;
+    mat[15] += mat[3] * ox + mat[7] * oy + mat[11] * oz;
+  }
+}